@@ -84,6 +84,15 @@ public class BlobCrypterSecurityToken extends AbstractSecurityToken implements S
   static BlobCrypterSecurityToken decrypt(BlobCrypter crypter, String container, String domain,
         String token, String activeUrl) throws BlobCrypterException {
     Map<String, String> values = crypter.unwrap(token, MAX_TOKEN_LIFETIME_SECS);
+    return fromValues(crypter, container, domain, values, activeUrl);
+  }
+
+  /**
+   * Creates a token from values already decrypted and verified by
+   * {@link BlobCrypter#unwrap(String, int)}.
+   */
+  static BlobCrypterSecurityToken fromValues(BlobCrypter crypter, String container, String domain,
+      Map<String, String> values, String activeUrl) {
     BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(crypter, container, domain);
     setTokenValues(t, values);
     t.setActiveUrl(activeUrl);
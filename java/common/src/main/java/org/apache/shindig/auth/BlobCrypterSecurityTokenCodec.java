@@ -18,10 +18,15 @@
  */
 package org.apache.shindig.auth;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.crypto.BasicBlobCrypter;
 import org.apache.shindig.common.crypto.BlobCrypter;
 import org.apache.shindig.common.crypto.BlobCrypterException;
+import org.apache.shindig.common.crypto.PooledBlobCrypter;
+import org.apache.shindig.common.util.CharsetUtil;
 import org.apache.shindig.config.ContainerConfig;
 
 import com.google.common.collect.Maps;
@@ -30,6 +35,9 @@ import com.google.inject.Singleton;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -45,6 +53,10 @@ import java.util.Map;
  * </pre>
  * Wire format is "&lt;container&gt;:&lt;encrypted-and-signed-token&gt;"
  *
+ * A gadget sends the same token with every request it makes, so decoded tokens are cached by a
+ * hash of the wire format until they expire. The size of the cache is configured like that of
+ * other caches, e.g. with shindig.cache.lru.securityTokens.capacity.
+ *
  * @since 2.0.0
  */
 @Singleton
@@ -54,6 +66,8 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
 
   public static final String SIGNED_FETCH_DOMAIN = "gadgets.signedFetchDomain";
 
+  public static final String CACHE_NAME = "securityTokens";
+
   /**
    * Keys are container ids, values are crypters
    */
@@ -64,8 +78,24 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
    */
   protected final Map<String, String> domains = Maps.newHashMap();
 
-  @Inject
+  /**
+   * Keys are hashes of tokens, values are the verified contents of the tokens.
+   */
+  private final Cache<String, Map<String, String>> tokenCache;
+
+  /**
+   * Creates a codec that decrypts every token it is given.
+   */
   public BlobCrypterSecurityTokenCodec(ContainerConfig config) {
+    this(config, null);
+  }
+
+  /**
+   * Creates a codec that caches decoded tokens in the "securityTokens" cache of the cache provider.
+   */
+  @Inject
+  public BlobCrypterSecurityTokenCodec(ContainerConfig config, CacheProvider cacheProvider) {
+    tokenCache = cacheProvider == null ? null : cacheProvider.createCache(CACHE_NAME);
     try {
       for (String container : config.getContainers()) {
         String keyFile = config.getString(container, SECURITY_TOKEN_KEY_FILE);
@@ -88,7 +118,7 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
    * BlobCrypter implementation.
    */
   protected BlobCrypter loadCrypterFromFile(File file) throws IOException {
-    return new BasicBlobCrypter(file);
+    return new PooledBlobCrypter(file);
   }
 
   /**
@@ -114,12 +144,57 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
     String activeUrl = tokenParameters.get(SecurityTokenCodec.ACTIVE_URL_NAME);
     String crypted = fields[1];
     try {
-      return BlobCrypterSecurityToken.decrypt(crypter, container, domain, crypted, activeUrl);
+      Map<String, String> values = unwrap(crypter, token, crypted);
+      return BlobCrypterSecurityToken.fromValues(crypter, container, domain, values, activeUrl);
     } catch (BlobCrypterException e) {
       throw new SecurityTokenException(e);
     }
   }
 
+  /**
+   * Decrypts and verifies a token, unless the same token was decoded before. Cached values are
+   * only used until the token reaches its maximum age. After that the token is unwrapped again,
+   * so that the crypter, with its allowance for clock skew, decides whether it has expired.
+   *
+   * Only tokens of BasicBlobCrypters are cached, other crypters may have their own rules for
+   * expiring blobs.
+   */
+  private Map<String, String> unwrap(BlobCrypter crypter, String token, String crypted)
+      throws BlobCrypterException {
+    int maxAge = BlobCrypterSecurityToken.MAX_TOKEN_LIFETIME_SECS;
+    if (tokenCache == null || !(crypter instanceof BasicBlobCrypter)) {
+      return crypter.unwrap(crypted, maxAge);
+    }
+
+    String key = hash(token);
+    Map<String, String> values = tokenCache.getElement(key);
+    if (values != null) {
+      long origin = Long.parseLong(values.get(BasicBlobCrypter.TIMESTAMP_KEY));
+      long now = ((BasicBlobCrypter) crypter).timeSource.currentTimeMillis() / 1000;
+      if (now < origin + maxAge) {
+        return values;
+      }
+      tokenCache.removeElement(key);
+      return crypter.unwrap(crypted, maxAge);
+    }
+
+    values = Collections.unmodifiableMap(crypter.unwrap(crypted, maxAge));
+    tokenCache.addElement(key, values);
+    return values;
+  }
+
+  /**
+   * Tokens are hashed so that the cache doesn't hold on to usable tokens.
+   */
+  private static String hash(String token) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return new String(Hex.encodeHex(digest.digest(CharsetUtil.getUtf8Bytes(token))));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   public String encodeToken(SecurityToken token) throws SecurityTokenException {
     if (! (token instanceof BlobCrypterSecurityToken)) {
       throw new SecurityTokenException("Can only encode BlogCrypterSecurityTokens");
@@ -18,6 +18,7 @@
  */
 package org.apache.shindig.auth;
 
+import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.config.ContainerConfig;
 
 import com.google.inject.Inject;
@@ -49,13 +50,20 @@ public class DefaultSecurityTokenCodec implements SecurityTokenCodec {
 
   private final SecurityTokenCodec codec;
 
-  @Inject
+  /**
+   * Creates a codec whose secure tokens are decrypted every time they are used.
+   */
   public DefaultSecurityTokenCodec(ContainerConfig config) {
+    this(config, null);
+  }
+
+  @Inject
+  public DefaultSecurityTokenCodec(ContainerConfig config, CacheProvider cacheProvider) {
     String tokenType = config.getString(ContainerConfig.DEFAULT_CONTAINER, SECURITY_TOKEN_TYPE);
     if ("insecure".equals(tokenType)) {
       codec = new BasicSecurityTokenCodec();
     } else if ("secure".equals(tokenType)) {
-      codec = new BlobCrypterSecurityTokenCodec(config);
+      codec = new BlobCrypterSecurityTokenCodec(config, cacheProvider);
     } else {
       throw new RuntimeException("Unknown security token type specified in " +
           ContainerConfig.DEFAULT_CONTAINER + " container configuration. " +
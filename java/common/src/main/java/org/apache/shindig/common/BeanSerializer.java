@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Writes java objects of one class as JSON objects, using their getters.
+ *
+ * The getters to call and the encoded JSON key of each property are worked out once per class and
+ * kept in a registry, so writing an object only invokes its getters and copies the keys.
+ */
+final class BeanSerializer {
+  private static final Map<Class<?>, BeanSerializer> SERIALIZERS = new MapMaker().makeMap();
+
+  private final Method[] getters;
+  /** Property names, JSON encoded and followed by a colon. */
+  private final String[] keys;
+  /** Whether the property is left out when it is false, as for isOwner and isViewer. */
+  private final boolean[] omitIfFalse;
+
+  private BeanSerializer(Map<String, Method> methods) {
+    int size = methods.size();
+    getters = new Method[size];
+    keys = new String[size];
+    omitIfFalse = new boolean[size];
+
+    int i = 0;
+    for (Map.Entry<String, Method> entry : methods.entrySet()) {
+      String attribute = entry.getKey();
+      Method getter = entry.getValue();
+      try {
+        // Skips the access check made by every invoke.
+        getter.setAccessible(true);
+      } catch (SecurityException e) {
+        // Not allowed, keep using the checked call.
+      }
+      StringBuilder key = new StringBuilder(attribute.length() + 3);
+      try {
+        JsonSerializer.appendString(key, attribute);
+      } catch (IOException e) {
+        // Can't happen appending to a StringBuilder.
+        throw new RuntimeException(e);
+      }
+      key.append(':');
+
+      getters[i] = getter;
+      keys[i] = key.toString();
+      omitIfFalse[i] = "isOwner".equals(attribute) || "isViewer".equals(attribute);
+      ++i;
+    }
+  }
+
+  /**
+   * @return the serializer for the class of the given object, created on first use.
+   */
+  static BeanSerializer get(Object pojo) {
+    Class<?> clazz = pojo.getClass();
+    BeanSerializer serializer = SERIALIZERS.get(clazz);
+    if (serializer == null) {
+      serializer = new BeanSerializer(JsonUtil.getGetters(pojo));
+      SERIALIZERS.put(clazz, serializer);
+    }
+    return serializer;
+  }
+
+  /**
+   * Appends the non-null properties of the object to the buffer as a JSON object.
+   *
+   * @throws IOException If {@link Appendable#append(char)} throws an exception.
+   */
+  void append(Appendable buf, Object pojo) throws IOException {
+    buf.append('{');
+    boolean firstDone = false;
+    for (int i = 0; i < getters.length; ++i) {
+      Object value = invoke(getters[i], pojo);
+      // Drop null values, and isOwner/isViewer unless true.
+      if (value != null && !(omitIfFalse[i] && value.equals(Boolean.FALSE))) {
+        if (firstDone) {
+          buf.append(',');
+        } else {
+          firstDone = true;
+        }
+        buf.append(keys[i]);
+        JsonSerializer.append(buf, value);
+      }
+    }
+    buf.append('}');
+  }
+
+  private static Object invoke(Method getter, Object pojo) {
+    try {
+      return getter.invoke(pojo);
+    } catch (IllegalArgumentException e) {
+      // Shouldn't be possible.
+      throw new RuntimeException(e);
+    } catch (IllegalAccessException e) {
+      // Bad class.
+      throw new RuntimeException(e);
+    } catch (InvocationTargetException e) {
+      // Bad class.
+      throw new RuntimeException(e);
+    }
+  }
+}
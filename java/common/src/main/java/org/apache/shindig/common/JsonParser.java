@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a JSON value from a Reader into org.json objects in a single pass, without first reading
+ * the whole input into a String. The nesting depth and length of the input are limited, so that
+ * oversized or deeply nested input is rejected as soon as it is read.
+ *
+ * Like org.json, this accepts single quoted strings, and keys and values that are not quoted at
+ * all when they contain no special characters.
+ */
+public final class JsonParser {
+  private static final int BUFFER_SIZE = 4096;
+  private static final String UNQUOTED_DELIMITERS = ",:]}/\\\"[{;=#";
+
+  private final Reader in;
+  private final int maxDepth;
+  private final long maxLength;
+
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder token = new StringBuilder();
+  private int pos;
+  private int limit;
+  private long read;
+  private int depth;
+
+  /**
+   * @param in the input to parse.
+   * @param maxDepth the deepest nesting of objects and arrays allowed, or 0 for no limit.
+   * @param maxLength the most characters of input allowed, or 0 for no limit.
+   */
+  public JsonParser(Reader in, int maxDepth, long maxLength) {
+    this.in = in;
+    this.maxDepth = maxDepth;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Parses the input, which must hold exactly one value.
+   *
+   * @return a JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL.
+   * @throws JSONException if the input is not valid or exceeds the limits.
+   * @throws IOException if reading the input fails.
+   */
+  public Object parse() throws JSONException, IOException {
+    Object value = readValue();
+    if (nextClean() != -1) {
+      throw error("Unexpected content after the value");
+    }
+    return value;
+  }
+
+  private Object readValue() throws JSONException, IOException {
+    int c = nextClean();
+    switch (c) {
+      case '{':
+        return readObject();
+      case '[':
+        return readArray();
+      case '"':
+      case '\'':
+        return readString((char) c);
+      case -1:
+        throw error("Unexpected end of input");
+      default:
+        back();
+        return toValue(readUnquoted());
+    }
+  }
+
+  private JSONObject readObject() throws JSONException, IOException {
+    enter();
+    JSONObject object = new JSONObject();
+    int c = nextClean();
+    while (c != '}') {
+      String key;
+      if (c == '"' || c == '\'') {
+        key = readString((char) c);
+      } else if (c == -1) {
+        throw error("Unterminated object");
+      } else {
+        back();
+        key = readUnquoted();
+      }
+
+      if (nextClean() != ':') {
+        throw error("Expected a ':' after a key");
+      }
+      object.put(key, readValue());
+
+      c = nextClean();
+      if (c == ',') {
+        // Allow a trailing comma.
+        c = nextClean();
+      } else if (c != '}') {
+        throw error("Expected a ',' or '}'");
+      }
+    }
+    --depth;
+    return object;
+  }
+
+  private JSONArray readArray() throws JSONException, IOException {
+    enter();
+    JSONArray array = new JSONArray();
+    int c = nextClean();
+    while (c != ']') {
+      if (c == -1) {
+        throw error("Unterminated array");
+      }
+      back();
+      array.put(readValue());
+
+      c = nextClean();
+      if (c == ',') {
+        // Allow a trailing comma.
+        c = nextClean();
+      } else if (c != ']') {
+        throw error("Expected a ',' or ']'");
+      }
+    }
+    --depth;
+    return array;
+  }
+
+  private String readString(char quote) throws JSONException, IOException {
+    token.setLength(0);
+    while (true) {
+      // Copy runs of plain characters in bulk.
+      int start = pos;
+      while (pos < limit) {
+        char c = buffer[pos];
+        if (c == quote || c == '\\' || c == '\n' || c == '\r') {
+          break;
+        }
+        ++pos;
+      }
+      token.append(buffer, start, pos - start);
+
+      int c = read();
+      if (c == quote) {
+        return token.toString();
+      }
+      switch (c) {
+        case -1:
+        case '\n':
+        case '\r':
+          throw error("Unterminated string");
+        case '\\':
+          token.append(readEscape());
+          break;
+        default:
+          // Refilled the buffer.
+          token.append((char) c);
+      }
+    }
+  }
+
+  private char readEscape() throws JSONException, IOException {
+    int c = read();
+    switch (c) {
+      case 'b':
+        return '\b';
+      case 't':
+        return '\t';
+      case 'n':
+        return '\n';
+      case 'f':
+        return '\f';
+      case 'r':
+        return '\r';
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; ++i) {
+          int digit = Character.digit(read(), 16);
+          if (digit == -1) {
+            throw error("Illegal unicode escape");
+          }
+          value = (value << 4) + digit;
+        }
+        return (char) value;
+      case '"':
+      case '\'':
+      case '\\':
+      case '/':
+        return (char) c;
+      default:
+        throw error("Illegal escape");
+    }
+  }
+
+  private String readUnquoted() throws JSONException, IOException {
+    token.setLength(0);
+    int c = read();
+    while (c >= ' ' && UNQUOTED_DELIMITERS.indexOf(c) == -1) {
+      token.append((char) c);
+      c = read();
+    }
+    if (c != -1) {
+      back();
+    }
+    String value = token.toString().trim();
+    if (value.length() == 0) {
+      throw error("Missing value");
+    }
+    return value;
+  }
+
+  /**
+   * Converts an unquoted token into a value the way org.json does.
+   */
+  private static Object toValue(String s) {
+    if ("true".equalsIgnoreCase(s)) {
+      return Boolean.TRUE;
+    }
+    if ("false".equalsIgnoreCase(s)) {
+      return Boolean.FALSE;
+    }
+    if ("null".equalsIgnoreCase(s)) {
+      return JSONObject.NULL;
+    }
+    char b = s.charAt(0);
+    if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
+      try {
+        if (s.indexOf('.') != -1 || s.indexOf('e') != -1 || s.indexOf('E') != -1) {
+          return Double.valueOf(s);
+        }
+        Long value = Long.valueOf(s);
+        if (value.longValue() == value.intValue()) {
+          return Integer.valueOf(value.intValue());
+        }
+        return value;
+      } catch (NumberFormatException e) {
+        // Not a number after all.
+      }
+    }
+    return s;
+  }
+
+  private void enter() throws JSONException {
+    if (++depth > maxDepth && maxDepth > 0) {
+      throw error("Nesting is deeper than " + maxDepth + " levels");
+    }
+  }
+
+  private int nextClean() throws JSONException, IOException {
+    int c = read();
+    while (c != -1 && c <= ' ') {
+      c = read();
+    }
+    return c;
+  }
+
+  private int read() throws JSONException, IOException {
+    if (pos == limit) {
+      int count = in.read(buffer, 0, buffer.length);
+      if (count <= 0) {
+        return -1;
+      }
+      read += count;
+      if (read > maxLength && maxLength > 0) {
+        throw new JSONException("Input is longer than " + maxLength + " characters");
+      }
+      pos = 0;
+      limit = count;
+    }
+    return buffer[pos++];
+  }
+
+  /**
+   * Steps back over the last character read. Only valid after a read that did not return -1.
+   */
+  private void back() {
+    --pos;
+  }
+
+  private JSONException error(String message) {
+    return new JSONException(message + " at character " + (read - limit + pos));
+  }
+}
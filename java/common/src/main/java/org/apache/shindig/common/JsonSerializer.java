@@ -27,8 +27,6 @@ import org.json.JSONObject;
 import com.google.common.collect.Multimap;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
@@ -178,45 +176,12 @@ public final class JsonSerializer {
   }
 
   /**
-   * Appends a java object using getters
+   * Appends a java object using getters. The getters of each class are looked up only once.
    *
    * @throws IOException If {@link Appendable#append(char)} throws an exception.
    */
   public static void appendPojo(Appendable buf, Object pojo) throws IOException {
-    Map<String, Method> methods = JsonUtil.getGetters(pojo);
-    buf.append('{');
-    boolean firstDone = false;
-    for (Map.Entry<String, Method> entry : methods.entrySet()) {
-      try {
-        Object value = entry.getValue().invoke(pojo);
-        if (value != null) {
-          String attribute = entry.getKey();
-
-          // Common use case isOwner/isViewer should not be set unless true
-          if (!(("isOwner".equals(attribute) || "isViewer".equals(attribute)) && value.equals(Boolean.FALSE))) {
-            // Drop null values.
-            if (firstDone) {
-              buf.append(',');
-            } else {
-              firstDone = true;
-            }
-            appendString(buf, attribute);
-            buf.append(':');
-            append(buf, value);
-          }
-        }
-      } catch (IllegalArgumentException e) {
-        // Shouldn't be possible.
-        throw new RuntimeException(e);
-      } catch (IllegalAccessException e) {
-        // Bad class.
-        throw new RuntimeException(e);
-      } catch (InvocationTargetException e) {
-        // Bad class.
-        throw new RuntimeException(e);
-      }
-    }
-    buf.append('}');
+    BeanSerializer.get(pojo).append(buf, pojo);
   }
 
   /**
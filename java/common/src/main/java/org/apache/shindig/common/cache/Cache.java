@@ -56,4 +56,9 @@ public interface Cache<K, V> {
    * @return The current size of the cache, or -1 if the cache does not support returning sizes.
    */
   long getSize();
+
+  /**
+   * @return A snapshot of the hit, miss, eviction and insert counters of this cache.
+   */
+  CacheStats getStats();
 }
@@ -19,6 +19,8 @@ package org.apache.shindig.common.cache;
 
 import com.google.inject.ImplementedBy;
 
+import java.util.Map;
+
 /**
  * Interface for Shindig caches.
  */
@@ -35,4 +37,9 @@ public interface CacheProvider {
    * @return A Cache configured to the required specification.
    */
   <K, V> Cache<K, V> createCache(String name);
+
+  /**
+   * @return A snapshot of the statistics of every cache created by this provider, keyed by name.
+   */
+  Map<String, CacheStats> getStats();
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+/**
+ * An immutable snapshot of the activity of a single cache.
+ *
+ * Every {@link Cache} implementation reports the same counters, so caches can be sized from their
+ * real hit ratios regardless of which {@link CacheProvider} backs them.
+ */
+public class CacheStats {
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final long putCount;
+  private final long totalPutWeight;
+  private final long elapsedMillis;
+
+  public CacheStats(long hitCount, long missCount, long evictionCount, long putCount,
+      long totalPutWeight, long elapsedMillis) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.putCount = putCount;
+    this.totalPutWeight = totalPutWeight;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * @return The number of lookups that returned a cached value.
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of lookups that found nothing.
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return The number of entries removed to make room for others.
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return The number of values stored in the cache.
+   */
+  public long getPutCount() {
+    return putCount;
+  }
+
+  /**
+   * @return The number of milliseconds these counters have been collected over.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  /**
+   * @return The fraction of lookups that were hits, or 0 if there were no lookups at all.
+   */
+  public double getHitRatio() {
+    long requests = getRequestCount();
+    return requests == 0 ? 0.0 : (double) hitCount / requests;
+  }
+
+  /**
+   * @return The average number of values stored per second.
+   */
+  public double getInsertRate() {
+    return elapsedMillis <= 0 ? 0.0 : putCount * 1000.0 / elapsedMillis;
+  }
+
+  /**
+   * @return The average weight of stored values, as reported by {@link Weighted}. Values that are
+   *     not weighted count as 1.
+   */
+  public double getAverageEntryWeight() {
+    return putCount == 0 ? 0.0 : (double) totalPutWeight / putCount;
+  }
+
+  @Override
+  public String toString() {
+    return "[hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount +
+        ", puts=" + putCount + ", hitRatio=" + getHitRatio() + ", insertRate=" + getInsertRate() +
+        ", averageEntryWeight=" + getAverageEntryWeight() + ']';
+  }
+}
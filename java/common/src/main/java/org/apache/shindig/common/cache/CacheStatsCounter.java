@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe accumulator for the counters reported through {@link CacheStats}.
+ */
+public class CacheStatsCounter {
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong putCount = new AtomicLong();
+  private final AtomicLong totalPutWeight = new AtomicLong();
+  private final long startTime = System.currentTimeMillis();
+
+  /**
+   * Records the outcome of a lookup.
+   */
+  public void recordLookup(Object value) {
+    if (value == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+  }
+
+  public void recordEviction() {
+    evictionCount.incrementAndGet();
+  }
+
+  public void recordPut(Object value) {
+    putCount.incrementAndGet();
+    totalPutWeight.addAndGet(value instanceof Weighted ? ((Weighted) value).getWeight() : 1);
+  }
+
+  public CacheStats snapshot() {
+    return new CacheStats(hitCount.get(), missCount.get(), evictionCount.get(), putCount.get(),
+        totalPutWeight.get(), System.currentTimeMillis() - startTime);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+import org.apache.shindig.common.servlet.StatsServlet;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.google.inject.Inject;
+
+import java.util.Map;
+
+/**
+ * Reports the statistics of every cache created by the bound {@link CacheProvider} as a JSON
+ * object keyed by cache name.
+ */
+public class CacheStatsServlet extends StatsServlet {
+
+  private static final long serialVersionUID = -1672153294476163315L;
+
+  private transient CacheProvider cacheProvider;
+
+  @Inject
+  public void setCacheProvider(CacheProvider cacheProvider) {
+    checkInitialized();
+    this.cacheProvider = cacheProvider;
+  }
+
+  @Override
+  protected JSONObject getStats() throws JSONException {
+    return toJson(cacheProvider.getStats());
+  }
+
+  static JSONObject toJson(Map<String, CacheStats> stats) throws JSONException {
+    JSONObject result = new JSONObject();
+    for (Map.Entry<String, CacheStats> entry : stats.entrySet()) {
+      CacheStats cacheStats = entry.getValue();
+      JSONObject json = new JSONObject();
+      json.put("hits", cacheStats.getHitCount());
+      json.put("misses", cacheStats.getMissCount());
+      json.put("hitRatio", cacheStats.getHitRatio());
+      json.put("evictions", cacheStats.getEvictionCount());
+      json.put("puts", cacheStats.getPutCount());
+      json.put("insertRate", cacheStats.getInsertRate());
+      json.put("averageEntryWeight", cacheStats.getAverageEntryWeight());
+      result.put(entry.getKey(), json);
+    }
+    return result;
+  }
+}
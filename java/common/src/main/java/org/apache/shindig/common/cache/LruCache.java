@@ -26,6 +26,7 @@ import java.util.Map;
  */
 public class LruCache<K, V> extends LinkedHashMap<K, V> implements Cache<K, V> {
   final int capacity;
+  private final CacheStatsCounter stats = new CacheStatsCounter();
 
   public LruCache(int capacity) {
     super(capacity, 0.75f, true);
@@ -33,10 +34,13 @@ public class LruCache<K, V> extends LinkedHashMap<K, V> implements Cache<K, V> {
   }
 
   public synchronized V getElement(K key) {
-    return super.get(key);
+    V value = super.get(key);
+    stats.recordLookup(value);
+    return value;
   }
 
   public synchronized void addElement(K key, V value) {
+    stats.recordPut(value);
     super.put(key, value);
   }
 
@@ -52,8 +56,16 @@ public class LruCache<K, V> extends LinkedHashMap<K, V> implements Cache<K, V> {
     return size();
   }
 
+  public CacheStats getStats() {
+    return stats.snapshot();
+  }
+
   @Override
   protected synchronized boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-    return size() > capacity;
+    if (size() > capacity) {
+      stats.recordEviction();
+      return true;
+    }
+    return false;
   }
 }
@@ -20,6 +20,7 @@ package org.apache.shindig.common.cache;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
 import com.google.inject.ConfigurationException;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -27,6 +28,7 @@ import com.google.inject.Key;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,6 +42,9 @@ import java.util.logging.Logger;
  *
  * The default value is expected under shindig.cache.lru.default.capacity
  *
+ * Statistics of every created cache are also published through JMX when
+ * shindig.cache.lru.jmx.enabled is true.
+ *
  * An in memory LRU cache only scales so far. For a production-worthy cache, use
  * {@code EhCacheCacheProvider}.
  */
@@ -48,6 +53,7 @@ public class LruCacheProvider implements CacheProvider {
   private final int defaultCapacity;
   private final Injector injector;
   private final Map<String, Cache<?, ?>> caches = new MapMaker().makeMap();
+  private boolean jmxEnabled = false;
 
   @Inject
   public LruCacheProvider(Injector injector,
@@ -60,6 +66,11 @@ public class LruCacheProvider implements CacheProvider {
     this(null, capacity);
   }
 
+  @Inject(optional = true)
+  public void setJmxEnabled(@Named("shindig.cache.lru.jmx.enabled") boolean jmxEnabled) {
+    this.jmxEnabled = jmxEnabled;
+  }
+
   private int getCapacity(String name) {
     if (injector != null && name != null) {
       String key = "shindig.cache.lru." + name + ".capacity";
@@ -90,9 +101,28 @@ public class LruCacheProvider implements CacheProvider {
       if (LOG.isLoggable(Level.FINE)) {
         LOG.fine("Creating cache named " + name);
       }
-      cache = new LruCache<K, V>(capacity);
+      cache = newCache(capacity);
       caches.put(name, cache);
+      if (jmxEnabled) {
+        ManagedCache.register(name, cache);
+      }
     }
     return cache;
   }
+
+  public Map<String, CacheStats> getStats() {
+    Map<String, CacheStats> stats = Maps.newTreeMap();
+    for (Map.Entry<String, Cache<?, ?>> entry : caches.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().getStats());
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+
+  /**
+   * Creates the backing cache for a newly requested name. Subclasses may override this to supply
+   * a different bounded implementation while keeping the capacity configuration.
+   */
+  protected <K, V> Cache<K, V> newCache(int capacity) {
+    return new LruCache<K, V>(capacity);
+  }
 }
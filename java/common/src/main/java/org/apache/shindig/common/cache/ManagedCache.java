@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+import org.apache.shindig.common.util.JmxUtil;
+
+/**
+ * Publishes the statistics of a named cache through JMX, independently of the cache backend.
+ *
+ * Caches are registered as org.apache.shindig:type=Cache,name=&lt;cache name&gt;.
+ */
+public class ManagedCache implements ManagedCacheMBean {
+  private final Cache<?, ?> cache;
+
+  public ManagedCache(Cache<?, ?> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Registers the cache with the platform MBean server. Failures are logged and otherwise
+   * ignored, since statistics must never prevent a cache from being created.
+   */
+  public static void register(String name, Cache<?, ?> cache) {
+    JmxUtil.register(new ManagedCache(cache), "Cache", name);
+  }
+
+  public long getCapacity() {
+    return cache.getCapacity();
+  }
+
+  public long getSize() {
+    return cache.getSize();
+  }
+
+  public long getHitCount() {
+    return cache.getStats().getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getStats().getMissCount();
+  }
+
+  public double getHitRatio() {
+    return cache.getStats().getHitRatio();
+  }
+
+  public long getEvictionCount() {
+    return cache.getStats().getEvictionCount();
+  }
+
+  public long getPutCount() {
+    return cache.getStats().getPutCount();
+  }
+
+  public double getInsertRate() {
+    return cache.getStats().getInsertRate();
+  }
+
+  public double getAverageEntryWeight() {
+    return cache.getStats().getAverageEntryWeight();
+  }
+}
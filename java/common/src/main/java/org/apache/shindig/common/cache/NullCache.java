@@ -22,8 +22,10 @@ package org.apache.shindig.common.cache;
  * Cache implementation that does nothing.
  */
 public class NullCache<K, V> implements Cache<K, V>{
+  private final CacheStatsCounter stats = new CacheStatsCounter();
 
   public void addElement(K key, V value) {
+    stats.recordPut(value);
   }
 
   public long getCapacity() {
@@ -31,6 +33,7 @@ public class NullCache<K, V> implements Cache<K, V>{
   }
 
   public V getElement(K key) {
+    stats.recordLookup(null);
     return null;
   }
 
@@ -41,4 +44,8 @@ public class NullCache<K, V> implements Cache<K, V>{
   public V removeElement(K key) {
     return null;
   }
+
+  public CacheStats getStats() {
+    return stats.snapshot();
+  }
 }
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+import com.google.common.collect.MapMaker;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, concurrent cache using a simplified W-TinyLFU policy.
+ *
+ * Values live in a concurrent map, so a cache hit never blocks. Eviction order is tracked by up to
+ * 16 independently locked segments; a read only records itself in its segment if the lock happens
+ * to be free, which makes the policy approximate under heavy contention but keeps readers from
+ * queueing up on one monitor the way they do with {@link LruCache}.
+ *
+ * Each segment keeps a small LRU admission window (about 1% of its capacity) in front of a main LRU
+ * region. When an entry falls out of the window it only displaces the main region's least recently
+ * used entry if the frequency sketch has seen it more often, so a burst of one-off keys (for
+ * instance a crawler walking through gadget urls) cannot flush out the entries that are actually
+ * hot.
+ */
+public class TinyLfuCache<K, V> implements Cache<K, V> {
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_SEGMENT_CAPACITY = 64;
+
+  final int capacity;
+  private final ConcurrentMap<K, Node<V>> data = new MapMaker().makeMap();
+  private final CacheStatsCounter stats = new CacheStatsCounter();
+  private final Segment<K, V>[] segments;
+  private final int segmentMask;
+
+  @SuppressWarnings("unchecked")
+  public TinyLfuCache(int capacity) {
+    this.capacity = Math.max(0, capacity);
+    int count = 1;
+    while (count < MAX_SEGMENTS && this.capacity / (count << 1) >= MIN_SEGMENT_CAPACITY) {
+      count <<= 1;
+    }
+    segments = new Segment[count];
+    segmentMask = count - 1;
+    for (int i = 0; i < count; i++) {
+      int segmentCapacity = this.capacity / count + (i < this.capacity % count ? 1 : 0);
+      segments[i] = new Segment<K, V>(data, stats, segmentCapacity);
+    }
+  }
+
+  private Segment<K, V> segmentFor(Object key) {
+    // The sketch consumes the low bits of the spread hash, so pick the segment from the high bits.
+    return segments[(FrequencySketch.spread(key.hashCode()) >>> 24) & segmentMask];
+  }
+
+  public V getElement(K key) {
+    Node<V> node = data.get(key);
+    segmentFor(key).recordRead(key, node);
+    V value = node == null ? null : node.value;
+    stats.recordLookup(value);
+    return value;
+  }
+
+  public void addElement(K key, V value) {
+    stats.recordPut(value);
+    segmentFor(key).put(key, value);
+  }
+
+  public V removeElement(K key) {
+    return segmentFor(key).remove(key);
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  public long getSize() {
+    return data.size();
+  }
+
+  public CacheStats getStats() {
+    return stats.snapshot();
+  }
+
+  /**
+   * A cached value, remembering which region of its segment currently orders it.
+   */
+  private static final class Node<V> {
+    final V value;
+    boolean inWindow = true;
+
+    Node(V value) {
+      this.value = value;
+    }
+  }
+
+  /**
+   * One lock stripe of the eviction policy, holding its own window, main region and frequency
+   * sketch. All writes to the shared data map for keys of this segment happen under its lock.
+   */
+  private static final class Segment<K, V> {
+    private final ConcurrentMap<K, Node<V>> data;
+    private final CacheStatsCounter stats;
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+    private final LinkedHashMap<K, Boolean> main = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    Segment(ConcurrentMap<K, Node<V>> data, CacheStatsCounter stats, int capacity) {
+      this.data = data;
+      this.stats = stats;
+      windowCapacity = capacity == 0 ? 0 : Math.max(1, capacity / 100);
+      mainCapacity = capacity - windowCapacity;
+      sketch = new FrequencySketch(capacity);
+    }
+
+    void recordRead(K key, Node<V> node) {
+      if (lock.tryLock()) {
+        try {
+          sketch.increment(key);
+          if (node != null) {
+            (node.inWindow ? window : main).get(key);
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+
+    void put(K key, V value) {
+      lock.lock();
+      try {
+        sketch.increment(key);
+        Node<V> node = new Node<V>(value);
+        Node<V> previous = data.put(key, node);
+        if (previous != null) {
+          node.inWindow = previous.inWindow;
+          (node.inWindow ? window : main).get(key);
+        } else {
+          window.put(key, Boolean.TRUE);
+          if (window.size() > windowCapacity) {
+            evictFromWindow();
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    V remove(K key) {
+      lock.lock();
+      try {
+        Node<V> node = data.remove(key);
+        if (node == null) {
+          return null;
+        }
+        (node.inWindow ? window : main).remove(key);
+        return node.value;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Moves the window's least recently used entry into the main region, if it is either free
+     * space there or it is estimated to be more popular than the main region's eviction victim.
+     * Whichever of the two loses is dropped from the cache.
+     */
+    private void evictFromWindow() {
+      Iterator<K> windowIterator = window.keySet().iterator();
+      K candidate = windowIterator.next();
+      windowIterator.remove();
+
+      if (main.size() < mainCapacity) {
+        promote(candidate);
+        return;
+      }
+
+      Iterator<K> mainIterator = main.keySet().iterator();
+      if (mainIterator.hasNext()) {
+        K victim = mainIterator.next();
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+          mainIterator.remove();
+          data.remove(victim);
+          stats.recordEviction();
+          promote(candidate);
+          return;
+        }
+      }
+      data.remove(candidate);
+      stats.recordEviction();
+    }
+
+    private void promote(K key) {
+      main.put(key, Boolean.TRUE);
+      Node<V> node = data.get(key);
+      if (node != null) {
+        node.inWindow = false;
+      }
+    }
+  }
+}
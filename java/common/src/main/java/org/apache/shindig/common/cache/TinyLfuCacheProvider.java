@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.name.Named;
+
+/**
+ * A cache provider that produces lock striped {@link TinyLfuCache}s.
+ *
+ * Capacities are read from the same properties as {@code LruCacheProvider}, so it can be swapped
+ * in by binding it (or installing {@link TinyLfuCacheModule}) without any other configuration:
+ *
+ * shindig.cache.lru.<cache name>.capacity=foo
+ */
+public class TinyLfuCacheProvider extends LruCacheProvider {
+
+  @Inject
+  public TinyLfuCacheProvider(Injector injector,
+      @Named("shindig.cache.lru.default.capacity") int defaultCapacity) {
+    super(injector, defaultCapacity);
+  }
+
+  public TinyLfuCacheProvider(int capacity) {
+    super(capacity);
+  }
+
+  @Override
+  protected <K, V> Cache<K, V> newCache(int capacity) {
+    return new TinyLfuCache<K, V>(capacity);
+  }
+}
@@ -21,9 +21,12 @@ package org.apache.shindig.common.cache.ehcache;
 import com.google.common.base.Preconditions;
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.cache.CacheStats;
+import org.apache.shindig.common.cache.ManagedCache;
 import org.apache.shindig.common.util.ResourceLoader;
 
 import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import net.sf.ehcache.CacheManager;
@@ -35,6 +38,8 @@ import javax.management.MBeanServer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,6 +52,7 @@ public class EhCacheCacheProvider implements CacheProvider {
   private static final Logger LOG = Logger.getLogger(EhCacheCacheProvider.class.getName());
   private final CacheManager cacheManager;
   private final ConcurrentMap<String, Cache<?, ?>> caches = new MapMaker().makeMap();
+  private final boolean jmxEnabled;
 
   @Inject
   public EhCacheCacheProvider(@Named("shindig.cache.ehcache.config") String configPath,
@@ -54,6 +60,7 @@ public class EhCacheCacheProvider implements CacheProvider {
                               @Named("shindig.cache.ehcache.jmx.stats") boolean withCacheStats)
       throws IOException {
     cacheManager = new CacheManager(getConfiguration(configPath));
+    this.jmxEnabled = jmxEnabled;
     create(jmxEnabled, withCacheStats);
   }
 
@@ -106,8 +113,22 @@ public class EhCacheCacheProvider implements CacheProvider {
       if (LOG.isLoggable(Level.FINE)) {
         LOG.fine("Creating cache named " + name);
       }
-      caches.putIfAbsent(name, new EhConfiguredCache<K, V>(name, cacheManager));
+      EhConfiguredCache<K, V> cache = new EhConfiguredCache<K, V>(name, cacheManager);
+      if (caches.putIfAbsent(name, cache) == null) {
+        cache.recordEvictions();
+        if (jmxEnabled) {
+          ManagedCache.register(name, cache);
+        }
+      }
     }
     return (Cache<K, V>) caches.get(Preconditions.checkNotNull(name));
   }
+
+  public Map<String, CacheStats> getStats() {
+    Map<String, CacheStats> stats = Maps.newTreeMap();
+    for (Map.Entry<String, Cache<?, ?>> entry : caches.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().getStats());
+    }
+    return Collections.unmodifiableMap(stats);
+  }
 }
@@ -20,9 +20,13 @@ package org.apache.shindig.common.cache.ehcache;
 
 import com.google.common.base.Preconditions;
 import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheStats;
+import org.apache.shindig.common.cache.CacheStatsCounter;
 
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 
 
 /**
@@ -31,6 +35,7 @@ import net.sf.ehcache.Element;
 public class EhConfiguredCache<K, V> implements Cache<K, V> {
 
   private net.sf.ehcache.Cache cache;
+  private final CacheStatsCounter stats = new CacheStatsCounter();
 
   public EhConfiguredCache(String cacheName, CacheManager cacheManager) {
     synchronized (cacheManager) {
@@ -45,12 +50,33 @@ public class EhConfiguredCache<K, V> implements Cache<K, V> {
     }
   }
 
+  /**
+   * Starts counting the evictions of the underlying cache. The listener stays registered with the
+   * cache manager for as long as the cache exists, so this is only called for the instance that
+   * the provider hands out.
+   */
+  void recordEvictions() {
+    cache.getCacheEventNotificationService().registerListener(new CacheEventListenerAdapter() {
+      @Override
+      public void notifyElementEvicted(Ehcache ehcache, Element element) {
+        stats.recordEviction();
+      }
+    });
+  }
+
   public void addElement(K key, V value) {
+    stats.recordPut(value);
     cache.put(new Element(key, value));
   }
 
-  @SuppressWarnings("unchecked")
   public V getElement(K key) {
+    V value = lookup(key);
+    stats.recordLookup(value);
+    return value;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V lookup(K key) {
     Element cacheElement = cache.get(key);
     if (cacheElement != null) {
       return (V) cacheElement.getObjectValue();
@@ -58,11 +84,10 @@ public class EhConfiguredCache<K, V> implements Cache<K, V> {
     return null;
   }
 
-  @SuppressWarnings("unchecked")
   public V removeElement(K key) {
-    Object value = getElement(key);
+    V value = lookup(key);
     cache.remove(key);
-    return (V) value;
+    return value;
   }
 
   public long getCapacity() {
@@ -79,4 +104,8 @@ public class EhConfiguredCache<K, V> implements Cache<K, V> {
   public long getSize() {
     return cache.getMemoryStoreSize() + cache.getDiskStoreSize();
   }
+
+  public CacheStats getStats() {
+    return stats.snapshot();
+  }
 }
@@ -46,8 +46,8 @@ import java.util.Map;
 public class BasicBlobCrypter implements BlobCrypter {
 
   // Labels for key derivation
-  private static final byte CIPHER_KEY_LABEL = 0;
-  private static final byte HMAC_KEY_LABEL = 1;
+  static final byte CIPHER_KEY_LABEL = 0;
+  static final byte HMAC_KEY_LABEL = 1;
 
   /** Key used for time stamp (in seconds) of data */
   public static final String TIMESTAMP_KEY = "t";
@@ -76,6 +76,13 @@ public class BasicBlobCrypter implements BlobCrypter {
    * @throws IOException if the file can't be read.
    */
   public BasicBlobCrypter(File keyfile) throws IOException {
+    init(readMasterKey(keyfile));
+  }
+
+  /**
+   * Reads the master key from the first line of the file, see {@link #BasicBlobCrypter(File)}.
+   */
+  static byte[] readMasterKey(File keyfile) throws IOException {
     BufferedReader reader = null;
     try {
       FileInputStream openFile = new FileInputStream(keyfile);
@@ -86,8 +93,7 @@ public class BasicBlobCrypter implements BlobCrypter {
         throw new IOException("Unexpectedly empty keyfile:" + keyfile);
       }
       line = line.trim();
-      byte[] keyBytes = CharsetUtil.getUtf8Bytes(line);
-      init(keyBytes);
+      return CharsetUtil.getUtf8Bytes(line);
     } finally {
       try {
         if (reader != null) {
@@ -126,7 +132,7 @@ public class BasicBlobCrypter implements BlobCrypter {
    *
    * @return a derived key of the specified length
    */
-  private byte[] deriveKey(byte label, byte[] masterKey, int len) {
+  static byte[] deriveKey(byte label, byte[] masterKey, int len) {
     byte[] base = Crypto.concat(new byte[] { label }, masterKey);
     byte[] hash = DigestUtils.sha(base);
     if (len == 0) {
@@ -224,7 +230,7 @@ public class BasicBlobCrypter implements BlobCrypter {
    * We allow a few minutes on either side of the validity window to account
    * for clock skew.
    */
-  private void checkTimestamp(Map<String, String> out, int maxAge)
+  void checkTimestamp(Map<String, String> out, int maxAge)
   throws BlobExpiredException {
     long origin = Long.parseLong(out.get(TIMESTAMP_KEY));
     long minTime = origin - CLOCK_SKEW_ALLOWANCE;
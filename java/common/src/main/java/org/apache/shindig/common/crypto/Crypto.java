@@ -23,6 +23,8 @@ import org.apache.commons.codec.binary.Hex;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.crypto.Cipher;
 import javax.crypto.Mac;
@@ -71,7 +73,14 @@ public final class Crypto {
   public final static int HMAC_SHA1_LEN = 20;
 
   private final static char[] DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' };
-  
+
+  // Looking up an engine is expensive, so idle engines are pooled for reuse. They are kept in
+  // bounded queues rather than per thread, so container threads hold nothing after an undeploy.
+  private static final int MAX_IDLE_ENGINES = 32;
+  private static final BlockingQueue<Mac> HMACS = new ArrayBlockingQueue<Mac>(MAX_IDLE_ENGINES);
+  private static final BlockingQueue<Cipher> CIPHERS =
+      new ArrayBlockingQueue<Cipher>(MAX_IDLE_ENGINES);
+
   // everything is static, no instantiating this class
   private Crypto() { 
   }
@@ -122,11 +131,13 @@ public final class Crypto {
       throw new GeneralSecurityException("HMAC key should be at least "
           + MIN_HMAC_KEY_LEN + " bytes.");
     }
-    Mac hmac = Mac.getInstance(HMAC_TYPE);
+    Mac hmac = getHmac();
     Key hmacKey = new SecretKeySpec(key, HMAC_TYPE);
     hmac.init(hmacKey);
     hmac.update(in);
-    return hmac.doFinal();
+    byte[] result = hmac.doFinal();
+    releaseHmac(hmac);
+    return result;
   }
   
   /**
@@ -139,11 +150,12 @@ public final class Crypto {
    */
   public static void hmacSha1Verify(byte[] key, byte[] in, byte[] expected)
   throws GeneralSecurityException {
-    Mac hmac = Mac.getInstance(HMAC_TYPE);
+    Mac hmac = getHmac();
     Key hmacKey = new SecretKeySpec(key, HMAC_TYPE);
     hmac.init(hmacKey);
     hmac.update(in);
     byte actual[] = hmac.doFinal();
+    releaseHmac(hmac);
     if (actual.length != expected.length) {
       throw new GeneralSecurityException("HMAC verification failure");
     }
@@ -167,8 +179,7 @@ public final class Crypto {
    */
   public static byte[] aes128cbcEncrypt(byte[] key, byte[] plain)
   throws GeneralSecurityException {
-    Cipher cipher = Cipher.getInstance(CIPHER_TYPE);
-    byte iv[] = getRandomBytes(cipher.getBlockSize());
+    byte iv[] = getRandomBytes(CIPHER_BLOCK_SIZE);
     return concat(iv, aes128cbcEncryptWithIV(key, iv, plain));
   }
 
@@ -185,11 +196,13 @@ public final class Crypto {
    */
   public static byte[] aes128cbcEncryptWithIV(byte[] key, byte[] iv, byte[] plain)
   throws GeneralSecurityException {
-    Cipher cipher = Cipher.getInstance(CIPHER_TYPE);
+    Cipher cipher = getCipher();
     Key cipherKey = new SecretKeySpec(key, CIPHER_KEY_TYPE);
     IvParameterSpec ivSpec = new IvParameterSpec(iv);
     cipher.init(Cipher.ENCRYPT_MODE, cipherKey, ivSpec);
-    return cipher.doFinal(plain);
+    byte[] result = cipher.doFinal(plain);
+    releaseCipher(cipher);
+    return result;
   }
 
 
@@ -225,11 +238,43 @@ public final class Crypto {
    */
   public static byte[] aes128cbcDecryptWithIv(byte[] key, byte[] iv,
       byte[] cipherText, int offset) throws GeneralSecurityException {
-    Cipher cipher = Cipher.getInstance(CIPHER_TYPE);
+    Cipher cipher = getCipher();
     Key cipherKey = new SecretKeySpec(key, CIPHER_KEY_TYPE);
     IvParameterSpec ivSpec = new IvParameterSpec(iv);
     cipher.init(Cipher.DECRYPT_MODE, cipherKey, ivSpec);
-    return cipher.doFinal(cipherText, offset, cipherText.length-offset);
+    byte[] result = cipher.doFinal(cipherText, offset, cipherText.length-offset);
+    releaseCipher(cipher);
+    return result;
+  }
+
+  /**
+   * @return an idle HMAC SHA1 engine. It must be initialized with a key before use.
+   */
+  static Mac getHmac() throws GeneralSecurityException {
+    Mac hmac = HMACS.poll();
+    return hmac != null ? hmac : Mac.getInstance(HMAC_TYPE);
+  }
+
+  /**
+   * Returns an engine that completed its last operation to the pool.
+   */
+  static void releaseHmac(Mac hmac) {
+    HMACS.offer(hmac);
+  }
+
+  /**
+   * @return an idle AES-128-CBC engine. It must be initialized before use.
+   */
+  static Cipher getCipher() throws GeneralSecurityException {
+    Cipher cipher = CIPHERS.poll();
+    return cipher != null ? cipher : Cipher.getInstance(CIPHER_TYPE);
+  }
+
+  /**
+   * Returns an engine that completed its last operation to the pool.
+   */
+  static void releaseCipher(Cipher cipher) {
+    CIPHERS.offer(cipher);
   }
 
   /**
@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.crypto;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import org.apache.shindig.common.util.CharsetUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A BlobCrypter producing the same blobs as {@link BasicBlobCrypter}, but with less work per blob.
+ *
+ * Cipher and HMAC engines are pooled, and the HMAC engines stay initialized with this crypter's
+ * key. Blobs are serialized, encrypted, signed and base64 encoded in a single buffer;
+ * unwrap decrypts and URL decodes in place.
+ */
+public class PooledBlobCrypter extends BasicBlobCrypter {
+  private static final String UTF8 = "UTF-8";
+  private static final int IV_LEN = 16;
+  private static final int BLOCK_SIZE = 16;
+  private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+  private static final int MAX_IDLE = 32;
+
+  private static final char[] BASE64_CHARS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+  private static final byte[] BASE64_VALUES = new byte[128];
+  private static final byte[] HEX_DIGITS = CharsetUtil.getUtf8Bytes("0123456789ABCDEF");
+
+  static {
+    Arrays.fill(BASE64_VALUES, (byte) -1);
+    for (int i = 0; i < BASE64_CHARS.length; ++i) {
+      BASE64_VALUES[BASE64_CHARS[i]] = (byte) i;
+    }
+    // Also accept the standard alphabet.
+    BASE64_VALUES['+'] = 62;
+    BASE64_VALUES['/'] = 63;
+  }
+
+  // Idle buffers and engines are pooled in bounded queues rather than kept per thread, so
+  // container threads hold nothing after an undeploy.
+  private static final BlockingQueue<Buffer> BUFFERS = new ArrayBlockingQueue<Buffer>(MAX_IDLE);
+
+  private final SecretKeySpec cipherKeySpec;
+  private final SecretKeySpec hmacKeySpec;
+
+  // Engines initialized with this crypter's HMAC key.
+  private final BlockingQueue<Mac> hmacs = new ArrayBlockingQueue<Mac>(MAX_IDLE);
+
+  /**
+   * Creates a crypter based on a key in a file, see {@link BasicBlobCrypter#BasicBlobCrypter(File)}.
+   *
+   * @throws IOException if the file can't be read.
+   */
+  public PooledBlobCrypter(File keyfile) throws IOException {
+    this(readMasterKey(keyfile));
+  }
+
+  /**
+   * Builds a BlobCrypter from the specified master key
+   */
+  public PooledBlobCrypter(byte[] masterKey) {
+    super(masterKey);
+    cipherKeySpec = new SecretKeySpec(
+        deriveKey(CIPHER_KEY_LABEL, masterKey, Crypto.CIPHER_KEY_LEN), "AES");
+    hmacKeySpec = new SecretKeySpec(deriveKey(HMAC_KEY_LABEL, masterKey, 0), "HMACSHA1");
+  }
+
+  /**
+   * @return an idle HMAC engine initialized with this crypter's key.
+   */
+  private Mac getHmac() throws GeneralSecurityException {
+    Mac hmac = hmacs.poll();
+    if (hmac == null) {
+      hmac = Mac.getInstance(hmacKeySpec.getAlgorithm());
+      hmac.init(hmacKeySpec);
+    }
+    return hmac;
+  }
+
+  @Override
+  public String wrap(Map<String, String> in) throws BlobCrypterException {
+    Preconditions.checkArgument(!in.containsKey(TIMESTAMP_KEY),
+        "No '%s' key allowed for BlobCrypter", TIMESTAMP_KEY);
+
+    Buffer plain = BUFFERS.poll();
+    if (plain == null) {
+      plain = new Buffer();
+    }
+    try {
+      for (Map.Entry<String, String> entry : in.entrySet()) {
+        plain.appendEncoded(entry.getKey());
+        plain.append('=');
+        plain.appendEncoded(entry.getValue());
+        plain.append('&');
+      }
+      plain.appendEncoded(TIMESTAMP_KEY);
+      plain.append('=');
+      plain.appendEncoded(Long.toString(timeSource.currentTimeMillis() / 1000));
+
+      // IV, cipher text and HMAC, in the order BasicBlobCrypter writes them.
+      int cipherLen = (plain.length / BLOCK_SIZE + 1) * BLOCK_SIZE;
+      byte[] blob = new byte[IV_LEN + cipherLen + Crypto.HMAC_SHA1_LEN];
+      byte[] iv = Crypto.getRandomBytes(IV_LEN);
+      System.arraycopy(iv, 0, blob, 0, IV_LEN);
+
+      Cipher cipher = Crypto.getCipher();
+      cipher.init(Cipher.ENCRYPT_MODE, cipherKeySpec, new IvParameterSpec(iv));
+      int written = cipher.doFinal(plain.bytes, 0, plain.length, blob, IV_LEN);
+      Crypto.releaseCipher(cipher);
+
+      Mac hmac = getHmac();
+      hmac.update(blob, 0, IV_LEN + written);
+      hmac.doFinal(blob, IV_LEN + written);
+      hmacs.offer(hmac);
+      return encodeBase64(blob, IV_LEN + written + Crypto.HMAC_SHA1_LEN);
+    } catch (GeneralSecurityException e) {
+      throw new BlobCrypterException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new BlobCrypterException(e);
+    } finally {
+      plain.release();
+      BUFFERS.offer(plain);
+    }
+  }
+
+  @Override
+  public Map<String, String> unwrap(String in, int maxAgeSec) throws BlobCrypterException {
+    byte[] bin = decodeBase64(in);
+    int length = bin.length;
+    int cipherLen = length - IV_LEN - Crypto.HMAC_SHA1_LEN;
+    if (cipherLen < BLOCK_SIZE || cipherLen % BLOCK_SIZE != 0) {
+      throw new BlobCrypterException("Invalid token format");
+    }
+    try {
+      Mac hmac = getHmac();
+      hmac.update(bin, 0, IV_LEN + cipherLen);
+      byte[] actual = hmac.doFinal();
+      hmacs.offer(hmac);
+      // Compare every byte, so the time taken doesn't reveal where the first difference is.
+      int diff = 0;
+      for (int i = 0; i < actual.length; ++i) {
+        diff |= actual[i] ^ bin[IV_LEN + cipherLen + i];
+      }
+      if (diff != 0) {
+        throw new GeneralSecurityException("HMAC verification failure");
+      }
+
+      Cipher cipher = Crypto.getCipher();
+      cipher.init(Cipher.DECRYPT_MODE, cipherKeySpec, new IvParameterSpec(bin, 0, IV_LEN));
+      // Decrypting in place is safe, the output never overtakes the input.
+      int plainLen = cipher.doFinal(bin, IV_LEN, cipherLen, bin, 0);
+      Crypto.releaseCipher(cipher);
+
+      Map<String, String> out = deserialize(bin, plainLen);
+      checkTimestamp(out, maxAgeSec);
+      return out;
+    } catch (GeneralSecurityException e) {
+      throw new BlobCrypterException("Invalid token signature", e);
+    } catch (UnsupportedEncodingException e) {
+      throw new BlobCrypterException(e);
+    }
+  }
+
+  /**
+   * Parses name=value pairs separated by '&amp;', URL decoding in place.
+   */
+  private static Map<String, String> deserialize(byte[] plain, int length)
+      throws BlobCrypterException, UnsupportedEncodingException {
+    Map<String, String> map = Maps.newHashMap();
+    String key = null;
+    int start = 0;
+    for (int i = 0; i <= length; ++i) {
+      if (i == length || plain[i] == '&' || plain[i] == '=') {
+        String item = decode(plain, start, i);
+        if (key == null) {
+          key = item;
+        } else {
+          map.put(key, item);
+          key = null;
+        }
+        start = i + 1;
+      }
+    }
+    if (key != null) {
+      throw new BlobCrypterException("Invalid token format");
+    }
+    return map;
+  }
+
+  private static String decode(byte[] bytes, int start, int end)
+      throws BlobCrypterException, UnsupportedEncodingException {
+    int out = start;
+    for (int i = start; i < end; ++i) {
+      byte b = bytes[i];
+      if (b == '+') {
+        b = ' ';
+      } else if (b == '%') {
+        if (i + 2 >= end) {
+          throw new BlobCrypterException("Invalid token format");
+        }
+        b = (byte) ((hexValue(bytes[i + 1]) << 4) | hexValue(bytes[i + 2]));
+        i += 2;
+      }
+      bytes[out++] = b;
+    }
+    return new String(bytes, start, out - start, UTF8);
+  }
+
+  private static int hexValue(byte b) throws BlobCrypterException {
+    int value = Character.digit((char) b, 16);
+    if (value < 0) {
+      throw new BlobCrypterException("Invalid token format");
+    }
+    return value;
+  }
+
+  /**
+   * URL safe base64 without padding, as produced by Base64.encodeBase64URLSafe.
+   */
+  private static String encodeBase64(byte[] bytes, int length) {
+    char[] out = new char[(length * 4 + 2) / 3];
+    int o = 0;
+    int i = 0;
+    for (; i + 2 < length; i += 3) {
+      int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+      out[o++] = BASE64_CHARS[bits >>> 18];
+      out[o++] = BASE64_CHARS[(bits >>> 12) & 0x3f];
+      out[o++] = BASE64_CHARS[(bits >>> 6) & 0x3f];
+      out[o++] = BASE64_CHARS[bits & 0x3f];
+    }
+    if (i < length) {
+      int bits = (bytes[i] & 0xff) << 16;
+      if (i + 1 < length) {
+        bits |= (bytes[i + 1] & 0xff) << 8;
+      }
+      out[o++] = BASE64_CHARS[bits >>> 18];
+      out[o++] = BASE64_CHARS[(bits >>> 12) & 0x3f];
+      if (i + 1 < length) {
+        out[o++] = BASE64_CHARS[(bits >>> 6) & 0x3f];
+      }
+    }
+    return new String(out, 0, o);
+  }
+
+  /**
+   * Decodes both base64 alphabets. Like commons-codec, characters outside the alphabet, such as
+   * padding, are skipped.
+   */
+  private static byte[] decodeBase64(String in) {
+    byte[] out = new byte[in.length() * 3 / 4];
+    int o = 0;
+    int bits = 0;
+    int count = 0;
+    for (int i = 0, j = in.length(); i < j; ++i) {
+      char c = in.charAt(i);
+      int value = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+      if (value >= 0) {
+        bits = bits << 6 | value;
+        if (++count == 4) {
+          out[o++] = (byte) (bits >>> 16);
+          out[o++] = (byte) (bits >>> 8);
+          out[o++] = (byte) bits;
+          bits = 0;
+          count = 0;
+        }
+      }
+    }
+    if (count == 2) {
+      out[o++] = (byte) (bits >>> 4);
+    } else if (count == 3) {
+      out[o++] = (byte) (bits >>> 10);
+      out[o++] = (byte) (bits >>> 2);
+    }
+    return o == out.length ? out : copyOf(out, o);
+  }
+
+  /**
+   * Arrays.copyOf is not available in Java 5.
+   */
+  private static byte[] copyOf(byte[] bytes, int length) {
+    byte[] copy = new byte[length];
+    System.arraycopy(bytes, 0, copy, 0, Math.min(bytes.length, length));
+    return copy;
+  }
+
+  /**
+   * A reusable, growable byte array holding the form encoded blob.
+   */
+  private static final class Buffer {
+    byte[] bytes = new byte[1024];
+    int length;
+
+    void append(int b) {
+      if (length == bytes.length) {
+        bytes = copyOf(bytes, bytes.length * 2);
+      }
+      bytes[length++] = (byte) b;
+    }
+
+    /**
+     * Appends the string encoded the way URLEncoder encodes it.
+     */
+    void appendEncoded(String s) throws UnsupportedEncodingException {
+      for (int i = 0, j = s.length(); i < j; ++i) {
+        char c = s.charAt(i);
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+            c == '.' || c == '-' || c == '*' || c == '_') {
+          append(c);
+        } else if (c == ' ') {
+          append('+');
+        } else if (c < 0x80) {
+          appendEscaped(c);
+        } else {
+          int end = i + 1;
+          while (end < j && s.charAt(end) >= 0x80) {
+            end++;
+          }
+          for (byte b : s.substring(i, end).getBytes(UTF8)) {
+            appendEscaped(b);
+          }
+          i = end - 1;
+        }
+      }
+    }
+
+    private void appendEscaped(int b) {
+      append('%');
+      append(HEX_DIGITS[(b >> 4) & 0xf]);
+      append(HEX_DIGITS[b & 0xf]);
+    }
+
+    /**
+     * Drops the array if an unusually large blob made it grow.
+     */
+    void release() {
+      if (bytes.length > MAX_RETAINED_BUFFER) {
+        bytes = new byte[1024];
+      }
+      length = 0;
+    }
+  }
+}
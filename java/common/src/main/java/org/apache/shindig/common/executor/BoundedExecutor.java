@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.executor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed size thread pool with a bounded queue, which counts the tasks it has to turn away.
+ *
+ * On Java 6 and later, idle threads are released after a minute, so a pool that is rarely used
+ * holds no threads. On Java 5 threads are kept until the pool is shut down.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+
+  /**
+   * What happens to a task submitted while every thread is busy and the queue is full.
+   */
+  public enum RejectionPolicy {
+    /** The submitting thread runs the task itself, which slows down the producer. */
+    CALLER_RUNS(new ThreadPoolExecutor.CallerRunsPolicy()),
+    /** The submitter gets a {@link java.util.concurrent.RejectedExecutionException}. */
+    ABORT(new ThreadPoolExecutor.AbortPolicy()),
+    /** The task is silently dropped. Only suitable for work that is safe to skip. */
+    DISCARD(new ThreadPoolExecutor.DiscardPolicy());
+
+    private final RejectedExecutionHandler handler;
+
+    private RejectionPolicy(RejectedExecutionHandler handler) {
+      this.handler = handler;
+    }
+
+    /**
+     * @return The policy named by a configuration value such as "caller-runs", or null if the
+     *     value names no policy.
+     */
+    public static RejectionPolicy parse(String value) {
+      if (value == null) {
+        return null;
+      }
+      String name = value.trim().toUpperCase().replace('-', '_');
+      for (RejectionPolicy policy : values()) {
+        if (policy.name().equals(name)) {
+          return policy;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final long KEEP_ALIVE_SECONDS = 60L;
+
+  private final String name;
+  private final int queueCapacity;
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * @param name the name of the pool, for statistics and thread names.
+   * @param threads the most threads that run tasks at once.
+   * @param queueCapacity the most tasks that wait for a thread. With 0 tasks are handed directly
+   *     to an idle thread or rejected.
+   * @param policy what to do with tasks that fit neither.
+   * @param threadFactory creates the threads of the pool.
+   */
+  public BoundedExecutor(String name, int threads, int queueCapacity, RejectionPolicy policy,
+      ThreadFactory threadFactory) {
+    super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, makeQueue(queueCapacity),
+        threadFactory);
+    this.name = name;
+    this.queueCapacity = Math.max(queueCapacity, 0);
+    releaseIdleThreads();
+    setRejectedExecutionHandler(new CountingHandler(policy.handler));
+  }
+
+  /**
+   * allowCoreThreadTimeOut was added in Java 6, so it is looked up reflectively.
+   */
+  private void releaseIdleThreads() {
+    try {
+      ThreadPoolExecutor.class.getMethod("allowCoreThreadTimeOut", boolean.class)
+          .invoke(this, Boolean.TRUE);
+    } catch (Exception e) {
+      // Not supported by this JVM; idle threads are kept.
+    }
+  }
+
+  private static BlockingQueue<Runnable> makeQueue(int capacity) {
+    if (capacity <= 0) {
+      return new SynchronousQueue<Runnable>();
+    }
+    return new LinkedBlockingQueue<Runnable>(capacity);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @return The number of tasks turned away, whatever the rejection policy did with them.
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  public ExecutorStats getStats() {
+    return new ExecutorStats(getPoolSize(), getMaximumPoolSize(), getLargestPoolSize(),
+        getActiveCount(), getQueue().size(), queueCapacity, getCompletedTaskCount(),
+        rejectedCount.get());
+  }
+
+  private class CountingHandler implements RejectedExecutionHandler {
+    private final RejectedExecutionHandler delegate;
+
+    CountingHandler(RejectedExecutionHandler delegate) {
+      this.delegate = delegate;
+    }
+
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      rejectedCount.incrementAndGet();
+      delegate.rejectedExecution(task, executor);
+    }
+  }
+}
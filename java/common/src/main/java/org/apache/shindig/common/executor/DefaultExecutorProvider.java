@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.executor;
+
+import org.apache.shindig.common.executor.BoundedExecutor.RejectionPolicy;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates a {@link BoundedExecutor} per pool name.
+ *
+ * Pools can be configured by specifying property names in the form
+ *
+ * shindig.executor.&lt;pool name&gt;.threads=foo
+ * shindig.executor.&lt;pool name&gt;.queue-size=foo
+ * shindig.executor.&lt;pool name&gt;.rejection=caller-runs|abort|discard
+ *
+ * The defaults are expected under shindig.executor.default.*. Statistics of every pool are
+ * published through JMX when shindig.executor.jmx.enabled is true.
+ *
+ * When shindig.executor.virtual-threads is true and the JVM supports virtual threads, pools run
+ * their tasks on virtual threads. The thread limit still applies, since it also bounds the load
+ * put on upstream servers, but blocked fetches no longer pin a platform thread each.
+ */
+@Singleton
+public class DefaultExecutorProvider implements ExecutorProvider {
+  private static final Logger LOG = Logger.getLogger(DefaultExecutorProvider.class.getName());
+  static final String PREFIX = "shindig.executor.";
+
+  private final Injector injector;
+  private final Map<String, BoundedExecutor> executors = Maps.newHashMap();
+  private int defaultThreads = 64;
+  private int defaultQueueSize = 1000;
+  private RejectionPolicy defaultRejection = RejectionPolicy.CALLER_RUNS;
+  private boolean jmxEnabled = false;
+  private boolean virtualThreads = false;
+
+  @Inject
+  public DefaultExecutorProvider(Injector injector) {
+    this.injector = injector;
+    if (injector != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run() {
+          shutdown();
+        }
+      });
+    }
+  }
+
+  public DefaultExecutorProvider() {
+    this(null);
+  }
+
+  @Inject(optional = true)
+  public void setDefaultThreads(@Named("shindig.executor.default.threads") int defaultThreads) {
+    this.defaultThreads = defaultThreads;
+  }
+
+  @Inject(optional = true)
+  public void setDefaultQueueSize(
+      @Named("shindig.executor.default.queue-size") int defaultQueueSize) {
+    this.defaultQueueSize = defaultQueueSize;
+  }
+
+  @Inject(optional = true)
+  public void setDefaultRejection(@Named("shindig.executor.default.rejection") String rejection) {
+    RejectionPolicy policy = RejectionPolicy.parse(rejection);
+    if (policy == null) {
+      LOG.warning("Invalid default rejection policy " + rejection);
+    } else {
+      this.defaultRejection = policy;
+    }
+  }
+
+  @Inject(optional = true)
+  public void setJmxEnabled(@Named("shindig.executor.jmx.enabled") boolean jmxEnabled) {
+    this.jmxEnabled = jmxEnabled;
+  }
+
+  @Inject(optional = true)
+  public void setVirtualThreads(@Named("shindig.executor.virtual-threads") boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+  public synchronized ExecutorService getExecutor(String name) {
+    BoundedExecutor executor = executors.get(Preconditions.checkNotNull(name));
+    if (executor == null) {
+      int threads = getIntProperty(name, "threads", defaultThreads);
+      int queueSize = getIntProperty(name, "queue-size", defaultQueueSize);
+      RejectionPolicy rejection = defaultRejection;
+      String value = getProperty(name, "rejection");
+      if (value != null) {
+        rejection = RejectionPolicy.parse(value);
+        if (rejection == null) {
+          LOG.warning("Invalid rejection policy configured for executor " + name);
+          rejection = defaultRejection;
+        }
+      }
+      if (LOG.isLoggable(Level.FINE)) {
+        LOG.fine("Creating executor named " + name + " with " + threads + " threads");
+      }
+      executor = new BoundedExecutor(name, threads, queueSize, rejection, makeThreadFactory(name));
+      executors.put(name, executor);
+      if (jmxEnabled) {
+        ManagedExecutor.register(executor);
+      }
+    }
+    return executor;
+  }
+
+  public synchronized Map<String, ExecutorStats> getStats() {
+    Map<String, ExecutorStats> stats = Maps.newTreeMap();
+    for (Map.Entry<String, BoundedExecutor> entry : executors.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().getStats());
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+
+  /**
+   * Stops every pool, interrupting the tasks still running.
+   */
+  public synchronized void shutdown() {
+    for (BoundedExecutor executor : executors.values()) {
+      executor.shutdownNow();
+    }
+  }
+
+  private int getIntProperty(String name, String property, int defaultValue) {
+    String value = getProperty(name, property);
+    if (value != null) {
+      try {
+        return Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+        LOG.warning("Invalid " + property + " configured for executor " + name);
+      }
+    }
+    return defaultValue;
+  }
+
+  private String getProperty(String name, String property) {
+    if (injector == null) {
+      return null;
+    }
+    Key<String> key = Key.get(String.class, Names.named(PREFIX + name + '.' + property));
+    try {
+      if (injector.getBinding(key) != null) {
+        return injector.getInstance(key);
+      }
+    } catch (ConfigurationException e) {
+      // Not configured.
+    }
+    return null;
+  }
+
+  private ThreadFactory makeThreadFactory(String name) {
+    String prefix = "shindig-" + name + '-';
+    if (virtualThreads) {
+      ThreadFactory factory = makeVirtualThreadFactory(prefix);
+      if (factory != null) {
+        return factory;
+      }
+      LOG.warning("Virtual threads are not supported by this JVM, using platform threads");
+    }
+    return newDaemonThreadFactory(prefix);
+  }
+
+  /**
+   * @return a factory of daemon threads named with the prefix and a sequence number.
+   */
+  public static ThreadFactory newDaemonThreadFactory(String prefix) {
+    return new DaemonThreadFactory(prefix);
+  }
+
+  /**
+   * Virtual threads are looked up reflectively, since this code must also run on JVMs that
+   * predate them.
+   */
+  private static ThreadFactory makeVirtualThreadFactory(String prefix) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Method name = builderClass.getMethod("name", String.class, long.class);
+      builder = name.invoke(builder, prefix, 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DaemonThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
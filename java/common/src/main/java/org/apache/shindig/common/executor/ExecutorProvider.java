@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.executor;
+
+import com.google.inject.ImplementedBy;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Supplies the thread pools used for background and parallel work. Each workload gets its own
+ * named pool, so a slow origin server can exhaust the pool of the workload fetching from it but
+ * not the threads of every other workload.
+ */
+@ImplementedBy(DefaultExecutorProvider.class)
+public interface ExecutorProvider {
+
+  /**
+   * @return The pool with the given name, created on first use.
+   */
+  ExecutorService getExecutor(String name);
+
+  /**
+   * @return A snapshot of the activity of every pool created so far, keyed by pool name.
+   */
+  Map<String, ExecutorStats> getStats();
+}
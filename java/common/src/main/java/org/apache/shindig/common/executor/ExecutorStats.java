@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.executor;
+
+/**
+ * An immutable snapshot of the activity of a single thread pool.
+ */
+public class ExecutorStats {
+  private final int poolSize;
+  private final int maximumPoolSize;
+  private final int largestPoolSize;
+  private final int activeCount;
+  private final int queuedCount;
+  private final int queueCapacity;
+  private final long completedCount;
+  private final long rejectedCount;
+
+  public ExecutorStats(int poolSize, int maximumPoolSize, int largestPoolSize, int activeCount,
+      int queuedCount, int queueCapacity, long completedCount, long rejectedCount) {
+    this.poolSize = poolSize;
+    this.maximumPoolSize = maximumPoolSize;
+    this.largestPoolSize = largestPoolSize;
+    this.activeCount = activeCount;
+    this.queuedCount = queuedCount;
+    this.queueCapacity = queueCapacity;
+    this.completedCount = completedCount;
+    this.rejectedCount = rejectedCount;
+  }
+
+  /**
+   * @return The number of threads currently in the pool.
+   */
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * @return The most threads the pool may hold.
+   */
+  public int getMaximumPoolSize() {
+    return maximumPoolSize;
+  }
+
+  /**
+   * @return The most threads the pool has held at once.
+   */
+  public int getLargestPoolSize() {
+    return largestPoolSize;
+  }
+
+  /**
+   * @return The approximate number of threads running tasks.
+   */
+  public int getActiveCount() {
+    return activeCount;
+  }
+
+  /**
+   * @return The number of tasks waiting for a thread.
+   */
+  public int getQueuedCount() {
+    return queuedCount;
+  }
+
+  /**
+   * @return The most tasks that may wait for a thread.
+   */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @return The approximate number of tasks that have finished.
+   */
+  public long getCompletedCount() {
+    return completedCount;
+  }
+
+  /**
+   * @return The number of tasks refused because the pool and its queue were full, including the
+   *     ones then run by the submitting thread.
+   */
+  public long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  @Override
+  public String toString() {
+    return "active=" + activeCount + ", queued=" + queuedCount + ", completed=" + completedCount +
+        ", rejected=" + rejectedCount + ", poolSize=" + poolSize + '/' + maximumPoolSize;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.executor;
+
+import org.apache.shindig.common.servlet.StatsServlet;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.google.inject.Inject;
+
+import java.util.Map;
+
+/**
+ * Reports the statistics of every pool created by the bound {@link ExecutorProvider} as a JSON
+ * object keyed by pool name.
+ */
+public class ExecutorStatsServlet extends StatsServlet {
+
+  private static final long serialVersionUID = 4830178569135790431L;
+
+  private transient ExecutorProvider executorProvider;
+
+  @Inject
+  public void setExecutorProvider(ExecutorProvider executorProvider) {
+    checkInitialized();
+    this.executorProvider = executorProvider;
+  }
+
+  @Override
+  protected JSONObject getStats() throws JSONException {
+    return toJson(executorProvider.getStats());
+  }
+
+  static JSONObject toJson(Map<String, ExecutorStats> stats) throws JSONException {
+    JSONObject result = new JSONObject();
+    for (Map.Entry<String, ExecutorStats> entry : stats.entrySet()) {
+      ExecutorStats executorStats = entry.getValue();
+      JSONObject json = new JSONObject();
+      json.put("active", executorStats.getActiveCount());
+      json.put("queued", executorStats.getQueuedCount());
+      json.put("completed", executorStats.getCompletedCount());
+      json.put("rejected", executorStats.getRejectedCount());
+      json.put("poolSize", executorStats.getPoolSize());
+      json.put("largestPoolSize", executorStats.getLargestPoolSize());
+      json.put("maximumPoolSize", executorStats.getMaximumPoolSize());
+      json.put("queueCapacity", executorStats.getQueueCapacity());
+      result.put(entry.getKey(), json);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.executor;
+
+import org.apache.shindig.common.util.JmxUtil;
+
+/**
+ * Publishes the statistics of a named thread pool through JMX.
+ *
+ * Pools are registered as org.apache.shindig:type=Executor,name=&lt;pool name&gt;.
+ */
+public class ManagedExecutor implements ManagedExecutorMBean {
+  private final BoundedExecutor executor;
+
+  public ManagedExecutor(BoundedExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Registers the pool with the platform MBean server. Failures are logged and otherwise ignored.
+   */
+  public static void register(BoundedExecutor executor) {
+    JmxUtil.register(new ManagedExecutor(executor), "Executor", executor.getName());
+  }
+
+  public int getPoolSize() {
+    return executor.getPoolSize();
+  }
+
+  public int getMaximumPoolSize() {
+    return executor.getMaximumPoolSize();
+  }
+
+  public int getLargestPoolSize() {
+    return executor.getLargestPoolSize();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public int getQueuedCount() {
+    return executor.getQueue().size();
+  }
+
+  public int getQueueCapacity() {
+    return executor.getQueueCapacity();
+  }
+
+  public long getCompletedCount() {
+    return executor.getCompletedTaskCount();
+  }
+
+  public long getRejectedCount() {
+    return executor.getRejectedCount();
+  }
+}
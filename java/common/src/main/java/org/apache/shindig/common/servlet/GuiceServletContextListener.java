@@ -26,6 +26,7 @@ import com.google.inject.Module;
 import com.google.inject.Stage;
 import com.google.inject.tools.jmx.Manager;
 import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.common.util.JmxUtil;
 
 import java.util.List;
 
@@ -86,6 +87,7 @@ public class GuiceServletContextListener implements ServletContextListener {
   public void contextDestroyed(ServletContextEvent event) {
     ServletContext context = event.getServletContext();
     context.removeAttribute(INJECTOR_ATTRIBUTE);
+    JmxUtil.unregisterAll();
   }
   
   /**
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.Lists;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers statistics MBeans with the platform MBean server, as
+ * org.apache.shindig:type=&lt;type&gt;,name=&lt;name&gt;.
+ *
+ * A name that is already taken, for instance by another web application in the same JVM, is never
+ * replaced; an instance key is added to the name instead. Every MBean registered here is
+ * unregistered again by {@link #unregisterAll()} when the web application shuts down.
+ */
+public final class JmxUtil {
+  private static final Logger LOG = Logger.getLogger(JmxUtil.class.getName());
+  public static final String DOMAIN = "org.apache.shindig";
+
+  private static final List<ObjectName> registered = Lists.newArrayList();
+
+  private JmxUtil() {}
+
+  /**
+   * Registers the MBean. Failures are logged and otherwise ignored, since statistics must never
+   * prevent the component they describe from working.
+   *
+   * @return The name the MBean was registered under, or null if it could not be registered.
+   */
+  public static ObjectName register(Object mbean, String type, String name) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String baseName = DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name);
+    try {
+      for (int instance = 1; ; ++instance) {
+        ObjectName objectName =
+            new ObjectName(instance == 1 ? baseName : baseName + ",instance=" + instance);
+        try {
+          server.registerMBean(mbean, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+          continue;
+        }
+        synchronized (registered) {
+          registered.add(objectName);
+        }
+        return objectName;
+      }
+    } catch (JMException e) {
+      LOG.log(Level.WARNING, "Unable to register statistics for " + type + ' ' + name, e);
+      return null;
+    }
+  }
+
+  /**
+   * Unregisters every MBean registered through {@link #register}.
+   */
+  public static void unregisterAll() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    synchronized (registered) {
+      for (ObjectName objectName : registered) {
+        try {
+          server.unregisterMBean(objectName);
+        } catch (JMException e) {
+          LOG.log(Level.FINE, "Unable to unregister " + objectName, e);
+        }
+      }
+      registered.clear();
+    }
+  }
+}
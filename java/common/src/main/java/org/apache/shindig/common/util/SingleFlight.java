@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.MapMaker;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces concurrent computations of the same key into a single execution.
+ *
+ * The first caller for a key (the leader) runs the computation, and every caller that arrives
+ * while it is still in progress waits for and shares the leader's result instead of starting its
+ * own. Nothing is retained once the computation finishes, so this is not a cache; it only
+ * protects expensive loads (network fetches, parsing) from a stampede of identical cache misses.
+ */
+public class SingleFlight<K, V> {
+  private static final Logger LOG = Logger.getLogger(SingleFlight.class.getName());
+
+  private final ConcurrentMap<K, FutureTask<V>> inFlight = new MapMaker().makeMap();
+
+  /**
+   * Runs the loader in the calling thread, unless a computation for the same key is already in
+   * progress, in which case its result is returned instead.
+   *
+   * @throws ExecutionException wrapping whatever the loader threw.
+   */
+  public V execute(K key, Callable<V> loader) throws ExecutionException, InterruptedException {
+    FutureTask<V> task = new FutureTask<V>(loader);
+    FutureTask<V> leader = inFlight.putIfAbsent(key, task);
+    if (leader != null) {
+      return leader.get();
+    }
+    return runAsLeader(key, task);
+  }
+
+  /**
+   * Like {@link #execute(Object, Callable)}, but waits at most the given time for another
+   * caller's computation to finish. Once that time has elapsed the loader is run independently
+   * in the calling thread, so a slow leader can not hold every follower hostage.
+   */
+  public V execute(K key, Callable<V> loader, long timeout, TimeUnit unit)
+      throws ExecutionException, InterruptedException {
+    FutureTask<V> task = new FutureTask<V>(loader);
+    FutureTask<V> leader = inFlight.putIfAbsent(key, task);
+    if (leader == null) {
+      return runAsLeader(key, task);
+    }
+    try {
+      return leader.get(timeout, unit);
+    } catch (TimeoutException e) {
+      task.run();
+      return task.get();
+    }
+  }
+
+  /**
+   * Runs the loader on the given executor, unless a computation for the same key is already
+   * queued or in progress.
+   *
+   * @return true if the loader was submitted, false if it was coalesced into an existing one.
+   */
+  public boolean submit(final K key, Callable<V> loader, Executor executor) {
+    final FutureTask<V> task = new FutureTask<V>(loader);
+    if (inFlight.putIfAbsent(key, task) != null) {
+      return false;
+    }
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            runAsLeader(key, task);
+          } catch (ExecutionException e) {
+            LOG.log(Level.WARNING, "Background computation failed for " + key, e.getCause());
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.remove(key, task);
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * @return true if a computation for the key is currently queued or running.
+   */
+  public boolean isInFlight(K key) {
+    return inFlight.containsKey(key);
+  }
+
+  private V runAsLeader(K key, FutureTask<V> task)
+      throws ExecutionException, InterruptedException {
+    try {
+      task.run();
+    } finally {
+      inFlight.remove(key, task);
+    }
+    return task.get();
+  }
+}
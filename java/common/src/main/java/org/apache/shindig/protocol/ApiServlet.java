@@ -24,11 +24,15 @@ import org.apache.shindig.config.ContainerConfig;
 import org.apache.shindig.protocol.conversion.BeanConverter;
 import org.apache.shindig.protocol.conversion.BeanJsonConverter;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +61,9 @@ public abstract class ApiServlet extends InjectedServlet {
 
   protected static final String DEFAULT_ENCODING = "UTF-8";
 
+  /** Number of characters buffered between a converter and the servlet writer. */
+  protected static final int RESPONSE_BUFFER_SIZE = 8192;
+
   /** ServletConfig parameter set to provide an explicit named binding for handlers */
   public static final String HANDLERS_PARAM = "handlers";
 
@@ -122,10 +129,36 @@ public abstract class ApiServlet extends InjectedServlet {
             + "requests are not allowed"));
   }
 
+  /**
+   * Returns a writer for streaming a converted response to the client. At most
+   * {@link #RESPONSE_BUFFER_SIZE} characters are held before being passed on, whatever the size
+   * of the response. Callers must flush the writer once done.
+   */
+  protected Writer getResponseWriter(HttpServletResponse servletResponse) throws IOException {
+    return new BufferedWriter(servletResponse.getWriter(), RESPONSE_BUFFER_SIZE);
+  }
+
   protected ResponseItem getResponseItem(Future<?> future) {
+    return getResponseItem(future, 0);
+  }
+
+  /**
+   * Waits for a response until the given deadline.
+   *
+   * @param deadline time in milliseconds since the epoch after which the request is cancelled
+   *     and answered with a timeout error, or 0 to wait indefinitely.
+   */
+  protected ResponseItem getResponseItem(Future<?> future, long deadline) {
     try {
-      // TODO: use timeout methods?
-      Object result = future != null ? future.get() : null;
+      Object result = null;
+      if (future != null) {
+        if (deadline > 0) {
+          long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+          result = future.get(remaining, TimeUnit.MILLISECONDS);
+        } else {
+          result = future.get();
+        }
+      }
       // TODO: null is now a supported return value for post/delete, but
       // is bad for get().
       return new ResponseItem(result != null ? result : Collections.emptyMap());
@@ -133,6 +166,9 @@ public abstract class ApiServlet extends InjectedServlet {
       return responseItemFromException(ie);
     } catch (ExecutionException ee) {
       return responseItemFromException(ee.getCause());
+    } catch (TimeoutException te) {
+      future.cancel(true);
+      return new ResponseItem(HttpServletResponse.SC_GATEWAY_TIMEOUT, "Request timed out");
     }
   }
 
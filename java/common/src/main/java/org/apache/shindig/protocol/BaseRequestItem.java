@@ -207,8 +207,12 @@ public class BaseRequestItem implements RequestItem {
 
   public <T> T getTypedRequest(Class<T> dataTypeClass) {
     try {
-      return jsonConverter.convertToObject(new JSONObject(this.parameters).toString(),
-          dataTypeClass);
+      JSONObject json = new JSONObject(this.parameters);
+      if (hasOnlyJsonValues()) {
+        // Bind the parsed request directly, rather than writing it out and parsing it again.
+        return dataTypeClass.cast(jsonConverter.convertToObject(json, dataTypeClass));
+      }
+      return jsonConverter.convertToObject(json.toString(), dataTypeClass);
     } catch (RuntimeException e) {
       if (e.getCause() instanceof JSONException)
         throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
@@ -216,6 +220,20 @@ public class BaseRequestItem implements RequestItem {
     }
   }
 
+  /**
+   * @return true if every parameter holds a value as parsed from JSON, as is the case for
+   *     JSON-RPC requests.
+   */
+  private boolean hasOnlyJsonValues() {
+    for (Object value : parameters.values()) {
+      if (!(value instanceof String || value instanceof Number || value instanceof Boolean ||
+          value instanceof JSONObject || value instanceof JSONArray || value == JSONObject.NULL)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public String getParameter(String paramName) {
     Object param = this.parameters.get(paramName);
     if (param instanceof List<?>) {
@@ -28,8 +28,8 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Future;
@@ -168,7 +168,7 @@ public class DataServiceServlet extends ApiServlet {
 
     servletResponse.setContentType(converter.getContentType());
     if (responseItem.getErrorCode() >= 200 && responseItem.getErrorCode() < 400) {
-      PrintWriter writer = servletResponse.getWriter();
+      Writer writer = getResponseWriter(servletResponse);
       Object response = responseItem.getResponse();
       // TODO: ugliness resulting from not using RestfulItem
       if (!(response instanceof DataCollection) && !(response instanceof RestfulCollection)) {
@@ -179,9 +179,10 @@ public class DataServiceServlet extends ApiServlet {
       String callback =  (HttpUtil.isJSONP(servletRequest) && ContentTypes.OUTPUT_JSON_CONTENT_TYPE.equals(converter.getContentType())) ?
           servletRequest.getParameter("callback") : null;
 
-      if (callback != null) writer.write(callback + '(');
-      writer.write(converter.convertToString(response));
-      if (callback != null) writer.write(");\n");
+      if (callback != null) writer.append(callback).append('(');
+      converter.append(writer, response);
+      if (callback != null) writer.append(");\n");
+      writer.flush();
     } else {
       sendError(servletResponse, responseItem);
     }
@@ -28,9 +28,11 @@ import org.apache.shindig.protocol.conversion.BeanJsonConverter;
 import org.apache.shindig.protocol.multipart.FormDataItem;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Provider;
@@ -47,7 +49,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +74,10 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
       Maps.newHashMap();
   private final Map<String, RpcInvocationHandler> rpcOperations = Maps.newHashMap();
 
+  // Map method -> routing trie over the request path, starting with the service name. Rebuilt
+  // from serviceMethodPathMap whenever handlers are added.
+  private volatile Map<String, RouteNode> restRoutes = ImmutableMap.of();
+
   private final Injector injector;
   private final BeanJsonConverter beanJsonConverter;
   private final HandlerExecutionListener executionListener;
@@ -116,6 +128,7 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
         }
       }
     }
+    restRoutes = buildRestRoutes();
   }
 
   /**
@@ -140,22 +153,15 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
    * Get a REST request handler
    */
   public RestHandler getRestHandler(String path, String method) {
-    method = method.toUpperCase();
     if (path != null) {
       if (path.startsWith("/")) {
         path = path.substring(1);
       }
-      String[] pathParts = StringUtils.splitPreserveAllTokens(path, '/');
-      Map<String, SortedSet<RestPath>> methods = serviceMethodPathMap.get(pathParts[0]);
-      if (methods != null) {
-        SortedSet<RestPath> paths = methods.get(method);
-        if (paths != null) {
-          for (RestPath restPath : paths) {
-            RestHandler handler = restPath.accept(pathParts);
-            if (handler != null) {
-              return handler;
-            }
-          }
+      RouteNode root = restRoutes.get(method.toUpperCase());
+      if (root != null) {
+        RestInvocationWrapper handler = route(root, path);
+        if (handler != null) {
+          return handler;
         }
       }
     }
@@ -163,6 +169,28 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
         "No service defined for path " + path));
   }
 
+  /**
+   * @param root the trie of the paths of one HTTP method
+   * @param path the requested path, starting with the service name
+   * @return the handler of the best matching path with its parameters decoded, or null if no
+   *     path matches
+   */
+  static RestInvocationWrapper route(RouteNode root, String path) {
+    // Start offset of each segment of the path, followed by the end of the path plus one.
+    int count = 1;
+    for (int i = path.indexOf('/'); i != -1; i = path.indexOf('/', i + 1)) {
+      count++;
+    }
+    int[] starts = new int[count + 1];
+    for (int i = 1; i < count; i++) {
+      starts[i] = path.indexOf('/', starts[i - 1]) + 1;
+    }
+    starts[count] = path.length() + 1;
+
+    RestPath restPath = root.find(path, starts, 0, null);
+    return restPath == null ? null : restPath.accept(path, starts);
+  }
+
   public Set<String> getSupportedRestServices() {
     Set<String> result = Sets.newTreeSet();
     for (Map<String, SortedSet<RestPath>> methods : serviceMethodPathMap.values()) {
@@ -221,6 +249,26 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
 
   }
 
+  private Map<String, RouteNode> buildRestRoutes() {
+    Map<String, RouteNode> routes = Maps.newHashMap();
+    for (Map<String, SortedSet<RestPath>> methods : serviceMethodPathMap.values()) {
+      for (Map.Entry<String, SortedSet<RestPath>> method : methods.entrySet()) {
+        RouteNode root = routes.get(method.getKey());
+        if (root == null) {
+          root = new RouteNode();
+          routes.put(method.getKey(), root);
+        }
+        for (RestPath path : method.getValue()) {
+          root.add(path);
+        }
+      }
+    }
+    for (RouteNode root : routes.values()) {
+      root.freeze();
+    }
+    return ImmutableMap.copyOf(routes);
+  }
+
   private void createRpcHandler(Provider<?> handlerProvider, Service service,
       Operation op, Method m) {
     try {
@@ -262,6 +310,146 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
     private void executed(RequestItem req) {
       listener.executed(service, operation, req);
     }
+
+    /**
+     * Arranges for a HandlerCompletionListener to be told when the result is available.
+     */
+    private Future<?> completing(RequestItem req, long startNanos, Future<?> result) {
+      if (!(listener instanceof HandlerCompletionListener)) {
+        return result;
+      }
+      if (!result.isDone()) {
+        return CompletionFuture.create(result, this, req, startNanos);
+      }
+      try {
+        completed(req, startNanos, result.get(), null);
+      } catch (ExecutionException e) {
+        completed(req, startNanos, null, e.getCause());
+      } catch (CancellationException e) {
+        completed(req, startNanos, null, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return result;
+    }
+
+    private void completed(RequestItem req, long startNanos, Object result, Throwable error) {
+      ((HandlerCompletionListener) listener).completed(service, operation, req,
+          System.nanoTime() - startNanos, result, error);
+    }
+  }
+
+  /**
+   * Reports the outcome of an asynchronous handler once. A ListenableFuture result is reported
+   * by a listener as soon as it completes. Other results are reported the first time they are
+   * observed to be done, through get(), isDone() or by cancelling them.
+   */
+  private static final class CompletionFuture<T> implements Future<T> {
+    /** Runs listeners on the thread that completes the future. */
+    private static final Executor SAME_THREAD = new Executor() {
+      public void execute(Runnable command) {
+        command.run();
+      }
+    };
+
+    private final Future<T> future;
+    private final ExecutionListenerWrapper listener;
+    private final RequestItem request;
+    private final long startNanos;
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    @SuppressWarnings("unchecked")
+    CompletionFuture(Future<?> future, ExecutionListenerWrapper listener, RequestItem request,
+        long startNanos) {
+      this.future = (Future<T>) future;
+      this.listener = listener;
+      this.request = request;
+      this.startNanos = startNanos;
+    }
+
+    static Future<?> create(Future<?> future, ExecutionListenerWrapper listener,
+        RequestItem request, long startNanos) {
+      final CompletionFuture<Object> completion =
+          new CompletionFuture<Object>(future, listener, request, startNanos);
+      if (future instanceof ListenableFuture<?>) {
+        ((ListenableFuture<?>) future).addListener(new Runnable() {
+          public void run() {
+            completion.reportIfDone();
+          }
+        }, SAME_THREAD);
+      }
+      return completion;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = future.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        report(null, new CancellationException());
+      }
+      return cancelled;
+    }
+
+    public boolean isCancelled() {
+      return future.isCancelled();
+    }
+
+    public boolean isDone() {
+      boolean done = future.isDone();
+      if (done) {
+        reportIfDone();
+      }
+      return done;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+      try {
+        T value = future.get();
+        report(value, null);
+        return value;
+      } catch (ExecutionException e) {
+        report(null, e.getCause());
+        throw e;
+      } catch (CancellationException e) {
+        report(null, e);
+        throw e;
+      }
+    }
+
+    public T get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      try {
+        T value = future.get(timeout, unit);
+        report(value, null);
+        return value;
+      } catch (ExecutionException e) {
+        report(null, e.getCause());
+        throw e;
+      } catch (CancellationException e) {
+        report(null, e);
+        throw e;
+      }
+    }
+
+    private void reportIfDone() {
+      if (reported.get() || !future.isDone()) {
+        return;
+      }
+      try {
+        report(future.get(), null);
+      } catch (ExecutionException e) {
+        report(null, e.getCause());
+      } catch (CancellationException e) {
+        report(null, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void report(Object result, Throwable error) {
+      if (reported.compareAndSet(false, true)) {
+        listener.completed(request, startNanos, result, error);
+      }
+    }
   }
 
 
@@ -296,14 +484,17 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
         return ImmediateFuture.errorInstance(e);
       }
 
+      long startNanos = System.nanoTime();
+      Future<?> result;
       try {
         listener.executing(item);
-        return methodCaller.call(handlerProvider.get(), item);
+        result = methodCaller.call(handlerProvider.get(), item);
       } catch (Exception e) {
-        return ImmediateFuture.errorInstance(e);
+        result = ImmediateFuture.errorInstance(e);
       } finally {
         listener.executed(item);
       }
+      return listener.completing(item, startNanos, result);
     }
   }
 
@@ -364,14 +555,17 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
           return ImmediateFuture.errorInstance(e);
         }
 
+      long startNanos = System.nanoTime();
+      Future<?> result;
       try {
         listener.executing(item);
-        return methodCaller.call(handlerProvider.get(), item);
+        result = methodCaller.call(handlerProvider.get(), item);
       } catch (Exception e) {
-        return ImmediateFuture.errorInstance(e);
+        result = ImmediateFuture.errorInstance(e);
       } finally {
-          listener.executed(item);
+        listener.executed(item);
       }
+      return listener.completing(item, startNanos, result);
     }
   }
 
@@ -584,38 +778,30 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
     }
 
     /**
-     * See if this Rest path is a match for the requested path
-     * Requested path is offset by 1 as it includes service name
-     * @return A handler with the path parameters decoded, null if not a match for the path
+     * Decodes the path parameters of a request this path was matched to by a {@link RouteNode}.
+     *
+     * @param requestPath the requested path, starting with the service name
+     * @param starts the start offset of each segment of requestPath, followed by
+     *     requestPath.length() + 1
+     * @return A handler with the path parameters decoded
      */
-    public RestInvocationWrapper accept(String[] requestPathParts) {
-      if (constCount > 0) {
-        if (lastConstIndex >= requestPathParts.length) {
-          // Last required constant match is not possible with
-          // this request
-          return null;
-        }
-        for (int i = 0; i <= lastConstIndex; i++) {
-          if (parts.get(i).type == PartType.CONST &&
-              !parts.get(i).partName.equals(requestPathParts[i])) {
-            // Constant part does not match request
-            return null;
-          }
-        }
-      }
-
-      // All constant parts matched, extract the parameters
-      Map<String, String[]> parsedParams = Maps.newHashMap();
-      for (int i = 0; i < Math.min(requestPathParts.length, parts.size()); i++) {
-        if (parts.get(i).type == PartType.SINGULAR_PARAM) {
-          if (requestPathParts[i].indexOf(',') != -1) {
-            throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST,
-                "Cannot expect plural value " + requestPathParts[i]
-                    + " for singular field " + parts.get(i) + " for path " + operationPath);
+    public RestInvocationWrapper accept(String requestPath, int[] starts) {
+      int count = Math.min(starts.length - 1, parts.size());
+      Map<String, String[]> parsedParams = Maps.newHashMapWithExpectedSize(parts.size());
+      for (int i = 0; i < count; i++) {
+        Part part = parts.get(i);
+        if (part.type != PartType.CONST) {
+          String value = requestPath.substring(starts[i], starts[i + 1] - 1);
+          if (part.type == PartType.SINGULAR_PARAM) {
+            if (value.indexOf(',') != -1) {
+              throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST,
+                  "Cannot expect plural value " + value
+                      + " for singular field " + part + " for path " + operationPath);
+            }
+            parsedParams.put(part.partName, new String[]{value});
+          } else {
+            parsedParams.put(part.partName, StringUtils.splitPreserveAllTokens(value, ','));
           }
-          parsedParams.put(parts.get(i).partName, new String[]{requestPathParts[i]});
-        } else if (parts.get(i).type == PartType.PLURAL_PARAM) {
-          parsedParams.put(parts.get(i).partName, StringUtils.splitPreserveAllTokens(requestPathParts[i], ','));
         }
       }
       return new RestInvocationWrapper(parsedParams, handler);
@@ -656,4 +842,85 @@ public class DefaultHandlerRegistry implements HandlerRegistry {
       return result;
     }
   }
+
+  /**
+   * Node of the trie used to find the RestPath for a request. Edges are path segments: either a
+   * constant, or any value for a parameter. A RestPath is held by the node reached by its parts
+   * up to and including its last constant one. Any request that reaches that node matches the
+   * path, since shorter requests leave trailing parameters unset and longer ones ignore extra
+   * segments. Of all matching paths, the one ranked first by RestPath.compareTo is chosen, as
+   * when trying each path in turn.
+   */
+  static final class RouteNode {
+    private Map<String, RouteNode> constChildren = Maps.newLinkedHashMap();
+    private SortedSet<RestPath> pathSet = Sets.newTreeSet();
+
+    private String[] constNames;
+    private RouteNode[] constNodes;
+    private RouteNode paramChild;
+    private RestPath bestPath;
+
+    void add(RestPath path) {
+      RouteNode node = this;
+      for (int i = 0; i <= path.lastConstIndex; i++) {
+        RestPath.Part part = path.parts.get(i);
+        if (part.type == RestPath.PartType.CONST) {
+          RouteNode child = node.constChildren.get(part.partName);
+          if (child == null) {
+            child = new RouteNode();
+            node.constChildren.put(part.partName, child);
+          }
+          node = child;
+        } else {
+          if (node.paramChild == null) {
+            node.paramChild = new RouteNode();
+          }
+          node = node.paramChild;
+        }
+      }
+      node.pathSet.add(path);
+    }
+
+    /**
+     * Replaces the structures used while adding paths with the arrays used for matching.
+     */
+    void freeze() {
+      constNames = constChildren.keySet().toArray(new String[constChildren.size()]);
+      constNodes = constChildren.values().toArray(new RouteNode[constChildren.size()]);
+      bestPath = pathSet.isEmpty() ? null : pathSet.first();
+      constChildren = null;
+      pathSet = null;
+      for (RouteNode child : constNodes) {
+        child.freeze();
+      }
+      if (paramChild != null) {
+        paramChild.freeze();
+      }
+    }
+
+    /**
+     * @return the best ranked of best and the paths below this node matching the request
+     *     segments from depth on.
+     */
+    RestPath find(String requestPath, int[] starts, int depth, RestPath best) {
+      if (bestPath != null && (best == null || bestPath.compareTo(best) < 0)) {
+        best = bestPath;
+      }
+      if (depth < starts.length - 1) {
+        int start = starts[depth];
+        int length = starts[depth + 1] - 1 - start;
+        for (int i = 0; i < constNames.length; i++) {
+          String name = constNames[i];
+          if (name.length() == length && requestPath.regionMatches(start, name, 0, length)) {
+            best = constNodes[i].find(requestPath, starts, depth + 1, best);
+            break;
+          }
+        }
+        if (paramChild != null) {
+          best = paramChild.find(requestPath, starts, depth + 1, best);
+        }
+      }
+      return best;
+    }
+  }
 }
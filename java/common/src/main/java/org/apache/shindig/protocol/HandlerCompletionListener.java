@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.protocol;
+
+/**
+ * A HandlerExecutionListener that is also told how each call turned out.
+ *
+ * {@link #executed} is called as soon as the handler method returns, which for asynchronous
+ * handlers is before their work is done. {@link #completed} is called once the result is
+ * available: immediately for handlers that return a value or throw, and when the returned Future
+ * is resolved otherwise.
+ */
+public interface HandlerCompletionListener extends HandlerExecutionListener {
+
+  /**
+   * Called once the result of a REST or RPC handler is available.
+   * @param service Name of the service that was called
+   * @param operation Name of operation that was called
+   * @param request that was executed
+   * @param latencyNanos time from {@link #executing} until the result was available
+   * @param result the result of the handler, null if it failed
+   * @param error the failure, null if the handler succeeded
+   */
+  void completed(String service, String operation, RequestItem request, long latencyNanos,
+      Object result, Throwable error);
+}
@@ -25,6 +25,11 @@ import java.util.logging.Logger;
 /**
  * Called by the handler dispatcher prior to executing a handler. Used to allow
  * containers to implement cross-cutting features such as request logging.
+ *
+ * Listeners that also implement {@link HandlerCompletionListener} are told when the result of
+ * each call is available. To record statistics of every operation, bind this to the
+ * {@link HandlerMetricsListener} in your Guice Module:
+ *   bind(HandlerExecutionListener.class).to(HandlerMetricsListener.class);
  */
 @ImplementedBy(HandlerExecutionListener.NoOpHandler.class)
 public interface HandlerExecutionListener {
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.protocol;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CancellationException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records latency, errors and response size of every service operation.
+ *
+ * Errors are counted by the status code they are reported with: the code of a
+ * {@link ProtocolException}, 504 for calls cancelled after timing out and 500 for anything else.
+ * The size of a response is the number of entries of a collection result and 1 for any other
+ * result. Statistics are published through JMX when shindig.protocol.metrics.jmx.enabled is true,
+ * and by the {@link OperationStatsServlet}.
+ *
+ * Nothing is recorded by default; bind {@link HandlerExecutionListener} to this class to turn it on.
+ */
+@Singleton
+public class HandlerMetricsListener implements HandlerCompletionListener {
+  private final OperationMetricsRegistry operations = new OperationMetricsRegistry();
+
+  @Inject(optional = true)
+  public void setJmxEnabled(@Named("shindig.protocol.metrics.jmx.enabled") boolean jmxEnabled) {
+    operations.setJmxEnabled(jmxEnabled);
+  }
+
+  public void executing(String service, String operation, RequestItem request) {
+    // Timing is measured by the dispatcher.
+  }
+
+  public void executed(String service, String operation, RequestItem request) {
+    // Waits for completed().
+  }
+
+  public void completed(String service, String operation, RequestItem request, long latencyNanos,
+      Object result, Throwable error) {
+    OperationMetrics metrics = operations.get(service + '.' + operation);
+    if (error == null) {
+      metrics.recordSuccess(latencyNanos, countItems(result));
+    } else {
+      metrics.recordError(latencyNanos, statusOf(error));
+    }
+  }
+
+  /**
+   * @return the statistics of every operation called so far, keyed by service.operation.
+   */
+  public SortedMap<String, OperationMetrics> getMetrics() {
+    return operations.getAll();
+  }
+
+  static int countItems(Object result) {
+    if (result == null) {
+      return 0;
+    }
+    if (result instanceof RestfulCollection<?>) {
+      return sizeOf(((RestfulCollection<?>) result).getEntry());
+    }
+    if (result instanceof DataCollection) {
+      return sizeOf(((DataCollection) result).getEntry());
+    }
+    if (result instanceof Collection<?>) {
+      return ((Collection<?>) result).size();
+    }
+    if (result instanceof Map<?, ?>) {
+      return ((Map<?, ?>) result).size();
+    }
+    return 1;
+  }
+
+  private static int sizeOf(Object entries) {
+    if (entries instanceof Collection<?>) {
+      return ((Collection<?>) entries).size();
+    }
+    if (entries instanceof Map<?, ?>) {
+      return ((Map<?, ?>) entries).size();
+    }
+    return 0;
+  }
+
+  static int statusOf(Throwable error) {
+    if (error instanceof ProtocolException) {
+      return ((ProtocolException) error).getCode();
+    }
+    if (error instanceof CancellationException) {
+      return HttpServletResponse.SC_GATEWAY_TIMEOUT;
+    }
+    return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+  }
+}
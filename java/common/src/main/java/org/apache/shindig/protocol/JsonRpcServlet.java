@@ -17,10 +17,12 @@
  */
 package org.apache.shindig.protocol;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.auth.SecurityToken;
+import org.apache.shindig.common.JsonParser;
+import org.apache.shindig.common.executor.ExecutorProvider;
 import org.apache.shindig.common.servlet.HttpUtil;
+import org.apache.shindig.common.util.ImmediateFuture;
 import org.apache.shindig.common.util.JsonConversionUtil;
 import org.apache.shindig.protocol.multipart.FormDataItem;
 import org.apache.shindig.protocol.multipart.MultipartFormParser;
@@ -38,13 +40,25 @@ import org.json.JSONObject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * JSON-RPC handler servlet.
@@ -68,6 +82,56 @@ public class JsonRpcServlet extends ApiServlet {
     this.formParser = formParser;
   }
   
+  /** Name of the pool that runs the calls of a batch concurrently. */
+  public static final String BATCH_EXECUTOR = "rpc-batch";
+
+  private ExecutorService batchExecutor;
+  private int batchConcurrency = 1;
+  private long batchTimeoutMs = 0;
+
+  @Inject(optional = true)
+  void setExecutorProvider(ExecutorProvider executorProvider) {
+    this.batchExecutor = executorProvider.getExecutor(BATCH_EXECUTOR);
+  }
+
+  /**
+   * @param batchConcurrency the most calls of a single batch that run at once. 1 or less, the
+   *     default, runs batches one call at a time on the request thread.
+   */
+  @Inject(optional = true)
+  void setBatchConcurrency(@Named("shindig.json-rpc.batch.max-concurrency") int batchConcurrency) {
+    this.batchConcurrency = batchConcurrency;
+  }
+
+  /**
+   * @param batchTimeoutMs how long a whole batch may take before its unfinished calls are
+   *     answered with a timeout error, or 0 for no limit.
+   */
+  @Inject(optional = true)
+  void setBatchTimeoutMs(@Named("shindig.json-rpc.batch.timeout-ms") long batchTimeoutMs) {
+    this.batchTimeoutMs = batchTimeoutMs;
+  }
+
+  private int maxRequestDepth = 32;
+  private long maxRequestLength = 0;
+
+  /**
+   * @param maxRequestDepth the deepest nesting of objects and arrays allowed in a request, or 0
+   *     for no limit.
+   */
+  @Inject(optional = true)
+  void setMaxRequestDepth(@Named("shindig.json-rpc.request.max-depth") int maxRequestDepth) {
+    this.maxRequestDepth = maxRequestDepth;
+  }
+
+  /**
+   * @param maxRequestLength the most characters allowed in a request, or 0 for no limit.
+   */
+  @Inject(optional = true)
+  void setMaxRequestLength(@Named("shindig.json-rpc.request.max-length") long maxRequestLength) {
+    this.maxRequestLength = maxRequestLength;
+  }
+
   private String jsonRpcResultField = "result";
   private boolean jsonRpcBothFields = false;
   @Inject
@@ -100,7 +164,7 @@ public class JsonRpcServlet extends ApiServlet {
     HttpUtil.setCORSheader(servletResponse, containerConfig.<String>getList(token.getContainer(), "gadgets.parentOrigins"));
 
     try {
-      String content = null;
+      Reader content = null;
       String callback = null; // for JSONP
       Map<String,FormDataItem> formData = Maps.newHashMap();
 
@@ -108,7 +172,10 @@ public class JsonRpcServlet extends ApiServlet {
       if ("POST".equals(method)) {
         content = getPostContent(servletRequest, formData);
       } else if (HttpUtil.isJSONP(servletRequest)) {
-        content = servletRequest.getParameter("request");
+        String request = servletRequest.getParameter("request");
+        if (request != null) {
+          content = new StringReader(request);
+        }
         callback = servletRequest.getParameter("callback");
       } else {
         // GET request, fromRequest() creates the json objects directly.
@@ -125,12 +192,15 @@ public class JsonRpcServlet extends ApiServlet {
         return;
       }
 
-      if (isContentJsonBatch(content)) {
-        JSONArray batch = new JSONArray(content);
-        dispatchBatch(batch, formData, servletRequest, servletResponse, token, callback);
+      // Decoded straight from the request, without holding the whole body as a String.
+      Object request = new JsonParser(content, maxRequestDepth, maxRequestLength).parse();
+      if (request instanceof JSONArray) {
+        dispatchBatch((JSONArray) request, formData, servletRequest, servletResponse, token,
+            callback);
+      } else if (request instanceof JSONObject) {
+        dispatch((JSONObject) request, formData, servletRequest, servletResponse, token, callback);
       } else {
-        JSONObject request = new JSONObject(content);
-        dispatch(request, formData, servletRequest, servletResponse, token, callback);
+        throw new JSONException("A request must be a JSON object or array");
       }
       return;
     } catch (JSONException je) {
@@ -143,9 +213,13 @@ public class JsonRpcServlet extends ApiServlet {
     }
   }
 
-  protected String getPostContent(HttpServletRequest request, Map<String,FormDataItem> formItems)
+  /**
+   * @return a reader for the JSON request in the body of a POST, or null if a multipart POST has
+   *     no request field.
+   */
+  protected Reader getPostContent(HttpServletRequest request, Map<String,FormDataItem> formItems)
       throws ContentTypes.InvalidContentTypeException, IOException {
-    String content = null;
+    Reader content = null;
 
     ContentTypes.checkContentTypes(ALLOWED_CONTENT_TYPES, request.getContentType());
 
@@ -159,13 +233,15 @@ public class JsonRpcServlet extends ApiServlet {
           if (!StringUtils.isEmpty(item.getContentType())) {
             ContentTypes.checkContentTypes(ContentTypes.ALLOWED_JSON_CONTENT_TYPES, item.getContentType());
           }
-          content = item.getAsString();
+          content = new StringReader(item.getAsString());
         } else {
           formItems.put(item.getFieldName(), item);
         }
       }
     } else {
-      content = IOUtils.toString(request.getInputStream(), request.getCharacterEncoding());
+      String encoding = request.getCharacterEncoding();
+      content = new InputStreamReader(request.getInputStream(),
+          encoding != null ? encoding : DEFAULT_ENCODING);
     }
     return content;
   }
@@ -173,20 +249,25 @@ public class JsonRpcServlet extends ApiServlet {
   protected void dispatchBatch(JSONArray batch, Map<String, FormDataItem> formItems ,
       HttpServletRequest servletRequest, HttpServletResponse servletResponse,
       SecurityToken token, String callback) throws JSONException, IOException {
-    // Use linked hash map to preserve order
-    List<Future<?>> responses = Lists.newArrayListWithCapacity(batch.length());
+    long deadline = batchTimeoutMs > 0 ? System.currentTimeMillis() + batchTimeoutMs : 0;
+    List<Future<?>> responses;
 
-    // Gather all Futures.  We do this up front so that
-    // the first call to get() comes after all futures are created,
-    // which allows for implementations that batch multiple Futures
-    // into single requests.
-    for (int i = 0; i < batch.length(); i++) {
-      JSONObject batchObj = batch.getJSONObject(i);
-      responses.add(getHandler(batchObj, servletRequest).execute(formItems, token, jsonConverter));
+    if (batchExecutor != null && batchConcurrency > 1 && batch.length() > 1) {
+      responses = executeConcurrently(batch, formItems, servletRequest, token, deadline);
+    } else {
+      responses = Lists.newArrayListWithCapacity(batch.length());
+
+      // Gather all Futures.  We do this up front so that
+      // the first call to get() comes after all futures are created,
+      // which allows for implementations that batch multiple Futures
+      // into single requests.
+      for (int i = 0; i < batch.length(); i++) {
+        JSONObject batchObj = batch.getJSONObject(i);
+        responses.add(getHandler(batchObj, servletRequest).execute(formItems, token, jsonConverter));
+      }
     }
 
-    // Resolve each Future into a response.
-    // TODO: should use shared deadline across each request
+    // Resolve each Future into a response, all sharing the deadline of the batch.
     List<Object> result = new ArrayList<Object>(batch.length());
     for (int i = 0; i < batch.length(); i++) {
       JSONObject batchObj = batch.getJSONObject(i);
@@ -194,14 +275,187 @@ public class JsonRpcServlet extends ApiServlet {
       if (batchObj.has("id")) {
         key = batchObj.getString("id");
       }
-      result.add(getJSONResponse(key, getResponseItem(responses.get(i))));
+      result.add(getJSONResponse(key, getResponseItem(responses.get(i), deadline)));
     }
 
     // Generate the output
-    Writer writer = servletResponse.getWriter();
+    Writer writer = getResponseWriter(servletResponse);
     if (callback != null) writer.append(callback).append('(');
     jsonConverter.append(writer, result);
     if (callback != null) writer.append(");\n");
+    writer.flush();
+  }
+
+  /**
+   * Invokes the handlers of a batch on the batch executor, at most batchConcurrency at a time.
+   * Reads run concurrently, but a call that may modify data waits for every call before it, and
+   * every call after it waits for it, so that a batch observes its own writes.
+   *
+   * @return the futures of the calls, in batch order.
+   */
+  private List<Future<?>> executeConcurrently(JSONArray batch,
+      final Map<String, FormDataItem> formItems, HttpServletRequest servletRequest,
+      final SecurityToken token, long deadline) throws JSONException {
+    final Semaphore permits = new Semaphore(batchConcurrency);
+    List<Future<?>> responses = Lists.newArrayListWithCapacity(batch.length());
+    List<Future<?>> sinceLastWrite = Lists.newArrayList();
+
+    for (int i = 0; i < batch.length(); i++) {
+      JSONObject batchObj = batch.getJSONObject(i);
+      final RpcHandler handler = getHandler(batchObj, servletRequest);
+      boolean isRead = isReadOnly(batchObj);
+      if (!isRead) {
+        awaitAll(sinceLastWrite, deadline);
+      }
+
+      Future<?> response;
+      if (!acquire(permits, deadline)) {
+        response = ImmediateFuture.errorInstance(new ProtocolException(
+            HttpServletResponse.SC_GATEWAY_TIMEOUT, "Request timed out"));
+      } else {
+        // The pool only invokes the handler. A handler that answers asynchronously hands back a
+        // pending future, which is chained rather than waited on by a pool thread.
+        FutureTask<Future<?>> task = new FutureTask<Future<?>>(new Callable<Future<?>>() {
+          public Future<?> call() {
+            try {
+              return handler.execute(formItems, token, jsonConverter);
+            } finally {
+              permits.release();
+            }
+          }
+        });
+        try {
+          batchExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+          task.run();
+        }
+        response = new ChainedFuture(task);
+      }
+      responses.add(response);
+      sinceLastWrite.add(response);
+
+      if (!isRead) {
+        awaitAll(sinceLastWrite, deadline);
+        sinceLastWrite.clear();
+      }
+    }
+    return responses;
+  }
+
+  /**
+   * The result of a call whose handler is invoked on the batch executor: completes with the
+   * future the handler returns.
+   */
+  private static final class ChainedFuture implements Future<Object> {
+    private final Future<Future<?>> invocation;
+
+    ChainedFuture(Future<Future<?>> invocation) {
+      this.invocation = invocation;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (invocation.cancel(mayInterruptIfRunning)) {
+        return true;
+      }
+      Future<?> result = getResult();
+      return result != null && result.cancel(mayInterruptIfRunning);
+    }
+
+    public boolean isCancelled() {
+      if (!invocation.isDone()) {
+        return false;
+      }
+      if (invocation.isCancelled()) {
+        return true;
+      }
+      Future<?> result = getResult();
+      return result != null && result.isCancelled();
+    }
+
+    public boolean isDone() {
+      if (!invocation.isDone()) {
+        return false;
+      }
+      Future<?> result = getResult();
+      return result == null || result.isDone();
+    }
+
+    public Object get() throws InterruptedException, ExecutionException {
+      Future<?> result = invocation.get();
+      return result != null ? result.get() : null;
+    }
+
+    public Object get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      Future<?> result = invocation.get(timeout, unit);
+      if (result == null) {
+        return null;
+      }
+      return result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the future returned by the completed invocation, or null if it failed.
+     */
+    private Future<?> getResult() {
+      try {
+        return invocation.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // Reported by get().
+      } catch (CancellationException e) {
+        // Reported by get().
+      }
+      return null;
+    }
+  }
+
+  private static boolean acquire(Semaphore permits, long deadline) {
+    try {
+      if (deadline > 0) {
+        long remaining = deadline - System.currentTimeMillis();
+        return remaining > 0 && permits.tryAcquire(remaining, TimeUnit.MILLISECONDS);
+      }
+      permits.acquire();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Waits until the given calls are done or the deadline passes. Failures are reported when the
+   * responses are resolved.
+   */
+  private static void awaitAll(List<Future<?>> futures, long deadline) {
+    for (Future<?> future : futures) {
+      try {
+        if (deadline > 0) {
+          long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+          future.get(remaining, TimeUnit.MILLISECONDS);
+        } else {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        // Reported with the response.
+      } catch (TimeoutException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return true if the call only reads data, and so may run concurrently with other reads.
+   */
+  protected boolean isReadOnly(JSONObject rpc) {
+    String method = rpc.optString("method");
+    return method != null && method.endsWith(".get");
   }
 
   protected void dispatch(JSONObject request, Map<String, FormDataItem> formItems,
@@ -222,10 +476,11 @@ public class JsonRpcServlet extends ApiServlet {
     Object result = getJSONResponse(key, response);
 
     // Generate the output
-    Writer writer = servletResponse.getWriter();
+    Writer writer = getResponseWriter(servletResponse);
     if (callback != null) writer.append(callback).append('(');
     jsonConverter.append(writer, result);
     if (callback != null) writer.append(");\n");
+    writer.flush();
   }
 
   /**
@@ -239,16 +494,6 @@ public class JsonRpcServlet extends ApiServlet {
     result.put(jsonRpcResultField, data);
   }
 
-  /**
-   * Determine if the content contains a batch request
-   *
-   * @param content json content or null
-   * @return true if content contains is a json array, not a json object or null
-   */
-  private boolean isContentJsonBatch(String content) {
-    if (content == null) return false;
-    return ((content.indexOf('[') != -1) && content.indexOf('[') < content.indexOf('{'));
-  }
   /**
    * Wrap call to dispatcher to allow for implementation specific overrides
    * and servlet-request contextual handling
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.protocol;
+
+import org.apache.shindig.common.util.JmxUtil;
+
+/**
+ * Publishes the statistics of a service operation through JMX.
+ *
+ * Operations are registered as org.apache.shindig:type=Operation,name=&lt;service.operation&gt;.
+ */
+public class ManagedOperation implements ManagedOperationMBean {
+  private final OperationMetrics metrics;
+
+  public ManagedOperation(OperationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Registers the operation with the platform MBean server. Failures are logged and otherwise
+   * ignored.
+   */
+  public static void register(OperationMetrics metrics) {
+    JmxUtil.register(new ManagedOperation(metrics), "Operation", metrics.getName());
+  }
+
+  public long getCount() {
+    return metrics.getCount();
+  }
+
+  public long getErrorCount() {
+    return metrics.getErrorCount();
+  }
+
+  public String getErrorCounts() {
+    return metrics.getErrorCounts().toString();
+  }
+
+  public double getMeanLatency() {
+    return metrics.getMeanLatencyMillis();
+  }
+
+  public double getMedianLatency() {
+    return metrics.getLatencyPercentileMillis(0.5);
+  }
+
+  public double get99thPercentileLatency() {
+    return metrics.getLatencyPercentileMillis(0.99);
+  }
+
+  public double get999thPercentileLatency() {
+    return metrics.getLatencyPercentileMillis(0.999);
+  }
+
+  public double getMaxLatency() {
+    return metrics.getMaxLatencyMillis();
+  }
+
+  public long getTotalItems() {
+    return metrics.getTotalItems();
+  }
+
+  public long getMaxItems() {
+    return metrics.getMaxItems();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.protocol;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, error and response size statistics of a single service operation.
+ */
+public class OperationMetrics {
+  private final String name;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final ConcurrentMap<Integer, AtomicLong> errors = new MapMaker().makeMap();
+  private final AtomicLong errorCount = new AtomicLong();
+  private final AtomicLong totalItems = new AtomicLong();
+  private final AtomicLong maxItems = new AtomicLong();
+
+  public OperationMetrics(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Records a successful call.
+   * @param items number of entries in the response
+   */
+  public void recordSuccess(long latencyNanos, int items) {
+    latency.record(latencyNanos / 1000);
+    totalItems.addAndGet(items);
+    long current = maxItems.get();
+    while (items > current && !maxItems.compareAndSet(current, items)) {
+      current = maxItems.get();
+    }
+  }
+
+  /**
+   * Records a failed call.
+   * @param code the status code the failure is reported with
+   */
+  public void recordError(long latencyNanos, int code) {
+    latency.record(latencyNanos / 1000);
+    errorCount.incrementAndGet();
+    AtomicLong counter = errors.get(code);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = errors.putIfAbsent(code, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    counter.incrementAndGet();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getCount() {
+    return latency.getCount();
+  }
+
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+
+  /**
+   * @return the number of failed calls keyed by status code.
+   */
+  public SortedMap<Integer, Long> getErrorCounts() {
+    SortedMap<Integer, Long> result = Maps.newTreeMap();
+    for (Map.Entry<Integer, AtomicLong> entry : errors.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().get());
+    }
+    return Collections.unmodifiableSortedMap(result);
+  }
+
+  /**
+   * @param quantile between 0 and 1, for example 0.99 for the 99th percentile.
+   */
+  public double getLatencyPercentileMillis(double quantile) {
+    return latency.getPercentile(quantile) / 1000.0;
+  }
+
+  public double getMeanLatencyMillis() {
+    return latency.getMean() / 1000.0;
+  }
+
+  public double getMaxLatencyMillis() {
+    return latency.getMax() / 1000.0;
+  }
+
+  /**
+   * @return the total number of entries returned by successful calls.
+   */
+  public long getTotalItems() {
+    return totalItems.get();
+  }
+
+  /**
+   * @return the largest number of entries returned by a single call.
+   */
+  public long getMaxItems() {
+    return maxItems.get();
+  }
+}
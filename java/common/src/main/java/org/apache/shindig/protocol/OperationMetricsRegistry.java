@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.protocol;
+
+import com.google.common.collect.MapMaker;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The statistics of a set of operations, keyed by name and created on first use. While JMX is
+ * enabled every operation is published through {@link ManagedOperation}.
+ */
+public class OperationMetricsRegistry {
+  private final ConcurrentMap<String, OperationMetrics> operations = new MapMaker().makeMap();
+  private volatile boolean jmxEnabled = false;
+
+  /**
+   * Publishes the operations recorded so far, and any recorded later, through JMX.
+   */
+  public void setJmxEnabled(boolean jmxEnabled) {
+    this.jmxEnabled = jmxEnabled;
+    if (jmxEnabled) {
+      for (OperationMetrics metrics : operations.values()) {
+        ManagedOperation.register(metrics);
+      }
+    }
+  }
+
+  /**
+   * @return the statistics of the named operation.
+   */
+  public OperationMetrics get(String name) {
+    OperationMetrics metrics = operations.get(name);
+    if (metrics == null) {
+      OperationMetrics newMetrics = new OperationMetrics(name);
+      metrics = operations.putIfAbsent(name, newMetrics);
+      if (metrics == null) {
+        metrics = newMetrics;
+        if (jmxEnabled) {
+          ManagedOperation.register(metrics);
+        }
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * @return the statistics of every operation, keyed by name.
+   */
+  public SortedMap<String, OperationMetrics> getAll() {
+    return Collections.unmodifiableSortedMap(new TreeMap<String, OperationMetrics>(operations));
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.protocol;
+
+import org.apache.shindig.common.servlet.StatsServlet;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.google.inject.Inject;
+
+import java.util.Map;
+
+/**
+ * Reports the statistics recorded by the {@link HandlerMetricsListener} as a JSON object keyed by
+ * service.operation. Latencies are in milliseconds. Nothing is reported unless
+ * HandlerExecutionListener is bound to the HandlerMetricsListener.
+ */
+public class OperationStatsServlet extends StatsServlet {
+
+  private static final long serialVersionUID = -2957187424330871265L;
+
+  private transient HandlerMetricsListener metricsListener;
+
+  @Inject
+  public void setMetricsListener(HandlerMetricsListener metricsListener) {
+    checkInitialized();
+    this.metricsListener = metricsListener;
+  }
+
+  @Override
+  protected JSONObject getStats() throws JSONException {
+    return toJson(metricsListener.getMetrics());
+  }
+
+  static JSONObject toJson(Map<String, OperationMetrics> metrics) throws JSONException {
+    JSONObject result = new JSONObject();
+    for (Map.Entry<String, OperationMetrics> entry : metrics.entrySet()) {
+      OperationMetrics operation = entry.getValue();
+      JSONObject errors = new JSONObject();
+      for (Map.Entry<Integer, Long> error : operation.getErrorCounts().entrySet()) {
+        errors.put(String.valueOf(error.getKey()), error.getValue());
+      }
+      JSONObject json = new JSONObject();
+      json.put("count", operation.getCount());
+      json.put("errorCount", operation.getErrorCount());
+      json.put("errors", errors);
+      json.put("mean", operation.getMeanLatencyMillis());
+      json.put("p50", operation.getLatencyPercentileMillis(0.5));
+      json.put("p99", operation.getLatencyPercentileMillis(0.99));
+      json.put("p999", operation.getLatencyPercentileMillis(0.999));
+      json.put("max", operation.getMaxLatencyMillis());
+      json.put("totalItems", operation.getTotalItems());
+      json.put("maxItems", operation.getMaxItems());
+      result.put(entry.getKey(), json);
+    }
+    return result;
+  }
+}
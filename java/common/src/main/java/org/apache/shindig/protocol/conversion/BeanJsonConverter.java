@@ -59,7 +59,7 @@ import java.util.Set;
 public class BeanJsonConverter implements BeanConverter {
 
   // Only compute the filtered setters once per-class
-  private static final Map<Class<?>, Map<String, Method>> setters = new MapMaker().makeMap();
+  private static final Map<Class<?>, Map<String, Setter>> setters = new MapMaker().makeMap();
 
   private final Injector injector;
 
@@ -86,19 +86,19 @@ public class BeanJsonConverter implements BeanConverter {
     JsonSerializer.append(buf, pojo);
   }
 
-  private static Map<String, Method> getSetters(Class<?> type) {
-    Map<String, Method> methods = setters.get(type);
+  private static Map<String, Setter> getSetters(Class<?> type) {
+    Map<String, Setter> methods = setters.get(type);
 
     if (methods != null) {
       return methods;
     }
 
-    ImmutableMap.Builder<String,Method> builder = ImmutableMap.builder();
+    ImmutableMap.Builder<String, Setter> builder = ImmutableMap.builder();
     for (Method method : type.getMethods()) {
       if (method.getParameterTypes().length == 1) {
         String name = getPropertyName(method);
         if (name != null) {
-          builder.put(name, method);
+          builder.put(name, new Setter(method));
         }
       }
     }
@@ -261,12 +261,12 @@ public class BeanJsonConverter implements BeanConverter {
 
   private Object convertToClass(JSONObject in, Class<?> type) {
     Object out = injector.getInstance(type);
-    for (Map.Entry<String, Method> entry : getSetters(out.getClass()).entrySet()) {
+    for (Map.Entry<String, Setter> entry : getSetters(out.getClass()).entrySet()) {
       Object value = in.opt(entry.getKey());
       if (value != null) {
-        Method method = entry.getValue();
+        Setter setter = entry.getValue();
         try {
-          method.invoke(out, convertToObject(value, method.getGenericParameterTypes()[0]));
+          setter.method.invoke(out, convertToObject(value, setter.type));
         } catch (IllegalArgumentException e) {
           throw new RuntimeException(e);
         } catch (IllegalAccessException e) {
@@ -278,4 +278,23 @@ public class BeanJsonConverter implements BeanConverter {
     }
     return out;
   }
+
+  /**
+   * A setter with its parameter type resolved once, rather than on every conversion.
+   */
+  private static final class Setter {
+    private final Method method;
+    private final Type type;
+
+    private Setter(Method method) {
+      this.method = method;
+      this.type = method.getGenericParameterTypes()[0];
+      try {
+        // Skips the access check made by every invoke.
+        method.setAccessible(true);
+      } catch (SecurityException e) {
+        // Not allowed, keep using the checked call.
+      }
+    }
+  }
 }
@@ -35,6 +35,8 @@ import com.thoughtworks.xstream.mapper.DefaultMapper;
 import com.thoughtworks.xstream.mapper.Mapper;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -88,63 +90,58 @@ public class BeanXStreamConverter implements BeanConverter {
   }
 
   public String convertToString(Object pojo) {
-    return convertToXml(pojo);
+    StringWriter out = new StringWriter();
+    try {
+      write(pojo, out);
+    } catch (IOException e) {
+      // Can't happen writing to a StringWriter.
+      throw new RuntimeException(e);
+    }
+    String result = out.toString();
+
+    if (LOG.isLoggable(Level.FINE))
+      LOG.fine("Result is " + result);
+
+    return result;
   }
 
   /**
-   * convert an Object to XML, but make certain that only one of these is run on
-   * a thread at any one time. This only matters if this class is extended.
+   * Writes an Object as XML to a Writer, without materializing the document first. Only one of
+   * these is run on a thread at any one time. This only matters if this class is extended.
    *
-   * @param obj
-   * @return The XML as a string
+   * @param obj the object to convert
+   * @param out the writer to write the XML to
+   * @throws IOException if writing to out fails
    */
-  private String convertToXml(Object obj) {
-
+  protected void write(Object obj, Writer out) throws IOException {
     writerStack.reset();
+    XStreamConfiguration.ConverterSet converterSet = XStreamConfiguration.ConverterSet.DEFAULT;
+    boolean wrap = true;
     if (obj instanceof Map<?, ?>) {
       Map<?, ?> m = (Map<?, ?>) obj;
-      XStreamConfiguration.ConverterConfig cc = converterMap
-          .get(XStreamConfiguration.ConverterSet.MAP);
       if (m.size() == 1) {
-        Object s = m.values().iterator().next();
-        cc.mapper.setBaseObject(s); // thread safe method
-        String result = cc.xstream.toXML(s);
-
-        if (LOG.isLoggable(Level.FINE))
-          LOG.fine("Result is " + result);
-
-        return XML_DECL + "<response xmlns=\"http://ns.opensocial.org/2008/opensocial\">" + result + "</response>";
+        converterSet = XStreamConfiguration.ConverterSet.MAP;
+        obj = m.values().iterator().next();
       }
     } else if (obj instanceof RestfulCollection) {
-      XStreamConfiguration.ConverterConfig cc = converterMap
-          .get(XStreamConfiguration.ConverterSet.COLLECTION);
-      cc.mapper.setBaseObject(obj); // thread safe method
-      String result = cc.xstream.toXML(obj);
-
-      if (LOG.isLoggable(Level.FINE))
-        LOG.fine("Result is " + result);
-
-      return XML_DECL + result;
+      converterSet = XStreamConfiguration.ConverterSet.COLLECTION;
+      wrap = false;
     } else if (obj instanceof DataCollection) {
-      XStreamConfiguration.ConverterConfig cc = converterMap
-          .get(XStreamConfiguration.ConverterSet.MAP);
-      cc.mapper.setBaseObject(obj); // thread safe method
-      String result = cc.xstream.toXML(obj);
-
-      if (LOG.isLoggable(Level.FINE))
-        LOG.fine("Result is " + result);
-
-      return XML_DECL + result;
+      converterSet = XStreamConfiguration.ConverterSet.MAP;
+      wrap = false;
     }
-    XStreamConfiguration.ConverterConfig cc = converterMap
-        .get(XStreamConfiguration.ConverterSet.DEFAULT);
 
+    XStreamConfiguration.ConverterConfig cc = converterMap.get(converterSet);
     cc.mapper.setBaseObject(obj); // thread safe method
-    String result = cc.xstream.toXML(obj);
 
-    if (LOG.isLoggable(Level.FINE))
-      LOG.fine("Result is " + result);
-    return XML_DECL + "<response xmlns=\"http://ns.opensocial.org/2008/opensocial\">" + result + "</response>";
+    out.write(XML_DECL);
+    if (wrap) {
+      out.write("<response xmlns=\"http://ns.opensocial.org/2008/opensocial\">");
+    }
+    cc.xstream.toXML(obj, out);
+    if (wrap) {
+      out.write("</response>");
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -154,6 +151,10 @@ public class BeanXStreamConverter implements BeanConverter {
   }
 
   public void append(Appendable buf, Object pojo) throws IOException {
-    buf.append(convertToString(pojo));
+    if (buf instanceof Writer) {
+      write(pojo, (Writer) buf);
+    } else {
+      buf.append(convertToString(pojo));
+    }
   }
 }
@@ -22,6 +22,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.common.crypto.BasicBlobCrypter;
 import org.apache.shindig.common.crypto.BlobCrypter;
 import org.apache.shindig.common.util.CharsetUtil;
@@ -46,6 +48,7 @@ import java.util.Map;
 public class BlobCrypterSecurityTokenCodecTest {
 
   private BlobCrypterSecurityTokenCodec codec;
+  private CacheProvider cacheProvider;
   private final FakeTimeSource timeSource = new FakeTimeSource();
 
   @Before
@@ -67,7 +70,8 @@ public class BlobCrypterSecurityTokenCodecTest {
         return Lists.newArrayList("container", "example");
       }
     };
-    codec = new CodecWithLoadStubbedOut(config);
+    cacheProvider = new LruCacheProvider(10);
+    codec = new CodecWithLoadStubbedOut(config, cacheProvider);
   }
 
   protected String getContainerKey(String container) {
@@ -85,8 +89,8 @@ public class BlobCrypterSecurityTokenCodecTest {
    */
   private class CodecWithLoadStubbedOut extends BlobCrypterSecurityTokenCodec {
 
-    public CodecWithLoadStubbedOut(ContainerConfig config) {
-      super(config);
+    public CodecWithLoadStubbedOut(ContainerConfig config, CacheProvider cacheProvider) {
+      super(config, cacheProvider);
     }
 
     /**
@@ -184,6 +188,47 @@ public class BlobCrypterSecurityTokenCodecTest {
     }
   }
 
+  @Test
+  public void testCachedToken() throws Exception {
+    BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(
+        getBlobCrypter(getContainerKey("container")), "container", null);
+    t.setOwnerId("owner");
+    t.setViewerId("viewer");
+    String encrypted = t.encrypt();
+
+    SecurityToken t1 = codec.createToken(ImmutableMap.of(
+        SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted,
+        SecurityTokenCodec.ACTIVE_URL_NAME, "http://www.example.com/first"));
+    SecurityToken t2 = codec.createToken(ImmutableMap.of(
+        SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted,
+        SecurityTokenCodec.ACTIVE_URL_NAME, "http://www.example.com/second"));
+
+    assertEquals(1, cacheProvider.getStats()
+        .get(BlobCrypterSecurityTokenCodec.CACHE_NAME).getHitCount());
+    assertEquals("owner", t2.getOwnerId());
+    assertEquals("viewer", t2.getViewerId());
+    assertEquals("container.com", t2.getDomain());
+    assertEquals("http://www.example.com/first", t1.getActiveUrl());
+    assertEquals("http://www.example.com/second", t2.getActiveUrl());
+  }
+
+  @Test
+  public void testCachedTokenExpires() throws Exception {
+    BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(
+        getBlobCrypter(getContainerKey("container")), "container", null);
+    t.setOwnerId("owner");
+    String encrypted = t.encrypt();
+
+    codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+    timeSource.incrementSeconds(3600 + 181); // one hour plus clock skew
+    try {
+      codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+      fail("should have expired");
+    } catch (SecurityTokenException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Blob expired"));
+    }
+  }
+
   @Test
   public void testMalformed() throws Exception {
     try {
@@ -226,7 +271,7 @@ public class BlobCrypterSecurityTokenCodecTest {
     };
 
     try {
-      new CodecWithLoadStubbedOut(config);
+      new CodecWithLoadStubbedOut(config, cacheProvider);
       fail("Should have failed to load crypter");
     } catch (RuntimeException e) {
       assertTrue(e.getMessage(), e.getMessage().contains("Load failed"));
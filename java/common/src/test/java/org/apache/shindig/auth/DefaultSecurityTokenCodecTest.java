@@ -22,6 +22,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.cache.LruCacheProvider;
+import org.apache.shindig.common.crypto.BasicBlobCrypter;
 import org.apache.shindig.config.AbstractContainerConfig;
 import org.apache.shindig.config.ContainerConfigException;
 
@@ -29,6 +33,7 @@ import com.google.common.collect.Lists;
 
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -40,9 +45,15 @@ public class DefaultSecurityTokenCodecTest {
 
   private static class FakeContainerConfig extends AbstractContainerConfig {
     private final String tokenType;
+    private final String keyFile;
 
     public FakeContainerConfig(String tokenType) throws ContainerConfigException {
+      this(tokenType, null);
+    }
+
+    public FakeContainerConfig(String tokenType, String keyFile) throws ContainerConfigException {
       this.tokenType = tokenType;
+      this.keyFile = keyFile;
     }
 
     @Override
@@ -52,7 +63,7 @@ public class DefaultSecurityTokenCodecTest {
           return tokenType;
         }
       } else if ("gadgets.securityTokenKeyFile".equals(parameter)) {
-        return "container key file: " + container;
+        return keyFile != null ? keyFile : "container key file: " + container;
       }
       return null;
     }
@@ -63,10 +74,12 @@ public class DefaultSecurityTokenCodecTest {
     }
   }
 
+  private final CacheProvider cacheProvider = new LruCacheProvider(10);
+
   @Test
   public void testBasicDecoder() throws Exception {
     DefaultSecurityTokenCodec codec = new DefaultSecurityTokenCodec(
-        new FakeContainerConfig("insecure"));
+        new FakeContainerConfig("insecure"), cacheProvider);
     String token = "o:v:app:domain:appurl:12345:container";
     Map<String, String> parameters = Collections.singletonMap(
         SecurityTokenCodec.SECURITY_TOKEN_NAME, token);
@@ -80,7 +93,7 @@ public class DefaultSecurityTokenCodecTest {
   @Test
   public void testInvalidDecoder() throws Exception {
     try {
-      new DefaultSecurityTokenCodec(new FakeContainerConfig("garbage"));
+      new DefaultSecurityTokenCodec(new FakeContainerConfig("garbage"), cacheProvider);
       fail("Should have thrown");
     } catch (RuntimeException e) {
       assertTrue("exception should contain garbage: " + e, e.getMessage().contains("garbage"));
@@ -90,7 +103,7 @@ public class DefaultSecurityTokenCodecTest {
   @Test
   public void testNullDecoder() throws Exception {
     try {
-      new DefaultSecurityTokenCodec(new FakeContainerConfig(null));
+      new DefaultSecurityTokenCodec(new FakeContainerConfig(null), cacheProvider);
       fail("Should have thrown");
     } catch (RuntimeException e) {
       assertTrue("exception should contain null: " + e, e.getMessage().contains("null"));
@@ -101,11 +114,35 @@ public class DefaultSecurityTokenCodecTest {
   public void testRealDecoder() throws Exception {
     // Just verifies that "secure" tokens get routed to the right decoder class.
     try {
-      new DefaultSecurityTokenCodec(new FakeContainerConfig("secure"));
+      new DefaultSecurityTokenCodec(new FakeContainerConfig("secure"), cacheProvider);
       fail("Should have thrown");
     } catch (RuntimeException e) {
       assertTrue("root cause should have been FileNotFoundException: " + e,
           e.getMessage().contains("FileNotFoundException: container key file: somecontainer"));
     }
   }
+
+  @Test
+  public void testRealDecoderCachesTokens() throws Exception {
+    File keyFile = File.createTempFile("securityTokenKey", ".txt");
+    keyFile.deleteOnExit();
+    FileUtils.writeStringToFile(keyFile, "not a very secret key");
+    DefaultSecurityTokenCodec codec = new DefaultSecurityTokenCodec(
+        new FakeContainerConfig("secure", keyFile.getPath()), cacheProvider);
+
+    BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(
+        new BasicBlobCrypter(keyFile), "somecontainer", null);
+    t.setOwnerId("owner");
+    t.setViewerId("viewer");
+    Map<String, String> parameters = Collections.singletonMap(
+        SecurityTokenCodec.SECURITY_TOKEN_NAME, t.encrypt());
+
+    codec.createToken(parameters);
+    SecurityToken st = codec.createToken(parameters);
+
+    assertEquals("owner", st.getOwnerId());
+    assertEquals("viewer", st.getViewerId());
+    assertEquals(1, cacheProvider.getStats()
+        .get(BlobCrypterSecurityTokenCodec.CACHE_NAME).getHitCount());
+  }
 }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+/**
+ * Tests for JsonParser.
+ */
+public class JsonParserTest {
+
+  private static Object parse(String json, int maxDepth, long maxLength) throws Exception {
+    return new JsonParser(new StringReader(json), maxDepth, maxLength).parse();
+  }
+
+  private static Object parse(String json) throws Exception {
+    return parse(json, 0, 0);
+  }
+
+  private static void assertInvalid(String json, int maxDepth, long maxLength, String message)
+      throws Exception {
+    try {
+      parse(json, maxDepth, maxLength);
+      fail("Parsed invalid input " + json);
+    } catch (JSONException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+    }
+  }
+
+  @Test
+  public void parseObject() throws Exception {
+    JSONObject json = (JSONObject) parse(
+        " {\"string\":\"a\\\"b\\u00e9\", \"int\":5, \"long\":12345678901, \"double\":-2.5e1," +
+        "\"true\":true, \"null\":null, \"array\":[1,[2],{}]} ");
+    assertEquals("a\"b\u00e9", json.getString("string"));
+    assertEquals(5, json.get("int"));
+    assertEquals(12345678901L, json.get("long"));
+    assertEquals(-25.0, json.getDouble("double"), 0);
+    assertEquals(Boolean.TRUE, json.get("true"));
+    assertSame(JSONObject.NULL, json.get("null"));
+    JSONArray array = json.getJSONArray("array");
+    assertEquals(3, array.length());
+    assertEquals(2, array.getJSONArray(1).get(0));
+    assertEquals(0, array.getJSONObject(2).length());
+  }
+
+  @Test
+  public void parseLenientSyntax() throws Exception {
+    JSONArray json = (JSONArray) parse("[{method:test.get,'id':'1',image-ref:@self},]");
+    assertEquals(1, json.length());
+    JSONObject rpc = json.getJSONObject(0);
+    assertEquals("test.get", rpc.getString("method"));
+    assertEquals("1", rpc.getString("id"));
+    assertEquals("@self", rpc.getString("image-ref"));
+  }
+
+  @Test
+  public void parseLongString() throws Exception {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      value.append((char) ('a' + i % 26));
+    }
+    assertEquals(value.toString(), parse('"' + value.toString() + '"'));
+  }
+
+  @Test
+  public void rejectDeepNesting() throws Exception {
+    assertEquals(1, ((JSONArray) parse("[[1]]", 2, 0)).length());
+    assertInvalid("[[[1]]]", 2, 0, "Nesting is deeper than 2 levels");
+  }
+
+  @Test
+  public void rejectLongInput() throws Exception {
+    assertEquals("abc", parse("'abc'", 0, 5));
+    assertInvalid("'abcd'", 0, 5, "Input is longer than 5 characters");
+  }
+
+  @Test
+  public void rejectMalformedInput() throws Exception {
+    assertInvalid("", 0, 0, "Unexpected end of input");
+    assertInvalid("{\"a\":1", 0, 0, "Expected a ',' or '}'");
+    assertInvalid("{\"a\" 1}", 0, 0, "Expected a ':'");
+    assertInvalid("[1}", 0, 0, "Expected a ',' or ']'");
+    assertInvalid("\"abc", 0, 0, "Unterminated string");
+    assertInvalid("\"\\x\"", 0, 0, "Illegal escape");
+    assertInvalid("{} {}", 0, 0, "Unexpected content after the value");
+  }
+}
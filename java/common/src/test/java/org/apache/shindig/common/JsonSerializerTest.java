@@ -168,6 +168,23 @@ public class JsonSerializerTest {
         JsonSerializer.serialize(pojo));
   }
 
+  public static class ViewerPojo {
+    public boolean getIsOwner() {
+      return false;
+    }
+
+    public boolean getIsViewer() {
+      return true;
+    }
+  }
+
+  @Test
+  public void serializePojoOmitsFalseOwnerFlag() throws Exception {
+    // Serialized twice to cover both the first and the cached serializer.
+    assertJsonEquals("{isViewer:true}", JsonSerializer.serialize(new ViewerPojo()));
+    assertJsonEquals("{isViewer:true}", JsonSerializer.serialize(new ViewerPojo()));
+  }
+
   @Test
   public void serializeMixedObjects() throws Exception {
     Map<String, ?> map = ImmutableMap.of(
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Benchmarks concurrent hit-heavy access to {@link LruCache} against {@link TinyLfuCache}.
+ *
+ * Each thread replays a skewed key stream (most requests go to a small set of hot keys, like
+ * gadget specs on a portal page), populating the cache on every miss the way the spec and
+ * http caches do. Run as a standalone program:
+ *
+ * CacheContentionBenchmark [capacity] [operations-per-thread]
+ */
+public class CacheContentionBenchmark {
+  private static final int[] THREAD_COUNTS = { 1, 8, 32 };
+  private static final int KEY_SPACE_FACTOR = 4;
+
+  private final int capacity;
+  private final int operations;
+  private boolean warmup;
+
+  private CacheContentionBenchmark(int capacity, int operations) throws Exception {
+    this.capacity = capacity;
+    this.operations = operations;
+
+    warmup = true;
+    runAll();
+
+    //Sleep to let JIT kick in
+    Thread.sleep(5000L);
+    warmup = false;
+    runAll();
+  }
+
+  private void runAll() throws Exception {
+    for (int threads : THREAD_COUNTS) {
+      output("Threads: " + threads + "-----------------");
+      time("LruCache", new LruCache<Integer, Integer>(capacity), threads);
+      time("TinyLfuCache", new TinyLfuCache<Integer, Integer>(capacity), threads);
+    }
+  }
+
+  private void output(String string) {
+    if (!warmup) {
+      System.out.println(string);
+    }
+  }
+
+  private void time(String name, final Cache<Integer, Integer> cache, int threads)
+      throws InterruptedException {
+    final int[][] keys = new int[threads][];
+    for (int i = 0; i < threads; ++i) {
+      keys[i] = skewedKeys(new Random(i), operations, capacity * KEY_SPACE_FACTOR);
+    }
+    final long[] hits = new long[threads];
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; ++i) {
+      final int thread = i;
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            int[] stream = keys[thread];
+            for (int j = 0; j < stream.length; ++j) {
+              Integer key = stream[j];
+              if (cache.getElement(key) != null) {
+                hits[thread]++;
+              } else {
+                cache.addElement(key, key);
+              }
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1000000);
+
+    long totalOps = (long) threads * operations;
+    long totalHits = 0;
+    for (long hit : hits) {
+      totalHits += hit;
+    }
+    output(name + " [" + elapsedMillis + " ms total: " + (totalOps / elapsedMillis) +
+        " ops/ms, hit ratio " + ((double) totalHits) / totalOps + ']');
+  }
+
+  /**
+   * Generates keys following an approximate Zipf distribution over the key space.
+   */
+  private static int[] skewedKeys(Random random, int count, int keySpace) {
+    int[] keys = new int[count];
+    double logSpace = Math.log(keySpace);
+    for (int i = 0; i < count; ++i) {
+      keys[i] = (int) Math.exp(random.nextDouble() * logSpace) - 1;
+    }
+    return keys;
+  }
+
+  public static void main(String[] args) {
+    int capacity = 1000;
+    int operations = 1000000;
+    try {
+      if (args.length > 0) {
+        capacity = Integer.parseInt(args[0]);
+      }
+      if (args.length > 1) {
+        operations = Integer.parseInt(args[1]);
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Args: [capacity] [operations-per-thread]");
+      System.exit(1);
+    }
+    try {
+      new CacheContentionBenchmark(capacity, operations);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.shindig.common.cache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -81,4 +82,15 @@ public class LruCacheProviderTest {
     assertEquals(10, getCache(provider, "foo").capacity);
   }
 
+  @Test
+  public void statsForCreatedCaches() throws Exception {
+    LruCacheProvider provider = new LruCacheProvider(10);
+    Cache<String, String> cache = provider.createCache("foo");
+    cache.addElement("key", "value");
+    cache.getElement("key");
+    provider.createCache("bar");
+    assertEquals(2, provider.getStats().size());
+    assertEquals(1, provider.getStats().get("foo").getHitCount());
+    assertTrue(provider.getStats().containsKey("bar"));
+  }
 }
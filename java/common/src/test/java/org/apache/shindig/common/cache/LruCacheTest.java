@@ -50,4 +50,26 @@ public class LruCacheTest {
     assertEquals(TEST_CAPACITY, cache.getCapacity());
     assertNull(cache.getElement("0"));
   }
+
+  @Test
+  public void statsRecorded() {
+    for (int i = 0; i < TEST_CAPACITY + 1; ++i) {
+      cache.addElement(Integer.toString(i), Integer.toString(i));
+    }
+    cache.getElement("0");
+    cache.getElement("1");
+    CacheStats stats = cache.getStats();
+    assertEquals(1, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(1, stats.getEvictionCount());
+    assertEquals(TEST_CAPACITY + 1, stats.getPutCount());
+    assertEquals(0.5, stats.getHitRatio(), 0.001);
+    assertEquals(1.0, stats.getAverageEntryWeight(), 0.001);
+  }
+
+  @Test
+  public void noHitsWithoutLookups() {
+    cache.addElement("0", "0");
+    assertEquals(0.0, cache.getStats().getHitRatio(), 0.001);
+  }
 }
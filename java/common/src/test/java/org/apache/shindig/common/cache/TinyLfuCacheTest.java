@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class TinyLfuCacheTest {
+  private static final int TEST_CAPACITY = 2;
+
+  private final TinyLfuCache<String, String> cache
+      = new TinyLfuCache<String, String>(TEST_CAPACITY);
+
+  @Test
+  public void normalCapacityOk() {
+    for (int i = 0; i < TEST_CAPACITY; ++i) {
+      cache.addElement(Integer.toString(i), Integer.toString(i));
+    }
+    assertEquals(TEST_CAPACITY, cache.getSize());
+    assertEquals(TEST_CAPACITY, cache.getCapacity());
+    assertEquals("0", cache.getElement("0"));
+    assertEquals("1", cache.getElement("1"));
+  }
+
+  @Test
+  public void exceededCapacityBounded() {
+    for (int i = 0; i < TEST_CAPACITY + 10; ++i) {
+      cache.addElement(Integer.toString(i), Integer.toString(i));
+    }
+    assertEquals(TEST_CAPACITY, cache.getSize());
+    assertEquals(TEST_CAPACITY, cache.getCapacity());
+  }
+
+  @Test
+  public void replaceExisting() {
+    cache.addElement("foo", "bar");
+    cache.addElement("foo", "baz");
+    assertEquals("baz", cache.getElement("foo"));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void removeElement() {
+    for (int i = 0; i < TEST_CAPACITY; ++i) {
+      cache.addElement(Integer.toString(i), Integer.toString(i));
+    }
+    assertEquals("0", cache.removeElement("0"));
+    assertEquals("1", cache.removeElement("1"));
+    assertNull(cache.getElement("0"));
+    assertNull(cache.getElement("1"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void zeroCapacityStoresNothing() {
+    TinyLfuCache<String, String> empty = new TinyLfuCache<String, String>(0);
+    empty.addElement("foo", "bar");
+    assertNull(empty.getElement("foo"));
+    assertEquals(0, empty.getSize());
+  }
+
+  @Test
+  public void frequentEntrySurvivesScan() {
+    TinyLfuCache<String, String> large = new TinyLfuCache<String, String>(1000);
+    large.addElement("hot", "value");
+    for (int i = 0; i < 10; ++i) {
+      large.getElement("hot");
+    }
+    for (int i = 0; i < 10000; ++i) {
+      large.addElement("scan" + i, "value");
+    }
+    assertNotNull(large.getElement("hot"));
+    assertEquals(1000, large.getSize());
+  }
+
+  @Test
+  public void statsRecorded() {
+    for (int i = 0; i < TEST_CAPACITY + 1; ++i) {
+      cache.addElement(Integer.toString(i), Integer.toString(i));
+    }
+    cache.getElement("0");
+    cache.getElement("foo");
+    CacheStats stats = cache.getStats();
+    assertEquals(1, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(1, stats.getEvictionCount());
+    assertEquals(TEST_CAPACITY + 1, stats.getPutCount());
+  }
+}
@@ -50,5 +50,9 @@ public class EhCacheCacheProviderTest {
     Assert.assertNull(cache.getElement("test"));
     Assert.assertEquals(cache.getCapacity(), cache2.getCapacity());
     Assert.assertEquals(cache.getSize(), cache2.getSize());
+    Assert.assertEquals(1, cache.getStats().getHitCount());
+    Assert.assertEquals(2, cache.getStats().getMissCount());
+    Assert.assertEquals(1, cache.getStats().getPutCount());
+    Assert.assertTrue(defaultProvider.getStats().containsKey("testcache"));
   }
 }
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.crypto;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Benchmarks wrapping and unwrapping security token sized blobs with {@link BasicBlobCrypter}
+ * against {@link PooledBlobCrypter}. Run as a standalone program:
+ *
+ * BlobCrypterBenchmark [operations-per-thread]
+ */
+public class BlobCrypterBenchmark {
+  private static final int[] THREAD_COUNTS = { 1, 8, 32 };
+  private static final byte[] KEY = "0123456789abcdef0123".getBytes();
+
+  // The fields of a typical gadget security token.
+  private static final Map<String, String> TOKEN = ImmutableMap.<String, String>builder()
+      .put("o", "john.doe")
+      .put("v", "jane.doe")
+      .put("a", "http://www.example.com/gadgets/my-gadget.xml")
+      .put("d", "default")
+      .put("u", "http://www.example.com/gadgets/my-gadget.xml")
+      .put("m", "12345")
+      .put("c", "default")
+      .build();
+
+  private final int operations;
+  private boolean warmup;
+
+  private BlobCrypterBenchmark(int operations) throws Exception {
+    this.operations = operations;
+
+    warmup = true;
+    runAll();
+
+    //Sleep to let JIT kick in
+    Thread.sleep(5000L);
+    warmup = false;
+    runAll();
+  }
+
+  private void runAll() throws Exception {
+    for (int threads : THREAD_COUNTS) {
+      output("Threads: " + threads + "-----------------");
+      time("BasicBlobCrypter", new BasicBlobCrypter(KEY), threads);
+      time("PooledBlobCrypter", new PooledBlobCrypter(KEY), threads);
+    }
+  }
+
+  private void output(String string) {
+    if (!warmup) {
+      System.out.println(string);
+    }
+  }
+
+  private void time(String name, final BlobCrypter crypter, int threads) throws Exception {
+    final String blob = crypter.wrap(TOKEN);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; ++i) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int j = 0; j < operations; ++j) {
+              crypter.wrap(TOKEN);
+              crypter.unwrap(blob, 3600);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (BlobCrypterException e) {
+            throw new RuntimeException(e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1000000);
+
+    long totalOps = (long) threads * operations;
+    output(name + " [" + elapsedMillis + " ms total: " + (totalOps / elapsedMillis) +
+        " wrap+unwrap/ms]");
+  }
+
+  public static void main(String[] args) {
+    int operations = 100000;
+    try {
+      if (args.length > 0) {
+        operations = Integer.parseInt(args[0]);
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Args: [operations-per-thread]");
+      System.exit(1);
+    }
+    try {
+      new BlobCrypterBenchmark(operations);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}
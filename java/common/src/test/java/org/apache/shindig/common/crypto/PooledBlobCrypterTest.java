@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.crypto;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import org.apache.shindig.common.util.FakeTimeSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class PooledBlobCrypterTest {
+  private static final byte[] KEY = "0123456789abcdef".getBytes();
+
+  private final PooledBlobCrypter crypter;
+  private final BasicBlobCrypter basic;
+  private final FakeTimeSource timeSource;
+
+  public PooledBlobCrypterTest() {
+    timeSource = new FakeTimeSource();
+    crypter = new PooledBlobCrypter(KEY);
+    crypter.timeSource = timeSource;
+    basic = new BasicBlobCrypter(KEY);
+    basic.timeSource = timeSource;
+  }
+
+  @Test
+  public void testEncryptAndDecrypt() throws Exception {
+    checkString("");
+    checkString("a");
+    checkString("ab");
+    checkString("dfkljdasklsdfklasdjfklajsdfkljasdklfjasdkljfaskldjf");
+    checkString(Crypto.getRandomString(500));
+    checkString("foo bar baz");
+    checkString("foo\nbar\nbaz");
+    checkString("a=b&c=d%20e+f");
+    checkString(".-*_~!'()/?:@");
+    checkString("\u00e9t\u00e9 \u4e2d\u6587 \ud834\udd1e");
+  }
+
+  private void checkString(String string) throws Exception {
+    Map<String, String> in = ImmutableMap.of("a", string, "b&=", string);
+
+    assertEquals(in, withoutTimestamp(crypter.unwrap(crypter.wrap(in), 0)));
+    assertEquals(in, withoutTimestamp(basic.unwrap(crypter.wrap(in), 0)));
+    assertEquals(in, withoutTimestamp(crypter.unwrap(basic.wrap(in), 0)));
+  }
+
+  private static Map<String, String> withoutTimestamp(Map<String, String> out) {
+    Map<String, String> copy = Maps.newHashMap(out);
+    copy.remove(BasicBlobCrypter.TIMESTAMP_KEY);
+    return copy;
+  }
+
+  @Test
+  public void testSameSizeAsBasic() throws Exception {
+    Map<String, String> in = ImmutableMap.of("o", "owner", "v", "viewer", "g", "gadget");
+    assertEquals(basic.wrap(in).length(), crypter.wrap(in).length());
+  }
+
+  @Test
+  public void testDecryptGarbage() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; ++i) {
+      assertThrowsBlobCrypterException(sb.toString());
+      sb.append('a');
+    }
+    assertThrowsBlobCrypterException("%%%%\u00ff\u4e2d");
+  }
+
+  private void assertThrowsBlobCrypterException(String in) {
+    try {
+      crypter.unwrap(in, 1000);
+      fail("Should have thrown BlobCrypterException for input " + in);
+    } catch (BlobCrypterException e) {
+      // Good.
+    }
+  }
+
+  @Test
+  public void testManyEntries() throws Exception {
+    Map<String, String> in = Maps.newHashMap();
+    for (int i = 0; i < 1000; i++) {
+      in.put(Integer.toString(i), Integer.toString(i));
+    }
+    Map<String, String> out = crypter.unwrap(crypter.wrap(in), 0);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(Integer.toString(i), out.get(Integer.toString(i)));
+    }
+  }
+
+  @Test
+  public void testLargeValueAfterSmall() throws Exception {
+    String large = Crypto.getRandomString(100000);
+    checkString(large);
+    checkString("small");
+  }
+
+  @Test
+  public void testTimeStamping() throws Exception {
+    long start = 1201917724000L;
+    long skew = 180000;
+    int maxAge = 300; // 5 minutes
+    int realAge = 600; // 10 minutes
+    try {
+      timeSource.setCurrentTimeMillis(start);
+      String blob = crypter.wrap(ImmutableMap.of("a", "b"));
+      timeSource.incrementSeconds(realAge);
+      crypter.unwrap(blob, maxAge);
+      fail("Blob should have expired");
+    } catch (BlobExpiredException e) {
+      assertEquals(start - skew, e.minDate.getTime());
+      assertEquals(start + realAge * 1000L, e.used.getTime());
+      assertEquals(start + skew + maxAge * 1000L, e.maxDate.getTime());
+    }
+  }
+
+  @Test(expected=BlobCrypterException.class)
+  public void testTamperIV() throws Exception {
+    crypter.unwrap(tamper(0), 30);
+  }
+
+  @Test(expected=BlobCrypterException.class)
+  public void testTamperData() throws Exception {
+    crypter.unwrap(tamper(30), 30);
+  }
+
+  @Test(expected=BlobCrypterException.class)
+  public void testTamperMac() throws Exception {
+    crypter.unwrap(tamper(-1), 30);
+  }
+
+  private String tamper(int index) throws Exception {
+    String blob = crypter.wrap(ImmutableMap.of("a", "b"));
+    byte[] blobBytes = Base64.decodeBase64(blob.getBytes());
+    blobBytes[index < 0 ? blobBytes.length + index : index] ^= 0x01;
+    return new String(Base64.encodeBase64(blobBytes));
+  }
+
+  @Test(expected=BlobCrypterException.class)
+  public void testBadKey() throws Exception {
+    BlobCrypter alt = new PooledBlobCrypter("1123456789abcdef".getBytes());
+    alt.unwrap(crypter.wrap(ImmutableMap.of("a", "b")), 30);
+  }
+}
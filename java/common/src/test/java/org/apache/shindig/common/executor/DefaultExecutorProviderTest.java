@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.shindig.common.executor.BoundedExecutor.RejectionPolicy;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class DefaultExecutorProviderTest {
+  private final CountDownLatch release = new CountDownLatch(1);
+  private DefaultExecutorProvider provider;
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    if (provider != null) {
+      provider.shutdown();
+    }
+  }
+
+  private DefaultExecutorProvider createProvider(final String name, final String threads,
+      final String queueSize, final String rejection) {
+    Module module = new AbstractModule() {
+      @Override
+      public void configure() {
+        binder().bindConstant().annotatedWith(Names.named("shindig.executor." + name + ".threads"))
+            .to(threads);
+        binder().bindConstant()
+            .annotatedWith(Names.named("shindig.executor." + name + ".queue-size")).to(queueSize);
+        binder().bindConstant()
+            .annotatedWith(Names.named("shindig.executor." + name + ".rejection")).to(rejection);
+      }
+    };
+    return new DefaultExecutorProvider(Guice.createInjector(module));
+  }
+
+  private final Runnable blocker = new Runnable() {
+    public void run() {
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  };
+
+  @Test
+  public void sameExecutorForSameName() {
+    provider = new DefaultExecutorProvider();
+    assertSame(provider.getExecutor("foo"), provider.getExecutor("foo"));
+    assertTrue(provider.getExecutor("foo") != provider.getExecutor("bar"));
+  }
+
+  @Test
+  public void defaultsUsedWithoutConfiguration() {
+    provider = new DefaultExecutorProvider();
+    provider.setDefaultThreads(3);
+    provider.setDefaultQueueSize(7);
+    provider.getExecutor("foo");
+    ExecutorStats stats = provider.getStats().get("foo");
+    assertEquals(3, stats.getMaximumPoolSize());
+    assertEquals(7, stats.getQueueCapacity());
+  }
+
+  @Test
+  public void configuredPool() {
+    provider = createProvider("foo", "2", "5", "abort");
+    provider.getExecutor("foo");
+    ExecutorStats stats = provider.getStats().get("foo");
+    assertEquals(2, stats.getMaximumPoolSize());
+    assertEquals(5, stats.getQueueCapacity());
+  }
+
+  @Test
+  public void fullPoolRejectsAndCounts() throws Exception {
+    provider = createProvider("foo", "1", "1", "abort");
+    ExecutorService executor = provider.getExecutor("foo");
+    executor.execute(blocker);
+    executor.execute(blocker);
+    try {
+      executor.execute(blocker);
+      fail("Expected the task to be rejected");
+    } catch (RejectedExecutionException e) {
+      // Expected.
+    }
+    ExecutorStats stats = provider.getStats().get("foo");
+    assertEquals(1, stats.getQueuedCount());
+    assertEquals(1, stats.getRejectedCount());
+  }
+
+  @Test
+  public void callerRunsWhenFull() throws Exception {
+    provider = createProvider("foo", "1", "0", "caller-runs");
+    ExecutorService executor = provider.getExecutor("foo");
+    executor.execute(blocker);
+    final Thread caller = Thread.currentThread();
+    final Thread[] ranOn = new Thread[1];
+    executor.execute(new Runnable() {
+      public void run() {
+        ranOn[0] = Thread.currentThread();
+      }
+    });
+    assertSame(caller, ranOn[0]);
+    assertEquals(1, provider.getStats().get("foo").getRejectedCount());
+  }
+
+  @Test
+  public void completedTasksCounted() throws Exception {
+    provider = new DefaultExecutorProvider();
+    ExecutorService executor = provider.getExecutor("foo");
+    executor.submit(new Runnable() {
+      public void run() {
+      }
+    }).get();
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+    assertEquals(1, provider.getStats().get("foo").getCompletedCount());
+  }
+
+  @Test
+  public void parseRejectionPolicy() {
+    assertSame(RejectionPolicy.CALLER_RUNS, RejectionPolicy.parse("caller-runs"));
+    assertSame(RejectionPolicy.ABORT, RejectionPolicy.parse(" ABORT"));
+    assertSame(RejectionPolicy.DISCARD, RejectionPolicy.parse("discard"));
+    assertNull(RejectionPolicy.parse("wait"));
+  }
+
+  @Test
+  public void virtualThreadsFallBackToPlatformThreads() throws Exception {
+    provider = new DefaultExecutorProvider();
+    provider.setVirtualThreads(true);
+    ExecutorService executor = provider.getExecutor("foo");
+    final String[] name = new String[1];
+    executor.submit(new Runnable() {
+      public void run() {
+        name[0] = Thread.currentThread().getName();
+      }
+    }).get();
+    assertTrue(name[0], name[0].startsWith("shindig-foo-"));
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests SingleFlight.
+ */
+public class SingleFlightTest extends Assert {
+  private final SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+  private final AtomicInteger loads = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final CountDownLatch started = new CountDownLatch(1);
+
+  private final Callable<String> blockingLoader = new Callable<String>() {
+    public String call() throws Exception {
+      loads.incrementAndGet();
+      started.countDown();
+      release.await();
+      return "value";
+    }
+  };
+
+  private final Callable<String> countingLoader = new Callable<String>() {
+    public String call() {
+      return "value" + loads.incrementAndGet();
+    }
+  };
+
+  private static class ResultThread extends Thread {
+    private final SingleFlight<String, String> singleFlight;
+    private final Callable<String> loader;
+    private final long timeoutMillis;
+    volatile String result;
+
+    ResultThread(SingleFlight<String, String> singleFlight, Callable<String> loader,
+        long timeoutMillis) {
+      this.singleFlight = singleFlight;
+      this.loader = loader;
+      this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (timeoutMillis > 0) {
+          result = singleFlight.execute("key", loader, timeoutMillis, TimeUnit.MILLISECONDS);
+        } else {
+          result = singleFlight.execute("key", loader);
+        }
+      } catch (Exception e) {
+        result = e.toString();
+      }
+    }
+  }
+
+  private static void awaitBlocked(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      Thread.sleep(5);
+    }
+  }
+
+  @Test
+  public void concurrentCallsShareOneLoad() throws Exception {
+    ResultThread leader = new ResultThread(singleFlight, blockingLoader, 0);
+    leader.start();
+    started.await();
+
+    ResultThread follower = new ResultThread(singleFlight, blockingLoader, 0);
+    follower.start();
+    awaitBlocked(follower);
+
+    release.countDown();
+    leader.join();
+    follower.join();
+
+    assertEquals(1, loads.get());
+    assertEquals("value", leader.result);
+    assertEquals("value", follower.result);
+    assertFalse(singleFlight.isInFlight("key"));
+  }
+
+  @Test
+  public void sequentialCallsLoadAgain() throws Exception {
+    assertEquals("value1", singleFlight.execute("key", countingLoader));
+    assertEquals("value2", singleFlight.execute("key", countingLoader));
+  }
+
+  @Test
+  public void followerFallsBackAfterTimeout() throws Exception {
+    ResultThread leader = new ResultThread(singleFlight, blockingLoader, 0);
+    leader.start();
+    started.await();
+
+    assertEquals("value2", singleFlight.execute("key", countingLoader, 1, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+    leader.join();
+    assertEquals("value", leader.result);
+  }
+
+  @Test
+  public void failureIsShared() throws Exception {
+    try {
+      singleFlight.execute("key", new Callable<String>() {
+        public String call() {
+          throw new IllegalStateException("broken");
+        }
+      });
+      fail("Should have thrown");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    assertFalse(singleFlight.isInFlight("key"));
+  }
+
+  @Test
+  public void submitQueuedOnce() throws Exception {
+    final Runnable[] queued = new Runnable[1];
+    Executor executor = new Executor() {
+      public void execute(Runnable command) {
+        assertNull(queued[0]);
+        queued[0] = command;
+      }
+    };
+    assertTrue(singleFlight.submit("key", countingLoader, executor));
+    assertFalse(singleFlight.submit("key", countingLoader, executor));
+    assertTrue(singleFlight.isInFlight("key"));
+
+    queued[0].run();
+    assertEquals(1, loads.get());
+    assertFalse(singleFlight.isInFlight("key"));
+  }
+}
@@ -22,9 +22,11 @@ package org.apache.shindig.protocol;
 import org.apache.shindig.protocol.conversion.BeanJsonConverter;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Guice;
 
 import org.json.JSONObject;
@@ -33,9 +35,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -116,6 +122,137 @@ public class DefaultHandlerRegistryTest extends Assert {
     }
   }
 
+  @Service(name = "route")
+  public static class RoutingHandler {
+    @Operation(httpMethods = "GET", path = "/{x}/b/{y}")
+    public String xb(RequestItem req) {
+      return "xb " + req.getParameter("x") + ' ' + req.getParameter("y");
+    }
+
+    @Operation(httpMethods = "GET", path = "/a/{z}/c/d")
+    public String acd(RequestItem req) {
+      return "acd " + req.getParameter("z");
+    }
+  }
+
+  @Test
+  public void testRestPathWithMostConstantsWins() throws Exception {
+    registry.addHandlers(Sets.<Object>newHashSet(new RoutingHandler()));
+
+    // Both paths match, the one with more constant parts is used even though the other one
+    // matches a constant earlier.
+    RestHandler handler = registry.getRestHandler("/route/a/b/c/d", "GET");
+    assertEquals("acd b",
+        handler.execute(Maps.<String, String[]>newHashMap(), null, null, converter).get());
+
+    handler = registry.getRestHandler("/route/a/b/e", "GET");
+    assertEquals("xb a e",
+        handler.execute(Maps.<String, String[]>newHashMap(), null, null, converter).get());
+
+    // Handlers added earlier remain routable.
+    assertEquals(TestHandler.GET_RESPONSE, registry.getRestHandler("/test", "GET")
+        .execute(Maps.<String, String[]>newHashMap(), null, null, converter).get());
+  }
+
+  @Service(name = "async")
+  public static class AsyncHandler {
+    final FutureTask<List<String>> task = new FutureTask<List<String>>(
+        new Callable<List<String>>() {
+          public List<String> call() {
+            return Lists.newArrayList("a", "b");
+          }
+        });
+
+    final ListenableTask<String> listenableTask = new ListenableTask<String>(
+        new Callable<String>() {
+          public String call() {
+            return "c";
+          }
+        });
+
+    @Operation(httpMethods = "GET")
+    public Future<?> get(RequestItem req) {
+      return task;
+    }
+
+    @Operation(httpMethods = "POST")
+    public Future<?> create(RequestItem req) {
+      return listenableTask;
+    }
+  }
+
+  /** A task that runs its listeners when it completes. */
+  static class ListenableTask<V> extends FutureTask<V> implements ListenableFuture<V> {
+    private final List<Runnable> listeners = Lists.newArrayList();
+
+    ListenableTask(Callable<V> callable) {
+      super(callable);
+    }
+
+    public synchronized void addListener(Runnable listener, Executor executor) {
+      if (isDone()) {
+        executor.execute(listener);
+      } else {
+        listeners.add(listener);
+      }
+    }
+
+    @Override
+    protected synchronized void done() {
+      for (Runnable listener : listeners) {
+        listener.run();
+      }
+    }
+  }
+
+  @Test
+  public void testCompletionOfAsyncHandlerIsReported() throws Exception {
+    HandlerMetricsListener metrics = new HandlerMetricsListener();
+    registry = new DefaultHandlerRegistry(null, converter, metrics);
+    AsyncHandler asyncHandler = new AsyncHandler();
+    registry.addHandlers(Sets.<Object>newHashSet(asyncHandler, new TestHandler()));
+
+    Future<?> future = registry.getRestHandler("/async", "GET")
+        .execute(Maps.<String, String[]>newHashMap(), null, null, converter);
+    assertFalse(metrics.getMetrics().containsKey("async.get"));
+
+    asyncHandler.task.run();
+    future.get();
+    future.get();
+    OperationMetrics async = metrics.getMetrics().get("async.get");
+    assertEquals(1, async.getCount());
+    assertEquals(0, async.getErrorCount());
+    assertEquals(2, async.getTotalItems());
+
+    try {
+      registry.getRestHandler("/test", "DELETE")
+          .execute(Maps.<String, String[]>newHashMap(), null, null, converter).get();
+      fail("Expected an exception");
+    } catch (ExecutionException e) {
+      // Expected
+    }
+    OperationMetrics failed = metrics.getMetrics().get("test.futureException");
+    assertEquals(1, failed.getErrorCount());
+    assertEquals(Long.valueOf(1), failed.getErrorCounts().get(HttpServletResponse.SC_BAD_REQUEST));
+  }
+
+  @Test
+  public void testCompletionOfListenableHandlerIsReportedWithoutGet() throws Exception {
+    HandlerMetricsListener metrics = new HandlerMetricsListener();
+    registry = new DefaultHandlerRegistry(null, converter, metrics);
+    AsyncHandler asyncHandler = new AsyncHandler();
+    registry.addHandlers(Sets.<Object>newHashSet(asyncHandler, new TestHandler()));
+
+    registry.getRestHandler("/async", "POST")
+        .execute(Maps.<String, String[]>newHashMap(), null, null, converter);
+    assertFalse(metrics.getMetrics().containsKey("async.create"));
+
+    asyncHandler.listenableTask.run();
+    OperationMetrics async = metrics.getMetrics().get("async.create");
+    assertEquals(1, async.getCount());
+    assertEquals(0, async.getErrorCount());
+  }
+
   @Test
   public void testNonFutureDispatch() throws Exception {
     // Test calling a handler method which does not return a future
@@ -209,19 +346,20 @@ public class DefaultHandlerRegistryTest extends Assert {
 
   @Test
   public void testRestPath() {
-    DefaultHandlerRegistry.RestPath restPath =
-        new DefaultHandlerRegistry.RestPath("/service/const1/{p1}/{p2}+/const2/{p3}", null);
+    DefaultHandlerRegistry.RouteNode root = new DefaultHandlerRegistry.RouteNode();
+    root.add(new DefaultHandlerRegistry.RestPath("/service/const1/{p1}/{p2}+/const2/{p3}", null));
+    root.freeze();
     DefaultHandlerRegistry.RestInvocationWrapper wrapper =
-        restPath.accept("service/const1/a/b,c/const2/d".split("/"));
+        DefaultHandlerRegistry.route(root, "service/const1/a/b,c/const2/d");
     assertArrayEquals(wrapper.pathParams.get("p1"), new String[]{"a"});
     assertArrayEquals(wrapper.pathParams.get("p2"), new String[]{"b","c"});
     assertArrayEquals(wrapper.pathParams.get("p3"), new String[]{"d"});
-    wrapper = restPath.accept("service/const1/a/b/const2".split("/"));
+    wrapper = DefaultHandlerRegistry.route(root, "service/const1/a/b/const2");
     assertArrayEquals(wrapper.pathParams.get("p1"), new String[]{"a"});
     assertArrayEquals(wrapper.pathParams.get("p2"), new String[]{"b"});
     assertNull(wrapper.pathParams.get("p3"));
-    assertNull(restPath.accept("service/const1/{p1}/{p2}+".split("/")));
-    assertNull(restPath.accept("service/constmiss/{p1}/{p2}+/const2".split("/")));
+    assertNull(DefaultHandlerRegistry.route(root, "service/const1/{p1}/{p2}+"));
+    assertNull(DefaultHandlerRegistry.route(root, "service/constmiss/{p1}/{p2}+/const2"));
   }
 
   @Test
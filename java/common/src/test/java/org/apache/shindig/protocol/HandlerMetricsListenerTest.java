@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.protocol;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tests HandlerMetricsListener
+ */
+public class HandlerMetricsListenerTest extends Assert {
+  private static final long MILLIS = 1000000L;
+
+  private HandlerMetricsListener listener;
+
+  @Before
+  public void setUp() {
+    listener = new HandlerMetricsListener();
+  }
+
+  @Test
+  public void testLatencyPercentiles() {
+    for (int i = 1; i <= 1000; ++i) {
+      listener.completed("people", "get", null, i * MILLIS, "person", null);
+    }
+    OperationMetrics metrics = listener.getMetrics().get("people.get");
+    assertEquals(1000, metrics.getCount());
+    // Buckets are at most 1/16th of their value wide.
+    assertEquals(500, metrics.getLatencyPercentileMillis(0.5), 500 / 16.0);
+    assertEquals(990, metrics.getLatencyPercentileMillis(0.99), 990 / 16.0);
+    assertEquals(999, metrics.getLatencyPercentileMillis(0.999), 999 / 16.0);
+    assertEquals(1000, metrics.getMaxLatencyMillis(), 0.001);
+    assertEquals(500.5, metrics.getMeanLatencyMillis(), 0.001);
+  }
+
+  @Test
+  public void testErrorsCountedByStatus() {
+    listener.completed("people", "update", null, MILLIS, null,
+        new ProtocolException(HttpServletResponse.SC_FORBIDDEN, "Forbidden"));
+    listener.completed("people", "update", null, MILLIS, null,
+        new ProtocolException(HttpServletResponse.SC_FORBIDDEN, "Forbidden"));
+    listener.completed("people", "update", null, MILLIS, null, new NullPointerException());
+    listener.completed("people", "update", null, MILLIS, null, new CancellationException());
+
+    OperationMetrics metrics = listener.getMetrics().get("people.update");
+    assertEquals(4, metrics.getCount());
+    assertEquals(4, metrics.getErrorCount());
+    assertEquals(ImmutableMap.of(HttpServletResponse.SC_FORBIDDEN, 2L,
+        HttpServletResponse.SC_INTERNAL_SERVER_ERROR, 1L,
+        HttpServletResponse.SC_GATEWAY_TIMEOUT, 1L), metrics.getErrorCounts());
+  }
+
+  @Test
+  public void testResponseCardinality() {
+    listener.completed("people", "get", null, MILLIS,
+        new RestfulCollection<String>(ImmutableList.of("a", "b", "c")), null);
+    listener.completed("people", "get", null, MILLIS, ImmutableList.of("a"), null);
+    listener.completed("people", "get", null, MILLIS, "a", null);
+    listener.completed("people", "get", null, MILLIS, null, null);
+
+    OperationMetrics metrics = listener.getMetrics().get("people.get");
+    assertEquals(5, metrics.getTotalItems());
+    assertEquals(3, metrics.getMaxItems());
+  }
+
+  @Test
+  public void testHistogramBuckets() {
+    for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789L}) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      assertTrue(LatencyHistogram.upperBoundOf(bucket) >= value);
+      assertTrue(bucket == 0 || LatencyHistogram.upperBoundOf(bucket - 1) < value);
+    }
+  }
+}
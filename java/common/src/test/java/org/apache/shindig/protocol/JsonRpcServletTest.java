@@ -23,7 +23,9 @@ import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.reset;
 
 import org.apache.shindig.common.JsonAssert;
+import org.apache.shindig.common.executor.DefaultExecutorProvider;
 import org.apache.shindig.common.testing.FakeGadgetToken;
+import org.apache.shindig.common.util.ImmediateFuture;
 import org.apache.shindig.config.ContainerConfig;
 import org.apache.shindig.protocol.conversion.BeanJsonConverter;
 import org.apache.shindig.protocol.multipart.FormDataItem;
@@ -38,6 +40,13 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -295,6 +304,21 @@ public class JsonRpcServletTest extends Assert {
     assertTrue(output.contains("Unsupported Content-Type application/octet-stream"));
   }
 
+  @Test
+  public void testRequestNestedTooDeep() throws Exception {
+    servlet.setMaxRequestDepth(2);
+    setupRequest("{method:test.get,id:id,params:{userId:{id:5}}}");
+
+    expect(res.getWriter()).andReturn(writer);
+    res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+
+    mockControl.replay();
+    servlet.service(req, res);
+    mockControl.verify();
+
+    assertTrue(getOutput().contains("Nesting is deeper than 2 levels"));
+  }
+
   @Test
   public void testInvalidService() throws Exception {
     setupRequest("{method:junk.get,id:id,params:{userId:5,groupId:@self}}");
@@ -346,6 +370,144 @@ public class JsonRpcServletTest extends Assert {
         getOutput());
   }
 
+  @Test
+  public void testBatchGetsRunConcurrently() throws Exception {
+    final CountDownLatch bothRunning = new CountDownLatch(2);
+    handler.setMock(new TestHandler() {
+      @Override
+      public Object get(RequestItem req) {
+        bothRunning.countDown();
+        try {
+          return ImmutableMap.of("concurrent", bothRunning.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    DefaultExecutorProvider executorProvider = new DefaultExecutorProvider();
+    servlet.setExecutorProvider(executorProvider);
+    servlet.setBatchConcurrency(8);
+    setupRequest("[{method:test.get,id:'1'},{method:test.get,id:'2'}]");
+
+    expect(res.getWriter()).andReturn(writer);
+    expectLastCall();
+
+    mockControl.replay();
+    servlet.service(req, res);
+    mockControl.verify();
+    executorProvider.shutdown();
+
+    JsonAssert.assertJsonEquals(
+        "[{id:'1',result:{concurrent:true}},{id:'2',result:{concurrent:true}}]", getOutput());
+  }
+
+  @Test
+  public void testBatchPendingResultsDoNotHoldPermits() throws Exception {
+    final AtomicInteger invocations = new AtomicInteger();
+    final FutureTask<Object> pending = new FutureTask<Object>(new Callable<Object>() {
+      public Object call() {
+        return ImmutableMap.of("foo", "bar");
+      }
+    });
+    handler.setMock(new TestHandler() {
+      @Override
+      public Object get(RequestItem req) {
+        // The last call completes the results of all three.
+        if (invocations.incrementAndGet() == 3) {
+          pending.run();
+        }
+        return pending;
+      }
+    });
+    DefaultExecutorProvider executorProvider = new DefaultExecutorProvider();
+    servlet.setExecutorProvider(executorProvider);
+    servlet.setBatchConcurrency(2);
+    servlet.setBatchTimeoutMs(5000);
+    setupRequest("[{method:test.get,id:'1'},{method:test.get,id:'2'},{method:test.get,id:'3'}]");
+
+    expect(res.getWriter()).andReturn(writer);
+    expectLastCall();
+
+    mockControl.replay();
+    servlet.service(req, res);
+    mockControl.verify();
+    executorProvider.shutdown();
+
+    JsonAssert.assertJsonEquals("[{id:'1',result:{foo:'bar'}},{id:'2',result:{foo:'bar'}}," +
+        "{id:'3',result:{foo:'bar'}}]", getOutput());
+  }
+
+  @Test
+  public void testBatchGetWaitsForPrecedingWrite() throws Exception {
+    final AtomicBoolean created = new AtomicBoolean();
+    handler.setMock(new TestHandler() {
+      @Override
+      public Future<?> create(RequestItem req) {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        created.set(true);
+        return ImmediateFuture.newInstance(CREATE_RESPONSE);
+      }
+
+      @Override
+      public Object get(RequestItem req) {
+        return ImmutableMap.of("created", created.get());
+      }
+    });
+    DefaultExecutorProvider executorProvider = new DefaultExecutorProvider();
+    servlet.setExecutorProvider(executorProvider);
+    servlet.setBatchConcurrency(8);
+    setupRequest("[{method:test.create,id:'1'},{method:test.get,id:'2'}]");
+
+    expect(res.getWriter()).andReturn(writer);
+    expectLastCall();
+
+    mockControl.replay();
+    servlet.service(req, res);
+    mockControl.verify();
+    executorProvider.shutdown();
+
+    JsonAssert.assertJsonEquals(
+        "[{id:'1',result:'" + TestHandler.CREATE_RESPONSE + "'},{id:'2',result:{created:true}}]",
+        getOutput());
+  }
+
+  @Test
+  public void testBatchDeadline() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    handler.setMock(new TestHandler() {
+      @Override
+      public Object get(RequestItem req) {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          // Cancelled on timeout.
+        }
+        return ImmutableMap.of("foo", "bar");
+      }
+    });
+    DefaultExecutorProvider executorProvider = new DefaultExecutorProvider();
+    servlet.setExecutorProvider(executorProvider);
+    servlet.setBatchConcurrency(8);
+    servlet.setBatchTimeoutMs(100);
+    setupRequest("[{method:test.get,id:'1'},{method:test.noArg,id:'2'}]");
+
+    expect(res.getWriter()).andReturn(writer);
+    expectLastCall();
+
+    mockControl.replay();
+    servlet.service(req, res);
+    mockControl.verify();
+    release.countDown();
+    executorProvider.shutdown();
+
+    JsonAssert.assertJsonEquals("[{id:'1',error:{message:'Request timed out',code:504}}," +
+        "{id:'2',error:{message:'Request timed out',code:504}}]", getOutput());
+  }
+
   @Test
   public void testGetExecution() throws Exception {
     expect(req.getParameterMap()).andStubReturn(
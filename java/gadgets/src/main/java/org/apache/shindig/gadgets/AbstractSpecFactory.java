@@ -21,6 +21,7 @@ package org.apache.shindig.gadgets;
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.SoftExpiringCache;
 import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.SingleFlight;
 import org.apache.shindig.common.xml.XmlException;
 import org.apache.shindig.config.ContainerConfig;
 import org.apache.shindig.gadgets.http.HttpRequest;
@@ -28,7 +29,10 @@ import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.http.RequestPipeline;
 import org.apache.shindig.gadgets.spec.SpecParserException;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +40,8 @@ import java.util.logging.Logger;
  * Basis for implementing GadgetSpec and MessageBundle factories.
  *
  * Automatically updates objects as needed asynchronously to provide optimal throughput.
+ * Concurrent misses for the same spec are coalesced into a single fetch and parse, and at most
+ * one background update per spec is ever queued.
  */
 public abstract class AbstractSpecFactory<T> {
   private static final Logger LOG = Logger.getLogger(AbstractSpecFactory.class.getName());
@@ -44,6 +50,7 @@ public abstract class AbstractSpecFactory<T> {
   private final RequestPipeline pipeline;
   final SoftExpiringCache<Uri, Object> cache;
   private final long refresh;
+  private final SingleFlight<Uri, Object> inFlight = new SingleFlight<Uri, Object>();
 
   /**
    * @param clazz the class for spec objects.
@@ -79,29 +86,23 @@ public abstract class AbstractSpecFactory<T> {
           // This causes a double write, but that's better than a write per thread or synchronizing
           // this block.
           cache.addElement(query.specUri, obj, refresh);
-          executor.execute(new SpecUpdater(query, obj));
+          try {
+            inFlight.submit(query.specUri, new SpecUpdater(query, obj), executor);
+          } catch (RejectedExecutionException e) {
+            // The update pool is saturated; keep serving the current copy until the next refresh.
+            if (LOG.isLoggable(Level.FINE)) {
+              LOG.fine("Skipped update of " + query.specUri + ", update pool is full");
+            }
+          }
         }
       }
     }
 
     if (obj == null) {
-      boolean bypassCache = false;
-      try {
-        obj = fetchFromNetwork(query);
-      } catch (SpecRetrievalFailedException e) {
-        // Don't cache the resulting exception.
-        // The underlying RequestPipeline may (and should) cache non-OK HTTP responses
-        // independently, and may do so for the same spec in different ways depending
-        // on context. There's no computational benefit to caching this exception in
-        // the spec cache since we won't try to re-parse the data anyway, as we would
-        // an OK response with a faulty spec.
-        bypassCache = true;
-        obj = e;
-      } catch (GadgetException e) {
-        obj = e;
-      }
-      if (!bypassCache) {
-        cache.addElement(query.specUri, obj, refresh);
+      if (query.ignoreCache) {
+        obj = fetchAndCache(query);
+      } else {
+        obj = fetchCoalesced(query);
       }
     }
 
@@ -113,6 +114,61 @@ public abstract class AbstractSpecFactory<T> {
     return clazz.cast(obj);
   }
 
+  /**
+   * Fetches the spec, sharing the result with every other thread that misses on the same spec
+   * while the fetch is in progress.
+   */
+  private Object fetchCoalesced(final Query query) throws GadgetException {
+    try {
+      return inFlight.execute(query.specUri, new Callable<Object>() {
+        public Object call() {
+          return fetchAndCache(query);
+        }
+      });
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR,
+          "Interrupted while waiting for " + query.specUri, e);
+    }
+  }
+
+  /**
+   * Fetches the spec and caches the result.
+   *
+   * @return the spec, or the GadgetException describing why it could not be retrieved.
+   */
+  private Object fetchAndCache(Query query) {
+    Object obj;
+    boolean bypassCache = false;
+    try {
+      obj = fetchFromNetwork(query);
+    } catch (SpecRetrievalFailedException e) {
+      // Don't cache the resulting exception.
+      // The underlying RequestPipeline may (and should) cache non-OK HTTP responses
+      // independently, and may do so for the same spec in different ways depending
+      // on context. There's no computational benefit to caching this exception in
+      // the spec cache since we won't try to re-parse the data anyway, as we would
+      // an OK response with a faulty spec.
+      bypassCache = true;
+      obj = e;
+    } catch (GadgetException e) {
+      obj = e;
+    }
+    if (!bypassCache) {
+      cache.addElement(query.specUri, obj, refresh);
+    }
+    return obj;
+  }
+
   /**
    * Retrieves a spec from the network, parses, and adds it to the cache.
    */
@@ -201,7 +257,7 @@ public abstract class AbstractSpecFactory<T> {
     }
   }
 
-  private class SpecUpdater implements Runnable {
+  private class SpecUpdater implements Callable<Object> {
     private final Query query;
     private final Object old;
 
@@ -210,17 +266,20 @@ public abstract class AbstractSpecFactory<T> {
       this.old = old;
     }
 
-    public void run() {
+    public Object call() {
       try {
         T newSpec = fetchFromNetwork(query);
         cache.addElement(query.specUri, newSpec, refresh);
+        return newSpec;
       } catch (GadgetException e) {
         if (old != null) {
           LOG.log(Level.INFO, "Failed to update {0}. Using cached version.", query.specUri);
           cache.addElement(query.specUri, old, refresh);
+          return old;
         } else {
           LOG.log(Level.INFO, "Failed to update {0}. Applying negative cache.", query.specUri);
           cache.addElement(query.specUri, e, refresh);
+          return e;
         }
       }
     }
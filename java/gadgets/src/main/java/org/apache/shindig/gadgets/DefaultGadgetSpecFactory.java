@@ -45,7 +45,7 @@ public class DefaultGadgetSpecFactory extends AbstractSpecFactory<GadgetSpec>
   static final Uri RAW_GADGET_URI = Uri.parse("http://localhost/raw.xml");
 
   @Inject
-  public DefaultGadgetSpecFactory(ExecutorService executor,
+  public DefaultGadgetSpecFactory(@Named("shindig.spec.executor") ExecutorService executor,
                                   RequestPipeline pipeline,
                                   CacheProvider cacheProvider,
                                   @Named("shindig.cache.xml.refreshInterval") long refresh) {
@@ -30,13 +30,18 @@ import com.google.inject.name.Names;
 
 import org.apache.commons.lang.StringUtils;
 
+import org.apache.shindig.common.executor.DefaultExecutorProvider;
+import org.apache.shindig.common.executor.ExecutorProvider;
 import org.apache.shindig.gadgets.config.ConfigContributor;
 import org.apache.shindig.gadgets.config.CoreUtilConfigContributor;
 import org.apache.shindig.gadgets.config.OsapiServicesConfigContributor;
 import org.apache.shindig.gadgets.config.ShindigAuthConfigContributor;
 import org.apache.shindig.gadgets.config.XhrwrapperConfigContributor;
+import org.apache.shindig.gadgets.http.AsyncRequestPipeline;
+import org.apache.shindig.gadgets.http.ExecutorAsyncRequestPipeline;
 import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.http.InvalidationHandler;
+import org.apache.shindig.gadgets.http.RequestPipeline;
 import org.apache.shindig.gadgets.parse.ParseModule;
 import org.apache.shindig.gadgets.preload.PreloadModule;
 import org.apache.shindig.gadgets.render.RenderModule;
@@ -51,7 +56,6 @@ import org.apache.shindig.gadgets.variables.SubstituterModule;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
 /**
@@ -61,21 +65,10 @@ import java.util.concurrent.ThreadFactory;
  * multibindings for features and rpc handlers.
  */
 public class DefaultGuiceModule extends AbstractModule {
-
   /** {@inheritDoc} */
   @Override
   protected void configure() {
 
-    final ExecutorService service = Executors.newCachedThreadPool(DAEMON_THREAD_FACTORY);
-    bind(ExecutorService.class).toInstance(service);
-    bind(ExecutorService.class).annotatedWith(Names.named("shindig.concat.executor")).toInstance(service);
-
-    Runtime.getRuntime().addShutdownHook(new Thread() {
-        public void run() {
-            service.shutdownNow();
-        }
-    });
-
     install(new ParseModule());
     install(new PreloadModule());
     install(new RenderModule());
@@ -134,14 +127,81 @@ public class DefaultGuiceModule extends AbstractModule {
     return ImmutableList.<String>builder().addAll(extended).add(StringUtils.split(features, ',')).build();
   }
 
+  /**
+   * Each workload runs on its own bounded pool, sized through the shindig.executor.* properties,
+   * so that one slow workload can't take the threads of the others.
+   */
+  @Provides
+  @Singleton
+  protected ExecutorService defaultExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("default");
+  }
+
+  @Provides
+  @Singleton
+  @Named("shindig.concat.executor")
+  protected ExecutorService concatExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("concat");
+  }
+
+  /**
+   * Concat batches are fetched through their own pipeline, on the concat pool.
+   */
+  @Provides
+  @Singleton
+  @Named("shindig.concat.pipeline")
+  protected AsyncRequestPipeline concatPipeline(RequestPipeline requestPipeline,
+      @Named("shindig.concat.executor") ExecutorService executor) {
+    return new ExecutorAsyncRequestPipeline(requestPipeline, executor);
+  }
+
+  @Provides
+  @Singleton
+  @Named("shindig.spec.executor")
+  protected ExecutorService specExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("spec");
+  }
+
+  @Provides
+  @Singleton
+  @Named("shindig.bundle.executor")
+  protected ExecutorService bundleExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("bundle");
+  }
+
+  @Provides
+  @Singleton
+  @Named("shindig.preload.executor")
+  protected ExecutorService preloadExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("preload");
+  }
+
+  @Provides
+  @Singleton
+  @Named("shindig.rpc.executor")
+  protected ExecutorService rpcExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("rpc");
+  }
+
+  @Provides
+  @Singleton
+  @Named("shindig.http.async.executor")
+  protected ExecutorService httpAsyncExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("http-async");
+  }
+
+  @Provides
+  @Singleton
+  @Named("shindig.http.refresh.executor")
+  protected ExecutorService httpRefreshExecutor(ExecutorProvider executorProvider) {
+    return executorProvider.getExecutor("http-refresh");
+  }
+
+  /**
+   * @deprecated executors are created by the {@link ExecutorProvider}, which names and sizes its
+   *     pools. Kept for modules that bind their own executors.
+   */
+  @Deprecated
   public static final ThreadFactory DAEMON_THREAD_FACTORY =
-    new ThreadFactory() {
-        private final ThreadFactory factory = Executors.defaultThreadFactory();
-
-        public Thread newThread(Runnable r) {
-            Thread t = factory.newThread(r);
-            t.setDaemon(true);
-            return t;
-        }
-    };
+      DefaultExecutorProvider.newDaemonThreadFactory("shindig-");
 }
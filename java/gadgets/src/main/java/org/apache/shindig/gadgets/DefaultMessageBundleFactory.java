@@ -20,40 +20,67 @@ package org.apache.shindig.gadgets;
 
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.cache.SoftExpiringCache;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.http.RequestPipeline;
 import org.apache.shindig.gadgets.spec.GadgetSpec;
 import org.apache.shindig.gadgets.spec.LocaleSpec;
 import org.apache.shindig.gadgets.spec.MessageBundle;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Default implementation of a message bundle factory.
+ *
+ * The bundles of a locale and of its fallbacks (lang_ALL, ALL_country and ALL_ALL) are retrieved
+ * concurrently on the bundle executor, and the merged bundle is cached per gadget, locale and
+ * container.
  */
 @Singleton
 public class DefaultMessageBundleFactory extends AbstractSpecFactory<MessageBundle>
     implements MessageBundleFactory {
   private static final Locale ALL_ALL = new Locale("all", "ALL");
   public static final String CACHE_NAME = "messageBundles";
+  public static final String MERGED_CACHE_NAME = "mergedMessageBundles";
+
+  final SoftExpiringCache<String, MessageBundle> mergedCache;
+  private final long refresh;
+  private ExecutorService fetchExecutor;
 
   @Inject
-  public DefaultMessageBundleFactory(ExecutorService executor,
+  public DefaultMessageBundleFactory(@Named("shindig.spec.executor") ExecutorService executor,
                                      RequestPipeline pipeline,
                                      CacheProvider cacheProvider,
                                      @Named("shindig.cache.xml.refreshInterval") long refresh) {
     super(MessageBundle.class, executor, pipeline, makeCache(cacheProvider), refresh);
+    Cache<String, MessageBundle> merged = cacheProvider.createCache(MERGED_CACHE_NAME);
+    this.mergedCache = new SoftExpiringCache<String, MessageBundle>(merged);
+    this.refresh = refresh;
   }
 
   private static Cache<Uri, Object> makeCache(CacheProvider cacheProvider) {
     return cacheProvider.createCache(CACHE_NAME);
   }
 
+  /**
+   * Without an executor, the bundles of a locale and its fallbacks are retrieved one at a time.
+   */
+  @Inject(optional = true)
+  public void setFetchExecutor(@Named("shindig.bundle.executor") ExecutorService fetchExecutor) {
+    this.fetchExecutor = fetchExecutor;
+  }
+
   @Override
   protected MessageBundle parse(String content, Query query) throws GadgetException {
     return new MessageBundle(((LocaleQuery) query).locale, content);
@@ -61,35 +88,103 @@ public class DefaultMessageBundleFactory extends AbstractSpecFactory<MessageBund
 
   public MessageBundle getBundle(GadgetSpec spec, Locale locale, boolean ignoreCache, String container)
       throws GadgetException {
-    MessageBundle exact = getBundleFor(spec, locale, ignoreCache, container);
+    String key = null;
+    if (!ignoreCache) {
+      // The checksum makes sure that a changed spec doesn't get the bundle of its old version.
+      key = spec.getUrl() + "#" + spec.getChecksum() + '|' + locale + '|' + container;
+      SoftExpiringCache.CachedObject<MessageBundle> cached = mergedCache.getElement(key);
+      if (cached != null && !cached.isExpired) {
+        return cached.obj;
+      }
+    }
 
     // We don't want to fetch the same bundle multiple times, so we verify that the exact match
     // has not already been fetched.
-    MessageBundle lang, country, all;
-
     boolean isAllLanguage = locale.getLanguage().equalsIgnoreCase("all");
     boolean isAllCountry = locale.getCountry().equalsIgnoreCase("ALL");
 
-    if (isAllCountry) {
-      lang = MessageBundle.EMPTY;
-    } else {
-      lang = getBundleFor(spec, new Locale(locale.getLanguage(), "ALL"), ignoreCache, container);
+    List<Locale> locales = Lists.newArrayListWithCapacity(4);
+    locales.add(locale);
+    if (!isAllCountry) {
+      locales.add(new Locale(locale.getLanguage(), "ALL"));
+    }
+    if (!isAllLanguage) {
+      locales.add(new Locale("all", locale.getCountry()));
+    }
+    if (!isAllCountry && !isAllLanguage) {
+      // If either of these is true, we already picked up both anyway.
+      locales.add(ALL_ALL);
     }
 
-    if (isAllLanguage) {
-      country = MessageBundle.EMPTY;
-    } else {
-      country = getBundleFor(spec, new Locale("all", locale.getCountry()), ignoreCache, container);
+    List<MessageBundle> bundles = getBundlesFor(spec, locales, ignoreCache, container);
+    MessageBundle exact = bundles.get(0);
+    MessageBundle lang = isAllCountry ? MessageBundle.EMPTY : bundles.get(1);
+    MessageBundle country = isAllLanguage ? MessageBundle.EMPTY : bundles.get(isAllCountry ? 1 : 2);
+    MessageBundle all = isAllCountry || isAllLanguage ? MessageBundle.EMPTY : bundles.get(3);
+
+    MessageBundle bundle = new MessageBundle(all, country, lang, exact);
+    if (key != null) {
+      mergedCache.addElement(key, bundle, refresh);
     }
+    return bundle;
+  }
 
-    if (isAllCountry || isAllLanguage) {
-      // If either of these is true, we already picked up both anyway.
-      all = MessageBundle.EMPTY;
-    } else {
-      all = getBundleFor(spec, ALL_ALL, ignoreCache, container);
+  /**
+   * Retrieves the bundles for the given locales, in order. All but the last bundle are retrieved on
+   * the fetch executor while the current thread retrieves the last one.
+   */
+  private List<MessageBundle> getBundlesFor(final GadgetSpec spec, List<Locale> locales,
+      final boolean ignoreCache, final String container) throws GadgetException {
+    List<FutureTask<MessageBundle>> tasks = Lists.newArrayListWithCapacity(locales.size());
+    for (final Locale locale : locales) {
+      FutureTask<MessageBundle> task = new FutureTask<MessageBundle>(new Callable<MessageBundle>() {
+        public MessageBundle call() throws GadgetException {
+          return getBundleFor(spec, locale, ignoreCache, container);
+        }
+      });
+      tasks.add(task);
+      if (fetchExecutor != null && tasks.size() < locales.size()) {
+        try {
+          fetchExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+          // The task runs in the current thread below.
+        }
+      }
+    }
+
+    // The last task was never submitted, so run it first, while the pool works on the others.
+    tasks.get(tasks.size() - 1).run();
+
+    List<MessageBundle> bundles = Lists.newArrayListWithCapacity(tasks.size());
+    for (FutureTask<MessageBundle> task : tasks) {
+      // Does nothing if a pool thread has already started the task. Otherwise, the current thread
+      // would only be waiting for a pool thread anyway.
+      task.run();
+      bundles.add(getResult(task));
     }
+    return bundles;
+  }
 
-    return new MessageBundle(all, country, lang, exact);
+  private static MessageBundle getResult(FutureTask<MessageBundle> task) throws GadgetException {
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof GadgetException) {
+        throw (GadgetException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR,
+          "Interrupted while retrieving message bundles", e);
+    }
   }
 
   private MessageBundle getBundleFor(GadgetSpec spec, Locale locale, boolean ignoreCache, String container)
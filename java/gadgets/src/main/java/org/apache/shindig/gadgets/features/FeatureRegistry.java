@@ -22,14 +22,15 @@ import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 
 import org.apache.shindig.common.Pair;
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.cache.LruCache;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.uri.UriBuilder;
 import org.apache.shindig.common.util.ResourceLoader;
@@ -41,9 +42,9 @@ import org.apache.commons.lang.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -65,12 +66,20 @@ public class FeatureRegistry {
   private static final Logger LOG
       = Logger.getLogger("org.apache.shindig.gadgets");
   
-  // Map keyed by FeatureNode object created as a lookup for transitive feature deps.
-  private final Map<FeatureCacheKey, List<FeatureResource>> cache = new MapMaker().makeMap();
+  public static final String CACHE_NAME = "featureResources";
+  static final int DEFAULT_CACHE_CAPACITY = 1000;
+
+  // Resolved resources by requested dependency set. Bounded, since requested feature combinations
+  // come straight from request URLs.
+  private Cache<FeatureCacheKey, List<FeatureResource>> cache =
+      new LruCache<FeatureCacheKey, List<FeatureResource>>(DEFAULT_CACHE_CAPACITY);
 
   private final FeatureParser parser;
   private final FeatureResourceLoader resourceLoader;
   private final ImmutableMap<String, FeatureNode> featureMap;
+
+  // Number of registered features; each FeatureNode has an index below it.
+  private final int featureCount;
   
 
 /**
@@ -91,8 +100,12 @@ public class FeatureRegistry {
     // are no circular deps.
     connectDependencyGraph();
 
-    // Clear caches.
-    cache.clear();
+    featureCount = buildDependencyIndex();
+  }
+
+  @Inject(optional = true)
+  public void setCacheProvider(CacheProvider cacheProvider) {
+    cache = cacheProvider.createCache(CACHE_NAME);
   }
   
   /**
@@ -171,6 +184,7 @@ public class FeatureRegistry {
    * within a given feature are returned in the order specified in their corresponding
    * feature.xml file. In the case of a dependency tree "tie" eg. A depends on [B, C], B and C
    * depend on D - resources are returned in the dependency order specified in feature.xml.
+   * Unrelated features are returned in the order of the needed list.
    * 
    * Fills the "unsupported" list, if provided, with unknown features in the needed list.
    * 
@@ -183,15 +197,18 @@ public class FeatureRegistry {
   public List<FeatureResource> getFeatureResources(
       GadgetContext ctx, Collection<String> needed, List<String> unsupported, boolean transitive) {
     boolean useCache = (transitive && !ctx.getIgnoreCache());
-    FeatureCacheKey cacheKey = new FeatureCacheKey(needed, ctx, unsupported != null);
-    
-    if (useCache && cache.containsKey(cacheKey)) {
-      return cache.get(cacheKey);
-    }
-    
     List<FeatureNode> featureNodes = null;
+    FeatureCacheKey cacheKey = null;
     if (transitive) {
-      featureNodes = getTransitiveDeps(needed, unsupported);
+      List<FeatureNode> roots = getRootNodes(needed, unsupported);
+      if (useCache) {
+        cacheKey = new FeatureCacheKey(roots, ctx, unsupported != null);
+        List<FeatureResource> cached = cache.getElement(cacheKey);
+        if (cached != null) {
+          return cached;
+        }
+      }
+      featureNodes = getTransitiveDeps(roots);
     } else {
       featureNodes = getRequestedNodes(needed, unsupported);
     }
@@ -223,8 +240,8 @@ public class FeatureRegistry {
       }
     }
     List<FeatureResource> resources = resourcesBuilder.build();
-    if (useCache && (unsupported == null || unsupported.isEmpty())) {
-      cache.put(cacheKey, resources);
+    if (useCache) {
+      cache.addElement(cacheKey, resources);
     }
       
     return resources;
@@ -259,7 +276,7 @@ public class FeatureRegistry {
    * @return Ordered list of feature names, as described.
    */
   public List<String> getFeatures(Collection<String> needed) {
-    List<FeatureNode> fullTree = getTransitiveDeps(needed, Lists.<String>newLinkedList());
+    List<FeatureNode> fullTree = getTransitiveDeps(getRootNodes(needed, null));
     List<String> allFeatures = Lists.newLinkedList();
     for (FeatureNode node : fullTree) {
       allFeatures.add(node.name);
@@ -293,42 +310,77 @@ public class FeatureRegistry {
     return uri;
   }
   
-  private List<FeatureNode> getTransitiveDeps(Collection<String> needed, List<String> unsupported) {
-    final List<FeatureNode> requested = getRequestedNodes(needed, unsupported);
-    
-    Comparator<FeatureNode> nodeDepthComparator = new Comparator<FeatureNode>() {
-      public int compare(FeatureNode one, FeatureNode two) {
-        if (one.nodeDepth > two.nodeDepth ||
-            (one.nodeDepth == two.nodeDepth &&
-             requested.indexOf(one) < requested.indexOf(two))) {
-          return -1;
-        }
-        return 1;
+  /**
+   * @return The needed features that no other needed feature depends on, in the order needed.
+   */
+  private List<FeatureNode> getRootNodes(Collection<String> needed, List<String> unsupported) {
+    List<FeatureNode> requested = getRequestedNodes(needed, unsupported);
+    if (requested.size() < 2) {
+      return requested;
+    }
+    BitSet covered = new BitSet(featureCount);
+    for (FeatureNode node : requested) {
+      covered.or(node.depSet);
+    }
+    List<FeatureNode> roots = Lists.newArrayListWithCapacity(requested.size());
+    for (FeatureNode node : requested) {
+      if (!covered.get(node.index)) {
+        // Also skips a feature needed twice.
+        covered.set(node.index);
+        roots.add(node);
       }
-    };
-    // Before getTransitiveDeps() is called, all nodes and their graphs have been validated
-    // to have no circular dependencies, with their tree depth calculated. The requested
-    // features here may overlap in the tree, so we need to be sure not to double-include
-    // deps. Consider case where feature A depends on B and C, which both depend on D.
-    // If the requested features list is [A, C], we want to include A's tree in the appropriate
-    // order, and avoid double-including C (and its dependency D). Thus we sort by node depth
-    // first - A's tree is deeper than that of C, so *if* A's tree contains C, traversing
-    // it first guarantees that C is eventually included.
-    Collections.sort(requested, nodeDepthComparator);
-    
-    Set<String> alreadySeen = Sets.newHashSet();
-    List<FeatureNode> fullDeps = Lists.newLinkedList();
-    for (FeatureNode requestedFeature : requested) {
-      for (FeatureNode toAdd : requestedFeature.getTransitiveDeps()) {
-        if (!alreadySeen.contains(toAdd.name)) {
-          alreadySeen.add(toAdd.name);
+    }
+    return roots;
+  }
+
+  /**
+   * @return The given features and their dependencies, each feature after its dependencies.
+   */
+  private List<FeatureNode> getTransitiveDeps(List<FeatureNode> roots) {
+    if (roots.size() == 1) {
+      return roots.get(0).sortedDeps;
+    }
+    // The trees of the roots may still overlap below them, eg. A and B both depending on C.
+    BitSet alreadySeen = new BitSet(featureCount);
+    List<FeatureNode> fullDeps = Lists.newArrayList();
+    for (FeatureNode root : roots) {
+      for (FeatureNode toAdd : root.sortedDeps) {
+        if (!alreadySeen.get(toAdd.index)) {
+          alreadySeen.set(toAdd.index);
           fullDeps.add(toAdd);
         }
       }
     }
-    
     return fullDeps;
   }
+
+  /**
+   * Precomputes, for every feature, its transitive dependencies both as a list in insertable
+   * order and as a bitset, so that resolving needed features doesn't walk the graph.
+   *
+   * @return The number of features.
+   */
+  private int buildDependencyIndex() {
+    int index = 0;
+    for (FeatureNode node : featureMap.values()) {
+      node.index = index++;
+    }
+    for (FeatureNode node : featureMap.values()) {
+      BitSet deps = new BitSet(index);
+      ImmutableList.Builder<FeatureNode> sorted = ImmutableList.builder();
+      // The transitive dep list may contain a feature several times; keep the first.
+      for (FeatureNode dep : node.getTransitiveDeps()) {
+        if (!deps.get(dep.index)) {
+          deps.set(dep.index);
+          sorted.add(dep);
+        }
+      }
+      deps.clear(node.index);
+      node.depSet = deps;
+      node.sortedDeps = sorted.build();
+    }
+    return index;
+  }
   
   private List<FeatureNode> getRequestedNodes(Collection<String> needed, List<String> unsupported) {
     List<FeatureNode> requested = Lists.newArrayList();
@@ -522,6 +574,11 @@ public class FeatureRegistry {
     private List<FeatureNode> transitiveDeps;
     private boolean calculatedDepsStale;
     private int nodeDepth = 0;
+    private int index;
+    // Transitive dependencies, excluding this feature.
+    private BitSet depSet;
+    // Transitive dependencies followed by this feature, each after its own dependencies.
+    private List<FeatureNode> sortedDeps;
     
     private FeatureNode(String name, List<FeatureBundle> bundles, List<String> rawDeps) {
       this.name = name;
@@ -588,12 +645,12 @@ public class FeatureRegistry {
   }
   
   private static final class FeatureCacheKey {
-    private final Collection<String> needed;
+    private final List<FeatureNode> needed;
     private final RenderingContext rCtx;
     private final String container;
     private final boolean useUnsupported;
     
-    private FeatureCacheKey(Collection<String> needed, GadgetContext ctx, boolean useUnsupported) {
+    private FeatureCacheKey(List<FeatureNode> needed, GadgetContext ctx, boolean useUnsupported) {
       this.needed = needed;
       this.rCtx = ctx.getRenderingContext();
       this.container = ctx.getContainer();
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+import com.google.inject.ImplementedBy;
+
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous counterpart of {@link RequestPipeline}. Callers that need several responses at once
+ * dispatch every request up front and only then wait on the returned futures, so the number of
+ * concurrent upstream fetches is not tied to the number of calling threads.
+ *
+ * The default implementation runs the synchronous pipeline on a shared executor, where every
+ * fetch still blocks a pool thread. An implementation backed by a non-blocking HTTP client can be
+ * bound in its place.
+ */
+@ImplementedBy(ExecutorAsyncRequestPipeline.class)
+public interface AsyncRequestPipeline {
+
+  /**
+   * Start executing the given request.
+   *
+   * @return A future for the response. A {@link org.apache.shindig.gadgets.GadgetException}
+   *     thrown by the pipeline is reported as the cause of an
+   *     {@link java.util.concurrent.ExecutionException}.
+   */
+  Future<HttpResponse> executeAsync(HttpRequest request);
+}
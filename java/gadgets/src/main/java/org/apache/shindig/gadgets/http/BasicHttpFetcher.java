@@ -103,8 +103,12 @@ public class BasicHttpFetcher implements HttpFetcher {
   private static final int DEFAULT_READ_TIMEOUT_MS = 5000;
   private static final int DEFAULT_MAX_OBJECT_SIZE = 0;  // no limit
   private static final long DEFAULT_SLOW_RESPONSE_WARNING = 10000;
+  // These are probably overkill for most sites.
+  private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 1152;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 256;
 
   protected final HttpClient FETCHER;
+  private final ThreadSafeClientConnManager connectionManager;
 
   // mutable fields must be volatile
   private volatile int maxObjSize;
@@ -162,12 +166,11 @@ public class BasicHttpFetcher implements HttpFetcher {
     schemeRegistry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
     schemeRegistry.register(new Scheme("https", 443, SSLSocketFactory.getSocketFactory()));
 
-    ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager(schemeRegistry, connectionTimeoutMs, TimeUnit.MILLISECONDS);
-    // These are probably overkill for most sites.
-    cm.setMaxTotal(1152);
-    cm.setDefaultMaxPerRoute(256);
+    connectionManager = new ThreadSafeClientConnManager(schemeRegistry, connectionTimeoutMs, TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(DEFAULT_MAX_TOTAL_CONNECTIONS);
+    connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
 
-    DefaultHttpClient client = new DefaultHttpClient(cm, params);
+    DefaultHttpClient client = new DefaultHttpClient(connectionManager, params);
 
     // Set proxy if set via guice.
     if (!StringUtils.isEmpty(basicHttpFetcherProxy)) {
@@ -449,6 +452,28 @@ public class BasicHttpFetcher implements HttpFetcher {
     FETCHER.getParams().setIntParameter(HttpConnectionParams.SO_TIMEOUT, readTimeoutMs);
   }
 
+  /**
+   * Change the maximum number of pooled connections across all hosts.
+   *
+   * @param maxTotalConnections new pool size
+   */
+  @Inject(optional = true)
+  public void setMaxTotalConnections(@Named("shindig.http.client.max-total-connections") int maxTotalConnections) {
+    Preconditions.checkArgument(maxTotalConnections > 0, "max-total-connections must be greater than 0");
+    connectionManager.setMaxTotal(maxTotalConnections);
+  }
+
+  /**
+   * Change the maximum number of pooled connections to a single host.
+   *
+   * @param maxConnectionsPerRoute new per-host pool size
+   */
+  @Inject(optional = true)
+  public void setMaxConnectionsPerRoute(@Named("shindig.http.client.max-connections-per-route") int maxConnectionsPerRoute) {
+    Preconditions.checkArgument(maxConnectionsPerRoute > 0, "max-connections-per-route must be greater than 0");
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+  }
+
 
   /**
    * @param response The response to parse
@@ -26,15 +26,34 @@ import org.apache.shindig.common.Nullable;
 
 import com.google.inject.name.Named;
 
+import org.apache.shindig.common.util.SingleFlight;
 import org.apache.shindig.common.util.Utf8UrlCoder;
+import org.apache.shindig.gadgets.AuthType;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.oauth.OAuthRequest;
 import org.apache.shindig.gadgets.rewrite.ResponseRewriterRegistry;
 import org.apache.shindig.gadgets.rewrite.RewritingException;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * A standard implementation of a request pipeline. Performs request caching and
  * signing on top of standard HTTP requests.
+ *
+ * Concurrent cache misses for the same cache key are collapsed into a single upstream fetch: the
+ * first request fetches and rewrites the response, and the others wait for it, up to
+ * shindig.http.coalescing.max-wait-ms, before falling back to a fetch of their own. Only
+ * unauthenticated requests are coalesced, and a response that may not be cached is never handed
+ * to the waiting requests; they fetch it on their own instead.
+ *
+ * When a refresh executor is configured, a cached response that expired less than its grace
+ * window ago is served as is while a fresh copy is fetched in the background. The grace window
+ * comes from the response's stale-while-revalidate Cache-Control directive, or else from
+ * shindig.http.stale-while-revalidate-ms.
  */
 @Singleton
 public class DefaultRequestPipeline implements RequestPipeline {
@@ -44,6 +63,11 @@ public class DefaultRequestPipeline implements RequestPipeline {
   private final ResponseRewriterRegistry responseRewriterRegistry;
   private final InvalidationService invalidationService;
   private final HttpResponseMetadataHelper metadataHelper;
+  private final SingleFlight<String, HttpResponse> inFlight =
+      new SingleFlight<String, HttpResponse>();
+  private long coalescingMaxWaitMs = 5000;
+  private long staleWhileRevalidateMs = 0;
+  private ExecutorService refreshExecutor;
 
   @Inject
   public DefaultRequestPipeline(HttpFetcher httpFetcher,
@@ -61,6 +85,36 @@ public class DefaultRequestPipeline implements RequestPipeline {
     this.metadataHelper = metadataHelper;
   }
 
+  /**
+   * Sets how long a request waits for an identical in-flight fetch before fetching on its own.
+   * A value of 0 or less disables request coalescing.
+   */
+  @Inject(optional = true)
+  public void setCoalescingMaxWaitMs(
+      @Named("shindig.http.coalescing.max-wait-ms") long coalescingMaxWaitMs) {
+    this.coalescingMaxWaitMs = coalescingMaxWaitMs;
+  }
+
+  /**
+   * Sets how long after expiry a cached response without a stale-while-revalidate directive may
+   * still be served while it is refreshed in the background. 0 disables this for such responses.
+   */
+  @Inject(optional = true)
+  public void setStaleWhileRevalidateMs(
+      @Named("shindig.http.stale-while-revalidate-ms") long staleWhileRevalidateMs) {
+    this.staleWhileRevalidateMs = staleWhileRevalidateMs;
+  }
+
+  /**
+   * Sets the executor used to refresh stale responses. Without one, stale responses are always
+   * refetched in the requesting thread.
+   */
+  @Inject(optional = true)
+  public void setRefreshExecutor(
+      @Named("shindig.http.refresh.executor") ExecutorService refreshExecutor) {
+    this.refreshExecutor = refreshExecutor;
+  }
+
   public HttpResponse execute(HttpRequest request) throws GadgetException {
     normalizeProtocol(request);
     HttpResponse invalidatedResponse = null;
@@ -79,6 +133,10 @@ public class DefaultRequestPipeline implements RequestPipeline {
           }
         } else {
           if (!cachedResponse.isError()) {
+            if (isRevalidatable(request, cachedResponse) &&
+                refreshInBackground(request, cachedResponse)) {
+              return cachedResponse;
+            }
             // Remember good but stale cached response, to be served if server unavailable
             staleResponse = cachedResponse;
           }
@@ -86,6 +144,124 @@ public class DefaultRequestPipeline implements RequestPipeline {
       }
     }
 
+    if (isCoalescable(request)) {
+      String key = httpCache.createKey(request);
+      if (key != null) {
+        return fetchCoalesced(key, request, invalidatedResponse, staleResponse);
+      }
+    }
+    return fetchResponse(request, invalidatedResponse, staleResponse);
+  }
+
+  /**
+   * Only cacheable requests are coalesced, since the cache key does not cover request bodies.
+   * Signed and OAuth requests are never coalesced, as their responses may be specific to the
+   * user even where the cache key is not.
+   */
+  protected boolean isCoalescable(HttpRequest request) {
+    return coalescingMaxWaitMs > 0 && request.getAuthType() == AuthType.NONE &&
+        isCacheableGet(request);
+  }
+
+  /**
+   * @return true if a response fetched for one request may be handed to another request with the
+   *     same cache key. This follows the rules the cache applies before storing a response.
+   */
+  protected boolean isShareable(HttpRequest request, HttpResponse response) {
+    if (request.getCacheTtl() != -1) {
+      return true;
+    }
+    return response.getHttpStatusCode() != HttpResponse.SC_NOT_MODIFIED &&
+        !response.isStrictNoCache();
+  }
+
+  private static boolean isCacheableGet(HttpRequest request) {
+    return !request.getIgnoreCache() &&
+        ("GET".equals(request.getMethod()) ||
+         "GET".equals(request.getHeader("X-Method-Override")));
+  }
+
+  /**
+   * @return true if the stale response is still within its grace window and may be served while
+   *     it is refreshed. Signed and OAuth requests are always refetched in the requesting thread.
+   */
+  protected boolean isRevalidatable(HttpRequest request, HttpResponse staleResponse) {
+    if (refreshExecutor == null || request.getAuthType() != AuthType.NONE ||
+        !isCacheableGet(request) ||
+        staleResponse.getCacheExpiration() == -1 ||
+        !invalidationService.isValid(request, staleResponse)) {
+      return false;
+    }
+    long grace = staleResponse.getStaleWhileRevalidate();
+    if (grace == -1) {
+      grace = staleWhileRevalidateMs;
+    }
+    return -staleResponse.getCacheTtl() < grace;
+  }
+
+  /**
+   * Queues a refresh of the stale response, unless one is already in flight.
+   *
+   * @return false if the refresh could not be queued and the caller should fetch instead.
+   */
+  private boolean refreshInBackground(HttpRequest request, final HttpResponse staleResponse) {
+    String key = httpCache.createKey(request);
+    if (key == null) {
+      return false;
+    }
+    final HttpRequest refreshRequest = new HttpRequest(request);
+    try {
+      inFlight.submit(key, new Callable<HttpResponse>() {
+        public HttpResponse call() throws GadgetException {
+          return fetchResponse(refreshRequest, null, staleResponse);
+        }
+      }, refreshExecutor);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  private HttpResponse fetchCoalesced(String key, final HttpRequest request,
+      final HttpResponse invalidatedResponse, final HttpResponse staleResponse)
+      throws GadgetException {
+    final boolean[] fetched = new boolean[1];
+    try {
+      HttpResponse response = inFlight.execute(key, new Callable<HttpResponse>() {
+        public HttpResponse call() throws GadgetException {
+          fetched[0] = true;
+          return fetchResponse(request, invalidatedResponse, staleResponse);
+        }
+      }, coalescingMaxWaitMs, TimeUnit.MILLISECONDS);
+      if (!fetched[0] && !isShareable(request, response)) {
+        // Another request fetched this, and the origin did not allow it to be reused.
+        return fetchResponse(request, invalidatedResponse, staleResponse);
+      }
+      return response;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof GadgetException) {
+        throw (GadgetException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR,
+          "Interrupted while waiting for " + request.getUri(), e);
+    }
+  }
+
+  /**
+   * Fetches the response from the network, rewrites and caches it.
+   */
+  private HttpResponse fetchResponse(HttpRequest request, HttpResponse invalidatedResponse,
+      HttpResponse staleResponse) throws GadgetException {
     HttpResponse fetchedResponse = null;
     switch (request.getAuthType()) {
       case NONE:
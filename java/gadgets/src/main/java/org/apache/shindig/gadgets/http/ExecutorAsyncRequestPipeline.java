@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+import org.apache.shindig.gadgets.GadgetException;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs requests through the synchronous {@link RequestPipeline} on an executor. Each request holds
+ * one of the executor's threads until its response arrives, so this bounds concurrent fetches by
+ * the size of that pool rather than by the number of calling threads.
+ */
+@Singleton
+public class ExecutorAsyncRequestPipeline implements AsyncRequestPipeline {
+  private final RequestPipeline requestPipeline;
+  private final ExecutorService executor;
+
+  @Inject
+  public ExecutorAsyncRequestPipeline(RequestPipeline requestPipeline,
+      @Named("shindig.http.async.executor") ExecutorService executor) {
+    this.requestPipeline = requestPipeline;
+    this.executor = executor;
+  }
+
+  public Future<HttpResponse> executeAsync(final HttpRequest request) {
+    return executor.submit(new Callable<HttpResponse>() {
+      public HttpResponse call() throws GadgetException {
+        return requestPipeline.execute(request);
+      }
+    });
+  }
+}
@@ -29,12 +29,15 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.common.cache.Weighted;
 import org.apache.shindig.common.servlet.HttpUtil;
 import org.apache.shindig.common.util.DateUtil;
 import org.apache.shindig.common.util.TimeSource;
 import org.apache.shindig.gadgets.encoding.EncodingDetector;
 
 import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -58,7 +61,7 @@ import java.util.TreeMap;
  * HttpResponse objects are immutable in order to allow them to be safely used in concurrent
  * caches and by multiple threads without worrying about concurrent modification.
  */
-public final class HttpResponse implements Externalizable {
+public final class HttpResponse implements Externalizable, Weighted {
   private static final long serialVersionUID = 7526471155622776147L;
 
   public static final int SC_CONTINUE = 100;
@@ -256,6 +259,13 @@ public final class HttpResponse implements Externalizable {
     return responseBytes.length;
   }
 
+  /**
+   * @return The size of the response body in bytes, for cache statistics.
+   */
+  public long getWeight() {
+    return responseBytes.length;
+  }
+
   /**
    * @return An input stream suitable for reading the entirety of the response.
    */
@@ -429,16 +439,32 @@ public final class HttpResponse implements Externalizable {
     return -1;
   }
 
+  /**
+   * @return How long, in milliseconds, this response may be served after it expires while a fresh
+   *     copy is fetched, from the Cache-Control stale-while-revalidate directive, or -1 if not set.
+   */
+  public long getStaleWhileRevalidate() {
+    return getCacheControlSeconds("stale-while-revalidate");
+  }
+
   /**
    * @return max-age value or -1 if invalid or not set
    */
   private long getCacheControlMaxAge() {
+    return getCacheControlSeconds("max-age");
+  }
+
+  /**
+   * @return the value, in milliseconds, of a Cache-Control directive given in seconds, or -1 if
+   *     invalid or not set
+   */
+  private long getCacheControlSeconds(String name) {
     String cacheControl = getHeader("Cache-Control");
     if (cacheControl != null) {
       String[] directives = StringUtils.split(cacheControl, ',');
       for (String directive : directives) {
         directive = directive.trim();
-        if (directive.startsWith("max-age")) {
+        if (directive.startsWith(name)) {
           String[] parts = StringUtils.split(directive, '=');
           if (parts.length == 2) {
             try {
@@ -644,6 +670,53 @@ public final class HttpResponse implements Externalizable {
     out.write(responseBytes);
   }
 
+  /**
+   * Writes this response, including its metadata, in the compact form used by caches that keep
+   * responses outside the heap. Unlike writeExternal, the response date survives the round trip
+   * through {@link #readCompact}, so responses read back after a restart still expire on time.
+   */
+  void writeCompact(DataOutput out) throws IOException {
+    out.writeInt(httpStatusCode);
+    out.writeLong(date);
+    out.writeInt(headers.size());
+    for (Map.Entry<String, String> header : headers.entries()) {
+      out.writeUTF(header.getKey());
+      out.writeUTF(header.getValue());
+    }
+    out.writeInt(metadata.size());
+    for (Map.Entry<String, String> entry : metadata.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeUTF(entry.getValue());
+    }
+    out.writeInt(responseBytes.length);
+    out.write(responseBytes);
+  }
+
+  /**
+   * Reads a response written by {@link #writeCompact}.
+   */
+  static HttpResponse readCompact(DataInput in) throws IOException {
+    HttpResponse response = new HttpResponse();
+    response.httpStatusCode = in.readInt();
+    response.date = in.readLong();
+
+    Multimap<String, String> headerCopy = newHeaderMultimap();
+    for (int i = in.readInt(); i > 0; --i) {
+      headerCopy.put(in.readUTF(), in.readUTF());
+    }
+    Map<String, String> metadataCopy = Maps.newHashMap();
+    for (int i = in.readInt(); i > 0; --i) {
+      metadataCopy.put(in.readUTF(), in.readUTF());
+    }
+    byte[] body = new byte[in.readInt()];
+    in.readFully(body);
+
+    response.responseBytes = body;
+    response.encoding = getAndUpdateEncoding(headerCopy, body);
+    response.headers = Multimaps.unmodifiableMultimap(headerCopy);
+    response.metadata = Collections.unmodifiableMap(metadataCopy);
+    return response;
+  }
 
   private static final Supplier<Collection<String>> HEADER_COLLECTION_SUPPLIER = new HeaderCollectionSupplier();
 
@@ -0,0 +1,453 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * HttpCache that keeps responses outside the heap, in memory mapped segment files.
+ *
+ * Responses are appended to the newest segment; once it is full a new one is started and, when
+ * there are more than the configured number of segments, the oldest segment is dropped together
+ * with every response stored in it. Only the key index lives on the heap. The index is rebuilt
+ * from the segment files at startup, so a restarted server keeps the responses it had cached.
+ *
+ * Each record is laid out as: payload length (int), CRC32 of the payload (int), payload. The
+ * payload holds the key length (int), the UTF-8 key, a record type (byte) and, for stored
+ * responses, the response in the form written by {@link HttpResponse#writeCompact}. A length of 0
+ * marks the end of a segment; a record failing its checksum, as left by a crash, ends it too.
+ *
+ * The directory must be configured explicitly, and anyone who can write to it can plant responses
+ * in the cache. On Java 6 and later the directory and segment files are restricted to their owner
+ * at startup, which fails if the directory belongs to another user.
+ */
+@Singleton
+public class MappedHttpCache extends AbstractHttpCache {
+  private static final Logger LOG = Logger.getLogger(MappedHttpCache.class.getName());
+
+  private static final String SEGMENT_PREFIX = "httpcache-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final byte TYPE_REMOVE = 0;
+  private static final byte TYPE_PUT = 1;
+
+  private final File directory;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+
+  // Guarded by this.
+  private final LinkedList<Segment> segments = Lists.newLinkedList();
+
+  @Inject
+  public MappedHttpCache(@Named("shindig.cache.http.mapped.directory") String directory,
+      @Named("shindig.cache.http.mapped.segment-size-bytes") int segmentSize,
+      @Named("shindig.cache.http.mapped.max-segments") int maxSegments) throws IOException {
+    if (segmentSize <= RECORD_HEADER_SIZE || maxSegments < 1) {
+      throw new IllegalArgumentException("Invalid segment configuration: " + maxSegments +
+          " segments of " + segmentSize + " bytes");
+    }
+    if (directory == null || directory.trim().length() == 0) {
+      throw new IllegalArgumentException(
+          "shindig.cache.http.mapped.directory must name a directory private to the server");
+    }
+    this.directory = new File(directory);
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxSegments;
+    if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+      throw new IOException("Unable to create cache directory " + directory);
+    }
+    if (!restrictToOwner(this.directory, true)) {
+      throw new IOException("Unable to restrict cache directory " + directory + " to its owner");
+    }
+    load();
+  }
+
+  @Override
+  protected HttpResponse getResponseImpl(String key) {
+    Location location = index.get(key);
+    if (location == null) {
+      return null;
+    }
+    HttpResponse response = read(location);
+    if (response == null) {
+      index.remove(key, location);
+    }
+    return response;
+  }
+
+  @Override
+  protected void addResponseImpl(String key, HttpResponse response) {
+    byte[] payload;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      writeKey(out, key, TYPE_PUT);
+      response.writeCompact(out);
+      out.flush();
+      payload = bytes.toByteArray();
+    } catch (IOException e) {
+      // Header values too long to encode; such a response simply isn't cached.
+      LOG.log(Level.INFO, "Not caching response for " + key, e);
+      return;
+    }
+    append(key, payload, TYPE_PUT);
+  }
+
+  @Override
+  protected HttpResponse removeResponseImpl(String key) {
+    if (!index.containsKey(key)) {
+      return null;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      writeKey(out, key, TYPE_REMOVE);
+      out.flush();
+      // The removal is recorded so that the response doesn't come back on the next restart.
+      Location location = append(key, bytes.toByteArray(), TYPE_REMOVE);
+      return location == null ? null : read(location);
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to record removal of " + key, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return The number of responses currently indexed.
+   */
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * @return The number of segment files in use.
+   */
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Flushes all segments to disk and releases their files. The cache must not be used afterwards.
+   */
+  public synchronized void close() {
+    for (Segment segment : segments) {
+      segment.buffer.force();
+      segment.close();
+    }
+    segments.clear();
+    index.clear();
+  }
+
+  private static void writeKey(DataOutputStream out, String key, byte type) throws IOException {
+    byte[] keyBytes = key.getBytes("UTF-8");
+    out.writeInt(keyBytes.length);
+    out.write(keyBytes);
+    out.writeByte(type);
+  }
+
+  private HttpResponse read(Location location) {
+    if (location.segment.evicted) {
+      return null;
+    }
+    byte[] data = new byte[location.length];
+    ByteBuffer view = location.segment.buffer.duplicate();
+    view.position(location.offset);
+    view.get(data);
+    try {
+      return HttpResponse.readCompact(new DataInputStream(new ByteArrayInputStream(data)));
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Corrupt cache record in " + location.segment.file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Appends a record and updates the index accordingly.
+   *
+   * @return the location of the stored response, or for removals the location of the removed one.
+   */
+  private synchronized Location append(String key, byte[] payload, byte type) {
+    Location removed = null;
+    if (type == TYPE_REMOVE) {
+      removed = index.remove(key);
+      if (removed == null) {
+        return null;
+      }
+    }
+
+    int recordSize = RECORD_HEADER_SIZE + payload.length;
+    if (recordSize > segmentSize) {
+      return removed;
+    }
+    try {
+      Segment segment = segments.isEmpty() ? null : segments.getLast();
+      if (segment == null || segment.writePosition + recordSize > segment.capacity()) {
+        segment = roll();
+      }
+
+      int start = segment.writePosition;
+      ByteBuffer view = segment.buffer.duplicate();
+      view.position(start + RECORD_HEADER_SIZE);
+      view.put(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      view.putInt(start + 4, (int) crc.getValue());
+      // The length is written last: until then the record reads as the end of the segment.
+      view.putInt(start, payload.length);
+      segment.writePosition = start + recordSize;
+
+      if (type == TYPE_PUT) {
+        int valueLength = valueLength(payload);
+        Location location = new Location(segment, start + recordSize - valueLength, valueLength);
+        index.put(key, location);
+        return location;
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to write cache record for " + key, e);
+    }
+    return removed;
+  }
+
+  /**
+   * @return the length of the response part of a payload.
+   */
+  private static int valueLength(byte[] payload) {
+    int keyLength = ((payload[0] & 0xff) << 24) | ((payload[1] & 0xff) << 16) |
+        ((payload[2] & 0xff) << 8) | (payload[3] & 0xff);
+    return payload.length - 4 - keyLength - 1;
+  }
+
+  /**
+   * Removes the permissions of everyone but the owner of the file. The methods for this were added
+   * to File in Java 6, so they are looked up reflectively; on Java 5 the permissions are left as
+   * they are.
+   *
+   * @return false if the permissions could not be changed, e.g. because the file has another owner.
+   */
+  static boolean restrictToOwner(File file, boolean executable) {
+    String[] setters = executable ?
+        new String[] {"setReadable", "setWritable", "setExecutable"} :
+        new String[] {"setReadable", "setWritable"};
+    try {
+      for (String setter : setters) {
+        Method method = File.class.getMethod(setter, boolean.class, boolean.class);
+        if (!Boolean.TRUE.equals(method.invoke(file, Boolean.FALSE, Boolean.FALSE)) ||
+            !Boolean.TRUE.equals(method.invoke(file, Boolean.TRUE, Boolean.TRUE))) {
+          return false;
+        }
+      }
+    } catch (NoSuchMethodException e) {
+      // Java 5.
+    } catch (Exception e) {
+      LOG.log(Level.WARNING, "Unable to change the permissions of " + file, e);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Starts a new segment, evicting the oldest ones beyond the configured count.
+   */
+  private Segment roll() throws IOException {
+    long id = segments.isEmpty() ? 0 : segments.getLast().id + 1;
+    Segment segment = Segment.create(new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX),
+        id, segmentSize);
+    segments.add(segment);
+    evictExcessSegments();
+    return segment;
+  }
+
+  private void evictExcessSegments() {
+    while (segments.size() > maxSegments) {
+      Segment oldest = segments.removeFirst();
+      oldest.evicted = true;
+      for (Iterator<Location> it = index.values().iterator(); it.hasNext();) {
+        if (it.next().segment == oldest) {
+          it.remove();
+        }
+      }
+      oldest.close();
+      if (!oldest.file.delete()) {
+        LOG.warning("Unable to delete evicted cache segment " + oldest.file);
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the index from the segment files left by a previous run.
+   */
+  private synchronized void load() throws IOException {
+    File[] files = directory.listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return parseId(name) >= 0;
+      }
+    });
+    if (files == null) {
+      return;
+    }
+    List<File> sorted = Lists.newArrayList(files);
+    Collections.sort(sorted, new Comparator<File>() {
+      public int compare(File a, File b) {
+        long idA = parseId(a.getName());
+        long idB = parseId(b.getName());
+        return idA < idB ? -1 : (idA == idB ? 0 : 1);
+      }
+    });
+
+    for (File file : sorted) {
+      Segment segment = Segment.open(file, parseId(file.getName()));
+      scan(segment);
+      segments.add(segment);
+    }
+    evictExcessSegments();
+    if (!segments.isEmpty()) {
+      LOG.info("Loaded " + index.size() + " cached responses from " + segments.size() +
+          " segments in " + directory);
+    }
+  }
+
+  private void scan(Segment segment) {
+    ByteBuffer view = segment.buffer.duplicate();
+    int position = 0;
+    while (position + RECORD_HEADER_SIZE <= segment.capacity()) {
+      int length = view.getInt(position);
+      if (length <= 0 || position + RECORD_HEADER_SIZE + length > segment.capacity()) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      view.position(position + RECORD_HEADER_SIZE);
+      view.get(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if ((int) crc.getValue() != view.getInt(position + 4)) {
+        LOG.warning("Truncating cache segment " + segment.file + " at corrupt record " + position);
+        break;
+      }
+
+      try {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte[] keyBytes = new byte[in.readInt()];
+        in.readFully(keyBytes);
+        String key = new String(keyBytes, "UTF-8");
+        if (in.readByte() == TYPE_PUT) {
+          int valueLength = valueLength(payload);
+          index.put(key, new Location(segment,
+              position + RECORD_HEADER_SIZE + length - valueLength, valueLength));
+        } else {
+          index.remove(key);
+        }
+      } catch (IOException e) {
+        LOG.warning("Truncating cache segment " + segment.file + " at corrupt record " + position);
+        break;
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    segment.writePosition = position;
+  }
+
+  private static long parseId(String name) {
+    if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+      try {
+        return Long.parseLong(
+            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static class Location {
+    final Segment segment;
+    final int offset;
+    final int length;
+
+    Location(Segment segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private static class Segment {
+    final File file;
+    final long id;
+    final RandomAccessFile raf;
+    final MappedByteBuffer buffer;
+    int writePosition;
+    volatile boolean evicted;
+
+    private Segment(File file, long id, RandomAccessFile raf) throws IOException {
+      this.file = file;
+      this.id = id;
+      this.raf = raf;
+      this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+    }
+
+    static Segment create(File file, long id, int size) throws IOException {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      restrictToOwner(file, false);
+      raf.setLength(size);
+      return new Segment(file, id, raf);
+    }
+
+    static Segment open(File file, long id) throws IOException {
+      return new Segment(file, id, new RandomAccessFile(file, "rw"));
+    }
+
+    int capacity() {
+      return buffer.capacity();
+    }
+
+    void close() {
+      try {
+        raf.close();
+      } catch (IOException e) {
+        LOG.log(Level.INFO, "Error closing cache segment " + file, e);
+      }
+    }
+  }
+}
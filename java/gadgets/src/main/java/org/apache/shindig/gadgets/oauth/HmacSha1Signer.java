@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.oauth;
+
+import org.apache.shindig.common.util.CharsetUtil;
+
+import net.oauth.OAuth;
+import net.oauth.OAuthException;
+import net.oauth.signature.HMAC_SHA1;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC-SHA1 signature method that reuses pooled Macs instead of looking one up for every request
+ * it signs.
+ */
+public class HmacSha1Signer extends HMAC_SHA1 {
+  private static final String MAC_NAME = "HmacSHA1";
+
+  private static final BlockingQueue<Mac> MACS =
+      new ArrayBlockingQueue<Mac>(OAuthSigners.MAX_IDLE_ENGINES);
+
+  @Override
+  protected String getSignature(String baseString) throws OAuthException {
+    long start = System.nanoTime();
+    try {
+      String keyString = OAuth.percentEncode(getConsumerSecret()) + '&' +
+          OAuth.percentEncode(getTokenSecret());
+      Mac mac = MACS.poll();
+      if (mac == null) {
+        mac = Mac.getInstance(MAC_NAME);
+      }
+      mac.init(new SecretKeySpec(CharsetUtil.getUtf8Bytes(keyString), MAC_NAME));
+      byte[] signature = mac.doFinal(CharsetUtil.getUtf8Bytes(baseString));
+      MACS.offer(mac);
+      String result = new String(Base64.encodeBase64(signature), OAuth.ENCODING);
+      OAuthSigners.HMAC_SHA1_METRICS.recordSuccess(System.nanoTime() - start, 1);
+      return result;
+    } catch (GeneralSecurityException e) {
+      OAuthSigners.recordError(OAuthSigners.HMAC_SHA1_METRICS, start);
+      throw new OAuthException(e);
+    } catch (UnsupportedEncodingException e) {
+      OAuthSigners.recordError(OAuthSigners.HMAC_SHA1_METRICS, start);
+      throw new OAuthException(e);
+    }
+  }
+}
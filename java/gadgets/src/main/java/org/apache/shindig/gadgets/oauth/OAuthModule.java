@@ -20,6 +20,7 @@ package org.apache.shindig.gadgets.oauth;
 import org.apache.shindig.common.crypto.BasicBlobCrypter;
 import org.apache.shindig.common.crypto.BlobCrypter;
 import org.apache.shindig.common.crypto.Crypto;
+import org.apache.shindig.common.crypto.PooledBlobCrypter;
 import org.apache.shindig.common.util.ResourceLoader;
 import org.apache.shindig.gadgets.http.HttpFetcher;
 import org.apache.shindig.gadgets.oauth.BasicOAuthStoreConsumerKeyAndSecret.KeyType;
@@ -61,6 +62,11 @@ public class OAuthModule extends AbstractModule {
     // Used for persistent storage of OAuth access tokens.
     bind(OAuthStore.class).toProvider(OAuthStoreProvider.class);
     bind(OAuthRequest.class).toProvider(OAuthRequestProvider.class);
+
+    // Sign with cached keys and pooled signature engines, and publish signing statistics when
+    // enabled.
+    OAuthSigners.register();
+    requestStaticInjection(OAuthSigners.class);
   }
 
   @Singleton
@@ -73,10 +79,10 @@ public class OAuthModule extends AbstractModule {
         throws IOException {
       if (StringUtils.isBlank(stateCrypterPath)) {
         LOG.info("Using random key for OAuth client-side state encryption");
-        crypter = new BasicBlobCrypter(Crypto.getRandomBytes(BasicBlobCrypter.MASTER_KEY_MIN_LEN));
+        crypter = new PooledBlobCrypter(Crypto.getRandomBytes(BasicBlobCrypter.MASTER_KEY_MIN_LEN));
       } else {
         LOG.info("Using file " + stateCrypterPath + " for OAuth client-side state encryption");
-        crypter = new BasicBlobCrypter(new File(stateCrypterPath));
+        crypter = new PooledBlobCrypter(new File(stateCrypterPath));
       }
     }
 
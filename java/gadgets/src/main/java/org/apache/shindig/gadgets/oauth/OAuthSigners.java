@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.oauth;
+
+import org.apache.shindig.protocol.ManagedOperation;
+import org.apache.shindig.protocol.OperationMetrics;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import net.oauth.OAuth;
+import net.oauth.signature.OAuthSignatureMethod;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Installs the signature methods used to sign OAuth and signed fetch requests, and keeps their
+ * latency statistics.
+ *
+ * The signers replace the RSA-SHA1 and HMAC-SHA1 methods of the oauth.net library, which
+ * instantiates a new method for every message. {@link OAuthModule} registers them. Statistics
+ * are published through JMX as oauth.sign.RSA-SHA1 and oauth.sign.HMAC-SHA1 when
+ * shindig.signing.jmx.enabled is true.
+ */
+public final class OAuthSigners {
+  static final OperationMetrics RSA_SHA1_METRICS =
+      new OperationMetrics("oauth.sign." + OAuth.RSA_SHA1);
+  static final OperationMetrics HMAC_SHA1_METRICS =
+      new OperationMetrics("oauth.sign." + OAuth.HMAC_SHA1);
+
+  /**
+   * The most engines of each kind kept idle between signings. Engines are pooled rather than
+   * kept per thread, so container threads hold no references to them after an undeploy.
+   */
+  static final int MAX_IDLE_ENGINES = 32;
+
+  private OAuthSigners() {}
+
+  /**
+   * Registers the signers with the oauth.net library. Safe to call more than once.
+   */
+  public static void register() {
+    OAuthSignatureMethod.registerMethodClass(OAuth.RSA_SHA1, RsaSha1Signer.class);
+    OAuthSignatureMethod.registerMethodClass(OAuth.HMAC_SHA1, HmacSha1Signer.class);
+  }
+
+  @Inject(optional = true)
+  public static void setJmxEnabled(@Named("shindig.signing.jmx.enabled") boolean jmxEnabled) {
+    if (jmxEnabled) {
+      ManagedOperation.register(RSA_SHA1_METRICS);
+      ManagedOperation.register(HMAC_SHA1_METRICS);
+    }
+  }
+
+  /**
+   * @return the statistics of RSA-SHA1 signing.
+   */
+  public static OperationMetrics getRsaSha1Metrics() {
+    return RSA_SHA1_METRICS;
+  }
+
+  /**
+   * @return the statistics of HMAC-SHA1 signing.
+   */
+  public static OperationMetrics getHmacSha1Metrics() {
+    return HMAC_SHA1_METRICS;
+  }
+
+  static void recordError(OperationMetrics metrics, long startNanos) {
+    metrics.recordError(System.nanoTime() - startNanos,
+        HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+  }
+}
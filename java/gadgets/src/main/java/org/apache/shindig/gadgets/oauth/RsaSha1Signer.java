@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.oauth;
+
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.LruCache;
+import org.apache.shindig.common.util.CharsetUtil;
+
+import net.oauth.OAuth;
+import net.oauth.OAuthAccessor;
+import net.oauth.OAuthConsumer;
+import net.oauth.OAuthException;
+import net.oauth.signature.RSA_SHA1;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * RSA-SHA1 signature method that keeps recently used private keys parsed and reuses pooled
+ * Signature engines.
+ *
+ * Stores hand over private keys as PEM or base64 encoded PKCS#8 text, which {@link RSA_SHA1}
+ * would decode again for every request it signs. Keys in other forms are left to RSA_SHA1.
+ */
+public class RsaSha1Signer extends RSA_SHA1 {
+  private static final String SIGNATURE_NAME = "SHA1withRSA";
+
+  /** The most private keys kept parsed. */
+  private static final int MAX_PRIVATE_KEYS = 100;
+
+  private static final Cache<String, PrivateKey> PRIVATE_KEYS =
+      new LruCache<String, PrivateKey>(MAX_PRIVATE_KEYS);
+
+  private static final BlockingQueue<Signature> SIGNATURES =
+      new ArrayBlockingQueue<Signature>(OAuthSigners.MAX_IDLE_ENGINES);
+
+  private PrivateKey privateKey;
+
+  @Override
+  protected void initialize(String name, OAuthAccessor accessor) throws OAuthException {
+    Object key = accessor.consumer.getProperty(PRIVATE_KEY);
+    if (key instanceof String) {
+      privateKey = getPrivateKey((String) key);
+    }
+    if (privateKey != null) {
+      // Don't let RSA_SHA1 parse the text again.
+      accessor = withPrivateKey(accessor, privateKey);
+    }
+    super.initialize(name, accessor);
+  }
+
+  @Override
+  protected String getSignature(String baseString) throws OAuthException {
+    long start = System.nanoTime();
+    try {
+      String signature;
+      if (privateKey == null) {
+        signature = super.getSignature(baseString);
+      } else {
+        Signature signer = SIGNATURES.poll();
+        if (signer == null) {
+          signer = Signature.getInstance(SIGNATURE_NAME);
+        }
+        signer.initSign(privateKey);
+        signer.update(CharsetUtil.getUtf8Bytes(baseString));
+        byte[] signed = signer.sign();
+        SIGNATURES.offer(signer);
+        signature = new String(Base64.encodeBase64(signed), OAuth.ENCODING);
+      }
+      OAuthSigners.RSA_SHA1_METRICS.recordSuccess(System.nanoTime() - start, 1);
+      return signature;
+    } catch (GeneralSecurityException e) {
+      OAuthSigners.recordError(OAuthSigners.RSA_SHA1_METRICS, start);
+      throw new OAuthException(e);
+    } catch (UnsupportedEncodingException e) {
+      OAuthSigners.recordError(OAuthSigners.RSA_SHA1_METRICS, start);
+      throw new OAuthException(e);
+    } catch (OAuthException e) {
+      OAuthSigners.recordError(OAuthSigners.RSA_SHA1_METRICS, start);
+      throw e;
+    }
+  }
+
+  /**
+   * @return the parsed key, or null if the text is not a PKCS#8 RSA private key.
+   */
+  static PrivateKey getPrivateKey(String encoded) {
+    PrivateKey key = PRIVATE_KEYS.getElement(encoded);
+    if (key == null) {
+      byte[] der = Base64.decodeBase64(
+          CharsetUtil.getUtf8Bytes(BasicOAuthStore.convertFromOpenSsl(encoded)));
+      try {
+        key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(der));
+      } catch (GeneralSecurityException e) {
+        return null;
+      }
+      PRIVATE_KEYS.addElement(encoded, key);
+    }
+    return key;
+  }
+
+  /**
+   * @return an accessor like the given one, whose consumer hands out the parsed key. Every other
+   *     property is read from the original consumer and accessor.
+   */
+  static OAuthAccessor withPrivateKey(final OAuthAccessor accessor, final PrivateKey key) {
+    final OAuthConsumer consumer = accessor.consumer;
+    OAuthConsumer copy = new OAuthConsumer(consumer.callbackURL, consumer.consumerKey,
+        consumer.consumerSecret, consumer.serviceProvider) {
+      @Override
+      public Object getProperty(String name) {
+        return PRIVATE_KEY.equals(name) ? key : consumer.getProperty(name);
+      }
+    };
+    OAuthAccessor result = new OAuthAccessor(copy) {
+      @Override
+      public Object getProperty(String name) {
+        return accessor.getProperty(name);
+      }
+    };
+    result.requestToken = accessor.requestToken;
+    result.accessToken = accessor.accessToken;
+    result.tokenSecret = accessor.tokenSecret;
+    return result;
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.parse;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.lang.reflect.Array;
+
+/**
+ * An immutable snapshot of the children of a parsed Document or DocumentFragment.
+ *
+ * Nodes are kept in document order in parallel arrays, which takes a fraction of the memory of a
+ * DOM and can be shared by any number of threads. Each call to {@link #toDocument} or
+ * {@link #appendTo} builds a new DOM from the snapshot, which is cheaper than a deep clone of a
+ * cached DOM: the source needn't be walked through the DOM API and names needn't be checked
+ * again.
+ */
+final class CompactParseTree {
+  // Marks an element or attribute created without a namespace (DOM Level 1).
+  private static final String NO_NAMESPACE = null;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String doctypeName;
+  private final String doctypePublicId;
+  private final String doctypeSystemId;
+
+  private final int size;
+  private final short[] types;
+  // Number of nodes in the subtree of each node, the node included.
+  private final int[] subtreeSizes;
+  // Element names, processing instruction targets and entity reference names.
+  private final String[] names;
+  // Element namespaces. "" for elements created with a null namespace URI.
+  private final String[] namespaces;
+  // Text, comment, CDATA and processing instruction data.
+  private final String[] values;
+  // Element attributes, as namespace, qualified name and value triples.
+  private final String[][] attributes;
+  // Nodes of other types, imported as they are.
+  private final Node[] others;
+
+  private CompactParseTree(Builder builder, DocumentType doctype) {
+    this.doctypeName = doctype != null ? doctype.getName() : null;
+    this.doctypePublicId = doctype != null ? doctype.getPublicId() : null;
+    this.doctypeSystemId = doctype != null ? doctype.getSystemId() : null;
+    this.size = builder.size;
+    this.types = copyOf(builder.types, size);
+    this.subtreeSizes = copyOf(builder.subtreeSizes, size);
+    this.names = copyOf(builder.names, size);
+    this.namespaces = copyOf(builder.namespaces, size);
+    this.values = copyOf(builder.values, size);
+    this.attributes = copyOf(builder.attributes, size);
+    this.others = builder.hasOthers ? copyOf(builder.others, size) : null;
+  }
+
+  /**
+   * Takes a snapshot of the children of a Document or DocumentFragment. The node is not modified.
+   */
+  static CompactParseTree of(Node root) {
+    Builder builder = new Builder();
+    DocumentType doctype = null;
+    for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+        doctype = (DocumentType) child;
+      } else {
+        builder.add(child);
+      }
+    }
+    return new CompactParseTree(builder, doctype);
+  }
+
+  /**
+   * @return a new Document holding the snapshot.
+   */
+  Document toDocument(DOMImplementation documentFactory) {
+    DocumentType doctype = null;
+    if (doctypeName != null) {
+      doctype = documentFactory.createDocumentType(doctypeName, doctypePublicId, doctypeSystemId);
+    }
+    Document document = documentFactory.createDocument(null, null, doctype);
+    appendTo(document);
+    return document;
+  }
+
+  /**
+   * Appends the nodes of the snapshot to the given node.
+   */
+  void appendTo(Node dest) {
+    Document document = dest.getNodeType() == Node.DOCUMENT_NODE ?
+        (Document) dest : dest.getOwnerDocument();
+
+    // Names were checked when the snapshot was parsed.
+    boolean strict = document.getStrictErrorChecking();
+    document.setStrictErrorChecking(false);
+    try {
+      build(document, dest);
+    } finally {
+      document.setStrictErrorChecking(strict);
+    }
+  }
+
+  private void build(Document document, Node dest) {
+    // Parents of the node being built, and the index at which their subtree ends.
+    Node[] parents = new Node[16];
+    int[] ends = new int[16];
+    int depth = 0;
+    parents[0] = dest;
+    ends[0] = size;
+
+    for (int i = 0; i < size; ++i) {
+      while (i >= ends[depth]) {
+        --depth;
+      }
+      Node node = createNode(document, i);
+      parents[depth].appendChild(node);
+      if (subtreeSizes[i] > 1) {
+        if (++depth == parents.length) {
+          parents = copyOf(parents, depth * 2);
+          ends = copyOf(ends, depth * 2);
+        }
+        parents[depth] = node;
+        ends[depth] = i + subtreeSizes[i];
+      }
+    }
+  }
+
+  private Node createNode(Document document, int i) {
+    switch (types[i]) {
+      case Node.ELEMENT_NODE:
+        Element element;
+        if (namespaces[i] == NO_NAMESPACE) {
+          element = document.createElement(names[i]);
+        } else {
+          element = document.createElementNS(nullIfEmpty(namespaces[i]), names[i]);
+        }
+        String[] attrs = attributes[i];
+        if (attrs != null) {
+          for (int j = 0; j < attrs.length; j += 3) {
+            if (attrs[j] == NO_NAMESPACE) {
+              element.setAttribute(attrs[j + 1], attrs[j + 2]);
+            } else {
+              element.setAttributeNS(nullIfEmpty(attrs[j]), attrs[j + 1], attrs[j + 2]);
+            }
+          }
+        }
+        return element;
+      case Node.TEXT_NODE:
+        return document.createTextNode(values[i]);
+      case Node.COMMENT_NODE:
+        return document.createComment(values[i]);
+      case Node.CDATA_SECTION_NODE:
+        return document.createCDATASection(values[i]);
+      case Node.PROCESSING_INSTRUCTION_NODE:
+        return document.createProcessingInstruction(names[i], values[i]);
+      case Node.ENTITY_REFERENCE_NODE:
+        return document.createEntityReference(names[i]);
+      default:
+        return document.importNode(others[i], true);
+    }
+  }
+
+  private static String nullIfEmpty(String namespace) {
+    return namespace.length() == 0 ? null : namespace;
+  }
+
+  private static String emptyIfNull(String namespace) {
+    return namespace == null ? "" : namespace;
+  }
+
+  /**
+   * Copies an array of any component type into a new array of the given length, like the Java 6
+   * Arrays.copyOf.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T copyOf(T array, int length) {
+    Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+    System.arraycopy(array, 0, copy, 0, Math.min(Array.getLength(array), length));
+    return (T) copy;
+  }
+
+  /**
+   * Appends nodes in document order, growing the arrays as needed.
+   */
+  private static final class Builder {
+    private int size;
+    private short[] types = new short[INITIAL_CAPACITY];
+    private int[] subtreeSizes = new int[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] namespaces = new String[INITIAL_CAPACITY];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private String[][] attributes = new String[INITIAL_CAPACITY][];
+    private Node[] others = new Node[INITIAL_CAPACITY];
+    private boolean hasOthers;
+
+    private void add(Node node) {
+      int index = size++;
+      if (index == types.length) {
+        int capacity = index * 2;
+        types = copyOf(types, capacity);
+        subtreeSizes = copyOf(subtreeSizes, capacity);
+        names = copyOf(names, capacity);
+        namespaces = copyOf(namespaces, capacity);
+        values = copyOf(values, capacity);
+        attributes = copyOf(attributes, capacity);
+        others = copyOf(others, capacity);
+      }
+
+      short type = node.getNodeType();
+      types[index] = type;
+      switch (type) {
+        case Node.ELEMENT_NODE:
+          names[index] = node.getNodeName();
+          // Only nodes created through the namespace aware methods have a local name.
+          namespaces[index] = node.getLocalName() == null ?
+              NO_NAMESPACE : emptyIfNull(node.getNamespaceURI());
+          attributes[index] = attributesOf(node);
+          // Children are only walked for elements; they're the only nodes built with children.
+          for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            add(child);
+          }
+          break;
+        case Node.TEXT_NODE:
+        case Node.COMMENT_NODE:
+        case Node.CDATA_SECTION_NODE:
+          values[index] = node.getNodeValue();
+          break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+          names[index] = node.getNodeName();
+          values[index] = node.getNodeValue();
+          break;
+        case Node.ENTITY_REFERENCE_NODE:
+          names[index] = node.getNodeName();
+          break;
+        default:
+          others[index] = node.cloneNode(true);
+          hasOthers = true;
+          break;
+      }
+      subtreeSizes[index] = size - index;
+    }
+
+    private static String[] attributesOf(Node node) {
+      NamedNodeMap attrs = node.getAttributes();
+      int length = attrs.getLength();
+      if (length == 0) {
+        return null;
+      }
+      String[] result = new String[length * 3];
+      for (int i = 0; i < length; ++i) {
+        Attr attr = (Attr) attrs.item(i);
+        result[i * 3] = attr.getLocalName() == null ?
+            NO_NAMESPACE : emptyIfNull(attr.getNamespaceURI());
+        result[i * 3 + 1] = attr.getName();
+        result[i * 3 + 2] = attr.getValue();
+      }
+      return result;
+    }
+  }
+}
@@ -47,8 +47,9 @@ public abstract class GadgetHtmlParser {
   public static final String PARSED_DOCUMENTS = "parsedDocuments";
   public static final String PARSED_FRAGMENTS = "parsedFragments";
 
-  private Cache<String, Document> documentCache;
-  private Cache<String, DocumentFragment> fragmentCache;
+  // Parse trees are cached as immutable snapshots, from which each hit builds its own DOM.
+  private Cache<String, CompactParseTree> documentCache;
+  private Cache<String, CompactParseTree> fragmentCache;
   private Provider<HtmlSerializer> serializerProvider = new DefaultSerializerProvider();
   protected final DOMImplementation documentFactory;
 
@@ -77,127 +78,126 @@ public abstract class GadgetHtmlParser {
   }
 
   public Document parseDom(String source) throws GadgetException {
-    Document document = null;
     String key = null;
     // Avoid checksum overhead if we arent caching
     boolean shouldCache = shouldCache();
     if (shouldCache) {
       // TODO - Consider using the source if its under a certain size
       key = HashUtil.checksum(source.getBytes());
-      document = documentCache.getElement(key);
-    }
-
-    if (document == null) {
-      try {
-        document = parseDomImpl(source);
-      } catch (DOMException e) {
-        // DOMException is a RuntimeException
-        document = errorDom(e);
+      CompactParseTree cached = documentCache.getElement(key);
+      if (cached != null) {
+        Document document = cached.toDocument(documentFactory);
         HtmlSerialization.attach(document, serializerProvider.get(), source);
         return document;
-      } catch (NullPointerException e) {
-        throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR,
-                                  "Caught exception in parseDomImpl", e);
       }
+    }
 
+    Document document;
+    try {
+      document = parseDomImpl(source);
+    } catch (DOMException e) {
+      // DOMException is a RuntimeException
+      document = errorDom(e);
       HtmlSerialization.attach(document, serializerProvider.get(), source);
+      return document;
+    } catch (NullPointerException e) {
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR,
+                                "Caught exception in parseDomImpl", e);
+    }
 
-      Node html = document.getDocumentElement();
-
-      Node head = null;
-      Node body = null;
-      LinkedList<Node> beforeHead = Lists.newLinkedList();
-      LinkedList<Node> beforeBody = Lists.newLinkedList();
-
-      while (html.hasChildNodes()) {
-        Node child = html.removeChild(html.getFirstChild());
-        if (child.getNodeType() == Node.ELEMENT_NODE &&
-            "head".equalsIgnoreCase(child.getNodeName())) {
-          if (head == null) {
-            head = child;
-          } else {
-            // Concatenate <head> elements together.
-            transferChildren(head, child);
-          }
-        } else if (child.getNodeType() == Node.ELEMENT_NODE &&
-                   "body".equalsIgnoreCase(child.getNodeName())) {
-          if (body == null) {
-            body = child;
-          } else {
-            // Concatenate <body> elements together.
-            transferChildren(body, child);
-          }
-        } else if (head == null) {
-          beforeHead.add(child);
-        } else if (body == null) {
-          beforeBody.add(child);
-        } else {
-          // Both <head> and <body> are present. Append to tail of <body>.
-          body.appendChild(child);
-        }
-      }
+    HtmlSerialization.attach(document, serializerProvider.get(), source);
 
-      // Ensure head tag exists
-      if (head == null) {
-        // beforeHead contains all elements that should be prepended to <body>. Switch them.
-        LinkedList<Node> temp = beforeBody;
-        beforeBody = beforeHead;
-        beforeHead = temp;
+    Node html = document.getDocumentElement();
 
-        // Add as first element
-        head = document.createElement("head");
-        html.insertBefore(head, html.getFirstChild());
-      } else {
-        // Re-append head node.
-        html.appendChild(head);
-      }
+    Node head = null;
+    Node body = null;
+    LinkedList<Node> beforeHead = Lists.newLinkedList();
+    LinkedList<Node> beforeBody = Lists.newLinkedList();
 
-      // Ensure body tag exists.
-      if (body == null) {
-        // Add immediately after head.
-        body = document.createElement("body");
-        html.insertBefore(body, head.getNextSibling());
-      } else {
-        // Re-append body node.
-        html.appendChild(body);
-      }
-
-      // Leftovers: nodes before the first <head> node found and the first <body> node found.
-      // Prepend beforeHead to the front of <head>, and beforeBody to beginning of <body>,
-      // in the order they were found in the document.
-      prependToNode(head, beforeHead);
-      prependToNode(body, beforeBody);
-
-      // One exception. <style>/<link rel="stylesheet" nodes from <body> end up at the end of <head>,
-      // since doing so is HTML compliant and can never break rendering due to ordering concerns.
-      LinkedList<Node> styleNodes = Lists.newLinkedList();
-      NodeList bodyKids = body.getChildNodes();
-      for (int i = 0; i < bodyKids.getLength(); ++i) {
-        Node bodyKid = bodyKids.item(i);
-        if (bodyKid.getNodeType() == Node.ELEMENT_NODE &&
-            isStyleElement((Element)bodyKid)) {
-          styleNodes.add(bodyKid);
+    while (html.hasChildNodes()) {
+      Node child = html.removeChild(html.getFirstChild());
+      if (child.getNodeType() == Node.ELEMENT_NODE &&
+          "head".equalsIgnoreCase(child.getNodeName())) {
+        if (head == null) {
+          head = child;
+        } else {
+          // Concatenate <head> elements together.
+          transferChildren(head, child);
         }
+      } else if (child.getNodeType() == Node.ELEMENT_NODE &&
+                 "body".equalsIgnoreCase(child.getNodeName())) {
+        if (body == null) {
+          body = child;
+        } else {
+          // Concatenate <body> elements together.
+          transferChildren(body, child);
+        }
+      } else if (head == null) {
+        beforeHead.add(child);
+      } else if (body == null) {
+        beforeBody.add(child);
+      } else {
+        // Both <head> and <body> are present. Append to tail of <body>.
+        body.appendChild(child);
       }
+    }
 
-      for (Node styleNode : styleNodes) {
-        head.appendChild(body.removeChild(styleNode));
-      }
+    // Ensure head tag exists
+    if (head == null) {
+      // beforeHead contains all elements that should be prepended to <body>. Switch them.
+      LinkedList<Node> temp = beforeBody;
+      beforeBody = beforeHead;
+      beforeHead = temp;
+
+      // Add as first element
+      head = document.createElement("head");
+      html.insertBefore(head, html.getFirstChild());
+    } else {
+      // Re-append head node.
+      html.appendChild(head);
+    }
 
-      // Finally, reprocess all script nodes for OpenSocial purposes, as these
-      // may be interpreted (rightly, from the perspective of HTML) as containing text only.
-      reprocessScriptForOpenSocial(html);
+    // Ensure body tag exists.
+    if (body == null) {
+      // Add immediately after head.
+      body = document.createElement("body");
+      html.insertBefore(body, head.getNextSibling());
+    } else {
+      // Re-append body node.
+      html.appendChild(body);
+    }
 
-      if (shouldCache) {
-        documentCache.addElement(key, document);
+    // Leftovers: nodes before the first <head> node found and the first <body> node found.
+    // Prepend beforeHead to the front of <head>, and beforeBody to beginning of <body>,
+    // in the order they were found in the document.
+    prependToNode(head, beforeHead);
+    prependToNode(body, beforeBody);
+
+    // One exception. <style>/<link rel="stylesheet" nodes from <body> end up at the end of <head>,
+    // since doing so is HTML compliant and can never break rendering due to ordering concerns.
+    LinkedList<Node> styleNodes = Lists.newLinkedList();
+    NodeList bodyKids = body.getChildNodes();
+    for (int i = 0; i < bodyKids.getLength(); ++i) {
+      Node bodyKid = bodyKids.item(i);
+      if (bodyKid.getNodeType() == Node.ELEMENT_NODE &&
+          isStyleElement((Element)bodyKid)) {
+        styleNodes.add(bodyKid);
       }
     }
 
+    for (Node styleNode : styleNodes) {
+      head.appendChild(body.removeChild(styleNode));
+    }
+
+    // Finally, reprocess all script nodes for OpenSocial purposes, as these
+    // may be interpreted (rightly, from the perspective of HTML) as containing text only.
+    reprocessScriptForOpenSocial(html);
+
     if (shouldCache) {
-      Document copy = (Document)document.cloneNode(true);
-      HtmlSerialization.copySerializer(document, copy);
-      return copy;
+      // The snapshot is taken before the caller gets to modify the document.
+      documentCache.addElement(key, CompactParseTree.of(document));
     }
+
     return document;
   }
 
@@ -233,9 +233,9 @@ public abstract class GadgetHtmlParser {
     String key = null;
     if (shouldCache) {
       key = HashUtil.checksum(source.getBytes());
-      DocumentFragment cachedFragment = fragmentCache.getElement(key);
+      CompactParseTree cachedFragment = fragmentCache.getElement(key);
       if (cachedFragment != null) {
-        copyFragment(cachedFragment, result);
+        cachedFragment.appendTo(result);
         return;
       }
     }
@@ -251,7 +251,7 @@ public abstract class GadgetHtmlParser {
 
     reprocessScriptForOpenSocial(fragment);
     if (shouldCache) {
-      fragmentCache.addElement(key, fragment);
+      fragmentCache.addElement(key, CompactParseTree.of(fragment));
     }
     copyFragment(fragment, result);
   }
@@ -64,7 +64,10 @@ public class HtmlSerialization {
   /**
    * Copy serializer from one document to another. Note this requires that
    * serializers are thread safe
+   *
+   * @deprecated cached parse trees are no longer cloned. Use {@link #attach} on the new document.
    */
+  @Deprecated
   static void copySerializer(Document from, Document to) {
     Integer length = (Integer)from.getUserData(ORIGINAL_LENGTH);
     if (length != null) to.setUserData(ORIGINAL_LENGTH, length, null);
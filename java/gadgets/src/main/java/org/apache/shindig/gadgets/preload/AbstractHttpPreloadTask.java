@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.preload;
+
+import org.apache.shindig.gadgets.http.AsyncRequestPipeline;
+import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.http.HttpResponse;
+import org.apache.shindig.gadgets.http.RequestPipeline;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A preload task that consists of a single HTTP request. Besides being callable directly, the
+ * request can be handed to an {@link AsyncRequestPipeline}, so that the calling thread is not
+ * held for the task while the fetch is in progress.
+ */
+public abstract class AbstractHttpPreloadTask implements Callable<PreloadedData> {
+  private final RequestPipeline requestPipeline;
+
+  protected AbstractHttpPreloadTask(RequestPipeline requestPipeline) {
+    this.requestPipeline = requestPipeline;
+  }
+
+  /**
+   * @return The request to fetch for this preload.
+   */
+  protected abstract HttpRequest createRequest() throws Exception;
+
+  /**
+   * @return The preloaded data for the fetched response.
+   */
+  protected abstract PreloadedData createPreloadedData(HttpResponse response) throws Exception;
+
+  public PreloadedData call() throws Exception {
+    return createPreloadedData(requestPipeline.execute(createRequest()));
+  }
+
+  /**
+   * Start the fetch on the given pipeline. The response is converted by the first thread that
+   * reads the returned future.
+   */
+  public Future<PreloadedData> dispatch(AsyncRequestPipeline asyncPipeline) {
+    try {
+      return new ResponseFuture(asyncPipeline.executeAsync(createRequest()));
+    } catch (Exception e) {
+      return new ResponseFuture(e);
+    }
+  }
+
+  private class ResponseFuture implements Future<PreloadedData> {
+    private final Future<HttpResponse> response;
+    private PreloadedData data;
+    private Throwable failure;
+    private volatile boolean done;
+
+    ResponseFuture(Future<HttpResponse> response) {
+      this.response = response;
+    }
+
+    ResponseFuture(Exception failure) {
+      this.response = null;
+      this.failure = failure;
+      this.done = true;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return response != null && response.cancel(mayInterruptIfRunning);
+    }
+
+    public boolean isCancelled() {
+      return response != null && response.isCancelled();
+    }
+
+    public boolean isDone() {
+      return response == null || response.isDone();
+    }
+
+    public PreloadedData get() throws InterruptedException, ExecutionException {
+      HttpResponse result = done ? null : response.get();
+      return convert(result);
+    }
+
+    public PreloadedData get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      HttpResponse result = done ? null : response.get(timeout, unit);
+      return convert(result);
+    }
+
+    private synchronized PreloadedData convert(HttpResponse result) throws ExecutionException {
+      if (!done) {
+        try {
+          data = createPreloadedData(result);
+        } catch (Exception e) {
+          failure = e;
+        }
+        done = true;
+      }
+      if (failure != null) {
+        throw new ExecutionException(failure);
+      }
+      return data;
+    }
+  }
+}
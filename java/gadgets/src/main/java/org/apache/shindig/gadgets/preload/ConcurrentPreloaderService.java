@@ -18,6 +18,7 @@
 package org.apache.shindig.gadgets.preload;
 
 import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.http.AsyncRequestPipeline;
 
 import java.util.Collection;
 import java.util.concurrent.Callable;
@@ -25,6 +26,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 /**
  * Preloads will be fetched concurrently using the injected ExecutorService, and they can be read
@@ -32,17 +34,28 @@ import com.google.inject.Inject;
  *
  * The last preloaded object always executes in the current thread to avoid creating unnecessary
  * additional threads when we're blocking the current request anyway.
+ *
+ * The other HTTP preloads are handed to the {@link AsyncRequestPipeline} when one is available.
+ * The default pipeline still blocks one of its own pool threads for each fetch; only a pipeline
+ * backed by a non-blocking HTTP client frees threads while waiting on the remote server.
  */
 public class ConcurrentPreloaderService implements PreloaderService {
   private final ExecutorService executor;
   private Preloader preloader;
+  private AsyncRequestPipeline asyncPipeline;
 
   @Inject
-  public ConcurrentPreloaderService(ExecutorService executor, Preloader preloader) {
+  public ConcurrentPreloaderService(@Named("shindig.preload.executor") ExecutorService executor,
+      Preloader preloader) {
     this.executor = executor;
     this.preloader = preloader;
   }
 
+  @Inject(optional = true)
+  public void setAsyncRequestPipeline(AsyncRequestPipeline asyncPipeline) {
+    this.asyncPipeline = asyncPipeline;
+  }
+
   public Collection<PreloadedData> preload(Gadget gadget) {
     Collection<Callable<PreloadedData>> tasks =
         preloader.createPreloadTasks(gadget);
@@ -60,6 +73,8 @@ public class ConcurrentPreloaderService implements PreloaderService {
         FutureTask<PreloadedData> futureTask = new FutureTask<PreloadedData>(task);
         futureTask.run();
         preloads.add(futureTask);
+      } else if (asyncPipeline != null && task instanceof AbstractHttpPreloadTask) {
+        preloads.add(((AbstractHttpPreloadTask) task).dispatch(asyncPipeline));
       } else {
         preloads.add(executor.submit(task));
       }
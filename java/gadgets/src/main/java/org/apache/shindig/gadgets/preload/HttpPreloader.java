@@ -79,21 +79,26 @@ public class HttpPreloader implements Preloader {
         .setIgnoreCache(context.getIgnoreCache());
   }
 
-  class PreloadTask implements Callable<PreloadedData> {
+  class PreloadTask extends AbstractHttpPreloadTask {
     private final GadgetContext context;
     private final Preload preload;
     private final String key;
 
     public PreloadTask(GadgetContext context, Preload preload, String key) {
+      super(requestPipeline);
       this.context = context;
       this.preload = preload;
       this.key = key;
     }
 
-    public PreloadedData call() throws Exception {
-      HttpRequest request = newHttpRequest(context, preload);
+    @Override
+    protected HttpRequest createRequest() throws GadgetException {
+      return newHttpRequest(context, preload);
+    }
 
-      return new HttpPreloadData(requestPipeline.execute(request), key);
+    @Override
+    protected PreloadedData createPreloadedData(HttpResponse response) {
+      return new HttpPreloadData(response, key);
     }
   }
 
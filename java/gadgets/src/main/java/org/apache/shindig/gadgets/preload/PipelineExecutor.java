@@ -23,6 +23,7 @@ import org.apache.shindig.expressions.Expressions;
 import org.apache.shindig.expressions.RootELResolver;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.GadgetELResolver;
+import org.apache.shindig.gadgets.http.AsyncRequestPipeline;
 import org.apache.shindig.gadgets.spec.PipelinedData;
 import org.apache.shindig.gadgets.spec.PipelinedData.Batch;
 
@@ -41,6 +42,9 @@ import com.google.inject.Inject;
 
 /**
  * Runs data pipelining, chaining dependencies among batches as needed.
+ *
+ * When an {@link AsyncRequestPipeline} is available, the HTTP preloads of each batch are
+ * dispatched on it directly, and only the other preloads go to the {@link PreloaderService}.
  */
 public class PipelineExecutor {
   // TODO: support configuration
@@ -50,6 +54,7 @@ public class PipelineExecutor {
   private final PipelinedDataPreloader preloader;
   private final PreloaderService preloaderService;
   private final Expressions expressions;
+  private AsyncRequestPipeline asyncPipeline;
 
   @Inject
   public PipelineExecutor(PipelinedDataPreloader preloader,
@@ -60,6 +65,11 @@ public class PipelineExecutor {
     this.expressions = expressions;
   }
 
+  @Inject(optional = true)
+  public void setAsyncRequestPipeline(AsyncRequestPipeline asyncPipeline) {
+    this.asyncPipeline = asyncPipeline;
+  }
+
   /**
    * Results from a full pipeline execution.
    */
@@ -121,7 +131,7 @@ public class PipelineExecutor {
         break;
       }
 
-      Collection<PreloadedData> preloads = preloaderService.preload(tasks);
+      Collection<PreloadedData> preloads = preload(tasks);
       for (PreloadedData preloaded : preloads) {
         try {
           for (Object entry : preloaded.toJson()) {
@@ -172,6 +182,30 @@ public class PipelineExecutor {
     return new Results(remainingPipelines, results, elResults);
   }
 
+  private Collection<PreloadedData> preload(List<Callable<PreloadedData>> tasks) {
+    if (asyncPipeline == null) {
+      return preloaderService.preload(tasks);
+    }
+
+    ConcurrentPreloads dispatched = new ConcurrentPreloads(tasks.size());
+    List<Callable<PreloadedData>> others = Lists.newArrayList();
+    for (Callable<PreloadedData> task : tasks) {
+      if (task instanceof AbstractHttpPreloadTask) {
+        dispatched.add(((AbstractHttpPreloadTask) task).dispatch(asyncPipeline));
+      } else {
+        others.add(task);
+      }
+    }
+    if (others.isEmpty()) {
+      return dispatched;
+    }
+
+    // The other preloads run while the HTTP fetches are in flight.
+    List<PreloadedData> preloads = Lists.newArrayList(preloaderService.preload(others));
+    preloads.addAll(dispatched);
+    return preloads;
+  }
+
   /** State of one of the pipelines */
   static class PipelineState {
     public PipelineState(PipelinedData pipeline, Batch batch) {
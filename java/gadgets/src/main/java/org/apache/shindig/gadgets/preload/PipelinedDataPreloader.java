@@ -38,6 +38,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.UnsupportedEncodingException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -223,18 +224,20 @@ public class PipelinedDataPreloader {
   }
 
   /** A task for loading os:HttpRequest */
-  class HttpPreloadTask implements Callable<PreloadedData> {
+  class HttpPreloadTask extends AbstractHttpPreloadTask {
     private final GadgetContext context;
     private final RequestAuthenticationInfo preload;
     private final String key;
 
     public HttpPreloadTask(GadgetContext context, RequestAuthenticationInfo preload, String key) {
+      super(requestPipeline);
       this.context = context;
       this.preload = preload;
       this.key = key;
     }
 
-    public PreloadedData call() throws Exception {
+    @Override
+    protected HttpRequest createRequest() throws GadgetException, UnsupportedEncodingException {
       HttpRequest request = HttpPreloader.newHttpRequest(context, preload);
       String refreshIntervalStr = preload.getAttributes().get("refreshInterval");
       if (refreshIntervalStr != null) {
@@ -266,7 +269,12 @@ public class PipelinedDataPreloader {
         }
       }
 
-      return new Data(requestPipeline.execute(request));
+      return request;
+    }
+
+    @Override
+    protected PreloadedData createPreloadedData(HttpResponse response) {
+      return new Data(response);
     }
 
     // TODO: change HttpPreloader to use this format
@@ -18,29 +18,50 @@
  */
 package org.apache.shindig.gadgets.render;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.auth.SecurityToken;
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.cache.SoftExpiringCache;
 import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.parse.GadgetHtmlParser;
+import org.apache.shindig.gadgets.preload.HttpPreloader;
 import org.apache.shindig.gadgets.preload.PreloadedData;
+import org.apache.shindig.gadgets.preload.Preloader;
 import org.apache.shindig.gadgets.preload.PreloaderService;
+import org.apache.shindig.gadgets.rewrite.ContentRewriterFeature;
 import org.apache.shindig.gadgets.rewrite.GadgetRewriter;
 import org.apache.shindig.gadgets.rewrite.MutableContent;
+import org.apache.shindig.gadgets.rewrite.RewriterMetrics;
 import org.apache.shindig.gadgets.rewrite.RewritingException;
+import org.apache.shindig.gadgets.rewrite.TemplateRewriter;
+import org.apache.shindig.gadgets.spec.GadgetSpec;
+import org.apache.shindig.gadgets.spec.ModulePrefs;
 import org.apache.shindig.gadgets.spec.View;
 
 import java.util.Collection;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 /**
  * Handles producing output markup for a gadget based on the provided context.
+ *
+ * The output of gadgets that render the same for every viewer is cached. See
+ * {@link #getCacheKey(Gadget, View)} for which gadgets qualify.
  */
 public class HtmlRenderer {
   public static final String PATH_PARAM = "path";
+  public static final String CACHE_NAME = "renderedGadgets";
   private final PreloaderService preloader;
   private final ProxyRenderer proxyRenderer;
   private final GadgetRewritersProvider gadgetRewritersProvider;
   private final GadgetHtmlParser htmlParser;
+  SoftExpiringCache<String, String> renderCache;
+  private ContentRewriterFeature.Factory rewriterFeatureFactory;
+  private long refresh;
 
   @Inject
   public HtmlRenderer(PreloaderService preloader,
@@ -53,6 +74,28 @@ public class HtmlRenderer {
     this.htmlParser = htmlParser;
   }
 
+  /**
+   * Without a cache, every gadget is rendered on every request. Cached output is rendered again
+   * after the refresh interval, which picks up updated message bundles.
+   *
+   * Cached output skips preloading, so nothing is cached unless the bound {@link Preloader} is the
+   * default {@link HttpPreloader}, which only preloads what a gadget declares in its spec. Other
+   * preloaders may add data to any gadget.
+   */
+  @Inject(optional = true)
+  public void setRenderCache(CacheProvider cacheProvider,
+      ContentRewriterFeature.Factory rewriterFeatureFactory,
+      Preloader preloader,
+      @Named("shindig.cache.xml.refreshInterval") long refresh) {
+    if (preloader.getClass() != HttpPreloader.class) {
+      return;
+    }
+    Cache<String, String> cache = cacheProvider.createCache(CACHE_NAME);
+    this.renderCache = new SoftExpiringCache<String, String>(cache);
+    this.rewriterFeatureFactory = rewriterFeatureFactory;
+    this.refresh = refresh;
+  }
+
   /**
    * Render the gadget into a string by performing the following steps:
    *
@@ -70,7 +113,16 @@ public class HtmlRenderer {
     try {
       View view = gadget.getCurrentView();
 
-      // We always execute these preloads, they have nothing to do with the cache output.
+      String cacheKey = getCacheKey(gadget, view);
+      if (cacheKey != null) {
+        SoftExpiringCache.CachedObject<String> cached = renderCache.getElement(cacheKey);
+        if (cached != null && !cached.isExpired) {
+          return cached.obj;
+        }
+      }
+
+      // Preloads are only skipped for cached output; gadgets with a cache key have nothing to
+      // preload.
       Collection<PreloadedData> preloads = preloader.preload(gadget);
       gadget.setPreloads(preloads);
 
@@ -85,10 +137,14 @@ public class HtmlRenderer {
       MutableContent mc = new MutableContent(htmlParser, content);
       for (GadgetRewriter rewriter : 
           gadgetRewritersProvider.getRewriters(gadget.getContext())) {
-        rewriter.rewrite(gadget, mc);
+        RewriterMetrics.rewrite(rewriter, gadget, mc);
+      }
+
+      String output = mc.getContent();
+      if (cacheKey != null) {
+        renderCache.addElement(cacheKey, output, refresh);
       }
-      
-      return mc.getContent();
+      return output;
     } catch (GadgetException e) {
       throw new RenderingException(e.getMessage(), e, e.getHttpStatusCode());
     } catch (RewritingException e) {
@@ -99,4 +155,53 @@ public class HtmlRenderer {
   protected String getViewContent(Gadget gadget, View view) {
     return view.getContent();
   }
+
+  /**
+   * Builds the key under which the output of the gadget is cached. The key holds everything the
+   * spec and the rewriters read from the request: the spec and its checksum, the view, locale,
+   * container, host, module id, debug flag, rendering context, the libs, caja and sanitize
+   * parameters and the fingerprint of the content rewriting rules.
+   *
+   * @return the key, or null if the output must not be cached: the request bypasses caches, the
+   *     view is proxied or has user prefs in its content, the gadget preloads data or uses
+   *     templates, the security token identifies a viewer, or a custom preloader is bound.
+   */
+  String getCacheKey(Gadget gadget, View view) {
+    GadgetContext context = gadget.getContext();
+    if (renderCache == null || context.getIgnoreCache() || view.getHref() != null ||
+        view.needsUserPrefSubstitution() || view.getPipelinedData() != null) {
+      return null;
+    }
+
+    GadgetSpec spec = gadget.getSpec();
+    ModulePrefs modulePrefs = spec.getModulePrefs();
+    if (!modulePrefs.getPreloads().isEmpty() ||
+        modulePrefs.getFeatures().containsKey(TemplateRewriter.TEMPLATES_FEATURE_NAME) ||
+        modulePrefs.getFeatures().containsKey(TemplateRewriter.OSML_FEATURE_NAME)) {
+      return null;
+    }
+
+    // The token ends up in the output through the shindig.auth configuration.
+    SecurityToken token = context.getToken();
+    if (token != null && !(token.isAnonymous() &&
+        StringUtils.isEmpty(token.getUpdatedToken()) &&
+        StringUtils.isEmpty(token.getTrustedJson()))) {
+      return null;
+    }
+
+    StringBuilder key = new StringBuilder(256);
+    key.append(spec.getUrl()).append('#').append(spec.getChecksum())
+        .append('|').append(view.getName())
+        .append('|').append(context.getLocale())
+        .append('|').append(context.getContainer())
+        .append('|').append(context.getHost())
+        .append('|').append(context.getModuleId())
+        .append('|').append(context.getDebug())
+        .append('|').append(context.getRenderingContext())
+        .append('|').append(context.getParameter("libs"))
+        .append('|').append(context.getParameter("caja"))
+        .append('|').append(context.getParameter("sanitize"))
+        .append('|').append(rewriterFeatureFactory.get(spec).getFingerprint());
+    return key.toString();
+  }
 }
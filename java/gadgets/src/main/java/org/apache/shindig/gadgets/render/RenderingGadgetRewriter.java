@@ -19,6 +19,8 @@
 package org.apache.shindig.gadgets.render;
 
 import org.apache.shindig.common.JsonSerializer;
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.xml.DomUtil;
 import org.apache.shindig.config.ContainerConfig;
@@ -54,6 +56,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
@@ -90,6 +93,7 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
   static final String IS_GADGET_BEACON = "window['__isgadget']=true;";
   static final String INSERT_BASE_ELEMENT_KEY = "gadgets.insertBaseElement";
   static final String FEATURES_KEY = "gadgets.features";
+  public static final String CACHE_NAME = "featureJs";
 
   protected final MessageBundleFactory messageBundleFactory;
   protected final ContainerConfig containerConfig;
@@ -102,6 +106,8 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
 
   protected Boolean externalizeFeatures = false;
 
+  private Cache<String, FeatureJs> featureJsCache;
+
   /**
    * @param messageBundleFactory Used for injecting message bundles into gadget output.
    */
@@ -130,6 +136,14 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
     this.externalizeFeatures = externalizeFeatures;
   }
 
+  /**
+   * Without a cache, the javascript of the gadget's features is assembled on every render.
+   */
+  @Inject(optional = true)
+  public void setCacheProvider(CacheProvider cacheProvider) {
+    featureJsCache = cacheProvider.createCache(CACHE_NAME);
+  }
+
   public void rewrite(Gadget gadget, MutableContent mutableContent) throws RewritingException {
     // Don't touch sanitized gadgets.
     if (gadget.sanitizeOutput()) {
@@ -227,13 +241,72 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
       externForcedLibs = Sets.newTreeSet(Arrays.asList(StringUtils.split(externParam, ':')));
     }
 
+    Document document = headTag.getOwnerDocument();
     if (!externForcedLibs.isEmpty()) {
       String jsUrl = jsUriManager.makeExternJsUri(gadget, externForcedLibs).toString();
-      Element libsTag = headTag.getOwnerDocument().createElement("script");
+      Element libsTag = document.createElement("script");
       libsTag.setAttribute("src", jsUrl);
       headTag.insertBefore(libsTag, firstHeadChild);
     }
 
+    List<String> gadgetFeatureKeys = Lists.newArrayList(gadget.getDirectFeatureDeps());
+    FeatureJs featureJs = getFeatureJs(gadget, gadgetFeatureKeys, externForcedLibs);
+
+    if (!featureJs.externGadgetLibs.isEmpty()) {
+      String jsUrl = jsUriManager.makeExternJsUri(gadget, featureJs.externGadgetLibs).toString();
+      Element libsTag = document.createElement("script");
+      libsTag.setAttribute("src", jsUrl);
+      headTag.insertBefore(libsTag, firstHeadChild);
+    }
+
+    // Inline any libs that weren't extern. The ugly context switch between inline and external
+    // Js is needed to allow both inline and external scripts declared in feature.xml.
+    // The inline blocks are shared by all renders of the same features, and go into the
+    // document as they are.
+    for (int i = 0; i < featureJs.inlineJs.size(); ++i) {
+      String inlineJs = featureJs.inlineJs.get(i);
+      if (i == featureJs.externalJs.size()) {
+        // The last block ends with the configuration of this request.
+        String libraryConfig = getLibraryConfig(gadget, featureJs.allFeatures);
+        Element inlineTag = document.createElement("script");
+        headTag.insertBefore(inlineTag, firstHeadChild);
+        if (inlineJs.length() > 0) {
+          inlineTag.appendChild(document.createTextNode(inlineJs));
+        }
+        inlineTag.appendChild(document.createTextNode(libraryConfig));
+      } else {
+        if (inlineJs.length() > 0) {
+          Element inlineTag = document.createElement("script");
+          headTag.insertBefore(inlineTag, firstHeadChild);
+          inlineTag.appendChild(document.createTextNode(inlineJs));
+        }
+        Element referenceTag = document.createElement("script");
+        referenceTag.setAttribute("src", featureJs.externalJs.get(i));
+        headTag.insertBefore(referenceTag, firstHeadChild);
+      }
+    }
+  }
+
+  /**
+   * Resolves the javascript of the gadget's features, or gets it from the cache.
+   *
+   * @throws UnsupportedFeatureException if the gadget requires features that are not known.
+   */
+  private FeatureJs getFeatureJs(Gadget gadget, List<String> gadgetFeatureKeys,
+      Set<String> externForcedLibs) throws UnsupportedFeatureException {
+    GadgetContext context = gadget.getContext();
+    String key = null;
+    if (featureJsCache != null && !context.getIgnoreCache()) {
+      key = context.getContainer() + '|' + context.getRenderingContext() + '|' +
+          context.getDebug() + '|' + externForcedLibs + '|' + gadgetFeatureKeys;
+      FeatureJs cached = featureJsCache.getElement(key);
+      if (cached != null) {
+        // Whether the unknown features are optional is up to each gadget.
+        checkUnsupported(gadget, cached.unsupported);
+        return cached;
+      }
+    }
+
     List<String> unsupported = Lists.newLinkedList();
 
     List<FeatureResource> externForcedResources =
@@ -244,44 +317,24 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
     }
 
     // Get all resources requested by the gadget's requires/optional features.
-    Map<String, Feature> featureMap = gadget.getSpec().getModulePrefs().getFeatures();
-    List<String> gadgetFeatureKeys = Lists.newArrayList(gadget.getDirectFeatureDeps());
     List<FeatureResource> gadgetResources =
         featureRegistry.getFeatureResources(context, gadgetFeatureKeys, unsupported);
-    if (!unsupported.isEmpty()) {
-      List<String> requiredUnsupported = Lists.newLinkedList();
-      for (String notThere : unsupported) {
-        if (!featureMap.containsKey(notThere) || featureMap.get(notThere).getRequired()) {
-          // if !containsKey, the lib was forced with Gadget.addFeature(...) so implicitly req'd.
-          requiredUnsupported.add(notThere);
-        }
-      }
-      if (!requiredUnsupported.isEmpty()) {
-        throw new UnsupportedFeatureException(requiredUnsupported.toString());
-      }
-    }
+    checkUnsupported(gadget, unsupported);
 
     // Inline or externalize the gadgetFeatureKeys
     List<FeatureResource> inlineResources = Lists.newArrayList();
     List<String> allRequested = Lists.newArrayList(gadgetFeatureKeys);
+    Set<String> externGadgetLibs = ImmutableSet.of();
 
     if (externalizeFeatures) {
-      Set<String> externGadgetLibs = Sets.newTreeSet(featureRegistry.getFeatures(gadgetFeatureKeys));
+      externGadgetLibs = Sets.newTreeSet(featureRegistry.getFeatures(gadgetFeatureKeys));
       externGadgetLibs.removeAll(externForcedLibs);
-
-      if (!externGadgetLibs.isEmpty()) {
-        String jsUrl = jsUriManager.makeExternJsUri(gadget, externGadgetLibs).toString();
-        Element libsTag = headTag.getOwnerDocument().createElement("script");
-        libsTag.setAttribute("src", jsUrl);
-        headTag.insertBefore(libsTag, firstHeadChild);
-      }
     } else {
       inlineResources.addAll(gadgetResources);
     }
 
     // Calculate inlineResources as all resources that are needed by the gadget to
     // render, minus all those included through externResources.
-    // TODO: profile and if needed, optimize this a bit.
     if (!externForcedLibs.isEmpty()) {
       allRequested.addAll(externForcedLibs);
       inlineResources.removeAll(externForcedResources);
@@ -299,37 +352,44 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
       }
     }
 
-    String libraryConfig =
-        getLibraryConfig(gadget, featureRegistry.getFeatures(allRequested));
-
     // Size has a small fudge factor added to it for delimiters and such.
-    StringBuilder inlineJs = new StringBuilder(size + libraryConfig.length() + INLINE_JS_BUFFER);
-
-    // Inline any libs that weren't extern. The ugly context switch between inline and external
-    // Js is needed to allow both inline and external scripts declared in feature.xml.
+    StringBuilder inlineJs = new StringBuilder(size + INLINE_JS_BUFFER);
+    List<String> inlineBlocks = Lists.newArrayList();
+    List<String> externalJs = Lists.newArrayList();
     for (FeatureResource resource : inlineResources) {
       String theContent = context.getDebug() ? resource.getDebugContent() : resource.getContent();
       if (resource.isExternal()) {
-        if (inlineJs.length() > 0) {
-          Element inlineTag = headTag.getOwnerDocument().createElement("script");
-          headTag.insertBefore(inlineTag, firstHeadChild);
-          inlineTag.appendChild(headTag.getOwnerDocument().createTextNode(inlineJs.toString()));
-          inlineJs.setLength(0);
-        }
-        Element referenceTag = headTag.getOwnerDocument().createElement("script");
-        referenceTag.setAttribute("src", theContent);
-        headTag.insertBefore(referenceTag, firstHeadChild);
+        inlineBlocks.add(inlineJs.toString());
+        inlineJs.setLength(0);
+        externalJs.add(theContent);
       } else {
         inlineJs.append(theContent).append(";\n");
       }
     }
+    inlineBlocks.add(inlineJs.toString());
 
-    inlineJs.append(libraryConfig);
+    FeatureJs featureJs = new FeatureJs(inlineBlocks, externalJs, externGadgetLibs,
+        featureRegistry.getFeatures(allRequested), unsupported);
+    if (key != null) {
+      featureJsCache.addElement(key, featureJs);
+    }
+    return featureJs;
+  }
 
-    if (inlineJs.length() > 0) {
-      Element inlineTag = headTag.getOwnerDocument().createElement("script");
-      headTag.insertBefore(inlineTag, firstHeadChild);
-      inlineTag.appendChild(headTag.getOwnerDocument().createTextNode(inlineJs.toString()));
+  private void checkUnsupported(Gadget gadget, List<String> unsupported)
+      throws UnsupportedFeatureException {
+    if (!unsupported.isEmpty()) {
+      Map<String, Feature> featureMap = gadget.getSpec().getModulePrefs().getFeatures();
+      List<String> requiredUnsupported = Lists.newLinkedList();
+      for (String notThere : unsupported) {
+        if (!featureMap.containsKey(notThere) || featureMap.get(notThere).getRequired()) {
+          // if !containsKey, the lib was forced with Gadget.addFeature(...) so implicitly req'd.
+          requiredUnsupported.add(notThere);
+        }
+      }
+      if (!requiredUnsupported.isEmpty()) {
+        throw new UnsupportedFeatureException(requiredUnsupported.toString());
+      }
     }
   }
 
@@ -421,4 +481,25 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
     text.appendData(";");
     scriptTag.appendChild(text);
   }
+
+  /**
+   * The javascript of a set of features: inline blocks alternating with external scripts, the
+   * first and last blocks being inline. Blocks may be empty.
+   */
+  private static final class FeatureJs {
+    private final List<String> inlineJs;
+    private final List<String> externalJs;
+    private final Set<String> externGadgetLibs;
+    private final List<String> allFeatures;
+    private final List<String> unsupported;
+
+    private FeatureJs(List<String> inlineJs, List<String> externalJs,
+        Set<String> externGadgetLibs, List<String> allFeatures, List<String> unsupported) {
+      this.inlineJs = ImmutableList.copyOf(inlineJs);
+      this.externalJs = ImmutableList.copyOf(externalJs);
+      this.externGadgetLibs = ImmutableSortedSet.copyOf(externGadgetLibs);
+      this.allFeatures = ImmutableList.copyOf(allFeatures);
+      this.unsupported = ImmutableList.copyOf(unsupported);
+    }
+  }
 }
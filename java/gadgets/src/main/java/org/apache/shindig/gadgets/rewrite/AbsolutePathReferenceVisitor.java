@@ -25,7 +25,8 @@ import com.google.inject.Inject;
 import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.Gadget;
-import org.apache.shindig.gadgets.rewrite.DomWalker.Visitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.ImmediateVisitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.StreamingVisitor;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -43,7 +44,7 @@ import java.util.Map;
  *
  * @since 2.0.0
  */
-public class AbsolutePathReferenceVisitor implements Visitor {
+public class AbsolutePathReferenceVisitor implements ImmediateVisitor, StreamingVisitor {
   public enum Tags {
     // Resources which would be fetched by the browser when rendering the page.
     RESOURCES(ImmutableMap.<String, String>builder()
@@ -39,7 +39,7 @@ import java.util.Set;
  * DOM mutator that concatenates resources using the concat servlet
  * @since 2.0.0
  */
-public class ConcatVisitor implements DomWalker.Visitor {
+public class ConcatVisitor implements DomWalker.TagFilteringVisitor {
   public static class Js extends ConcatVisitor {
     public Js(ContentRewriterFeature.Config config,
               ConcatUriManager uriManager) {
@@ -87,6 +87,15 @@ public class ConcatVisitor implements DomWalker.Visitor {
     return VisitStatus.BYPASS;
   }
 
+  /**
+   * Whether an element is reserved depends on its siblings, which a start tag doesn't tell, so
+   * every rewritable element may be.
+   */
+  public boolean mayReserve(Gadget gadget, Element element) {
+    return element.getNodeName().equalsIgnoreCase(type.getTagName()) &&
+        isRewritableExternData(element);
+  }
+
   /**
    * For css:
    * Link tags are first split into buckets separated by tags with mediaType == "all"
@@ -30,7 +30,8 @@ import java.util.List;
  *
  * @since 2.0.0
  */
-public class ContentTypeCharsetRemoverVisitor implements DomWalker.Visitor {
+public class ContentTypeCharsetRemoverVisitor
+    implements DomWalker.ImmediateVisitor, DomWalker.StreamingVisitor {
   public final static String CONTENT = "content";
   public final static String CONTENT_TYPE = "content-type";
   public final static String HTTP_EQUIV = "http-equiv";
@@ -54,7 +54,7 @@ public class DefaultResponseRewriterRegistry implements ResponseRewriterRegistry
     HttpResponseBuilder builder = new HttpResponseBuilder(htmlParser, resp);
 
     for (ResponseRewriter rewriter : rewriters) {
-      rewriter.rewrite(req, builder);
+      RewriterMetrics.rewrite(rewriter, req, builder);
     }
     
     // Returns the original HttpResponse if no changes have been made.
@@ -18,25 +18,26 @@
  */
 package org.apache.shindig.gadgets.rewrite;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.Gadget;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.http.HttpRequest;
 import org.apache.shindig.gadgets.http.HttpResponseBuilder;
+import org.apache.shindig.gadgets.rewrite.DomWalker.Visitor.VisitStatus;
 import org.apache.shindig.gadgets.spec.GadgetSpec;
 import org.apache.shindig.gadgets.uri.UriCommon.Param;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Framework-in-a-framework facilitating the common Visitor case
@@ -47,6 +48,9 @@ import java.util.Map;
  * @since 2.0.0
  */
 public final class DomWalker {
+  /** The maximum number of groups of visitors sharing a {@code Walk}. */
+  static final int MAX_GROUPS = 64;
+
   private DomWalker() {}
 
   /**
@@ -143,77 +147,191 @@ public final class DomWalker {
         throws RewritingException {
       if (RewriterUtils.isHtml(request, builder)) {
         Gadget context = makeGadget(request);
-        rewrite(makeVisitors(context, request.getGadget()), context, builder);
+        List<Visitor> visitors = makeVisitors(context, request.getGadget());
+        List<List<Visitor>> groups = Collections.singletonList(visitors);
+        if (builder.hasDocument() || !StreamingWalk.canStream(groups) ||
+            !new StreamingWalk(groups).run(context, builder)) {
+          rewrite(visitors, context, builder);
+        }
       }
     }
     
     private boolean rewrite(List<Visitor> visitors, Gadget gadget, MutableContent content) 
         throws RewritingException {
-      Map<Visitor, List<Node>> reservations = Maps.newHashMap();
-        
-      LinkedList<Node> toVisit = Lists.newLinkedList();
+      List<List<Visitor>> groups = Collections.singletonList(visitors);
+      return new Walk(groups).run(gadget, content);
+    }
+  }
+
+  /**
+   * Marks a {@code Visitor} that does all of its work in {@code visit(Gadget, Node)}: it only
+   * modifies the node it is given, never reserves nodes and does nothing in revisit(...).
+   *
+   * Once such a visitor has seen a node, the node is final as far as it is concerned, so later
+   * rewriters may visit the node in the same traversal. See {@code FusedDomRewriter}.
+   */
+  public interface ImmediateVisitor extends Visitor {
+  }
+
+  /**
+   * Marks a {@code Visitor} that only reads and changes the attributes of the elements it visits,
+   * and looks no further into the document than its first &lt;base&gt; element.
+   *
+   * Responses rewritten by such visitors are not parsed into a DOM, see {@code StreamingWalk}.
+   * The nodes visited are then Elements holding just the attributes of a start tag, whose owner
+   * document holds nothing but the &lt;base&gt; element seen so far, if any. Reserved nodes may
+   * be revisited in several batches, and reserving a tree reserves the node alone.
+   */
+  public interface StreamingVisitor extends Visitor {
+  }
+
+  /**
+   * A {@code Visitor} that needs the DOM, but can tell from a start tag alone that it leaves the
+   * element alone. A {@code StreamingWalk} bypasses such a visitor for as long as it says so, and
+   * leaves the content to a DOM walk as soon as it doesn't.
+   */
+  public interface TagFilteringVisitor extends Visitor {
+    /**
+     * @param gadget Context for the request.
+     * @param element Element holding the attributes of a start tag, as for a
+     *     {@code StreamingVisitor}.
+     * @return false only if {@code visit(Gadget, Node)} bypasses the element and leaves the
+     *     document alone wherever the element stands in it.
+     */
+    boolean mayReserve(Gadget gadget, Element element) throws RewritingException;
+  }
+
+  /**
+   * A single depth-first traversal of the DOM on behalf of one or more groups of visitors, each
+   * group being the visitors of one rewriter.
+   *
+   * Every group sees the tree as it would walking it alone: the groups visit each node in order,
+   * a reservation only stops the visitors of its own group, and a reserved tree is only skipped
+   * by the group that reserved it. Reserved nodes are kept in one table indexed by group and
+   * visitor, and revisited group by group once the walk is done.
+   */
+  static final class Walk {
+    private final List<List<Visitor>> groups;
+    private final List<Node>[][] reservations;
+    private final long[] revisitNanos;
+    private long traversalNanos;
+
+    @SuppressWarnings("unchecked")
+    Walk(List<List<Visitor>> groups) {
+      Preconditions.checkArgument(groups.size() <= MAX_GROUPS,
+          "At most %s groups of visitors may share a walk", MAX_GROUPS);
+      this.groups = groups;
+      this.reservations = new List[groups.size()][];
+      for (int i = 0; i < reservations.length; ++i) {
+        List<Visitor> visitors = groups.get(i);
+        reservations[i] = new List[visitors == null ? 0 : visitors.size()];
+      }
+      this.revisitNanos = new long[groups.size()];
+    }
+
+    /**
+     * Visits the document, then revisits the reserved nodes.
+     *
+     * @return true if any visitor modified the document.
+     */
+    boolean run(Gadget gadget, MutableContent content) throws RewritingException {
       Document doc = content.getDocument();
       if (doc == null) {
         throw new RewritingException("content.getDocument is null. Content: "
                                      + content.getContent(),
                                      HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
       }
+
+      // Bit i of a node's mask is set while group i still walks the node's tree.
+      long allGroups = groups.size() == MAX_GROUPS ? -1L : (1L << groups.size()) - 1;
+      List<Node> toVisit = Lists.newArrayList();
+      long[] masks = new long[16];
       toVisit.add(doc.getDocumentElement());
+      masks[0] = allGroups;
+
       boolean mutated = false;
+      long start = System.nanoTime();
       while (!toVisit.isEmpty()) {
-        Node visiting = toVisit.removeFirst();
-          
-        // Iterate through all visitors evaluating their visitation status.
-        boolean treeReserved = false;
-        boolean nodeReserved = false;
-        for (Visitor visitor : visitors) {
-          switch(visitor.visit(gadget, visiting)) {
-          case MODIFY:
-            content.documentChanged();
-            mutated = true;
-            break;
-          case RESERVE_NODE:
-            nodeReserved = true;
-            break;
-          case RESERVE_TREE:
-            treeReserved = true;
-            break;
-          default:
-            // Aka BYPASS - do nothing.
-            break;
+        int top = toVisit.size() - 1;
+        Node visiting = toVisit.remove(top);
+        long mask = masks[top];
+
+        long childMask = mask;
+        for (int group = 0; group < reservations.length; ++group) {
+          if ((mask & (1L << group)) == 0) {
+            continue;
           }
-            
-          if (nodeReserved || treeReserved) {
-            // Reservation was made.
-            if (!reservations.containsKey(visitor)) {
-              reservations.put(visitor, Lists.<Node>newLinkedList());
+          List<Visitor> visitors = groups.get(group);
+          // Iterate through the group's visitors evaluating their visitation status.
+          for (int i = 0; i < reservations[group].length; ++i) {
+            VisitStatus status = visitors.get(i).visit(gadget, visiting);
+            if (status == VisitStatus.MODIFY) {
+              content.documentChanged();
+              mutated = true;
+            } else if (status == VisitStatus.RESERVE_NODE || status == VisitStatus.RESERVE_TREE) {
+              if (reservations[group][i] == null) {
+                reservations[group][i] = Lists.newArrayList();
+              }
+              reservations[group][i].add(visiting);
+              if (status == VisitStatus.RESERVE_TREE) {
+                childMask &= ~(1L << group);
+              }
+              break;
             }
-            reservations.get(visitor).add(visiting);
-            break;
           }
         }
-          
-        if (!treeReserved && visiting.hasChildNodes()) {
-          // Tree wasn't reserved - walk children.
-          // In order to preserve DFS order, walk children in reverse.
+
+        if (childMask != 0 && visiting.hasChildNodes()) {
+          // In order to preserve DFS order, push children in reverse.
           for (Node child = visiting.getLastChild(); child != null;
                child = child.getPreviousSibling()) {
-            toVisit.addFirst(child);
+            if (toVisit.size() == masks.length) {
+              long[] grown = new long[masks.length * 2];
+              System.arraycopy(masks, 0, grown, 0, masks.length);
+              masks = grown;
+            }
+            masks[toVisit.size()] = childMask;
+            toVisit.add(child);
           }
         }
       }
-        
+      traversalNanos = System.nanoTime() - start;
+
       // Run through all reservations, revisiting as needed.
-      for (Visitor visitor : visitors) {
-        List<Node> nodesReserved = reservations.get(visitor);
-        if (nodesReserved != null && visitor.revisit(gadget, nodesReserved)) {
-          content.documentChanged();
-          mutated = true;
+      for (int group = 0; group < reservations.length; ++group) {
+        start = System.nanoTime();
+        for (int i = 0; i < reservations[group].length; ++i) {
+          List<Node> nodesReserved = reservations[group][i];
+          if (nodesReserved != null && groups.get(group).get(i).revisit(gadget, nodesReserved)) {
+            content.documentChanged();
+            mutated = true;
+          }
         }
+        revisitNanos[group] = System.nanoTime() - start;
       }
-      
+
       return mutated;
     }
+
+    /**
+     * @return the time of the traversal, shared by all groups, plus that of the group's revisits.
+     */
+    long getNanos(int group) {
+      return traversalNanos + revisitNanos[group];
+    }
+
+    /**
+     * @return the number of nodes reserved by the visitors of the group.
+     */
+    int getReservedCount(int group) {
+      int count = 0;
+      for (List<Node> nodes : reservations[group]) {
+        if (nodes != null) {
+          count += nodes.size();
+        }
+      }
+      return count;
+    }
   }
 
   // TODO: Remove these lame hacks by changing Gadget to a proper general Context object.
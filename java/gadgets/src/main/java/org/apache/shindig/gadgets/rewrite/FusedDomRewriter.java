@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.rewrite;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.http.HttpResponseBuilder;
+import org.apache.shindig.gadgets.rewrite.DomWalker.ImmediateVisitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.Visitor;
+import org.apache.shindig.protocol.OperationMetrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs a sequence of {@code DomWalker.Rewriter}s with as few traversals of the DOM as possible.
+ *
+ * Each rewriter keeps its own visitors, reservations and revisits, and sees the document exactly
+ * as it would if the rewriters ran one after the other. A rewriter shares the walk of the
+ * rewriters that follow it only when all of its visitors are {@code ImmediateVisitor}s: visitors
+ * that reserve nodes change the document in revisit(...), which must happen before any later
+ * rewriter looks at it, so the walk ends with such a rewriter.
+ *
+ * Responses are not parsed at all when every visitor is a {@code StreamingVisitor} or a
+ * {@code TagFilteringVisitor}, unless one of the latter may reserve a tag: all the rewriters then
+ * share a single {@code StreamingWalk} over the tags of the content.
+ *
+ * The latency and number of reserved nodes of each rewriter are recorded in its
+ * {@code RewriterMetrics}. Rewriters sharing a walk share its traversal time, so the latency of a
+ * rewriter is the time of the traversal it took part in plus that of its revisits.
+ */
+public class FusedDomRewriter implements GadgetRewriter, ResponseRewriter {
+  private final List<DomWalker.Rewriter> rewriters;
+
+  public FusedDomRewriter(List<? extends DomWalker.Rewriter> rewriters) {
+    this.rewriters = ImmutableList.copyOf(rewriters);
+    for (DomWalker.Rewriter rewriter : this.rewriters) {
+      RewriterMetrics.getMetrics(rewriter.getClass());
+    }
+  }
+
+  public void rewrite(Gadget gadget, MutableContent content) throws RewritingException {
+    List<List<Visitor>> visitors = Lists.newArrayListWithCapacity(rewriters.size());
+    for (DomWalker.Rewriter rewriter : rewriters) {
+      visitors.add(rewriter.makeVisitors(gadget, gadget.getSpec().getUrl()));
+    }
+    rewrite(visitors, gadget, content);
+  }
+
+  public void rewrite(HttpRequest request, HttpResponseBuilder builder)
+      throws RewritingException {
+    if (RewriterUtils.isHtml(request, builder)) {
+      Gadget context = DomWalker.makeGadget(request);
+      List<List<Visitor>> visitors = Lists.newArrayListWithCapacity(rewriters.size());
+      for (DomWalker.Rewriter rewriter : rewriters) {
+        visitors.add(rewriter.makeVisitors(context, request.getGadget()));
+      }
+      if (builder.hasDocument() || !StreamingWalk.canStream(visitors) ||
+          !stream(visitors, context, builder)) {
+        rewrite(visitors, context, builder);
+      }
+    }
+  }
+
+  /**
+   * @return the rewriters run by this rewriter, in order.
+   */
+  public List<DomWalker.Rewriter> getRewriters() {
+    return rewriters;
+  }
+
+  private void rewrite(List<List<Visitor>> visitors, Gadget gadget, MutableContent content)
+      throws RewritingException {
+    int first = 0;
+    while (first < visitors.size()) {
+      int last = first;
+      while (last < visitors.size() - 1 && last - first < DomWalker.MAX_GROUPS - 1 &&
+             isImmediate(visitors.get(last))) {
+        ++last;
+      }
+      walk(visitors.subList(first, last + 1), first, gadget, content);
+      first = last + 1;
+    }
+  }
+
+  private void walk(List<List<Visitor>> groups, int offset, Gadget gadget,
+      MutableContent content) throws RewritingException {
+    DomWalker.Walk walk = new DomWalker.Walk(groups);
+    long start = System.nanoTime();
+    try {
+      walk.run(gadget, content);
+    } catch (RewritingException e) {
+      long latency = System.nanoTime() - start;
+      for (int i = 0; i < groups.size(); ++i) {
+        metricsAt(offset + i).recordError(latency, e.getHttpStatusCode());
+      }
+      throw e;
+    }
+    for (int i = 0; i < groups.size(); ++i) {
+      metricsAt(offset + i).recordSuccess(walk.getNanos(i), walk.getReservedCount(i));
+    }
+  }
+
+  /**
+   * @return false if the content must be rewritten through the DOM instead.
+   */
+  private boolean stream(List<List<Visitor>> groups, Gadget gadget, MutableContent content)
+      throws RewritingException {
+    StreamingWalk walk = new StreamingWalk(groups);
+    long start = System.nanoTime();
+    try {
+      if (!walk.run(gadget, content)) {
+        return false;
+      }
+    } catch (RewritingException e) {
+      long latency = System.nanoTime() - start;
+      for (int i = 0; i < groups.size(); ++i) {
+        metricsAt(i).recordError(latency, e.getHttpStatusCode());
+      }
+      throw e;
+    }
+    for (int i = 0; i < groups.size(); ++i) {
+      metricsAt(i).recordSuccess(walk.getNanos(i), walk.getReservedCount(i));
+    }
+    return true;
+  }
+
+  private OperationMetrics metricsAt(int index) {
+    return RewriterMetrics.getMetrics(rewriters.get(index).getClass());
+  }
+
+  private static boolean isImmediate(List<Visitor> visitors) {
+    if (visitors != null) {
+      for (Visitor visitor : visitors) {
+        if (!(visitor instanceof ImmediateVisitor)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Replaces each run of consecutive {@code DomWalker.Rewriter}s in the list with a single
+   * {@code FusedDomRewriter}. Rewriters that change how DomWalker rewrites are left alone.
+   */
+  public static List<GadgetRewriter> fuseGadgetRewriters(List<GadgetRewriter> rewriters) {
+    List<GadgetRewriter> fused = Lists.newArrayListWithCapacity(rewriters.size());
+    List<DomWalker.Rewriter> run = Lists.newArrayList();
+    for (GadgetRewriter rewriter : rewriters) {
+      if (isFusable(rewriter)) {
+        run.add((DomWalker.Rewriter) rewriter);
+      } else {
+        flush(run, fused);
+        fused.add(rewriter);
+      }
+    }
+    flush(run, fused);
+    return Collections.unmodifiableList(fused);
+  }
+
+  /**
+   * Replaces each run of consecutive {@code DomWalker.Rewriter}s in the list with a single
+   * {@code FusedDomRewriter}. Rewriters that change how DomWalker rewrites are left alone.
+   */
+  public static List<ResponseRewriter> fuseResponseRewriters(List<ResponseRewriter> rewriters) {
+    List<ResponseRewriter> fused = Lists.newArrayListWithCapacity(rewriters.size());
+    List<DomWalker.Rewriter> run = Lists.newArrayList();
+    for (ResponseRewriter rewriter : rewriters) {
+      if (isFusable(rewriter)) {
+        run.add((DomWalker.Rewriter) rewriter);
+      } else {
+        flush(run, fused);
+        fused.add(rewriter);
+      }
+    }
+    flush(run, fused);
+    return Collections.unmodifiableList(fused);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> void flush(List<DomWalker.Rewriter> run, List<T> fused) {
+    if (run.size() == 1) {
+      fused.add((T) run.get(0));
+    } else if (!run.isEmpty()) {
+      fused.add((T) new FusedDomRewriter(run));
+    }
+    run.clear();
+  }
+
+  /**
+   * @return true if the rewriter is a {@code DomWalker.Rewriter} that only customizes its
+   *     visitors, and so can be run by a {@code FusedDomRewriter}.
+   */
+  static boolean isFusable(Object rewriter) {
+    if (!(rewriter instanceof DomWalker.Rewriter)) {
+      return false;
+    }
+    try {
+      Class<?> clazz = rewriter.getClass();
+      return clazz.getMethod("rewrite", Gadget.class, MutableContent.class)
+              .getDeclaringClass() == DomWalker.Rewriter.class &&
+          clazz.getMethod("rewrite", HttpRequest.class, HttpResponseBuilder.class)
+              .getDeclaringClass() == DomWalker.Rewriter.class;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
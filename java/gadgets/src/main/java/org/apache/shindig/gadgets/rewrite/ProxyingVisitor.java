@@ -39,7 +39,7 @@ import java.util.logging.Logger;
  *
  * @since 2.0.0
  */
-public class ProxyingVisitor extends ResourceMutateVisitor {
+public class ProxyingVisitor extends ResourceMutateVisitor implements DomWalker.StreamingVisitor {
   private static final Logger logger = Logger.getLogger(
       ProxyUriManager.class.getName());
   private final ProxyUriManager uriManager;
@@ -45,6 +45,7 @@ public class RewriteModule extends AbstractModule {
     bind(ResponseRewriterRegistry.class)
         .annotatedWith(Names.named("shindig.accelerate.response.rewriter.registry"))
         .to(AccelResponseRewriterRegistry.class);
+    requestStaticInjection(RewriterMetrics.class);
   }
 
   @Provides
@@ -61,9 +62,10 @@ public class RewriteModule extends AbstractModule {
       SanitizingGadgetRewriter sanitizedRewriter,
       RenderingGadgetRewriter renderingRewriter,
       OpenSocialI18NGadgetRewriter i18nRewriter) {
-    return ImmutableList.of(pipelineRewriter, templateRewriter,
-        absolutePathRewriter, styleTagExtractorRewriter, styleAdjacencyRewriter, proxyingRewriter,
-        cajaRewriter, sanitizedRewriter, renderingRewriter, i18nRewriter);
+    return FusedDomRewriter.fuseGadgetRewriters(ImmutableList.<GadgetRewriter>of(
+        pipelineRewriter, templateRewriter, absolutePathRewriter, styleTagExtractorRewriter,
+        styleAdjacencyRewriter, proxyingRewriter, cajaRewriter, sanitizedRewriter,
+        renderingRewriter, i18nRewriter));
   }
 
   @Provides
@@ -104,9 +106,9 @@ public class RewriteModule extends AbstractModule {
       CssResponseRewriter cssRewriter,
       SanitizingResponseRewriter sanitizedRewriter,
       CajaResponseRewriter cajaRewriter) {
-    return ImmutableList.of(
+    return FusedDomRewriter.fuseResponseRewriters(ImmutableList.<ResponseRewriter>of(
         absolutePathRewriter, styleTagExtractorRewriter, styleAdjacencyRewriter, proxyingRewriter,
-        cssRewriter, sanitizedRewriter, cajaRewriter);
+        cssRewriter, sanitizedRewriter, cajaRewriter));
   }
 
   @Provides
@@ -116,8 +118,9 @@ public class RewriteModule extends AbstractModule {
       AbsolutePathReferenceRewriter absolutePathReferenceRewriter,
       StyleTagProxyEmbeddedUrlsRewriter styleTagProxyEmbeddedUrlsRewriter,
       ProxyingContentRewriter proxyingContentRewriter) {
-    return ImmutableList.of((ResponseRewriter) absolutePathReferenceRewriter,
+    return FusedDomRewriter.fuseResponseRewriters(ImmutableList.of(
+        (ResponseRewriter) absolutePathReferenceRewriter,
         (ResponseRewriter) styleTagProxyEmbeddedUrlsRewriter,
-        (ResponseRewriter) proxyingContentRewriter);
+        (ResponseRewriter) proxyingContentRewriter));
   }
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.rewrite;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.http.HttpResponseBuilder;
+import org.apache.shindig.protocol.OperationMetrics;
+import org.apache.shindig.protocol.OperationMetricsRegistry;
+
+/**
+ * The latency of each rewriter, kept as rewrite.&lt;class name&gt; statistics and published
+ * through JMX when shindig.rewrite.jmx.enabled is true.
+ *
+ * Rewriter chains run each of their rewriters through rewrite(...), which times it. A
+ * {@code FusedDomRewriter} records the rewriters it runs itself, along with the number of nodes
+ * each of them reserved.
+ */
+public final class RewriterMetrics {
+  private static final OperationMetricsRegistry METRICS = new OperationMetricsRegistry();
+
+  private RewriterMetrics() {}
+
+  @Inject(optional = true)
+  public static void setJmxEnabled(@Named("shindig.rewrite.jmx.enabled") boolean enabled) {
+    METRICS.setJmxEnabled(enabled);
+  }
+
+  /**
+   * @return the statistics of the given rewriter class.
+   */
+  public static OperationMetrics getMetrics(Class<?> rewriterClass) {
+    String name = rewriterClass.getSimpleName();
+    if (name.length() == 0) {
+      // Anonymous class.
+      name = rewriterClass.getName();
+    }
+    return METRICS.get("rewrite." + name);
+  }
+
+  /**
+   * Runs a rewriter of a gadget rewriter chain and records its latency.
+   */
+  public static void rewrite(GadgetRewriter rewriter, Gadget gadget, MutableContent content)
+      throws RewritingException {
+    if (rewriter instanceof FusedDomRewriter) {
+      rewriter.rewrite(gadget, content);
+      return;
+    }
+    OperationMetrics metrics = getMetrics(rewriter.getClass());
+    long start = System.nanoTime();
+    try {
+      rewriter.rewrite(gadget, content);
+    } catch (RewritingException e) {
+      metrics.recordError(System.nanoTime() - start, e.getHttpStatusCode());
+      throw e;
+    }
+    metrics.recordSuccess(System.nanoTime() - start, 0);
+  }
+
+  /**
+   * Runs a rewriter of a response rewriter chain and records its latency.
+   */
+  public static void rewrite(ResponseRewriter rewriter, HttpRequest request,
+      HttpResponseBuilder builder) throws RewritingException {
+    if (rewriter instanceof FusedDomRewriter) {
+      rewriter.rewrite(request, builder);
+      return;
+    }
+    OperationMetrics metrics = getMetrics(rewriter.getClass());
+    long start = System.nanoTime();
+    try {
+      rewriter.rewrite(request, builder);
+    } catch (RewritingException e) {
+      metrics.recordError(System.nanoTime() - start, e.getHttpStatusCode());
+      throw e;
+    }
+    metrics.recordSuccess(System.nanoTime() - start, 0);
+  }
+}
@@ -0,0 +1,629 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.rewrite;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.parse.ParseModule;
+import org.apache.shindig.gadgets.rewrite.DomWalker.StreamingVisitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.TagFilteringVisitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.Visitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.Visitor.VisitStatus;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs groups of {@code StreamingVisitor}s and {@code TagFilteringVisitor}s over HTML without
+ * parsing it into a DOM.
+ *
+ * The content is scanned as a stream of tags. Each start tag is given to the visitors as a
+ * detached Element holding the tag's attributes, and written out again once the visitors are done
+ * with it: as it was if its attributes didn't change, rebuilt from the Element if they did. Text,
+ * comments, end tags and the content of elements such as &lt;script&gt; are copied as they are.
+ *
+ * Tags are visited in batches of at most MAX_PENDING_TAGS tags or MAX_PENDING_CHARS characters of
+ * output. As in a {@code DomWalker.Walk}, each group sees a batch as it would walking it alone:
+ * the groups visit and revisit the batch one after the other, in document order. Memory use is
+ * bounded by these limits and by the size of the largest tag, whatever the size of the content.
+ *
+ * A {@code TagFilteringVisitor} is bypassed as long as it can tell from the tags that it has
+ * nothing to do. The walk gives up on the first tag it may reserve, leaving the content as it
+ * was, and the content is then rewritten through the DOM.
+ */
+final class StreamingWalk {
+  static final int MAX_PENDING_TAGS = 64;
+  static final int MAX_PENDING_CHARS = 16384;
+
+  // Text is written out in chunks of at most this many characters.
+  private static final int TEXT_CHUNK = 4096;
+
+  // Elements whose content is text, up to their end tag.
+  private static final Set<String> RAW_TEXT_ELEMENTS =
+      ImmutableSet.of("script", "style", "textarea", "title", "xmp");
+
+  private static final DOMImplementation DOCUMENT_FACTORY =
+      new ParseModule.DOMImplementationProvider().get();
+
+  private final List<List<Visitor>> groups;
+  private final List<Node>[][] reservations;
+  private final int[] reservedCounts;
+  private final long[] nanos;
+
+  // Output waiting for the visitors: Strings and Tags.
+  private final List<Object> pending = Lists.newArrayList();
+  private int pendingChars;
+  private int pendingTags;
+
+  private Gadget gadget;
+  private Document document;
+  private Writer out;
+  private boolean mutated;
+  private boolean domRequired;
+
+  @SuppressWarnings("unchecked")
+  StreamingWalk(List<List<Visitor>> groups) {
+    this.groups = groups;
+    this.reservations = new List[groups.size()][];
+    for (int i = 0; i < reservations.length; ++i) {
+      List<Visitor> visitors = groups.get(i);
+      reservations[i] = new List[visitors == null ? 0 : visitors.size()];
+    }
+    this.reservedCounts = new int[groups.size()];
+    this.nanos = new long[groups.size()];
+  }
+
+  /**
+   * @return true if all of the visitors can be run by a {@code StreamingWalk}.
+   */
+  static boolean canStream(List<List<Visitor>> groups) {
+    for (List<Visitor> visitors : groups) {
+      if (visitors != null) {
+        for (Visitor visitor : visitors) {
+          if (!(visitor instanceof StreamingVisitor) &&
+              !(visitor instanceof TagFilteringVisitor)) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Rewrites the content, replacing it only if any tag changed.
+   *
+   * @return false if a {@code TagFilteringVisitor} may reserve one of the tags, in which case
+   *     the content is left as it was.
+   */
+  boolean run(Gadget gadget, MutableContent content) throws RewritingException {
+    String source = content.getContent();
+    if (source == null) {
+      throw new RewritingException("content.getContent is null",
+                                   HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+    StringWriter writer = new StringWriter(source.length());
+    try {
+      if (!rewrite(gadget, new StringReader(source), writer)) {
+        return false;
+      }
+    } catch (IOException e) {
+      // Doesn't occur; the content is read from and written to strings.
+      throw new RewritingException(e, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+    if (mutated) {
+      content.setContent(writer.toString());
+    }
+    return true;
+  }
+
+  /**
+   * @return true if any visitor modified a tag.
+   */
+  boolean isMutated() {
+    return mutated;
+  }
+
+  /**
+   * @return the time the visitors of the group spent visiting and revisiting tags.
+   */
+  long getNanos(int group) {
+    return nanos[group];
+  }
+
+  /**
+   * @return the number of tags reserved by the visitors of the group.
+   */
+  int getReservedCount(int group) {
+    return reservedCounts[group];
+  }
+
+  /**
+   * Copies the HTML read from {@code in} to {@code out}, rewriting the tags as the visitors see
+   * fit, unless a {@code TagFilteringVisitor} may reserve one of them.
+   *
+   * @return false if the walk gave up, having written part of the output.
+   */
+  private boolean rewrite(Gadget gadget, Reader in, Writer out)
+      throws RewritingException, IOException {
+    this.gadget = gadget;
+    this.out = out;
+    this.document = DOCUMENT_FACTORY.createDocument(null, null, null);
+    // Tag and attribute names are written out as they were read, and need no checking.
+    document.setStrictErrorChecking(false);
+
+    Scanner scanner = new Scanner(in);
+    StringBuilder text = new StringBuilder();
+    int c;
+    while (!domRequired && (c = scanner.read()) != -1) {
+      if (c != '<') {
+        text.append((char) c);
+      } else {
+        int next = scanner.read();
+        if (next == '!' || next == '?') {
+          text.append('<').append((char) next);
+          scanner.copyDeclaration(next == '!', text);
+        } else if (next == '/') {
+          text.append("</");
+          scanner.copyUntil('>', text);
+        } else if (Character.isLetter(next)) {
+          Tag tag = scanner.readTag((char) next);
+          emit(text);
+          if (tag == null) {
+            // Unterminated tag at the end of the content.
+            text.append(scanner.raw);
+          } else {
+            addTag(tag);
+            String name = tag.name.toLowerCase();
+            if ("plaintext".equals(name)) {
+              scanner.copyAll(text);
+            } else if (RAW_TEXT_ELEMENTS.contains(name)) {
+              scanner.copyRawText(name, text);
+            }
+          }
+        } else {
+          text.append('<');
+          scanner.unread(next);
+        }
+      }
+      if (text.length() >= TEXT_CHUNK) {
+        emit(text);
+      }
+    }
+    emit(text);
+    flush();
+    return !domRequired;
+  }
+
+  private void addTag(Tag tag) throws RewritingException, IOException {
+    try {
+      tag.element = tag.toElement(document);
+    } catch (DOMException e) {
+      // Not representable as an element; leave it alone.
+      write(tag.raw);
+      return;
+    }
+    if ("base".equals(tag.element.getNodeName()) && document.getDocumentElement() == null) {
+      // Visitors resolve urls against the first <base> of the document, see
+      // AbsolutePathReferenceVisitor. It applies to the tags that follow it.
+      flush();
+      document.appendChild(tag.toElement(document));
+    }
+    pending.add(tag);
+    if (++pendingTags >= MAX_PENDING_TAGS) {
+      flush();
+    }
+  }
+
+  /**
+   * Has the groups visit and revisit the tags waiting, one group after the other, then writes
+   * out the output held back.
+   */
+  private void flush() throws RewritingException, IOException {
+    if (domRequired) {
+      return;
+    }
+    for (int group = 0; group < reservations.length; ++group) {
+      long start = System.nanoTime();
+      try {
+        if (!visitPending(group)) {
+          domRequired = true;
+          return;
+        }
+        for (int i = 0; i < reservations[group].length; ++i) {
+          List<Node> nodesReserved = reservations[group][i];
+          if (nodesReserved != null) {
+            reservations[group][i] = null;
+            groups.get(group).get(i).revisit(gadget, nodesReserved);
+          }
+        }
+      } finally {
+        nanos[group] += System.nanoTime() - start;
+      }
+    }
+
+    for (Object item : pending) {
+      out.write(item instanceof Tag ? render((Tag) item) : (String) item);
+    }
+    pending.clear();
+    pendingChars = 0;
+    pendingTags = 0;
+  }
+
+  /**
+   * Passes the tags waiting to the visitors of the group, in order, until one of them reserves
+   * the tag.
+   *
+   * @return false if a {@code TagFilteringVisitor} may reserve one of the tags.
+   */
+  private boolean visitPending(int group) throws RewritingException {
+    List<Visitor> visitors = groups.get(group);
+    for (Object item : pending) {
+      if (!(item instanceof Tag)) {
+        continue;
+      }
+      Element element = ((Tag) item).element;
+      for (int i = 0; i < reservations[group].length; ++i) {
+        Visitor visitor = visitors.get(i);
+        if (visitor instanceof StreamingVisitor) {
+          VisitStatus status = visitor.visit(gadget, element);
+          if (status == VisitStatus.RESERVE_NODE || status == VisitStatus.RESERVE_TREE) {
+            if (reservations[group][i] == null) {
+              reservations[group][i] = Lists.newArrayList();
+            }
+            reservations[group][i].add(element);
+            ++reservedCounts[group];
+            break;
+          }
+        } else if (((TagFilteringVisitor) visitor).mayReserve(gadget, element)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void emit(StringBuilder text) throws IOException, RewritingException {
+    if (text.length() > 0) {
+      write(text.toString());
+      text.setLength(0);
+    }
+  }
+
+  private void write(String output) throws IOException, RewritingException {
+    if (pending.isEmpty()) {
+      out.write(output);
+    } else {
+      pending.add(output);
+      pendingChars += output.length();
+      if (pendingChars >= MAX_PENDING_CHARS) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * @return the tag as it was read if its attributes are unchanged, or rebuilt from its element.
+   */
+  private String render(Tag tag) {
+    Element element = tag.element;
+    NamedNodeMap attributes = element.getAttributes();
+    boolean changed = attributes.getLength() != tag.lowerCaseNames.size();
+    for (int i = 0; !changed && i < tag.names.size(); ++i) {
+      if (!tag.duplicates[i]) {
+        String original = tag.values.get(i);
+        changed = !element.getAttribute(tag.names.get(i).toLowerCase())
+            .equals(original == null ? "" : original);
+      }
+    }
+    if (!changed) {
+      return tag.raw;
+    }
+
+    mutated = true;
+    StringBuilder sb = new StringBuilder(tag.raw.length() + 64);
+    sb.append('<').append(tag.name);
+    for (int i = 0; i < tag.names.size(); ++i) {
+      String name = tag.names.get(i).toLowerCase();
+      if (tag.duplicates[i] || !element.hasAttribute(name)) {
+        continue;
+      }
+      String value = element.getAttribute(name);
+      sb.append(' ').append(tag.names.get(i));
+      if (tag.values.get(i) != null || value.length() != 0) {
+        appendValue(sb, value);
+      }
+    }
+    for (int i = 0; i < attributes.getLength(); ++i) {
+      Node attr = attributes.item(i);
+      if (!tag.lowerCaseNames.contains(attr.getNodeName())) {
+        sb.append(' ').append(attr.getNodeName());
+        appendValue(sb, attr.getNodeValue());
+      }
+    }
+    sb.append(tag.selfClosing ? " />" : ">");
+    return sb.toString();
+  }
+
+  private static void appendValue(StringBuilder sb, String value) {
+    sb.append("=\"");
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        sb.append("&quot;");
+      } else if (c == '&') {
+        sb.append("&amp;");
+      } else {
+        sb.append(c);
+      }
+    }
+    sb.append('"');
+  }
+
+  /**
+   * A start tag as read, and the element the visitors see.
+   */
+  private static final class Tag {
+    private final String raw;
+    private final String name;
+    // Attribute names as written, and their values with character references decoded. A null
+    // value stands for an attribute without one.
+    private final List<String> names;
+    private final List<String> values;
+    private final boolean selfClosing;
+    // Set for the later duplicates of an attribute, which are ignored as browsers do.
+    private final boolean[] duplicates;
+    private final Set<String> lowerCaseNames;
+    private Element element;
+
+    private Tag(String raw, String name, List<String> names, List<String> values,
+        boolean selfClosing) {
+      this.raw = raw;
+      this.name = name;
+      this.names = names;
+      this.values = values;
+      this.selfClosing = selfClosing;
+      this.duplicates = new boolean[names.size()];
+      this.lowerCaseNames = Sets.newHashSetWithExpectedSize(names.size());
+      for (int i = 0; i < names.size(); ++i) {
+        duplicates[i] = !lowerCaseNames.add(names.get(i).toLowerCase());
+      }
+    }
+
+    private Element toElement(Document document) {
+      Element element = document.createElement(name.toLowerCase());
+      for (int i = 0; i < names.size(); ++i) {
+        if (!duplicates[i]) {
+          String value = values.get(i);
+          element.setAttribute(names.get(i).toLowerCase(), value == null ? "" : value);
+        }
+      }
+      return element;
+    }
+  }
+
+  /**
+   * Reads characters with one character of push back, and the markup constructs the walk needs.
+   */
+  private static final class Scanner {
+    private final Reader in;
+    private final char[] buffer = new char[TEXT_CHUNK];
+    private int position;
+    private int limit;
+    private int pushedBack = -1;
+
+    // The markup read by the last readTag(...).
+    private final StringBuilder raw = new StringBuilder();
+
+    private Scanner(Reader in) {
+      this.in = in;
+    }
+
+    private int read() throws IOException {
+      if (pushedBack != -1) {
+        int c = pushedBack;
+        pushedBack = -1;
+        return c;
+      }
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position++];
+    }
+
+    private void unread(int c) {
+      pushedBack = c;
+    }
+
+    private void copyUntil(char end, StringBuilder text) throws IOException {
+      int c;
+      while ((c = read()) != -1) {
+        text.append((char) c);
+        if (c == end) {
+          return;
+        }
+      }
+    }
+
+    private void copyAll(StringBuilder text) throws IOException {
+      int c;
+      while ((c = read()) != -1) {
+        text.append((char) c);
+      }
+    }
+
+    /**
+     * Copies a comment, doctype or processing instruction following "&lt;!" or "&lt;?".
+     */
+    private void copyDeclaration(boolean bang, StringBuilder text) throws IOException {
+      int c = read();
+      if (!bang || c != '-') {
+        unread(c);
+        copyUntil('>', text);
+        return;
+      }
+      text.append('-');
+      c = read();
+      if (c != '-') {
+        unread(c);
+        copyUntil('>', text);
+        return;
+      }
+      text.append('-');
+      // A comment, up to the next "-->".
+      int dashes = 0;
+      while ((c = read()) != -1) {
+        text.append((char) c);
+        if (c == '>' && dashes >= 2) {
+          return;
+        }
+        dashes = c == '-' ? dashes + 1 : 0;
+      }
+    }
+
+    /**
+     * Copies the content of a raw text element, up to its end tag.
+     */
+    private void copyRawText(String name, StringBuilder text) throws IOException {
+      String end = "</" + name;
+      int matched = 0;
+      int c;
+      while ((c = read()) != -1) {
+        if (matched == end.length() &&
+            (c == '>' || c == '/' || Character.isWhitespace(c))) {
+          unread(c);
+          return;
+        }
+        text.append((char) c);
+        if (matched < end.length() && Character.toLowerCase((char) c) == end.charAt(matched)) {
+          ++matched;
+        } else {
+          matched = c == '<' ? 1 : 0;
+        }
+      }
+    }
+
+    /**
+     * Reads a start tag whose name starts with {@code first}, following its "&lt;".
+     *
+     * @return the tag, or null if the content ended before the tag did.
+     */
+    private Tag readTag(char first) throws IOException {
+      raw.setLength(0);
+      raw.append('<').append(first);
+      StringBuilder name = new StringBuilder().append(first);
+      int c;
+      while ((c = read()) != -1 && !isNameEnd(c)) {
+        raw.append((char) c);
+        name.append((char) c);
+      }
+
+      List<String> names = Lists.newArrayList();
+      List<String> values = Lists.newArrayList();
+      while (true) {
+        while (c != -1 && Character.isWhitespace(c)) {
+          raw.append((char) c);
+          c = read();
+        }
+        if (c == -1) {
+          return null;
+        }
+        raw.append((char) c);
+        if (c == '>') {
+          return new Tag(raw.toString(), name.toString(), names, values, false);
+        }
+        if (c == '/') {
+          c = read();
+          if (c == '>') {
+            raw.append('>');
+            return new Tag(raw.toString(), name.toString(), names, values, true);
+          }
+          continue;
+        }
+
+        StringBuilder attrName = new StringBuilder().append((char) c);
+        while ((c = read()) != -1 && !isNameEnd(c) && c != '=') {
+          raw.append((char) c);
+          attrName.append((char) c);
+        }
+        while (c != -1 && Character.isWhitespace(c)) {
+          raw.append((char) c);
+          c = read();
+        }
+        String value = null;
+        if (c == '=') {
+          raw.append('=');
+          c = read();
+          while (c != -1 && Character.isWhitespace(c)) {
+            raw.append((char) c);
+            c = read();
+          }
+          StringBuilder attrValue = new StringBuilder();
+          if (c == '"' || c == '\'') {
+            int quote = c;
+            raw.append((char) c);
+            while ((c = read()) != -1 && c != quote) {
+              raw.append((char) c);
+              attrValue.append((char) c);
+            }
+            if (c == -1) {
+              return null;
+            }
+            raw.append((char) c);
+            c = read();
+          } else {
+            while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+              raw.append((char) c);
+              attrValue.append((char) c);
+              c = read();
+            }
+          }
+          value = StringEscapeUtils.unescapeHtml(attrValue.toString());
+        }
+        names.add(attrName.toString());
+        values.add(value);
+      }
+    }
+
+    private static boolean isNameEnd(int c) {
+      return c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+  }
+}
@@ -21,9 +21,10 @@ package org.apache.shindig.gadgets.rewrite;
 import com.google.common.base.Objects;
 import org.apache.shindig.common.xml.DomUtil;
 import org.apache.shindig.gadgets.Gadget;
-import org.apache.shindig.gadgets.rewrite.DomWalker.Visitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.TagFilteringVisitor;
 
 import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
@@ -38,7 +39,7 @@ import java.util.List;
  *
  * @since 2.0.0
  */
-public class StyleAdjacencyVisitor implements Visitor {
+public class StyleAdjacencyVisitor implements TagFilteringVisitor {
   
   public VisitStatus visit(Gadget gadget, Node node) throws RewritingException {
     if (node.getNodeType() == Node.ELEMENT_NODE &&
@@ -52,6 +53,10 @@ public class StyleAdjacencyVisitor implements Visitor {
     
     return VisitStatus.BYPASS;
   }
+
+  public boolean mayReserve(Gadget gadget, Element element) throws RewritingException {
+    return visit(gadget, element) != VisitStatus.BYPASS;
+  }
   
   public boolean revisit(Gadget gadget, List<Node> nodes)
       throws RewritingException {
@@ -23,7 +23,7 @@ import java.util.List;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.xml.DomUtil;
 import org.apache.shindig.gadgets.Gadget;
-import org.apache.shindig.gadgets.rewrite.DomWalker.Visitor;
+import org.apache.shindig.gadgets.rewrite.DomWalker.TagFilteringVisitor;
 import org.apache.shindig.gadgets.spec.View;
 import org.apache.shindig.gadgets.uri.ProxyUriManager;
 import org.w3c.dom.Element;
@@ -33,7 +33,7 @@ import org.w3c.dom.Node;
  * Visits nodes in the dom extracting style tags.
  * @since 2.0.0
  */
-public class StyleTagExtractorVisitor implements Visitor {
+public class StyleTagExtractorVisitor implements TagFilteringVisitor {
   private final ContentRewriterFeature.Config config;
   private final CssResponseRewriter cssRewriter;
   private final ProxyUriManager proxyUriManager;
@@ -59,6 +59,10 @@ public class StyleTagExtractorVisitor implements Visitor {
     return VisitStatus.RESERVE_NODE;
   }
 
+  public boolean mayReserve(Gadget gadget, Element element) throws RewritingException {
+    return visit(gadget, element) != VisitStatus.BYPASS;
+  }
+
   public boolean revisit(Gadget gadget, List<Node> nodes)
       throws RewritingException {
     boolean mutated = false;
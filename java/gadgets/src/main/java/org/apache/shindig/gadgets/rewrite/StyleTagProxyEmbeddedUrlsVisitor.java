@@ -33,7 +33,7 @@ import java.util.List;
  *
  * @since 2.0.0
  */
-public class StyleTagProxyEmbeddedUrlsVisitor implements DomWalker.Visitor {
+public class StyleTagProxyEmbeddedUrlsVisitor implements DomWalker.TagFilteringVisitor {
   protected final ContentRewriterFeature.Config config;
   protected final ProxyUriManager proxyUriManager;
   protected final CssResponseRewriter cssRewriter;
@@ -57,6 +57,10 @@ public class StyleTagProxyEmbeddedUrlsVisitor implements DomWalker.Visitor {
     return VisitStatus.RESERVE_NODE;
   }
 
+  public boolean mayReserve(Gadget gadget, Element element) throws RewritingException {
+    return visit(gadget, element) != VisitStatus.BYPASS;
+  }
+
   public boolean revisit(Gadget gadget, List<Node> nodes) throws RewritingException {
     Uri contentBase = gadget.getSpec().getUrl();
 
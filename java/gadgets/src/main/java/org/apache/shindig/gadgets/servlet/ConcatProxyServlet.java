@@ -29,9 +29,9 @@ import org.apache.shindig.common.Pair;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.uri.UriBuilder;
 import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.http.AsyncRequestPipeline;
 import org.apache.shindig.gadgets.http.HttpRequest;
 import org.apache.shindig.gadgets.http.HttpResponse;
-import org.apache.shindig.gadgets.http.RequestPipeline;
 import org.apache.shindig.gadgets.rewrite.ResponseRewriterRegistry;
 import org.apache.shindig.gadgets.rewrite.RewritingException;
 import org.apache.shindig.gadgets.uri.ConcatUriManager;
@@ -40,11 +40,8 @@ import org.apache.shindig.gadgets.uri.UriCommon.Param;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -70,17 +67,17 @@ public class ConcatProxyServlet extends InjectedServlet {
   private static final Logger LOG 
       = Logger.getLogger(ConcatProxyServlet.class.getName());
   
-  private transient RequestPipeline requestPipeline;
+  private transient AsyncRequestPipeline fetcher;
   private transient ConcatUriManager concatUriManager;
   private transient ResponseRewriterRegistry contentRewriterRegistry;
 
-  // Sequential version of 'execute' by default.
-  private transient ExecutorService executor = Executors.newSingleThreadExecutor();
-
   @Inject
-  public void setRequestPipeline(RequestPipeline requestPipeline) {
+  public void setAsyncRequestPipeline(
+      @Named("shindig.concat.pipeline") AsyncRequestPipeline fetcher) {
     checkInitialized();
-    this.requestPipeline = requestPipeline;
+    // Independently named to allow separate configuration of concat fetch parallelism and
+    // other Shindig fetches.
+    this.fetcher = fetcher;
   }
   
   @Inject
@@ -94,14 +91,6 @@ public class ConcatProxyServlet extends InjectedServlet {
     checkInitialized();
     this.contentRewriterRegistry = contentRewriterRegistry;
   }
-  
-  @Inject
-  public void setExecutor(@Named("shindig.concat.executor") ExecutorService executor) {
-    checkInitialized();
-    // Executor is independently named to allow separate configuration of
-    // concat fetch parallelism and other Shindig job execution.
-    this.executor = executor;
-  }
 
   @SuppressWarnings("boxing")
   @Override
@@ -167,17 +156,14 @@ public class ConcatProxyServlet extends InjectedServlet {
       cos = new VerbatimConcatOutputStream(response.getOutputStream());
     }
 
-    List<Pair<Uri, FutureTask<RequestContext>>> futureTasks =
-        new ArrayList<Pair<Uri, FutureTask<RequestContext>>>();
+    List<Pair<HttpRequest, Future<HttpResponse>>> futures =
+        new ArrayList<Pair<HttpRequest, Future<HttpResponse>>>();
 
     try {
       for (Uri resourceUri : concatUri.getBatch()) {
         try {
           HttpRequest httpReq = concatUri.makeHttpRequest(resourceUri);
-          FutureTask<RequestContext> httpFetcher =
-                  new FutureTask<RequestContext>(new HttpFetchCallable(httpReq));
-          futureTasks.add(Pair.of(httpReq.getUri(), httpFetcher));
-          executor.execute(httpFetcher);
+          futures.add(Pair.of(httpReq, fetcher.executeAsync(httpReq)));
         } catch (GadgetException ge) {
           if (cos.outputError(resourceUri, ge)) {
             // True returned from outputError indicates a terminal error.
@@ -186,36 +172,25 @@ public class ConcatProxyServlet extends InjectedServlet {
         }
       }
 
-      for (Pair<Uri, FutureTask<RequestContext>> futureTask : futureTasks) {
-        RequestContext requestCxt = null;
+      for (Pair<HttpRequest, Future<HttpResponse>> future : futures) {
+        Uri resourceUri = future.one.getUri();
         try {
-          try {
-            requestCxt = futureTask.two.get();
-          } catch (InterruptedException ie) {
-            throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, ie);
-          } catch (ExecutionException ee) {
-            throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, ee);
-          }
-          if (requestCxt.getGadgetException() != null) {
-            throw requestCxt.getGadgetException();
-          }
-          HttpResponse httpResp = requestCxt.getHttpResp();
+          HttpResponse httpResp = getResponse(future.two);
           if (httpResp != null) {
             if (contentRewriterRegistry != null) {
               try {
-                httpResp = contentRewriterRegistry.rewriteHttpResponse(requestCxt.getHttpReq(),
-                        httpResp);
+                httpResp = contentRewriterRegistry.rewriteHttpResponse(future.one, httpResp);
               } catch (RewritingException e) {
                 throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, e,
                         e.getHttpStatusCode());
               }
             }
-            cos.output(futureTask.one, httpResp);
+            cos.output(resourceUri, httpResp);
           } else {
             return false;
           }
         } catch (GadgetException ge) {
-          if (cos.outputError(futureTask.one, ge)) {
+          if (cos.outputError(resourceUri, ge)) {
             return false;
           }
         }
@@ -355,49 +330,16 @@ public class ConcatProxyServlet extends InjectedServlet {
     
   }
   
-  // Encapsulates the response context of a single resource fetch.
-  private static class RequestContext {
-    private HttpRequest httpReq;
-    private HttpResponse httpResp;
-    private GadgetException gadgetException;
-
-    public HttpRequest getHttpReq() {
-      return httpReq;
-    }
-
-    public HttpResponse getHttpResp() {
-      return httpResp;
-    }
-
-    public GadgetException getGadgetException() {
-      return gadgetException;
-    }
-
-    public RequestContext(HttpRequest httpReq, HttpResponse httpResp, GadgetException ge) {
-      this.httpReq = httpReq;
-      this.httpResp = httpResp;
-      this.gadgetException = ge;
-    }
-  }
-
-  // Worker class responsible for fetching a single resource.
-  public class HttpFetchCallable implements Callable<RequestContext> {
-    private HttpRequest httpReq;
-
-    public HttpFetchCallable(HttpRequest httpReq) {
-      this.httpReq = httpReq;
-    }
-    
-    public RequestContext call() {
-      HttpResponse httpResp = null;
-      GadgetException gEx = null;
-      try {
-        httpResp = requestPipeline.execute(httpReq);
-      } catch (GadgetException ge){
-        gEx = ge;
+  private static HttpResponse getResponse(Future<HttpResponse> future) throws GadgetException {
+    try {
+      return future.get();
+    } catch (InterruptedException ie) {
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, ie);
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof GadgetException) {
+        throw (GadgetException) ee.getCause();
       }
-      return new RequestContext(httpReq, httpResp, gEx);
+      throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, ee);
     }
-  }  
+  }
 }
-
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.GadgetContext;
@@ -72,7 +73,8 @@ public class GadgetsHandler {
   protected final BeanDelegator beanDelegator;
 
   @Inject
-  public GadgetsHandler(ExecutorService executor, GadgetsHandlerService handlerService,
+  public GadgetsHandler(@Named("shindig.rpc.executor") ExecutorService executor,
+                        GadgetsHandlerService handlerService,
                         BeanFilter beanFilter) {
     this.executor = executor;
     this.handlerService = handlerService;
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import org.apache.shindig.common.util.CharsetUtil;
+import org.apache.shindig.common.util.HashUtil;
+
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compiled JavaScript of a set of features, kept in the encoded form it is served in.
+ *
+ * The UTF-8 bytes, their gzipped form and strong ETags are computed once, so serving a cached
+ * bundle is a single buffer write. Instances are immutable.
+ */
+public class JsBundle {
+  public static final JsBundle EMPTY = new JsBundle("", true);
+
+  // Smaller bundles don't shrink enough to be worth the extra header and work on the client.
+  static final int MIN_GZIP_LENGTH = 1024;
+
+  private final byte[] content;
+  private final byte[] gzippedContent;
+  private final String etag;
+  private final String gzippedEtag;
+  private final boolean proxyCacheable;
+
+  public JsBundle(String content, boolean proxyCacheable) {
+    this.content = CharsetUtil.getUtf8Bytes(content);
+    this.gzippedContent = gzip(this.content);
+    String checksum = HashUtil.checksum(this.content);
+    this.etag = '"' + checksum + '"';
+    this.gzippedEtag = '"' + checksum + "-gz\"";
+    this.proxyCacheable = proxyCacheable;
+  }
+
+  private static byte[] gzip(byte[] content) {
+    if (content.length < MIN_GZIP_LENGTH) {
+      return null;
+    }
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3);
+      GZIPOutputStream gzip = new GZIPOutputStream(out);
+      gzip.write(content);
+      gzip.close();
+      byte[] gzipped = out.toByteArray();
+      return gzipped.length < content.length ? gzipped : null;
+    } catch (IOException e) {
+      // Can't happen when writing to memory.
+      return null;
+    }
+  }
+
+  /**
+   * @return The length of the UTF-8 encoded content, in bytes.
+   */
+  public int getLength() {
+    return content.length;
+  }
+
+  /**
+   * @return The length of the gzipped content, in bytes, or -1 if there is none.
+   */
+  public int getGzippedLength() {
+    return gzippedContent == null ? -1 : gzippedContent.length;
+  }
+
+  /**
+   * @return True if a gzipped form of the content is available.
+   */
+  public boolean hasGzippedContent() {
+    return gzippedContent != null;
+  }
+
+  /**
+   * @return A strong entity tag derived from the content.
+   */
+  public String getEtag() {
+    return etag;
+  }
+
+  /**
+   * @return The strong entity tag of the gzipped content. A strong tag identifies one
+   *     representation, so it differs from the tag of the UTF-8 content.
+   */
+  public String getGzippedEtag() {
+    return gzippedEtag;
+  }
+
+  public boolean isProxyCacheable() {
+    return proxyCacheable;
+  }
+
+  /**
+   * Writes the UTF-8 encoded content.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(content);
+  }
+
+  /**
+   * Writes the gzipped content.
+   *
+   * @throws IllegalStateException if there is no gzipped form of the content.
+   */
+  public void writeGzippedTo(OutputStream out) throws IOException {
+    if (gzippedContent == null) {
+      throw new IllegalStateException("No gzipped content");
+    }
+    out.write(gzippedContent);
+  }
+
+  /**
+   * @return The content as a string.
+   */
+  public String getContent() {
+    return Charsets.UTF_8.decode(ByteBuffer.wrap(content)).toString();
+  }
+}
@@ -19,6 +19,8 @@ package org.apache.shindig.gadgets.servlet;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.common.JsonSerializer;
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.config.ContainerConfig;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.RenderingContext;
@@ -43,9 +45,12 @@ import com.google.inject.Singleton;
  */
 @Singleton
 public class JsHandler {
+  public static final String CACHE_NAME = "jsBundles";
+
   protected final FeatureRegistry registry;
   protected final ContainerConfig containerConfig;
   protected final Map<String, ConfigContributor> configContributors;
+  private Cache<String, JsBundle> bundleCache;
 
   @Inject
   public JsHandler(FeatureRegistry registry, ContainerConfig containerConfig,
@@ -54,6 +59,11 @@ public class JsHandler {
     this.containerConfig = containerConfig;
     this.configContributors = configContributors;
   }
+
+  @Inject(optional = true)
+  public void setCacheProvider(CacheProvider cacheProvider) {
+    this.bundleCache = cacheProvider.createCache(CACHE_NAME);
+  }
   
   /**
    * Get the JavaScript content from the feature name aliases.
@@ -121,26 +131,13 @@ public class JsHandler {
    */
   protected JsHandlerResponse getFeatureResourcesContent(final HttpServletRequest req,
       final GadgetContext ctx, Set<String> needed) {
-    StringBuilder jsData = new StringBuilder();
-    Collection<? extends FeatureResource> resources =
-        registry.getFeatureResources(ctx, needed, null);
     String debugStr = req.getParameter("debug");
     boolean debug = "1".equals(debugStr);
     String container = ctx.getContainer();
-    boolean isProxyCacheable = true;
-
-    for (FeatureResource featureResource : resources) {
-      String content = debug ? featureResource.getDebugContent() : featureResource.getContent();
-      if (!featureResource.isExternal()) {
-        jsData.append(content);
-      } else {
-        // Support external/type=url feature serving through document.write()
-        jsData.append("document.write('<script src=\"").append(content).append("\"></script>')");
-      }
-      isProxyCacheable = isProxyCacheable && featureResource.isProxyCacheable();
-      jsData.append(";\n");
-    }
+    JsBundle bundle = getFeatureBundle(ctx, needed, debug);
 
+    // Container configuration depends on the request, so it is appended after the bundle.
+    StringBuilder jsData = new StringBuilder();
     if (ctx.getRenderingContext() == RenderingContext.CONTAINER) {
       // Append some container specific things
       Map<String, Object> features = containerConfig.getMap(container, "gadgets.features");
@@ -163,25 +160,107 @@ public class JsHandler {
         jsData.append("gadgets.config.init(").append(JsonSerializer.serialize(config)).append(");\n");
       }
     }
-    return new JsHandlerResponse(jsData, isProxyCacheable);
+    return new JsHandlerResponse(bundle, jsData);
+  }
+
+  /**
+   * Get the compiled content of the feature resources, from the bundle cache when possible.
+   *
+   * @param ctx GadgetContext object.
+   * @param needed Set of requested feature names.
+   * @param debug true to compile the debug content of the features.
+   * @return The compiled bundle.
+   */
+  protected JsBundle getFeatureBundle(GadgetContext ctx, Set<String> needed, boolean debug) {
+    String key = getBundleKey(ctx, needed, debug);
+    JsBundle bundle = bundleCache == null ? null : bundleCache.getElement(key);
+    if (bundle == null) {
+      bundle = compileFeatures(ctx, needed, debug);
+      if (bundleCache != null) {
+        bundleCache.addElement(key, bundle);
+      }
+    }
+    return bundle;
+  }
+
+  /**
+   * Bundles are keyed by the features the registry resolves the request to, rather than by the
+   * requested names, so that unknown names can't fill the cache with copies of the same bundle.
+   */
+  private String getBundleKey(GadgetContext ctx, Set<String> needed, boolean debug) {
+    StringBuilder key = new StringBuilder();
+    key.append(ctx.getRenderingContext()).append(':')
+       .append(ctx.getContainer()).append(':')
+       .append(debug ? '1' : '0');
+    for (String feature : registry.getFeatures(needed)) {
+      key.append(':').append(feature);
+    }
+    return key.toString();
+  }
+
+  /**
+   * Concatenate the content of the feature resources.
+   *
+   * @param ctx GadgetContext object.
+   * @param needed Set of requested feature names.
+   * @param debug true to use the debug content of the features.
+   * @return The compiled bundle.
+   */
+  protected JsBundle compileFeatures(GadgetContext ctx, Set<String> needed, boolean debug) {
+    StringBuilder jsData = new StringBuilder();
+    Collection<? extends FeatureResource> resources =
+        registry.getFeatureResources(ctx, needed, null);
+    boolean isProxyCacheable = true;
+
+    for (FeatureResource featureResource : resources) {
+      String content = debug ? featureResource.getDebugContent() : featureResource.getContent();
+      if (!featureResource.isExternal()) {
+        jsData.append(content);
+      } else {
+        // Support external/type=url feature serving through document.write()
+        jsData.append("document.write('<script src=\"").append(content).append("\"></script>')");
+      }
+      isProxyCacheable = isProxyCacheable && featureResource.isProxyCacheable();
+      jsData.append(";\n");
+    }
+    return new JsBundle(jsData.toString(), isProxyCacheable);
   }
 
   /**
-   * Define the response data from JsHandler.
+   * Define the response data from JsHandler: a shared, precompiled bundle followed by JavaScript
+   * built for this request.
    */
   public static class JsHandlerResponse {
     private final boolean isProxyCacheable;
+    private final JsBundle bundle;
     private final StringBuilder jsData;
 
     public JsHandlerResponse (StringBuilder jsData, boolean isProxyCacheable) {
+      this.bundle = JsBundle.EMPTY;
       this.jsData = jsData;
       this.isProxyCacheable = isProxyCacheable;
     }
 
+    public JsHandlerResponse (JsBundle bundle, StringBuilder jsData) {
+      this.bundle = bundle;
+      this.jsData = jsData;
+      this.isProxyCacheable = bundle.isProxyCacheable();
+    }
+
     public boolean isProxyCacheable() {
       return isProxyCacheable;
     }
 
+    /**
+     * @return The precompiled feature content, which must be served first.
+     */
+    public JsBundle getBundle() {
+      return bundle;
+    }
+
+    /**
+     * @return JavaScript to serve after the bundle.
+     */
     public StringBuilder getJsData() {
       return jsData;
     }
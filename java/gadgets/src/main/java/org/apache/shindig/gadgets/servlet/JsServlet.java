@@ -18,6 +18,7 @@
 package org.apache.shindig.gadgets.servlet;
 
 import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
 
 import org.apache.shindig.common.servlet.HttpUtil;
 import org.apache.shindig.common.servlet.InjectedServlet;
@@ -29,6 +30,7 @@ import org.apache.shindig.gadgets.uri.UriStatus;
 import com.google.inject.Inject;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
@@ -86,6 +88,7 @@ public class JsServlet extends InjectedServlet {
 
     // Get JavaScript content from features aliases request.
     JsHandler.JsHandlerResponse handlerResponse = jsHandler.getJsContent(req);
+    JsBundle bundle = handlerResponse.getBundle();
     StringBuilder jsData = handlerResponse.getJsData();
     boolean isProxyCacheable = handlerResponse.isProxyCacheable();
 
@@ -99,7 +102,7 @@ public class JsServlet extends InjectedServlet {
       jsData.append(String.format(ONLOAD_JS_TPL, StringEscapeUtils.escapeJavaScript(onloadStr)));
     }
 
-    if (jsData.length() == 0) {
+    if (bundle.getLength() == 0 && jsData.length() == 0) {
       resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
       return;
     }
@@ -108,9 +111,69 @@ public class JsServlet extends InjectedServlet {
     postJsContentProcessing(resp, vstatus, isProxyCacheable);
 
     resp.setContentType("text/javascript; charset=utf-8");
+    if (jsData.length() == 0) {
+      writeBundle(req, resp, bundle);
+      return;
+    }
     byte[] response = jsData.toString().getBytes("UTF-8");
-    resp.setContentLength(response.length);
-    resp.getOutputStream().write(response);
+    resp.setContentLength(bundle.getLength() + response.length);
+    OutputStream out = resp.getOutputStream();
+    bundle.writeTo(out);
+    out.write(response);
+  }
+
+  /**
+   * Serves a response made of the bundle alone, straight from its precomputed bytes. The gzipped
+   * and identity responses have their own entity tags.
+   */
+  private void writeBundle(HttpServletRequest req, HttpServletResponse resp, JsBundle bundle)
+      throws IOException {
+    boolean gzip = false;
+    if (bundle.hasGzippedContent()) {
+      resp.addHeader("Vary", "Accept-Encoding");
+      gzip = acceptsGzip(req);
+    }
+    String etag = gzip ? bundle.getGzippedEtag() : bundle.getEtag();
+    resp.setHeader("ETag", etag);
+    if (matchesEtag(req.getHeader("If-None-Match"), etag)) {
+      resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    if (gzip) {
+      resp.setHeader("Content-Encoding", "gzip");
+      resp.setContentLength(bundle.getGzippedLength());
+      bundle.writeGzippedTo(resp.getOutputStream());
+      return;
+    }
+    resp.setContentLength(bundle.getLength());
+    bundle.writeTo(resp.getOutputStream());
+  }
+
+  private static boolean matchesEtag(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : StringUtils.split(ifNoneMatch, ',')) {
+      tag = tag.trim();
+      if (tag.equals(etag) || tag.equals("*")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest req) {
+    String acceptEncoding = req.getHeader("Accept-Encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : StringUtils.split(acceptEncoding, ',')) {
+      String[] parts = StringUtils.split(coding, ';');
+      if (parts.length > 0 && "gzip".equalsIgnoreCase(parts[0].trim())) {
+        return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
   }
 
   /**
@@ -32,6 +32,7 @@ import org.apache.shindig.gadgets.uri.IframeUriManager;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -56,7 +57,8 @@ public class JsonRpcHandler {
   protected final IframeUriManager iframeUriManager;
 
   @Inject
-  public JsonRpcHandler(ExecutorService executor, Processor processor, IframeUriManager iframeUriManager) {
+  public JsonRpcHandler(@Named("shindig.rpc.executor") ExecutorService executor,
+      Processor processor, IframeUriManager iframeUriManager) {
     this.executor = executor;
     this.processor = processor;
     this.iframeUriManager = iframeUriManager;
@@ -22,6 +22,8 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
 
+import com.google.common.collect.Lists;
+
 import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.common.cache.SoftExpiringCache;
@@ -37,6 +39,7 @@ import org.apache.shindig.gadgets.spec.SpecParserException;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
+import java.util.List;
 
 /**
  * Tests for DefaultGadgetSpecFactory
@@ -198,6 +201,31 @@ public class DefaultGadgetSpecFactoryTest {
     assertEquals(1, executor.runnableCount);
   }
 
+  @Test
+  public void staleSpecRefreshQueuedOnce() throws Exception {
+    QueuingExecutor queuingExecutor = new QueuingExecutor();
+    DefaultGadgetSpecFactory queuingFactory
+        = new DefaultGadgetSpecFactory(queuingExecutor, pipeline, cacheProvider, MAX_AGE);
+    HttpRequest request = createCacheableRequest();
+    expect(pipeline.execute(request)).andReturn(new HttpResponse(ALT_LOCAL_SPEC_XML)).once();
+    replay(pipeline);
+
+    queuingFactory.cache.addElement(SPEC_URL, new GadgetSpec(SPEC_URL, LOCAL_SPEC_XML), -1);
+    queuingFactory.getGadgetSpec(createContext(SPEC_URL, false));
+
+    // Still stale, but an update is already queued for this spec.
+    queuingFactory.cache.addElement(SPEC_URL, queuingFactory.cache.getElement(SPEC_URL).obj, -1);
+    GadgetSpec spec = queuingFactory.getGadgetSpec(createContext(SPEC_URL, false));
+
+    assertEquals(LOCAL_CONTENT, spec.getView(GadgetSpec.DEFAULT_VIEW).getContent());
+    assertEquals(1, queuingExecutor.queued.size());
+
+    queuingExecutor.queued.get(0).run();
+    spec = queuingFactory.getGadgetSpec(createContext(SPEC_URL, false));
+
+    assertEquals(ALT_LOCAL_CONTENT, spec.getView(GadgetSpec.DEFAULT_VIEW).getContent());
+  }
+
   @Test
   public void specFetchedFromParam() throws Exception {
     // Set up request as if it's a regular spec request, and ensure that
@@ -344,6 +372,15 @@ public class DefaultGadgetSpecFactoryTest {
     }
   }
 
+  private static class QueuingExecutor extends TestExecutorService {
+    final List<Runnable> queued = Lists.newArrayList();
+
+    @Override
+    public void execute(Runnable r) {
+      queued.add(r);
+    }
+  }
+
   private static class CapturingPipeline implements RequestPipeline {
     HttpRequest request;
 
@@ -24,6 +24,7 @@ import static org.easymock.EasyMock.verify;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
@@ -43,6 +44,10 @@ import org.easymock.EasyMock;
 import org.junit.Test;
 
 import java.util.Locale;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -272,10 +277,55 @@ public class DefaultMessageBundleFactoryTest {
     assertEquals(bundle0.getMessages().get(MSG_0_NAME), bundle1.getMessages().get(MSG_0_NAME));
   }
 
+  @Test
+  public void getMergedBundleFromCache() throws Exception {
+    HttpResponse response = new HttpResponse(BASIC_BUNDLE);
+    expect(pipeline.execute(isA(HttpRequest.class))).andReturn(response).once();
+    replay(pipeline);
+
+    MessageBundle bundle0 = bundleFactory.getBundle(gadgetSpec, LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+    MessageBundle bundle1 = bundleFactory.getBundle(gadgetSpec, LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+
+    verify(pipeline);
+
+    assertSame(bundle0, bundle1);
+    assertEquals(1, cacheProvider.getStats()
+        .get(DefaultMessageBundleFactory.MERGED_CACHE_NAME).getHitCount());
+  }
+
+  @Test
+  public void fallbackBundlesFetchedConcurrently() throws Exception {
+    // Every fetch waits until all four bundles are being fetched.
+    final CyclicBarrier barrier = new CyclicBarrier(4);
+    RequestPipeline blockingPipeline = new RequestPipeline() {
+      public HttpResponse execute(HttpRequest request) throws GadgetException {
+        try {
+          barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+          throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, e);
+        }
+        return new HttpResponse(BASIC_BUNDLE);
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      DefaultMessageBundleFactory factory = new DefaultMessageBundleFactory(
+          new TestExecutorService(), blockingPipeline, cacheProvider, MAX_AGE);
+      factory.setFetchExecutor(executor);
+
+      MessageBundle bundle = factory.getBundle(externalSpec, LOCALE, true, ContainerConfig.DEFAULT_CONTAINER);
+
+      assertEquals(MSG_0_VALUE, bundle.getMessages().get(MSG_0_NAME));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   public void ignoreCacheDoesNotStore() throws Exception {
     bundleFactory.getBundle(gadgetSpec, new Locale("all", "ALL"), true, ContainerConfig.DEFAULT_CONTAINER);
     assertEquals(0, cache.getSize());
+    assertEquals(0, cacheProvider.createCache(DefaultMessageBundleFactory.MERGED_CACHE_NAME).getSize());
   }
 
   @Test
@@ -294,12 +344,14 @@ public class DefaultMessageBundleFactoryTest {
 
     final AtomicLong time = new AtomicLong();
 
-    bundleFactory.cache.setTimeSource(new TimeSource() {
+    TimeSource timeSource = new TimeSource() {
       @Override
       public long currentTimeMillis() {
         return time.get();
       }
-    });
+    };
+    bundleFactory.cache.setTimeSource(timeSource);
+    bundleFactory.mergedCache.setTimeSource(timeSource);
 
     time.set(System.currentTimeMillis());
 
@@ -22,6 +22,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import org.apache.shindig.common.cache.CacheStats;
+import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.uri.UriBuilder;
 import org.apache.shindig.config.ContainerConfig;
@@ -522,6 +524,31 @@ public class FeatureRegistryTest {
     assertEquals("nodep", featureNames.get(4));
   }
   
+  @Test
+  public void getFeaturesStringsDependencyNeededFirst() throws Exception {
+    setupFullRegistry("gadget", null);
+    List<String> needed = Lists.newArrayList("bottom", "nodep", "top", "mid_a");
+    List<String> featureNames = registry.getFeatures(needed);
+    assertEquals(ImmutableList.of("nodep", "bottom", "mid_a", "mid_b", "top"), featureNames);
+  }
+
+  @Test
+  public void resolvedResourcesCachedInProvidedCache() throws Exception {
+    setupFullRegistry("gadget", null);
+    LruCacheProvider cacheProvider = new LruCacheProvider(10);
+    registry.setCacheProvider(cacheProvider);
+    GadgetContext ctx = getCtx(RenderingContext.GADGET, null);
+
+    List<FeatureResource> resources =
+        registry.getFeatureResources(ctx, Lists.newArrayList("top", "mid_b"), null);
+    assertSame(resources,
+        registry.getFeatureResources(ctx, Lists.newArrayList("top"), null));
+
+    CacheStats stats = cacheProvider.getStats().get(FeatureRegistry.CACHE_NAME);
+    assertEquals(1, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+  }
+
   @Test
   public void loopIsDetectedAndCrashes() throws Exception {
     // Set up a registry with features loop_a,b,c. C points back to A, which should
@@ -18,10 +18,14 @@
 package org.apache.shindig.gadgets.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Provider;
 
+import org.apache.shindig.common.testing.TestExecutorService;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.AuthType;
 import org.apache.shindig.gadgets.GadgetException;
@@ -29,7 +33,10 @@ import org.apache.shindig.gadgets.oauth.OAuthRequest;
 import org.apache.shindig.gadgets.rewrite.DefaultResponseRewriterRegistry;
 import org.junit.Test;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DefaultRequestPipelineTest {
   private static final Uri DEFAULT_URI = Uri.parse("http://example.org/gadget.xml");
@@ -220,6 +227,179 @@ public class DefaultRequestPipelineTest {
     assertEquals(0, cache.writeCount);
   }
 
+  @Test
+  public void concurrentMissesCoalesced() throws Exception {
+    BlockingFetcher blockingFetcher = new BlockingFetcher(new HttpResponse("response"));
+    RequestPipeline blockingPipeline = new DefaultRequestPipeline(blockingFetcher, cache,
+        oauth, new DefaultResponseRewriterRegistry(null, null), new NoOpInvalidationService(),
+        helper);
+
+    HttpResponse[] responses = executeConcurrently(blockingPipeline,
+        new HttpRequest(Uri.parse("http://example.org/data?coalesced=1")), blockingFetcher);
+
+    assertEquals(1, blockingFetcher.fetchCount.get());
+    assertEquals("response", responses[0].getResponseAsString());
+    assertSame(responses[0], responses[1]);
+  }
+
+  @Test
+  public void concurrentNoCacheResponsesNotShared() throws Exception {
+    BlockingFetcher blockingFetcher = new BlockingFetcher(new HttpResponseBuilder()
+        .setResponseString("private")
+        .setStrictNoCache()
+        .create());
+    RequestPipeline blockingPipeline = new DefaultRequestPipeline(blockingFetcher, cache,
+        oauth, new DefaultResponseRewriterRegistry(null, null), new NoOpInvalidationService(),
+        helper);
+
+    HttpResponse[] responses = executeConcurrently(blockingPipeline,
+        new HttpRequest(Uri.parse("http://example.org/data?nocache=1")), blockingFetcher);
+
+    assertEquals(2, blockingFetcher.fetchCount.get());
+    assertEquals("private", responses[0].getResponseAsString());
+    assertEquals("private", responses[1].getResponseAsString());
+  }
+
+  @Test
+  public void concurrentOAuthMissesNotCoalesced() throws Exception {
+    final BlockingFetcher blockingFetcher = new BlockingFetcher(new HttpResponse("token"));
+    final OAuthRequest blockingOAuth = new OAuthRequest(null, null) {
+      @Override
+      public HttpResponse fetch(HttpRequest request) {
+        return blockingFetcher.fetch(request);
+      }
+    };
+    RequestPipeline blockingPipeline = new DefaultRequestPipeline(fetcher, cache,
+        new Provider<OAuthRequest>() {
+          public OAuthRequest get() {
+            return blockingOAuth;
+          }
+        }, new DefaultResponseRewriterRegistry(null, null), new NoOpInvalidationService(),
+        helper);
+
+    HttpResponse[] responses = executeConcurrently(blockingPipeline,
+        new HttpRequest(Uri.parse("http://example.org/data?oauth=1")).setAuthType(AuthType.OAUTH),
+        blockingFetcher);
+
+    assertEquals(2, blockingFetcher.fetchCount.get());
+    assertEquals(0, fetcher.fetchCount);
+    assertNotSame(responses[0], responses[1]);
+  }
+
+  /**
+   * Executes the request in two threads, starting the second once the first is fetching, and
+   * releases the fetch once the second thread is blocked as well.
+   */
+  private static HttpResponse[] executeConcurrently(final RequestPipeline pipeline,
+      final HttpRequest request, BlockingFetcher blockingFetcher) throws Exception {
+    final HttpResponse[] responses = new HttpResponse[2];
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; ++i) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            responses[index] = pipeline.execute(new HttpRequest(request));
+          } catch (GadgetException e) {
+            // Leaves the response null, failing the caller's assertions.
+          }
+        }
+      };
+    }
+
+    threads[0].start();
+    blockingFetcher.fetching.await();
+    threads[1].start();
+    while (threads[1].getState() != Thread.State.WAITING &&
+        threads[1].getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(5);
+    }
+    blockingFetcher.release.countDown();
+    threads[0].join();
+    threads[1].join();
+    return responses;
+  }
+
+  /**
+   * Blocks every fetch until released, so that fetches overlap.
+   */
+  private static class BlockingFetcher implements HttpFetcher {
+    final CountDownLatch fetching = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger fetchCount = new AtomicInteger();
+    private final HttpResponse response;
+
+    BlockingFetcher(HttpResponse response) {
+      this.response = response;
+    }
+
+    public HttpResponse fetch(HttpRequest request) {
+      fetchCount.incrementAndGet();
+      fetching.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return HttpResponse.error();
+      }
+      // A fresh copy per fetch, so that responses fetched separately are distinguishable.
+      return new HttpResponseBuilder(response).create();
+    }
+  }
+
+  @Test
+  public void staleResponseServedWhileRefreshed() throws Exception {
+    Uri uri = Uri.parse("http://example.org/data?refresh=1");
+    HttpRequest request = new HttpRequest(uri);
+    HttpResponse cached = new HttpResponseBuilder().setCacheTtl(-1).create();
+    cache.data.put(uri, cached);
+    fetcher.response = new HttpResponse("fetched");
+
+    QueuingExecutor executor = new QueuingExecutor();
+    DefaultRequestPipeline refreshingPipeline = new DefaultRequestPipeline(fetcher, cache, oauth,
+        new DefaultResponseRewriterRegistry(null, null), new NoOpInvalidationService(), helper);
+    refreshingPipeline.setRefreshExecutor(executor);
+    refreshingPipeline.setStaleWhileRevalidateMs(60000);
+
+    assertSame(cached, refreshingPipeline.execute(request));
+    assertSame(cached, refreshingPipeline.execute(request));
+    assertEquals(0, fetcher.fetchCount);
+    assertEquals(1, executor.queued.size());
+
+    executor.queued.get(0).run();
+
+    assertEquals(1, fetcher.fetchCount);
+    assertEquals("fetched", cache.data.get(uri).getResponseAsString());
+  }
+
+  @Test
+  public void staleResponseBeyondGraceWindowRefetched() throws Exception {
+    Uri uri = Uri.parse("http://example.org/data?refresh=2");
+    HttpRequest request = new HttpRequest(uri);
+    cache.data.put(uri, new HttpResponseBuilder().setCacheTtl(-10).create());
+    fetcher.response = new HttpResponse("fetched");
+
+    QueuingExecutor executor = new QueuingExecutor();
+    DefaultRequestPipeline refreshingPipeline = new DefaultRequestPipeline(fetcher, cache, oauth,
+        new DefaultResponseRewriterRegistry(null, null), new NoOpInvalidationService(), helper);
+    refreshingPipeline.setRefreshExecutor(executor);
+    refreshingPipeline.setStaleWhileRevalidateMs(5000);
+
+    assertEquals("fetched", refreshingPipeline.execute(request).getResponseAsString());
+    assertEquals(1, fetcher.fetchCount);
+    assertEquals(0, executor.queued.size());
+  }
+
+  private static class QueuingExecutor extends TestExecutorService {
+    final List<Runnable> queued = Lists.newArrayList();
+
+    @Override
+    public void execute(Runnable r) {
+      queued.add(r);
+    }
+  }
+
   public static class FakeHttpFetcher implements HttpFetcher {
     protected HttpRequest request;
     protected HttpResponse response;
@@ -27,6 +27,8 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Arrays;
@@ -554,4 +556,32 @@ public class HttpResponseTest extends Assert {
 
     assertEquals(expectedResponse, deserialized);
   }
+
+  @Test
+  public void testCompactSerializationKeepsDateAndMetadata() throws Exception {
+    FakeTimeSource clock = new FakeTimeSource(timeSource.currentTimeMillis());
+    HttpResponse.setTimeSource(clock);
+
+    HttpResponse response = new HttpResponseBuilder()
+        .addHeader("Foo", "bar")
+        .addHeader("Foo", "baz")
+        .setCacheTtl(3600)
+        .setResponseString("This is the response string")
+        .setMetadata("foo", "bar")
+        .create();
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    response.writeCompact(out);
+    out.flush();
+
+    // Well past the date drift limit, which would reset the date of a rebuilt response.
+    clock.incrementSeconds(1800);
+    HttpResponse deserialized = HttpResponse.readCompact(
+        new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+    assertEquals(response, deserialized);
+    assertEquals(response.getMetadata(), deserialized.getMetadata());
+    assertEquals(response.getCacheExpiration(), deserialized.getCacheExpiration());
+  }
 }
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.shindig.common.uri.Uri;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Tests for MappedHttpCache.
+ */
+public class MappedHttpCacheTest {
+  private static final Uri DEFAULT_URI = Uri.parse("http://example.org/file.txt");
+  private static final int SEGMENT_SIZE = 4096;
+
+  private File directory;
+  private MappedHttpCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile("httpcache", "");
+    directory.delete();
+    cache = new MappedHttpCache(directory.getPath(), SEGMENT_SIZE, 3);
+  }
+
+  @After
+  public void tearDown() {
+    cache.close();
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private static HttpRequest request(int i) {
+    return new HttpRequest(Uri.parse("http://example.org/file" + i + ".txt"));
+  }
+
+  @Test
+  public void addAndGetResponse() {
+    HttpRequest request = new HttpRequest(DEFAULT_URI);
+    HttpResponse response = new HttpResponseBuilder()
+        .setResponseString("response")
+        .setMetadata("hash", "abc")
+        .create();
+
+    cache.addResponse(request, response);
+
+    HttpResponse cached = cache.getResponse(request);
+    assertEquals(response, cached);
+    assertEquals("abc", cached.getMetadata().get("hash"));
+  }
+
+  @Test
+  public void removeResponse() {
+    HttpRequest request = new HttpRequest(DEFAULT_URI);
+    HttpResponse response = new HttpResponse("response");
+    cache.addResponse(request, response);
+
+    assertEquals(response, cache.removeResponse(request));
+    assertNull(cache.getResponse(request));
+    assertNull(cache.removeResponse(request));
+  }
+
+  @Test
+  public void oldestSegmentEvictedWhenFull() {
+    byte[] body = new byte[1000];
+    for (int i = 0; i < 20; ++i) {
+      cache.addResponse(request(i), new HttpResponseBuilder().setResponse(body).create());
+    }
+
+    assertEquals(3, cache.getSegmentCount());
+    assertEquals(3, directory.listFiles().length);
+    assertNull(cache.getResponse(request(0)));
+    assertEquals(body.length, cache.getResponse(request(19)).getContentLength());
+    assertTrue(cache.size() < 20);
+  }
+
+  @Test
+  public void responsesSurviveRestart() throws Exception {
+    cache.addResponse(request(1), new HttpResponse("one"));
+    cache.addResponse(request(2), new HttpResponse("two"));
+    cache.addResponse(request(1), new HttpResponse("uno"));
+    cache.removeResponse(request(2));
+    cache.close();
+
+    cache = new MappedHttpCache(directory.getPath(), SEGMENT_SIZE, 3);
+
+    assertEquals(1, cache.size());
+    assertEquals("uno", cache.getResponse(request(1)).getResponseAsString());
+    assertNull(cache.getResponse(request(2)));
+
+    cache.addResponse(request(3), new HttpResponse("three"));
+    assertEquals("three", cache.getResponse(request(3)).getResponseAsString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void directoryRequired() throws Exception {
+    new MappedHttpCache("", SEGMENT_SIZE, 3);
+  }
+}
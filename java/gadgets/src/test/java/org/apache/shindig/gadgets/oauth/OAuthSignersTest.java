@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.oauth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.shindig.gadgets.oauth.testing.FakeOAuthServiceProvider;
+
+import net.oauth.OAuth;
+import net.oauth.OAuthAccessor;
+import net.oauth.OAuthConsumer;
+import net.oauth.OAuthMessage;
+import net.oauth.signature.OAuthSignatureMethod;
+import net.oauth.signature.RSA_SHA1;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.PrivateKey;
+
+public class OAuthSignersTest {
+
+  @Before
+  public void setUp() {
+    OAuthSigners.register();
+  }
+
+  @Test
+  public void testRsaSignatureVerifiesWithCertificate() throws Exception {
+    OAuthConsumer consumer = new OAuthConsumer(null, "signedfetch", null, null);
+    consumer.setProperty(OAuth.OAUTH_SIGNATURE_METHOD, OAuth.RSA_SHA1);
+    consumer.setProperty(RSA_SHA1.PRIVATE_KEY,
+        BasicOAuthStore.convertFromOpenSsl(FakeOAuthServiceProvider.PRIVATE_KEY_TEXT));
+    long signed = OAuthSigners.getRsaSha1Metrics().getCount();
+
+    OAuthMessage message = newMessage();
+    message.addRequiredParameters(new OAuthAccessor(consumer));
+    assertEquals(signed + 1, OAuthSigners.getRsaSha1Metrics().getCount());
+
+    OAuthConsumer verifier = new OAuthConsumer(null, "signedfetch", null, null);
+    verifier.setProperty(RSA_SHA1.X509_CERTIFICATE, FakeOAuthServiceProvider.CERTIFICATE_TEXT);
+    OAuthSignatureMethod.newMethod(OAuth.RSA_SHA1, new OAuthAccessor(verifier)).validate(message);
+  }
+
+  @Test
+  public void testHmacSignatureVerifies() throws Exception {
+    OAuthConsumer consumer = new OAuthConsumer(null, "consumer", "secret", null);
+    consumer.setProperty(OAuth.OAUTH_SIGNATURE_METHOD, OAuth.HMAC_SHA1);
+    OAuthAccessor accessor = new OAuthAccessor(consumer);
+    accessor.accessToken = "token";
+    accessor.tokenSecret = "token secret";
+    long signed = OAuthSigners.getHmacSha1Metrics().getCount();
+
+    OAuthMessage message = newMessage();
+    message.addRequiredParameters(accessor);
+    assertEquals(signed + 1, OAuthSigners.getHmacSha1Metrics().getCount());
+
+    OAuthSignatureMethod.newMethod(OAuth.HMAC_SHA1, accessor).validate(message);
+  }
+
+  @Test
+  public void testPrivateKeyParsedOnce() {
+    String key = BasicOAuthStore.convertFromOpenSsl(FakeOAuthServiceProvider.PRIVATE_KEY_TEXT);
+    assertNotNull(RsaSha1Signer.getPrivateKey(key));
+    assertSame(RsaSha1Signer.getPrivateKey(key), RsaSha1Signer.getPrivateKey(key));
+    assertNull(RsaSha1Signer.getPrivateKey("rsaprivate"));
+  }
+
+  @Test
+  public void testParsedKeyKeepsOtherProperties() {
+    String text = BasicOAuthStore.convertFromOpenSsl(FakeOAuthServiceProvider.PRIVATE_KEY_TEXT);
+    PrivateKey key = RsaSha1Signer.getPrivateKey(text);
+    OAuthConsumer consumer = new OAuthConsumer(null, "signedfetch", null, null);
+    consumer.setProperty(RSA_SHA1.PRIVATE_KEY, text);
+    consumer.setProperty("custom", "consumer value");
+    OAuthAccessor accessor = new OAuthAccessor(consumer);
+    accessor.setProperty("custom", "accessor value");
+    accessor.accessToken = "token";
+
+    OAuthAccessor copy = RsaSha1Signer.withPrivateKey(accessor, key);
+    assertSame(key, copy.consumer.getProperty(RSA_SHA1.PRIVATE_KEY));
+    assertEquals("consumer value", copy.consumer.getProperty("custom"));
+    assertEquals("accessor value", copy.getProperty("custom"));
+    assertEquals("token", copy.accessToken);
+  }
+
+  private static OAuthMessage newMessage() {
+    return new OAuthMessage("GET", "http://www.example.com/data",
+        OAuth.newList("opensocial_owner_id", "owner", "q", "a b"));
+  }
+}
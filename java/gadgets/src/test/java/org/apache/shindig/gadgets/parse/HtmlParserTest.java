@@ -17,12 +17,14 @@
  */
 package org.apache.shindig.gadgets.parse;
 
+import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.gadgets.parse.nekohtml.NekoSimplifiedHtmlParser;
 import org.apache.shindig.gadgets.rewrite.XPathWrapper;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 /**
  * Note these tests are of marginal use. Consider removing. More useful tests would exercise
@@ -80,6 +82,26 @@ public class HtmlParserTest extends Assert {
     assertEquals(1, wrapper.getNodeList("/html/body/div/hr").getLength());
   }
 
+  @Test
+  public void testCachedParseReturnsIndependentDocuments() throws Exception {
+    GadgetHtmlParser cachedParser = new NekoSimplifiedHtmlParser(
+        new ParseModule.DOMImplementationProvider().get());
+    cachedParser.setCacheProvider(new LruCacheProvider(10));
+    String content = "<!DOCTYPE html><html><head><title>t</title></head>" +
+        "<body><div id=\"foo\">x<b>y</b></div><!-- c --></body></html>";
+
+    Document first = cachedParser.parseDom(content);
+    Document expected = (Document) first.cloneNode(true);
+    ((Element) first.getElementsByTagName("div").item(0)).setAttribute("id", "bar");
+
+    Document second = cachedParser.parseDom(content);
+    assertTrue(expected.isEqualNode(second));
+    assertEquals(HtmlSerialization.serialize(expected), HtmlSerialization.serialize(second));
+
+    second.getElementsByTagName("b").item(0).setTextContent("z");
+    assertTrue(expected.isEqualNode(cachedParser.parseDom(content)));
+  }
+
   // TODO: figure out to what extent it makes sense to test "invalid"
   // HTML, semi-structured HTML, and comment parsing
 }
@@ -23,7 +23,13 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.apache.shindig.common.testing.TestExecutorService;
+import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.http.AsyncRequestPipeline;
+import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.http.HttpResponse;
+import org.apache.shindig.gadgets.http.HttpResponseBuilder;
+import org.apache.shindig.gadgets.http.RequestPipeline;
 import org.junit.Test;
 
 import java.util.Collection;
@@ -31,6 +37,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -146,6 +154,87 @@ public class ConcurrentPreloaderServiceTest {
         Thread.currentThread(), callable.executedThread);
   }
 
+  @Test
+  public void httpPreloadsDispatchedToAsyncPipeline() throws Exception {
+    final HttpRequest request = new HttpRequest(Uri.parse("http://example.org/preload"));
+    // No synchronous pipeline: the task fails if it is called rather than dispatched.
+    preloader.tasks.add(new AbstractHttpPreloadTask(null) {
+      @Override
+      protected HttpRequest createRequest() {
+        return request;
+      }
+
+      @Override
+      protected PreloadedData createPreloadedData(HttpResponse response) {
+        return new DataPreload(PRELOAD_STRING_KEY, response.getResponseAsString());
+      }
+    });
+    preloader.tasks.add(new TestPreloadCallable(
+        new DataPreload(PRELOAD_NUMERIC_KEY, PRELOAD_NUMERIC_VALUE)));
+
+    RecordingAsyncPipeline asyncPipeline = new RecordingAsyncPipeline();
+    ConcurrentPreloaderService service = new ConcurrentPreloaderService(
+        new TestExecutorService(), preloader);
+    service.setAsyncRequestPipeline(asyncPipeline);
+
+    Collection<Object> preloaded = getAll(service.preload((Gadget) null));
+
+    assertEquals(ImmutableList.of(request), asyncPipeline.requests);
+    assertEquals(ImmutableList.<Object>of(
+        ImmutableMap.of(PRELOAD_STRING_KEY, PRELOAD_STRING_VALUE),
+        ImmutableMap.of(PRELOAD_NUMERIC_KEY, PRELOAD_NUMERIC_VALUE)), preloaded);
+  }
+
+  @Test
+  public void lastHttpPreloadExecutesInCurrentThread() throws Exception {
+    final Thread[] executedThread = new Thread[1];
+    RequestPipeline pipeline = new RequestPipeline() {
+      public HttpResponse execute(HttpRequest request) {
+        executedThread[0] = Thread.currentThread();
+        return new HttpResponseBuilder().setResponseString(PRELOAD_STRING_VALUE).create();
+      }
+    };
+    preloader.tasks.add(new AbstractHttpPreloadTask(pipeline) {
+      @Override
+      protected HttpRequest createRequest() {
+        return new HttpRequest(Uri.parse("http://example.org/preload"));
+      }
+
+      @Override
+      protected PreloadedData createPreloadedData(HttpResponse response) {
+        return new DataPreload(PRELOAD_STRING_KEY, response.getResponseAsString());
+      }
+    });
+
+    RecordingAsyncPipeline asyncPipeline = new RecordingAsyncPipeline();
+    ConcurrentPreloaderService service = new ConcurrentPreloaderService(
+        Executors.newCachedThreadPool(), preloader);
+    service.setAsyncRequestPipeline(asyncPipeline);
+
+    Collection<Object> preloaded = getAll(service.preload((Gadget) null));
+
+    assertEquals(0, asyncPipeline.requests.size());
+    assertSame(Thread.currentThread(), executedThread[0]);
+    assertEquals(ImmutableList.<Object>of(
+        ImmutableMap.of(PRELOAD_STRING_KEY, PRELOAD_STRING_VALUE)), preloaded);
+  }
+
+  private static class RecordingAsyncPipeline implements AsyncRequestPipeline {
+    protected final List<HttpRequest> requests = Lists.newArrayList();
+
+    public Future<HttpResponse> executeAsync(HttpRequest request) {
+      requests.add(request);
+      FutureTask<HttpResponse> response = new FutureTask<HttpResponse>(
+          new Callable<HttpResponse>() {
+            public HttpResponse call() {
+              return new HttpResponseBuilder().setResponseString(PRELOAD_STRING_VALUE).create();
+            }
+          });
+      response.run();
+      return response;
+    }
+  }
+
   private static class TestPreloader implements Preloader {
     protected final Collection<Callable<PreloadedData>> tasks = Lists.newArrayList();
 
@@ -31,9 +31,13 @@ import static org.junit.Assert.assertTrue;
 import org.apache.shindig.common.JsonAssert;
 import org.apache.shindig.common.JsonSerializer;
 import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.ImmediateFuture;
 import org.apache.shindig.common.xml.XmlUtil;
 import org.apache.shindig.expressions.Expressions;
 import org.apache.shindig.gadgets.GadgetContext;
+import org.apache.shindig.gadgets.http.AsyncRequestPipeline;
+import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.spec.PipelinedData;
 import org.apache.shindig.gadgets.spec.RequestAuthenticationInfo;
 import org.apache.shindig.gadgets.spec.SpecParserException;
@@ -48,11 +52,14 @@ import org.junit.Test;
 import org.w3c.dom.Element;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 
 public class PipelineExecutorTest {
 
@@ -283,6 +290,44 @@ public class PipelineExecutorTest {
     control.verify();
   }
 
+  @Test
+  public void executeDispatchesHttpPreloadsOnAsyncPipeline() throws Exception {
+    PipelinedData pipeline = getPipelinedData(CONTENT);
+    final List<Uri> fetched = Lists.newArrayList();
+    executor.setAsyncRequestPipeline(new AsyncRequestPipeline() {
+      public Future<HttpResponse> executeAsync(HttpRequest request) {
+        fetched.add(request.getUri());
+        return ImmediateFuture.newInstance(new HttpResponse("{foo: 'bar'}"));
+      }
+    });
+
+    final PreloadedData preloaded = createPreloadTask("json", "{result: {foo: 'bar'}}").call();
+    Callable<PreloadedData> task = new AbstractHttpPreloadTask(null) {
+      @Override
+      protected HttpRequest createRequest() {
+        return new HttpRequest(GADGET_URI);
+      }
+
+      @Override
+      protected PreloadedData createPreloadedData(HttpResponse response) {
+        assertEquals("{foo: 'bar'}", response.getResponseAsString());
+        return preloaded;
+      }
+    };
+    expect(preloader.createPreloadTasks(same(context), isA(PipelinedData.Batch.class)))
+        .andReturn(ImmutableList.of(task));
+
+    control.replay();
+
+    PipelineExecutor.Results results = executor.execute(context,
+        ImmutableList.of(pipeline));
+
+    assertEquals(ImmutableList.of(GADGET_URI), fetched);
+    JsonAssert.assertJsonEquals("[{id: 'json', result: {foo: 'bar'}}]",
+        JsonSerializer.serialize(results.results));
+    control.verify();
+  }
+
   /** Match a batch with the specified count of social and HTTP data items */
   private PipelinedData.Batch eqBatch(int socialCount, int httpCount) {
     reportMatcher(new BatchMatcher(socialCount, httpCount));
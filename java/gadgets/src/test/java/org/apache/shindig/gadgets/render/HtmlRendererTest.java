@@ -19,18 +19,25 @@
 package org.apache.shindig.gadgets.render;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.shindig.auth.AnonymousSecurityToken;
 import org.apache.shindig.auth.SecurityToken;
+import org.apache.shindig.common.cache.LruCacheProvider;
+import org.apache.shindig.common.testing.FakeGadgetToken;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.xml.XmlUtil;
 import org.apache.shindig.gadgets.Gadget;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.preload.HttpPreloader;
 import org.apache.shindig.gadgets.preload.PreloadedData;
+import org.apache.shindig.gadgets.preload.Preloader;
 import org.apache.shindig.gadgets.preload.PreloaderService;
 import org.apache.shindig.gadgets.rewrite.CaptureRewriter;
+import org.apache.shindig.gadgets.rewrite.ContentRewriterFeature;
 import org.apache.shindig.gadgets.rewrite.GadgetRewriter;
 import org.apache.shindig.gadgets.spec.GadgetSpec;
 import org.apache.shindig.gadgets.spec.View;
@@ -39,6 +46,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.Callable;
 
 import com.google.common.collect.ImmutableList;
@@ -113,6 +121,93 @@ public class HtmlRendererTest {
     assertTrue("Rewriting not performed.", captureRewriter.viewWasRewritten());
   }
 
+  @Test
+  public void staticGadgetRenderedOnce() throws Exception {
+    enableCache();
+    String content = renderer.render(makeGadget(BASIC_HTML_CONTENT));
+
+    preloaderService.wasPreloaded = false;
+    assertEquals(content, renderer.render(makeGadget(BASIC_HTML_CONTENT)));
+    assertFalse("Cached gadget was preloaded.", preloaderService.wasPreloaded);
+  }
+
+  @Test
+  public void ignoreCacheRendersAgain() throws Exception {
+    enableCache();
+    renderer.render(makeGadget(BASIC_HTML_CONTENT));
+
+    preloaderService.wasPreloaded = false;
+    Gadget gadget = makeGadget(BASIC_HTML_CONTENT).setContext(new GadgetContext(CONTEXT) {
+      @Override
+      public boolean getIgnoreCache() {
+        return true;
+      }
+    });
+    renderer.render(gadget);
+    assertTrue("Preloading not performed.", preloaderService.wasPreloaded);
+  }
+
+  @Test
+  public void changedSpecRendersAgain() throws Exception {
+    enableCache();
+    renderer.render(makeGadget(BASIC_HTML_CONTENT));
+
+    assertEquals("Changed!", renderer.render(makeGadget("Changed!")));
+  }
+
+  @Test
+  public void personalizedGadgetNotCached() throws Exception {
+    enableCache();
+    GadgetContext viewerContext = new GadgetContext() {
+      @Override
+      public SecurityToken getToken() {
+        return new FakeGadgetToken().setViewerId("john.doe").setUpdatedToken("updated");
+      }
+    };
+    Gadget gadget = makeGadget(BASIC_HTML_CONTENT).setContext(viewerContext);
+    assertNull(renderer.getCacheKey(gadget, gadget.getCurrentView()));
+  }
+
+  @Test
+  public void userPrefsInContentNotCached() throws Exception {
+    enableCache();
+    Gadget gadget = makeGadget("Hello, __UP_name__!");
+    assertNull(renderer.getCacheKey(gadget, gadget.getCurrentView()));
+  }
+
+  @Test
+  public void proxiedGadgetNotCached() throws Exception {
+    enableCache();
+    Gadget gadget = makeHrefGadget("none");
+    assertNull(renderer.getCacheKey(gadget, gadget.getCurrentView()));
+  }
+
+  @Test
+  public void customPreloaderDisablesCache() throws Exception {
+    enableCache(new Preloader() {
+      public Collection<Callable<PreloadedData>> createPreloadTasks(Gadget gadget) {
+        return Collections.emptyList();
+      }
+    });
+    renderer.render(makeGadget(BASIC_HTML_CONTENT));
+
+    preloaderService.wasPreloaded = false;
+    renderer.render(makeGadget(BASIC_HTML_CONTENT));
+    assertTrue("Preloading not performed.", preloaderService.wasPreloaded);
+  }
+
+  private void enableCache() {
+    enableCache(new HttpPreloader(null));
+  }
+
+  private void enableCache(Preloader preloader) {
+    renderer.setRenderCache(new LruCacheProvider(10),
+        new ContentRewriterFeature.Factory(null,
+            new ContentRewriterFeature.DefaultConfig(
+                ".*", "", "HTTP", "embed,img,script,link,style", false, false)),
+        preloader, 60000L);
+  }
+
   private static class FakeProxyRenderer extends ProxyRenderer {
     public FakeProxyRenderer() {
       super(null, null, null);
@@ -29,6 +29,7 @@ import static org.easymock.EasyMock.getCurrentArguments;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.same;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -36,6 +37,7 @@ import static org.junit.Assert.assertNull;
 
 import org.apache.shindig.common.JsonAssert;
 import org.apache.shindig.common.PropertiesModule;
+import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.xml.XmlUtil;
 import org.apache.shindig.config.AbstractContainerConfig;
@@ -306,6 +308,31 @@ public class RenderingGadgetRewriterTest {
     assertTrue("Requested scripts not inlined.", rewritten.contains("foo_content();"));
   }
   
+  @Test
+  public void inlinedFeaturesCachedAcrossRenders() throws Exception {
+    rewriter.setCacheProvider(new LruCacheProvider(10));
+    String gadgetXml =
+      "<Module><ModulePrefs title=''>" +
+      "  <Require feature='foo'/>" +
+      "</ModulePrefs>" +
+      "<Content type='html'/>" +
+      "</Module>";
+
+    Gadget gadget = makeGadgetWithSpec(gadgetXml);
+
+    expectFeatureCalls(gadget,
+        ImmutableList.of(inline("foo_content();", "foo_content_debug();")),
+        ImmutableSet.<String>of(),
+        ImmutableList.<FeatureResource>of());
+
+    String rewritten = rewrite(gadget, "");
+
+    // The registry only expects the features to be resolved once.
+    assertEquals(rewritten, rewrite(gadget, ""));
+    assertTrue("Requested scripts not inlined.", rewritten.contains("foo_content();"));
+    verify(featureRegistry);
+  }
+
   @Test
   public void featuresNotInjectedWhenRemoved() throws Exception {
     String gadgetXml =
@@ -25,6 +25,7 @@ import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.http.HttpRequest;
 import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.http.HttpResponseBuilder;
+import org.apache.shindig.protocol.OperationMetrics;
 import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
@@ -62,6 +63,17 @@ public class DefaultContentRewriterRegistryTest extends BaseRewriterTestCase {
     assertEquals(response, rewritten);
   }
 
+  @Test
+  public void testRecordsEachRewriter() throws Exception {
+    OperationMetrics metrics = RewriterMetrics.getMetrics(CaptureRewriter.class);
+    long count = metrics.getCount();
+
+    registry.rewriteHttpResponse(new HttpRequest(SPEC_URL), new HttpResponse("Hello, world"));
+
+    assertEquals("rewrite.CaptureRewriter", metrics.getName());
+    assertEquals(count + 2, metrics.getCount());
+  }
+
   /**
    * This test ensures that we dont call HttpResponse.getResponseAsString if no content
    * rewriter does so either. This is important
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.rewrite;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.protocol.OperationMetrics;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FusedDomRewriterTest extends DomWalkerTestBase {
+  private Element root;
+  private Element child1;
+  private Element child2;
+  private Element subchild1;
+  private List<String> log;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+
+    // <root>
+    //   <child1/>
+    //   <child2><subchild1/></child2>
+    // </root>
+    root = doc.createElement("root");
+    child1 = doc.createElement("child1");
+    root.appendChild(child1);
+    child2 = doc.createElement("child2");
+    subchild1 = doc.createElement("subchild1");
+    child2.appendChild(subchild1);
+    root.appendChild(child2);
+    doc.appendChild(root);
+
+    log = Lists.newArrayList();
+  }
+
+  @Test
+  public void immediateRewriterSharesWalk() throws Exception {
+    DomWalker.Rewriter marking = new DomWalker.Rewriter(new MarkingVisitor("a"));
+    DomWalker.Rewriter logging = new DomWalker.Rewriter(new LoggingVisitor("b", null));
+
+    MutableContent mc = getContent(1, 4);
+    new FusedDomRewriter(ImmutableList.of(marking, logging)).rewrite(gadget(), mc);
+
+    // Both rewriters see each node in turn, the second after the first has modified it.
+    assertEquals(ImmutableList.of(
+        "a:root", "b:root:marked", "a:child1", "b:child1:marked",
+        "a:child2", "b:child2:marked", "a:subchild1", "b:subchild1:marked"), log);
+    verify(mc);
+  }
+
+  @Test
+  public void reservingRewriterEndsWalk() throws Exception {
+    DomWalker.Rewriter appending = new DomWalker.Rewriter(new AppendingVisitor());
+    DomWalker.Rewriter logging = new DomWalker.Rewriter(new LoggingVisitor("b", null));
+
+    MutableContent mc = getContent(2, 1);
+    new FusedDomRewriter(ImmutableList.of(appending, logging)).rewrite(gadget(), mc);
+
+    // The second rewriter walks the document as modified by the revisit of the first.
+    assertEquals(ImmutableList.of(
+        "append:child1", "b:root", "b:child1", "b:child2", "b:subchild1", "b:appended"), log);
+    verify(mc);
+  }
+
+  @Test
+  public void treeReservationOnlySkipsOwnRewriter() throws Exception {
+    DomWalker.Rewriter marking = new DomWalker.Rewriter(new MarkingVisitor("a"));
+    LoggingVisitor reserving = new LoggingVisitor("b", child2);
+    DomWalker.Rewriter logging = new DomWalker.Rewriter(reserving);
+
+    MutableContent mc = getContent(1, 4);
+    new FusedDomRewriter(ImmutableList.of(marking, logging)).rewrite(gadget(), mc);
+
+    assertEquals(ImmutableList.of(
+        "a:root", "b:root:marked", "a:child1", "b:child1:marked",
+        "a:child2", "b:child2:marked", "a:subchild1"), log);
+    assertEquals(ImmutableList.<Node>of(child2), reserving.revisited);
+    verify(mc);
+  }
+
+  @Test
+  public void recordsMetricsPerRewriter() throws Exception {
+    DomWalker.Rewriter logging = new DomWalker.Rewriter(new LoggingVisitor("b", child2));
+    OperationMetrics metrics = RewriterMetrics.getMetrics(DomWalker.Rewriter.class);
+    long count = metrics.getCount();
+    long items = metrics.getTotalItems();
+
+    MutableContent mc = getContent(1, 4);
+    new FusedDomRewriter(ImmutableList.of(
+        new DomWalker.Rewriter(new MarkingVisitor("a")), logging)).rewrite(gadget(), mc);
+
+    assertEquals("rewrite.Rewriter", metrics.getName());
+    assertEquals(count + 2, metrics.getCount());
+    // Only the second rewriter reserved a node.
+    assertEquals(items + 1, metrics.getTotalItems());
+  }
+
+  @Test
+  public void fuseConsecutiveDomWalkers() throws Exception {
+    GadgetRewriter plain = createMock(GadgetRewriter.class);
+    DomWalker.Rewriter first = new DomWalker.Rewriter(new MarkingVisitor("a"));
+    DomWalker.Rewriter second = new DomWalker.Rewriter(new MarkingVisitor("b"));
+    DomWalker.Rewriter custom = new DomWalker.Rewriter() {
+      @Override
+      public void rewrite(Gadget gadget, MutableContent content) {
+        // Does its own thing.
+      }
+    };
+
+    List<GadgetRewriter> fused = FusedDomRewriter.fuseGadgetRewriters(
+        ImmutableList.<GadgetRewriter>of(plain, first, second, custom));
+
+    assertEquals(3, fused.size());
+    assertSame(plain, fused.get(0));
+    assertTrue(fused.get(1) instanceof FusedDomRewriter);
+    assertEquals(ImmutableList.of(first, second), ((FusedDomRewriter) fused.get(1)).getRewriters());
+    assertSame(custom, fused.get(2));
+  }
+
+  private MutableContent getContent(int walks, int docChangedTimes) {
+    MutableContent mc = createMock(MutableContent.class);
+    expect(mc.getDocument()).andReturn(doc).times(walks);
+    mc.documentChanged();
+    expectLastCall().times(docChangedTimes);
+    replay(mc);
+    return mc;
+  }
+
+  /** Marks every element it visits. */
+  private class MarkingVisitor implements DomWalker.ImmediateVisitor {
+    private final String name;
+
+    MarkingVisitor(String name) {
+      this.name = name;
+    }
+
+    public VisitStatus visit(Gadget gadget, Node node) {
+      log.add(name + ':' + node.getNodeName());
+      ((Element) node).setAttribute("marked", "true");
+      return VisitStatus.MODIFY;
+    }
+
+    public boolean revisit(Gadget gadget, List<Node> nodes) {
+      return false;
+    }
+  }
+
+  /** Logs the elements it visits, reserving the tree of the given node. */
+  private class LoggingVisitor implements DomWalker.Visitor {
+    private final String name;
+    private final Node reserve;
+    private List<Node> revisited;
+
+    LoggingVisitor(String name, Node reserve) {
+      this.name = name;
+      this.reserve = reserve;
+    }
+
+    public VisitStatus visit(Gadget gadget, Node node) {
+      log.add(name + ':' + node.getNodeName() +
+          (((Element) node).hasAttribute("marked") ? ":marked" : ""));
+      return node == reserve ? VisitStatus.RESERVE_TREE : VisitStatus.BYPASS;
+    }
+
+    public boolean revisit(Gadget gadget, List<Node> nodes) {
+      revisited = nodes;
+      return false;
+    }
+  }
+
+  /** Reserves child1, then appends an element to the root in revisit. */
+  private class AppendingVisitor implements DomWalker.Visitor {
+    public VisitStatus visit(Gadget gadget, Node node) {
+      if (node == child1) {
+        log.add("append:" + node.getNodeName());
+        return VisitStatus.RESERVE_NODE;
+      }
+      return VisitStatus.BYPASS;
+    }
+
+    public boolean revisit(Gadget gadget, List<Node> nodes) {
+      root.appendChild(doc.createElement("appended"));
+      return true;
+    }
+  }
+}
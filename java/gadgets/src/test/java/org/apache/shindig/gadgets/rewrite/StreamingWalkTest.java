@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.rewrite;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.http.HttpResponseBuilder;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingWalkTest extends DomWalkerTestBase {
+  private static final List<DomWalker.Visitor> ABSOLUTE_PATH = ImmutableList.<DomWalker.Visitor>of(
+      new AbsolutePathReferenceVisitor(AbsolutePathReferenceVisitor.Tags.RESOURCES));
+
+  @Test
+  public void unchangedContentCopiedVerbatim() throws Exception {
+    String html = "<!DOCTYPE html><HTML><Head><title>a <img src=\"t.png\"></title></Head>" +
+        "<body class=x><!-- <img src=\"c.png\"> --><img src=\"http://example.com/i.png\" >" +
+        "<script>document.write('<img src=\"s.png\">');</script>1 < 2<p>unclosed";
+    MutableContent mc = new MutableContent(null, html);
+
+    StreamingWalk walk = new StreamingWalk(ImmutableList.of(ABSOLUTE_PATH));
+    assertTrue(walk.run(gadget(), mc));
+    assertFalse(walk.isMutated());
+    assertEquals(html, mc.getContent());
+  }
+
+  @Test
+  public void changedTagsRebuilt() throws Exception {
+    String html = "<html><head><META Http-equiv=\"Content-Type\" " +
+        "Content=\"text/html; charset=GBK\"></head><body>" +
+        "<IMG SRC=a.png alt='x &amp; y' ismap><img src=\"http://example.com/b.png\"/>" +
+        "</body></html>";
+    List<DomWalker.Visitor> charsetRemover =
+        ImmutableList.<DomWalker.Visitor>of(new ContentTypeCharsetRemoverVisitor());
+    MutableContent mc = new MutableContent(null, html);
+
+    StreamingWalk walk = new StreamingWalk(ImmutableList.of(ABSOLUTE_PATH, charsetRemover));
+    assertTrue(walk.run(gadget(), mc));
+    assertTrue(walk.isMutated());
+    assertEquals("<html><head><META Http-equiv=\"Content-Type\" Content=\"text/html\">" +
+        "</head><body><IMG SRC=\"http://example.com/a.png\" alt=\"x &amp; y\" ismap>" +
+        "<img src=\"http://example.com/b.png\"/></body></html>", mc.getContent());
+  }
+
+  @Test
+  public void urlsResolvedAgainstBase() throws Exception {
+    String html = "<head><base href=\"http://base.com/dir/\"></head><img src=\"a.png\">";
+    MutableContent mc = new MutableContent(null, html);
+
+    new StreamingWalk(ImmutableList.of(ABSOLUTE_PATH)).run(gadget(), mc);
+    assertEquals("<head><base href=\"http://base.com/dir/\"></head>" +
+        "<img src=\"http://base.com/dir/a.png\">", mc.getContent());
+  }
+
+  @Test
+  public void baseAppliesToFollowingTagsOnly() throws Exception {
+    String html = "<img src=\"a.png\"><base href=\"http://base.com/dir/\"><img src=\"b.png\">";
+    MutableContent mc = new MutableContent(null, html);
+
+    new StreamingWalk(ImmutableList.of(ABSOLUTE_PATH)).run(gadget(), mc);
+    assertEquals("<img src=\"http://example.com/a.png\">" +
+        "<base href=\"http://base.com/dir/\"><img src=\"http://base.com/dir/b.png\">",
+        mc.getContent());
+  }
+
+  @Test
+  public void reservedTagsRevisitedInBatches() throws Exception {
+    StringBuilder html = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i <= StreamingWalk.MAX_PENDING_TAGS; ++i) {
+      html.append("<img src=\"").append(i).append(".png\">text");
+      // The second group sees the tags as revisited by the first.
+      expected.append("<img src=\"http://example.com/proxy/").append(i).append(".png\">text");
+    }
+    ProxyVisitor proxy = new ProxyVisitor();
+    MutableContent mc = new MutableContent(null, html.toString());
+
+    StreamingWalk walk = new StreamingWalk(ImmutableList.of(
+        ImmutableList.<DomWalker.Visitor>of(proxy), ABSOLUTE_PATH));
+    assertTrue(walk.run(gadget(), mc));
+    assertEquals(expected.toString(), mc.getContent());
+    assertEquals(ImmutableList.of(StreamingWalk.MAX_PENDING_TAGS, 1), proxy.batches);
+    assertEquals(StreamingWalk.MAX_PENDING_TAGS + 1, walk.getReservedCount(0));
+    assertEquals(0, walk.getReservedCount(1));
+  }
+
+  @Test
+  public void streamsOnlyStreamingVisitors() throws Exception {
+    DomWalker.Visitor visitor = new DomWalker.Visitor() {
+      public VisitStatus visit(Gadget gadget, Node node) {
+        return VisitStatus.BYPASS;
+      }
+
+      public boolean revisit(Gadget gadget, List<Node> nodes) {
+        return false;
+      }
+    };
+
+    assertTrue(StreamingWalk.canStream(ImmutableList.of(ABSOLUTE_PATH)));
+    assertTrue(StreamingWalk.canStream(ImmutableList.of(
+        ABSOLUTE_PATH, ImmutableList.<DomWalker.Visitor>of(new StyleAdjacencyVisitor()))));
+    assertFalse(StreamingWalk.canStream(ImmutableList.of(
+        ABSOLUTE_PATH, ImmutableList.of(visitor))));
+  }
+
+  @Test
+  public void filteringVisitorsBypassedWhileTheyLeaveTagsAlone() throws Exception {
+    String html = "<head><style>p { color: red }</style></head><img src=\"a.png\">";
+    List<DomWalker.Visitor> adjacency =
+        ImmutableList.<DomWalker.Visitor>of(new StyleAdjacencyVisitor());
+    MutableContent mc = new MutableContent(null, html);
+
+    StreamingWalk walk = new StreamingWalk(ImmutableList.of(ABSOLUTE_PATH, adjacency));
+    assertFalse(walk.run(gadget(), mc));
+    assertEquals(html, mc.getContent());
+
+    html = "<head><link rel=\"icon\" href=\"i.ico\"></head><img src=\"a.png\">";
+    mc = new MutableContent(null, html);
+    walk = new StreamingWalk(ImmutableList.of(ABSOLUTE_PATH, adjacency));
+    assertTrue(walk.run(gadget(), mc));
+    assertEquals("<head><link rel=\"icon\" href=\"i.ico\"></head>" +
+        "<img src=\"http://example.com/a.png\">", mc.getContent());
+  }
+
+  @Test
+  public void filteringVisitorsSeeTagsAsRevisitedByEarlierGroups() throws Exception {
+    DomWalker.Visitor proxiedOnly = new DomWalker.TagFilteringVisitor() {
+      public boolean mayReserve(Gadget gadget, Element element) {
+        return element.getAttribute("src").startsWith("proxy/");
+      }
+
+      public VisitStatus visit(Gadget gadget, Node node) {
+        return VisitStatus.BYPASS;
+      }
+
+      public boolean revisit(Gadget gadget, List<Node> nodes) {
+        return false;
+      }
+    };
+    MutableContent mc = new MutableContent(null, "<img src=\"a.png\">");
+
+    StreamingWalk walk = new StreamingWalk(ImmutableList.of(
+        ImmutableList.<DomWalker.Visitor>of(new ProxyVisitor()),
+        ImmutableList.of(proxiedOnly)));
+    assertFalse(walk.run(gadget(), mc));
+    assertEquals("<img src=\"a.png\">", mc.getContent());
+  }
+
+  @Test
+  public void responseRewrittenWithoutParsing() throws Exception {
+    // The builder has no parser: the rewrite would fail if the content were parsed.
+    HttpResponseBuilder builder = new HttpResponseBuilder()
+        .setHeader("Content-Type", "text/html")
+        .setResponseString("<img src=\"a.png\">");
+    HttpRequest request = new HttpRequest(Uri.parse("http://example.com/dir/page.html"));
+
+    new AbsolutePathReferenceRewriter().rewrite(request, builder);
+    assertEquals("<img src=\"http://example.com/dir/a.png\">", builder.getContent());
+
+    new StyleAdjacencyContentRewriter().rewrite(request, builder);
+    assertEquals("<img src=\"http://example.com/dir/a.png\">", builder.getContent());
+  }
+
+  private static class ProxyVisitor implements DomWalker.StreamingVisitor {
+    private final List<Integer> batches = Lists.newArrayList();
+
+    public VisitStatus visit(Gadget gadget, Node node) {
+      return ((Element) node).hasAttribute("src") ?
+          VisitStatus.RESERVE_NODE : VisitStatus.BYPASS;
+    }
+
+    public boolean revisit(Gadget gadget, List<Node> nodes) {
+      batches.add(nodes.size());
+      for (Node node : nodes) {
+        Element element = (Element) node;
+        element.setAttribute("src", "proxy/" + element.getAttribute("src"));
+      }
+      return true;
+    }
+  }
+}
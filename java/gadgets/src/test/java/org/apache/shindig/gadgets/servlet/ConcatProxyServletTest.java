@@ -25,6 +25,7 @@ import java.util.List;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.uri.UriBuilder;
 import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.http.ExecutorAsyncRequestPipeline;
 import org.apache.shindig.gadgets.http.HttpRequest;
 import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.http.HttpResponseBuilder;
@@ -66,7 +67,8 @@ public class ConcatProxyServletTest extends ServletTestFixture {
 
   @Before
   public void setUp() throws Exception {
-    servlet.setRequestPipeline(pipeline);
+    servlet.setAsyncRequestPipeline(
+        new ExecutorAsyncRequestPipeline(pipeline, sequentialExecutor));
     uriManager = new TestConcatUriManager();
     servlet.setConcatUriManager(uriManager);
     
@@ -123,7 +125,7 @@ public class ConcatProxyServletTest extends ServletTestFixture {
     expectRequestWithUris(Lists.newArrayList(uris), tok);
     
     // Run the servlet
-    servlet.setExecutor(exec);
+    servlet.setAsyncRequestPipeline(new ExecutorAsyncRequestPipeline(pipeline, exec));
     servlet.doGet(request, recorder);
     verify();
     assertEquals(result, recorder.getResponseAsString());
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.GZIPInputStream;
+
+public class JsBundleTest {
+  private static String repeat(String s, int times) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < times; ++i) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void smallBundleNotGzipped() throws Exception {
+    JsBundle bundle = new JsBundle("var a = '\u00e9';", true);
+    assertFalse(bundle.hasGzippedContent());
+    assertEquals(-1, bundle.getGzippedLength());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bundle.writeTo(out);
+    assertArrayEquals("var a = '\u00e9';".getBytes("UTF-8"), out.toByteArray());
+    assertEquals(out.size(), bundle.getLength());
+    assertEquals("var a = '\u00e9';", bundle.getContent());
+  }
+
+  @Test
+  public void largeBundleGzipped() throws Exception {
+    String js = repeat("gadgets.util.registerOnLoadHandler(function() {});\n", 100);
+    JsBundle bundle = new JsBundle(js, false);
+    assertTrue(bundle.hasGzippedContent());
+    assertFalse(bundle.isProxyCacheable());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bundle.writeGzippedTo(out);
+    assertEquals(bundle.getGzippedLength(), out.size());
+    assertTrue(out.size() < bundle.getLength());
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(js, new String(IOUtils.toByteArray(in), "UTF-8"));
+  }
+
+  @Test
+  public void etagDependsOnContent() {
+    JsBundle bundle = new JsBundle("var a;", true);
+    assertEquals(bundle.getEtag(), new JsBundle("var a;", false).getEtag());
+    assertFalse(bundle.getEtag().equals(new JsBundle("var b;", true).getEtag()));
+    assertTrue(bundle.getEtag().startsWith("\"") && bundle.getEtag().endsWith("\""));
+    assertFalse(bundle.getEtag().equals(bundle.getGzippedEtag()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void writeGzippedWithoutGzippedContent() throws Exception {
+    JsBundle.EMPTY.writeGzippedTo(new ByteArrayOutputStream());
+  }
+}
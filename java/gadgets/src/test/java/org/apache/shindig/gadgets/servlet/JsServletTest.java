@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.gadgets.uri.JsUriManager;
+import org.apache.shindig.gadgets.uri.UriStatus;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tests serving feature bundles, gzipped or not, by JsServlet.
+ */
+public class JsServletTest extends ServletTestFixture {
+  private final JsUriManager jsUriManager = mock(JsUriManager.class);
+  private final JsServlet servlet = new JsServlet();
+  private JsBundle bundle;
+
+  @Before
+  public void setUp() throws Exception {
+    StringBuilder js = new StringBuilder();
+    for (int i = 0; i < 100; ++i) {
+      js.append("gadgets.util.registerOnLoadHandler(function() {});\n");
+    }
+    bundle = new JsBundle(js.toString(), true);
+    servlet.setJsHandler(new JsHandler(null, null, null) {
+      @Override
+      public JsHandlerResponse getJsContent(HttpServletRequest req) {
+        return new JsHandlerResponse(bundle, new StringBuilder());
+      }
+    });
+    servlet.setUrlGenerator(jsUriManager);
+
+    expect(request.getScheme()).andReturn("http").anyTimes();
+    expect(request.getServerName()).andReturn("localhost").anyTimes();
+    expect(request.getServerPort()).andReturn(80).anyTimes();
+    expect(request.getRequestURI()).andReturn("/gadgets/js/core.js").anyTimes();
+    expect(jsUriManager.processExternJsUri(isA(Uri.class)))
+        .andReturn(new JsUriManager.JsUri(UriStatus.VALID_UNVERSIONED, null)).anyTimes();
+  }
+
+  private void expectHeaders(String acceptEncoding, String ifNoneMatch) {
+    expect(request.getHeader("Accept-Encoding")).andReturn(acceptEncoding).anyTimes();
+    expect(request.getHeader("If-None-Match")).andReturn(ifNoneMatch).anyTimes();
+  }
+
+  @Test
+  public void gzippedWhenAccepted() throws Exception {
+    expectHeaders("deflate, gzip", null);
+    replay();
+    servlet.doGet(request, recorder);
+    verify();
+
+    assertEquals(HttpServletResponse.SC_OK, recorder.getHttpStatusCode());
+    assertEquals("gzip", recorder.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", recorder.getHeader("Vary"));
+    assertEquals(bundle.getGzippedEtag(), recorder.getHeader("ETag"));
+    GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(recorder.getResponseAsBytes()));
+    assertEquals(bundle.getContent(), new String(IOUtils.toByteArray(in), "UTF-8"));
+  }
+
+  @Test
+  public void identityWhenGzipNotAccepted() throws Exception {
+    expectHeaders("gzip;q=0", null);
+    replay();
+    servlet.doGet(request, recorder);
+    verify();
+
+    assertEquals(HttpServletResponse.SC_OK, recorder.getHttpStatusCode());
+    assertNull(recorder.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", recorder.getHeader("Vary"));
+    assertEquals(bundle.getEtag(), recorder.getHeader("ETag"));
+    assertEquals(bundle.getContent(), recorder.getResponseAsString());
+  }
+
+  @Test
+  public void notModifiedForMatchingEncoding() throws Exception {
+    expectHeaders("gzip", bundle.getGzippedEtag());
+    replay();
+    servlet.doGet(request, recorder);
+    verify();
+
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, recorder.getHttpStatusCode());
+    assertEquals("Accept-Encoding", recorder.getHeader("Vary"));
+    assertEquals(bundle.getGzippedEtag(), recorder.getHeader("ETag"));
+    assertEquals(0, recorder.getResponseAsBytes().length);
+  }
+
+  @Test
+  public void identityTagDoesNotValidateGzippedResponse() throws Exception {
+    expectHeaders("gzip", bundle.getEtag());
+    replay();
+    servlet.doGet(request, recorder);
+    verify();
+
+    assertEquals(HttpServletResponse.SC_OK, recorder.getHttpStatusCode());
+    assertEquals("gzip", recorder.getHeader("Content-Encoding"));
+    assertEquals(bundle.getGzippedLength(), recorder.getResponseAsBytes().length);
+  }
+
+  @Test
+  public void notModifiedForIdentityTag() throws Exception {
+    expectHeaders(null, "\"other\", " + bundle.getEtag());
+    replay();
+    servlet.doGet(request, recorder);
+    verify();
+
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, recorder.getHttpStatusCode());
+    assertEquals(bundle.getEtag(), recorder.getHeader("ETag"));
+  }
+}
@@ -24,6 +24,9 @@ import org.apache.shindig.protocol.conversion.BeanXStreamConverter;
 import org.apache.shindig.protocol.conversion.xstream.XStreamConfiguration;
 import org.apache.shindig.social.core.util.atom.AtomFeed;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  * Converts output to atom.
  * TODO: Move to common once atom binding can be decoupled form social code
@@ -51,16 +54,16 @@ public class BeanXStreamAtomConverter extends BeanXStreamConverter {
   /**
    * {@inheritDoc}
    *
-   * @see org.apache.shindig.protocol.conversion.BeanXStreamConverter#convertToString(java.lang.Object)
+   * @see org.apache.shindig.protocol.conversion.BeanXStreamConverter#write(java.lang.Object, java.io.Writer)
    */
   @Override
-  public String convertToString(Object obj) {
+  protected void write(Object obj, Writer out) throws IOException {
     writerStack.reset();
     AtomFeed af = new AtomFeed(obj);
     XStreamConfiguration.ConverterConfig cc = converterMap.get(XStreamConfiguration.ConverterSet.DEFAULT);
     cc.mapper.setBaseObject(af); // thread safe method
 
-    return cc.xstream.toXML(af);
+    cc.xstream.toXML(af, out);
   }
 
 }
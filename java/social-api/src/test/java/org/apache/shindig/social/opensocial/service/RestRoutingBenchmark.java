@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.social.opensocial.service;
+
+import org.apache.shindig.protocol.DefaultHandlerRegistry;
+import org.apache.shindig.protocol.HandlerExecutionListener;
+import org.apache.shindig.protocol.RestHandler;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Benchmarks REST route dispatch in {@link DefaultHandlerRegistry} over the shipped social
+ * handlers. Only the lookup of the handler for a path is timed, not its execution. Run as a
+ * standalone program:
+ *
+ * RestRoutingBenchmark [iterations]
+ */
+public class RestRoutingBenchmark {
+  private static final String[][] REQUESTS = {
+      { "/people/john.doe/@self", "GET" },
+      { "/people/john.doe/@friends", "GET" },
+      { "/people/john.doe,jane.doe/@friends/bob", "GET" },
+      { "/people/@supportedFields", "GET" },
+      { "/activities/john.doe/@self/@app", "GET" },
+      { "/activities/john.doe/@friends/@app/1,2,3", "GET" },
+      { "/activities/john.doe/@self/@app", "POST" },
+      { "/activities/@supportedFields", "GET" },
+      { "/appdata/john.doe/@self/@app", "GET" },
+      { "/appdata/john.doe/@self/@app", "PUT" },
+      { "/appdata/john.doe/@self/@app", "DELETE" },
+      { "/messages/john.doe/@outbox", "POST" },
+      { "/messages/john.doe/@inbox/1,2", "GET" },
+      { "/albums/john.doe/@self/1", "GET" },
+      { "/albums/@supportedFields", "GET" },
+      { "/mediaItems/john.doe/@self/1/2", "GET" },
+      { "/mediaItems/@supportedFields", "GET" },
+      { "/unknown/john.doe/@self", "GET" }
+  };
+
+  private final DefaultHandlerRegistry registry;
+  private final int iterations;
+  private boolean warmup;
+
+  private RestRoutingBenchmark(int iterations) throws Exception {
+    this.iterations = iterations;
+    // Handlers are only routed to, never executed, so they need no services.
+    registry = new DefaultHandlerRegistry(null, null, new HandlerExecutionListener.NoOpHandler());
+    registry.addHandlers(ImmutableSet.<Object>of(
+        new PersonHandler(null, null),
+        new ActivityHandler(null, null),
+        new AppDataHandler(null),
+        new MessageHandler(null),
+        new AlbumHandler(null, null),
+        new MediaItemHandler(null, null)));
+
+    warmup = true;
+    run();
+
+    //Sleep to let JIT kick in
+    Thread.sleep(5000L);
+    warmup = false;
+    run();
+  }
+
+  private void run() {
+    int found = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      for (String[] request : REQUESTS) {
+        RestHandler handler = registry.getRestHandler(request[0], request[1]);
+        if (handler != null) {
+          found++;
+        }
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    if (!warmup) {
+      long lookups = (long) iterations * REQUESTS.length;
+      System.out.println("Routed " + lookups + " requests (" + found + " handlers) in " +
+          (elapsed / 1000000) + " ms: " + (elapsed / lookups) + " ns/lookup");
+    }
+  }
+
+  public static void main(String[] args) {
+    int iterations = 1000000;
+    try {
+      if (args.length > 0) {
+        iterations = Integer.parseInt(args[0]);
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Args: [iterations]");
+      System.exit(1);
+    }
+    try {
+      new RestRoutingBenchmark(iterations);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}